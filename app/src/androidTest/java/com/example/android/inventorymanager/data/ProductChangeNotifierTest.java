@@ -0,0 +1,120 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the changes requested from several threads at once are all sent by the coalescer,
+ * even when they race with the end of a window.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductChangeNotifierTest {
+
+    private static final int THREAD_COUNT = 4;
+    private static final int CHANGES_PER_THREAD = 500;
+    private static final int ROUND_COUNT = 20;
+
+    /** URI notified once the concurrent changes are done, which must reach its observer */
+    private static final Uri PROBE_URI = ProductContract.BASE_CONTENT_URI.buildUpon()
+            .appendPath("notifier_test").build();
+
+    private ContentResolver mResolver;
+    private ProductChangeNotifier mNotifier;
+    private ProbeObserver mProbeObserver;
+
+    @Before
+    public void setUp() {
+        mResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        // A window of 1 millisecond ends many times while the threads are requesting changes.
+        mNotifier = new ProductChangeNotifier(mResolver, 1);
+        mProbeObserver = new ProbeObserver();
+        mResolver.registerContentObserver(PROBE_URI, false, mProbeObserver);
+    }
+
+    @After
+    public void tearDown() {
+        mResolver.unregisterContentObserver(mProbeObserver);
+    }
+
+    @Test
+    public void notifyChange_fromSeveralThreads_sendsEveryChange() throws Exception {
+        for (int round = 0; round < ROUND_COUNT; round++) {
+            Thread[] threads = new Thread[THREAD_COUNT + 1];
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                final int firstId = i * CHANGES_PER_THREAD;
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int id = firstId; id < firstId + CHANGES_PER_THREAD; id++) {
+                            mNotifier.notifyChange(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id));
+                        }
+                    }
+                });
+            }
+            // Flush explicitly as well, like the provider does, to race with the scheduled flushes.
+            threads[THREAD_COUNT] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < CHANGES_PER_THREAD; i++) {
+                        mNotifier.flush();
+                    }
+                }
+            });
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // A change requested once the others are done must still be sent.
+            CountDownLatch latch = mProbeObserver.expectChange();
+            mNotifier.notifyChange(PROBE_URI);
+            assertTrue("Change not sent in round " + round, latch.await(5, TimeUnit.SECONDS));
+        }
+
+        long requestedCount = (long) ROUND_COUNT * (THREAD_COUNT * CHANGES_PER_THREAD + 1);
+        assertEquals(requestedCount, mNotifier.getRequestedCount());
+        assertEquals(requestedCount, mNotifier.getSentCount() + mNotifier.getSuppressedCount());
+    }
+
+    /**
+     * Observer of the probe URI, counting down the latch of the change it's expecting.
+     */
+    private static class ProbeObserver extends ContentObserver {
+        private volatile CountDownLatch mLatch;
+
+        ProbeObserver() {
+            super(null);
+        }
+
+        CountDownLatch expectChange() {
+            mLatch = new CountDownLatch(1);
+            return mLatch;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            CountDownLatch latch = mLatch;
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+    }
+}
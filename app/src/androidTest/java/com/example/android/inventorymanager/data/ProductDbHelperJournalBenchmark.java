@@ -0,0 +1,188 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.SupplierEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark comparing the latency of the single-row writes of the catalog, and of the reads
+ * running while they are, with the rollback journal and with the write-ahead log of {@link ProductDbHelper}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductDbHelperJournalBenchmark {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ProductDbHelperJournalBenchmark.class.getSimpleName();
+
+    /** Name of the database used by the benchmark */
+    private static final String DATABASE_NAME = "journal-benchmark.db";
+
+    /** Number of products in the database */
+    private static final int PRODUCT_COUNT = 500;
+
+    /** Number of single-row writes, each one in its own transaction */
+    private static final int WRITE_COUNT = 300;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void writeAheadLog_hasCheaperWrites() throws Exception {
+        Latencies rollbackJournal = measure(false);
+        mContext.deleteDatabase(DATABASE_NAME);
+        Latencies writeAheadLog = measure(true);
+
+        Log.i(LOG_TAG, "Rollback journal: " + rollbackJournal);
+        Log.i(LOG_TAG, "Write-ahead log: " + writeAheadLog);
+
+        assertTrue(writeAheadLog.writes.length == WRITE_COUNT && rollbackJournal.writes.length == WRITE_COUNT);
+        assertTrue("Writes with the write-ahead log should be faster",
+                writeAheadLog.median(writeAheadLog.writes) < rollbackJournal.median(rollbackJournal.writes));
+    }
+
+    /**
+     * Measure the latency of the sells of a writer thread, and of the reads made meanwhile on this thread.
+     */
+    private Latencies measure(boolean writeAheadLogging) throws Exception {
+        final ProductDbHelper dbHelper = new ProductDbHelper(mContext, DATABASE_NAME, writeAheadLogging);
+        try {
+            final SQLiteDatabase db = dbHelper.getWritableDatabase();
+            insertProducts(db);
+
+            final Latencies latencies = new Latencies(writeAheadLogging);
+            final AtomicBoolean writing = new AtomicBoolean(true);
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    SQLiteStatement sell = db.compileStatement("UPDATE " + ProductEntry.TABLE_NAME + " SET "
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                            + " - 1 WHERE " + ProductEntry._ID + " = ? AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                            + " >= 1");
+                    try {
+                        for (int i = 0; i < WRITE_COUNT; i++) {
+                            long start = SystemClock.elapsedRealtimeNanos();
+                            sell.bindLong(1, 1 + i % PRODUCT_COUNT);
+                            sell.executeUpdateDelete();
+                            latencies.writes[i] = SystemClock.elapsedRealtimeNanos() - start;
+                        }
+                    } finally {
+                        sell.close();
+                        writing.set(false);
+                    }
+                }
+            });
+            writer.start();
+
+            // Read products the way the catalog does while the writes are running.
+            long[] reads = new long[WRITE_COUNT * 10];
+            int readCount = 0;
+            SQLiteDatabase readDb = dbHelper.getReadableDatabase();
+            while (writing.get() && readCount < reads.length) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                Cursor cursor = readDb.query(ProductEntry.TABLE_NAME, new String[] { ProductEntry._ID,
+                        ProductEntry.COLUMN_PRODUCT_QUANTITY }, ProductEntry._ID + " > ?",
+                        new String[] { String.valueOf(readCount % PRODUCT_COUNT) }, null, null, ProductEntry._ID, "50");
+                try {
+                    while (cursor.moveToNext()) {
+                        cursor.getInt(1);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                reads[readCount++] = SystemClock.elapsedRealtimeNanos() - start;
+            }
+            writer.join();
+            latencies.reads = Arrays.copyOf(reads, readCount);
+            return latencies;
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    private static void insertProducts(SQLiteDatabase db) {
+        ContentValues values = new ContentValues();
+        long[] supplierIds = new long[10];
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < supplierIds.length; i++) {
+                ContentValues supplier = new ContentValues();
+                supplier.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "Supplier " + i);
+                supplier.put(SupplierEntry.COLUMN_SUPPLIER_EMAIL, "orders" + i + "@example.com");
+                supplierIds[i] = db.insertOrThrow(SupplierEntry.TABLE_NAME, null, supplier);
+            }
+            for (int i = 0; i < PRODUCT_COUNT; i++) {
+                values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Product " + i);
+                values.put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, 100 + i);
+                values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, WRITE_COUNT);
+                values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID, supplierIds[i % supplierIds.length]);
+                db.insertOrThrow(ProductEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Latencies of the writes and reads of a run, in nanoseconds.
+     */
+    private static class Latencies {
+        final boolean writeAheadLogging;
+        final long[] writes = new long[WRITE_COUNT];
+        long[] reads = new long[0];
+
+        Latencies(boolean writeAheadLogging) {
+            this.writeAheadLogging = writeAheadLogging;
+        }
+
+        long median(long[] latencies) {
+            return percentile(latencies, 50);
+        }
+
+        static long percentile(long[] latencies, int percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+        }
+
+        @Override
+        public String toString() {
+            return (writeAheadLogging ? "WAL" : "rollback")
+                    + " writes p50=" + percentile(writes, 50) / 1000 + "us p95=" + percentile(writes, 95) / 1000 + "us"
+                    + ", " + reads.length + " reads p50=" + percentile(reads, 50) / 1000
+                    + "us p95=" + percentile(reads, 95) / 1000 + "us";
+        }
+    }
+}
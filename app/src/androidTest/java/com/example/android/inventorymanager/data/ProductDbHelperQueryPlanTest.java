@@ -0,0 +1,166 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the catalog queries are served by the indexes of {@link ProductDbHelper},
+ * and that a version 1 database is migrated without losing its products.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductDbHelperQueryPlanTest {
+
+    /** Name of the database used by the migration test */
+    private static final String MIGRATION_DATABASE_NAME = "migration-test.db";
+
+    private Context mContext;
+    private ProductDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(MIGRATION_DATABASE_NAME);
+        // Query plans are checked on an in-memory database
+        mDbHelper = new ProductDbHelper(mContext, null);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+        mContext.deleteDatabase(MIGRATION_DATABASE_NAME);
+    }
+
+    @Test
+    public void pageSortedByName_usesNameIndex() {
+        String plan = explainQueryPlan("SELECT " + ProductEntry._ID + " FROM " + ProductEntry.TABLE_NAME
+                + " WHERE " + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE >= ? AND ("
+                + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE > ? OR " + ProductEntry._ID + " > ?)"
+                + " ORDER BY " + ProductEntry.SORT_ORDER_NAME + " LIMIT 50", "a", "a", "1");
+
+        assertTrue(plan, plan.contains(ProductDbHelper.INDEX_PRODUCT_NAME));
+        // The index order is the sort order, so no sort is needed.
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void productsOfSupplier_useSupplierIndex() {
+        String plan = explainQueryPlan("SELECT " + ProductEntry._ID + " FROM "
+                + ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER
+                + " WHERE " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " = ?", "1");
+
+        assertTrue(plan, plan.contains(ProductDbHelper.INDEX_PRODUCT_SUPPLIER));
+    }
+
+    @Test
+    public void outOfStockProducts_useQuantityIndex() {
+        String plan = explainQueryPlan("SELECT " + ProductEntry._ID + " FROM " + ProductEntry.TABLE_NAME
+                + " WHERE " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = 0");
+
+        assertTrue(plan, plan.contains(ProductDbHelper.INDEX_PRODUCT_QUANTITY));
+    }
+
+    @Test
+    public void upgradeFromVersion1_keepsAndIndexesProducts() {
+        // Create a database as it was in version 1, holding a product.
+        SQLiteDatabase oldDb = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(MIGRATION_DATABASE_NAME), null);
+        oldDb.execSQL(ProductDbHelper.SQL_CREATE_PRODUCTS_TABLE);
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "A3");
+        values.put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, 25000);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 1);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Audi");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "orders@audi.com");
+        oldDb.insertOrThrow(ProductEntry.TABLE_NAME, null, values);
+        oldDb.setVersion(1);
+        oldDb.close();
+
+        ProductDbHelper dbHelper = new ProductDbHelper(mContext, MIGRATION_DATABASE_NAME);
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            assertEquals(ProductDbHelper.DATABASE_VERSION, db.getVersion());
+
+            // The supplier of the product has moved to the supplier table, and is read back through the view.
+            Cursor cursor = db.query(ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER, new String[] {
+                    ProductEntry.COLUMN_PRODUCT_NAME, ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+                    ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL }, null, null, null, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+                cursor.moveToFirst();
+                assertEquals("A3", cursor.getString(0));
+                assertEquals("Audi", cursor.getString(1));
+                assertEquals("orders@audi.com", cursor.getString(2));
+            } finally {
+                cursor.close();
+            }
+            assertEquals(1, DatabaseUtils.queryNumEntries(db, ProductContract.SupplierEntry.TABLE_NAME));
+
+            Cursor indexes = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ?",
+                    new String[] { ProductEntry.TABLE_NAME });
+            StringBuilder indexNames = new StringBuilder();
+            try {
+                while (indexes.moveToNext()) {
+                    indexNames.append(indexes.getString(0)).append(' ');
+                }
+            } finally {
+                indexes.close();
+            }
+            assertTrue(indexNames.toString(), indexNames.indexOf(ProductDbHelper.INDEX_PRODUCT_NAME) >= 0);
+            assertTrue(indexNames.toString(), indexNames.indexOf(ProductDbHelper.INDEX_PRODUCT_SUPPLIER) >= 0);
+            assertTrue(indexNames.toString(), indexNames.indexOf(ProductDbHelper.INDEX_PRODUCT_QUANTITY) >= 0);
+
+            // The products already stored are in the full-text index.
+            Cursor matches = db.rawQuery("SELECT docid FROM " + ProductDbHelper.FTS_TABLE_NAME + " WHERE "
+                    + ProductDbHelper.FTS_TABLE_NAME + " MATCH 'aud*'", null);
+            try {
+                assertEquals(1, matches.getCount());
+            } finally {
+                matches.close();
+            }
+
+            // The stock level already stored is the initial movement of the ledger.
+            Cursor movements = db.query(ProductContract.StockMovementEntry.TABLE_NAME,
+                    new String[] { ProductContract.StockMovementEntry.COLUMN_DELTA }, null, null, null, null, null);
+            try {
+                assertEquals(1, movements.getCount());
+                movements.moveToFirst();
+                assertEquals(1, movements.getInt(0));
+            } finally {
+                movements.close();
+            }
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    /**
+     * Return the details of the query plan of the given query, one step per line.
+     */
+    private String explainQueryPlan(String sql, String... selectionArgs) {
+        Cursor cursor = mDbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        StringBuilder plan = new StringBuilder();
+        try {
+            int detailColumnIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailColumnIndex)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentValues;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+/**
+ * Values of the products inserted by the tests.
+ */
+final class ProductFixtures {
+
+    /** Supplier of the products when the test doesn't care about it */
+    static final String SUPPLIER_NAME = "Volkswagen";
+    static final String SUPPLIER_EMAIL = "orders@volkswagen.com";
+
+    /** Unit price of the products when the test doesn't care about it */
+    static final int UNIT_PRICE = 100;
+
+    private ProductFixtures() {
+    }
+
+    /**
+     * Return the values of a product with the given name and quantity, from the default supplier.
+     */
+    static ContentValues createProduct(String name, int quantity) {
+        return createProduct(name, quantity, SUPPLIER_NAME, SUPPLIER_EMAIL);
+    }
+
+    /**
+     * Return the values of a product with the given name and quantity, from the given supplier
+     * which is added along with it if it doesn't exist yet.
+     */
+    static ContentValues createProduct(String name, int quantity, String supplierName, String supplierEmail) {
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, name);
+        values.put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, UNIT_PRICE);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, quantity);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, supplierName);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, supplierEmail);
+        return values;
+    }
+
+    /**
+     * Return the values of a product with the given name and quantity, linked to an existing supplier by _ID.
+     */
+    static ContentValues createProduct(String name, int quantity, long supplierId) {
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, name);
+        values.put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, UNIT_PRICE);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, quantity);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID, supplierId);
+        return values;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ImportEntry;
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static com.example.android.inventorymanager.data.ProductFixtures.createProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that an interrupted import resumes after the last written batch, writing each product once.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductImporterTest extends ProductProviderTestCase {
+
+    /** Number of products of the document, two batches and a partial one */
+    private static final int PRODUCT_COUNT = 2 * ProductImporter.BATCH_SIZE + 10;
+
+    private File mDocumentFile;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mDocumentFile = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "import_test.csv");
+        writeDocument(mDocumentFile);
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        mDocumentFile.delete();
+        super.tearDown();
+    }
+
+    @Test
+    public void importProducts_afterCancel_resumesAfterLastBatch() throws IOException {
+        ContentResolver resolver = getMockContentResolver();
+        ProductImporter importer = new ProductImporter(getMockContext());
+        Uri documentUri = Uri.fromFile(mDocumentFile);
+
+        // Cancel the import once its first batch is written.
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        try {
+            importer.importProducts(documentUri, new ProductImporter.ProgressListener() {
+                @Override
+                public void onProgress(long bytesRead, long totalBytes, int productsImported) {
+                    cancellationSignal.cancel();
+                }
+            }, cancellationSignal);
+            fail("Import not cancelled");
+        } catch (OperationCanceledException e) {
+            // The import stops before its second batch.
+        }
+        assertEquals(ProductImporter.BATCH_SIZE, countRows(resolver, ProductEntry.CONTENT_URI));
+        // The position is the one of the last written batch, header included.
+        assertEquals(ProductImporter.BATCH_SIZE + 1, getSavedRecordCount(resolver));
+
+        ProductImporter.Result result = importer.importProducts(documentUri, null, null);
+        assertEquals(ProductImporter.BATCH_SIZE, result.resumedCount);
+        assertEquals(PRODUCT_COUNT - ProductImporter.BATCH_SIZE, result.importedCount);
+        assertEquals(0, result.rejectedCount);
+        assertEquals(PRODUCT_COUNT, countRows(resolver, ProductEntry.CONTENT_URI));
+
+        // Once the whole document is imported, importing it again starts from its first record.
+        assertEquals(0, countRows(resolver, ImportEntry.CONTENT_URI));
+        result = importer.importProducts(documentUri, null, null);
+        assertEquals(0, result.resumedCount);
+        assertEquals(PRODUCT_COUNT, result.importedCount);
+    }
+
+    @Test
+    public void importBatch_savesPositionWithProducts() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri batchUri = ProductEntry.buildImportBatchUri(Uri.fromFile(mDocumentFile), 100, 3);
+        ContentValues[] batch = new ContentValues[2];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = createProduct("Product " + i, 1);
+        }
+        assertEquals(2, resolver.bulkInsert(batchUri, batch));
+        assertEquals(3, getSavedRecordCount(resolver));
+
+        // A rejected batch leaves the position where it was.
+        batch[1].putNull(ProductEntry.COLUMN_PRODUCT_NAME);
+        try {
+            resolver.bulkInsert(ProductEntry.buildImportBatchUri(Uri.fromFile(mDocumentFile), 100, 5), batch);
+            fail("Invalid batch inserted");
+        } catch (IllegalArgumentException e) {
+            // The batch is rejected as a whole.
+        }
+        assertEquals(3, getSavedRecordCount(resolver));
+        assertEquals(2, countRows(resolver, ProductEntry.CONTENT_URI));
+    }
+
+    private static long getSavedRecordCount(ContentResolver resolver) {
+        Cursor cursor = resolver.query(ImportEntry.CONTENT_URI, new String[] { ImportEntry.COLUMN_RECORD_COUNT },
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int countRows(ContentResolver resolver, Uri uri) {
+        Cursor cursor = resolver.query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void writeDocument(File file) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            writer.write(ProductEntry.COLUMN_PRODUCT_NAME + "," + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + ","
+                    + ProductEntry.COLUMN_PRODUCT_QUANTITY + "," + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ","
+                    + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + "\n");
+            for (int i = 0; i < PRODUCT_COUNT; i++) {
+                writer.write("Product " + i + "," + (100 + i) + "," + i % 10 + ",Volkswagen,orders@volkswagen.com\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
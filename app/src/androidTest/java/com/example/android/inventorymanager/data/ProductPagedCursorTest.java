@@ -0,0 +1,86 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.StrictMode;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.android.inventorymanager.data.ProductFixtures.createProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that moving a {@link ProductPagedCursor} on the main thread never reads the database there:
+ * the rows of a page which isn't in memory read as placeholders until the page is fetched in the background.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductPagedCursorTest extends ProductProviderTestCase {
+
+    /** Number of products, many pages more than the ones kept in memory */
+    private static final int PRODUCT_COUNT = 20 * ProductPagedCursor.PAGE_SIZE;
+
+    private static final String[] PROJECTION = { ProductEntry._ID, ProductEntry.COLUMN_PRODUCT_NAME };
+
+    @Test
+    public void moveOnMainThread_fetchesMissingPageInBackground() throws InterruptedException {
+        ContentResolver resolver = getMockContentResolver();
+        ContentValues[] rows = new ContentValues[PRODUCT_COUNT];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = createProduct("Product " + i, 0);
+        }
+        resolver.bulkInsert(ProductEntry.CONTENT_URI, rows);
+
+        // Only the first page is fetched along with the count.
+        final ProductPagedCursor cursor = new ProductPagedCursor(resolver, PROJECTION, false, 0);
+        final int position = PRODUCT_COUNT - 1;
+        final CountDownLatch pageLoaded = new CountDownLatch(1);
+        final boolean[] placeholder = new boolean[2];
+        try {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    cursor.setOnPageLoadedListener(new ProductPagedCursor.OnPageLoadedListener() {
+                        @Override
+                        public void onPageLoaded(ProductPagedCursor pagedCursor, int firstPosition, int rowCount) {
+                            if (position >= firstPosition && position < firstPosition + rowCount) {
+                                pageLoaded.countDown();
+                            }
+                        }
+                    });
+                    // Any disk read left on the main thread kills the test process.
+                    StrictMode.ThreadPolicy oldPolicy = StrictMode.getThreadPolicy();
+                    StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                            .detectDiskReads()
+                            .penaltyDeath()
+                            .build());
+                    try {
+                        placeholder[0] = cursor.moveToPosition(position) && cursor.isNull(0);
+                    } finally {
+                        StrictMode.setThreadPolicy(oldPolicy);
+                    }
+                }
+            });
+            assertTrue("Row read without its page", placeholder[0]);
+            assertTrue("Page never fetched", pageLoaded.await(5, TimeUnit.SECONDS));
+
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    placeholder[1] = !cursor.moveToPosition(position) || cursor.isNull(0);
+                }
+            });
+            assertFalse("Row still a placeholder once its page is fetched", placeholder[1]);
+            assertEquals("Product " + position, cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.android.inventorymanager.data.ProductFixtures.createProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that {@link ProductContract#METHOD_BATCH_PRODUCTS} applies its action to all the given products
+ * in a single transaction, with a single change notification.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderBatchTest extends ProductProviderTestCase {
+
+    @Test
+    public void batchProducts_appliesActionToAllProductsWithOneNotification() {
+        ContentResolver resolver = getMockContentResolver();
+        long golfId = ContentUris.parseId(resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 5)));
+        long poloId = ContentUris.parseId(resolver.insert(ProductEntry.CONTENT_URI, createProduct("Polo", 1)));
+        long[] ids = {golfId, poloId};
+
+        long requestedCount = getProvider().getChangeNotifier().getRequestedCount();
+        assertEquals(2, batchProducts(resolver, ProductContract.BATCH_RESTOCK, ids, ProductContract.EXTRA_UNITS, 10));
+        assertEquals(requestedCount + 1, getProvider().getChangeNotifier().getRequestedCount());
+        // The changed products are read again into the cache along with the batch.
+        long hitCount = getProvider().getProductCache().getHitCount();
+        assertEquals(15, getQuantity(resolver, golfId));
+        assertEquals(11, getQuantity(resolver, poloId));
+        assertEquals(hitCount + 2, getProvider().getProductCache().getHitCount());
+
+        // The products without enough units in stock are left unsold.
+        assertEquals(1, batchProducts(resolver, ProductContract.BATCH_SELL, ids, ProductContract.EXTRA_UNITS, 12));
+        assertEquals(3, getQuantity(resolver, golfId));
+        assertEquals(11, getQuantity(resolver, poloId));
+
+        assertEquals(2, batchProducts(resolver, ProductContract.BATCH_SET_UNIT_PRICE, ids,
+                ProductContract.EXTRA_UNIT_PRICE, 250));
+        Cursor cursor = resolver.query(ProductEntry.CONTENT_URI,
+                new String[] { ProductEntry.COLUMN_PRODUCT_UNIT_PRICE }, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                assertEquals(250, cursor.getInt(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        assertEquals(2, batchProducts(resolver, ProductContract.BATCH_DELETE, ids, ProductContract.EXTRA_UNITS, 0));
+        assertEquals(-1, getQuantity(resolver, golfId));
+        assertEquals(-1, getQuantity(resolver, poloId));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchProducts_withoutUnits_fails() {
+        ContentResolver resolver = getMockContentResolver();
+        long golfId = ContentUris.parseId(resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 5)));
+        batchProducts(resolver, ProductContract.BATCH_RESTOCK, new long[] {golfId},
+                ProductContract.EXTRA_UNIT_PRICE, 250);
+    }
+
+    private static int batchProducts(ContentResolver resolver, String action, long[] ids, String key, int value) {
+        Bundle extras = new Bundle();
+        extras.putLongArray(ProductContract.EXTRA_IDS, ids);
+        extras.putInt(key, value);
+        Bundle result = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_BATCH_PRODUCTS, action, extras);
+        return result.getInt(ProductContract.EXTRA_ROW_COUNT);
+    }
+
+    private static int getQuantity(ContentResolver resolver, long id) {
+        Uri uri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id);
+        Cursor cursor = resolver.query(uri, new String[] { ProductEntry.COLUMN_PRODUCT_QUANTITY }, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static com.example.android.inventorymanager.data.ProductFixtures.createProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark comparing the insertion rate of the per-row insert path of {@link ProductProvider}
+ * with its transactional bulkInsert() and applyBatch() paths, on an isolated database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderBulkInsertBenchmark extends ProductProviderTestCase {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ProductProviderBulkInsertBenchmark.class.getSimpleName();
+
+    /** Number of products inserted by each path */
+    private static final int ROW_COUNT = 2000;
+
+    @Test
+    public void bulkInsert_isFasterThanPerRowInsert() throws Exception {
+        ContentResolver resolver = getMockContentResolver();
+        ContentValues[] rows = createProducts(ROW_COUNT);
+
+        // Per-row path: one implicit transaction and one notification per product.
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (ContentValues row : rows) {
+            assertNotNull(resolver.insert(ProductEntry.CONTENT_URI, row));
+        }
+        long perRowNanos = SystemClock.elapsedRealtimeNanos() - start;
+        resolver.delete(ProductEntry.CONTENT_URI, null, null);
+
+        // Bulk path: a single transaction reusing one compiled statement.
+        start = SystemClock.elapsedRealtimeNanos();
+        int inserted = resolver.bulkInsert(ProductEntry.CONTENT_URI, rows);
+        long bulkNanos = SystemClock.elapsedRealtimeNanos() - start;
+        resolver.delete(ProductEntry.CONTENT_URI, null, null);
+
+        // Batch path: the per-row operations applied within a single transaction.
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(ROW_COUNT);
+        for (ContentValues row : rows) {
+            operations.add(ContentProviderOperation.newInsert(ProductEntry.CONTENT_URI)
+                    .withValues(row)
+                    .build());
+        }
+        start = SystemClock.elapsedRealtimeNanos();
+        assertEquals(ROW_COUNT, resolver.applyBatch(ProductContract.CONTENT_AUTHORITY, operations).length);
+        long batchNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(LOG_TAG, "per-row insert: " + rowsPerSecond(perRowNanos) + " rows/s, "
+                + "bulkInsert: " + rowsPerSecond(bulkNanos) + " rows/s, "
+                + "applyBatch: " + rowsPerSecond(batchNanos) + " rows/s");
+
+        assertEquals(ROW_COUNT, inserted);
+        assertTrue(bulkNanos < perRowNanos);
+        assertTrue(batchNanos < perRowNanos);
+    }
+
+    /**
+     * Create the given number of valid products.
+     */
+    private static ContentValues[] createProducts(int count) {
+        ContentValues[] rows = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = createProduct("Product " + i, i % 50, "Supplier " + (i % 20),
+                    "orders@supplier" + (i % 20) + ".com");
+            rows[i].put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, 100 + i);
+        }
+        return rows;
+    }
+
+    private static long rowsPerSecond(long nanos) {
+        return ROW_COUNT * 1000000000L / Math.max(nanos, 1);
+    }
+}
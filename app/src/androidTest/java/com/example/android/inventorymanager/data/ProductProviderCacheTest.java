@@ -0,0 +1,110 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.android.inventorymanager.data.ProductFixtures.createProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the queries answered by the product cache of {@link ProductProvider} follow its writes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderCacheTest extends ProductProviderTestCase {
+
+    private static final String[] PROJECTION = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY};
+
+    @Test
+    public void lookupById_isAnsweredFromMemoryOnceRead() {
+        ContentResolver resolver = getMockContentResolver();
+        ProductCache cache = getProvider().getProductCache();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 3));
+
+        long hitCount = cache.getHitCount();
+        assertEquals("Golf:3", readProduct(resolver, golfUri));
+        assertEquals("Golf:3", readProduct(resolver, golfUri));
+        assertEquals(hitCount + 2, cache.getHitCount());
+
+        // A sale and an update are seen by the next lookup.
+        resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL, golfUri.getLastPathSegment(), null);
+        assertEquals("Golf:2", readProduct(resolver, golfUri));
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Golf GTI");
+        resolver.update(golfUri, values, null, null);
+        assertEquals("Golf GTI:2", readProduct(resolver, golfUri));
+
+        resolver.delete(golfUri, null, null);
+        assertNull(readProduct(resolver, golfUri));
+    }
+
+    @Test
+    public void pages_matchDatabaseOrder() {
+        ContentResolver resolver = getMockContentResolver();
+        resolver.bulkInsert(ProductEntry.CONTENT_URI, new ContentValues[] {
+                createProduct("polo", 1), createProduct("Golf", 2), createProduct("Arteon", 3),
+                createProduct("golf", 4), createProduct("Passat", 5)});
+
+        // The first query loads the catalog into the cache, the next ones are answered from memory.
+        List<String> byName = readNames(resolver, ProductEntry.CONTENT_URI, ProductEntry.SORT_ORDER_NAME);
+        assertEquals(Arrays.asList("Arteon", "Golf", "golf", "Passat", "polo"), byName);
+        assertTrue(getProvider().getProductCache().isComplete());
+
+        long hitCount = getProvider().getProductCache().getHitCount();
+        Cursor firstPage = resolver.query(ProductEntry.buildOffsetPageUri(2, 0), PROJECTION, null, null,
+                ProductEntry.SORT_ORDER_NAME);
+        assertNotNull(firstPage);
+        firstPage.moveToLast();
+        Uri nextPageUri = ProductEntry.buildPageUri(2, firstPage.getString(1), firstPage.getLong(0));
+        firstPage.close();
+        assertEquals(Arrays.asList("golf", "Passat"), readNames(resolver, nextPageUri, ProductEntry.SORT_ORDER_NAME));
+        assertEquals(hitCount + 2, getProvider().getProductCache().getHitCount());
+
+        // A new product is part of the next pages.
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("Caddy", 6));
+        assertEquals(Arrays.asList("Arteon", "Caddy", "Golf", "golf", "Passat", "polo"),
+                readNames(resolver, ProductEntry.CONTENT_URI, ProductEntry.SORT_ORDER_NAME));
+        assertTrue(getProvider().getProductCache().isComplete());
+    }
+
+    /**
+     * Return the name and stock level of the product with the given URI, or null if there is none.
+     */
+    private static String readProduct(ContentResolver resolver, Uri uri) {
+        Cursor cursor = resolver.query(uri, PROJECTION, null, null, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(1) + ":" + cursor.getInt(2) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<String> readNames(ContentResolver resolver, Uri uri, String sortOrder) {
+        Cursor cursor = resolver.query(uri, PROJECTION, null, null, sortOrder);
+        assertNotNull(cursor);
+        List<String> names = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.StockMovementEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.android.inventorymanager.data.ProductFixtures.createProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that each write of the provider changing a stock level records its movement in the stock ledger,
+ * and only the ones which change it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderLedgerTest extends ProductProviderTestCase {
+
+    @Test
+    public void insert_recordsInitialStock() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 5));
+        Uri poloUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Polo", 0));
+
+        assertEquals(Arrays.asList("initial 5"), readMovements(golfUri));
+        assertTrue(readMovements(poloUri).isEmpty());
+    }
+
+    @Test
+    public void updateById_recordsAdjustment() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 5));
+
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 8);
+        assertEquals(1, resolver.update(golfUri, values, null, null));
+        // Neither the same stock level nor another column is a movement.
+        assertEquals(1, resolver.update(golfUri, values, null, null));
+        values.clear();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Golf GTI");
+        assertEquals(1, resolver.update(golfUri, values, null, null));
+
+        assertEquals(Arrays.asList("initial 5", "adjustment 3"), readMovements(golfUri));
+    }
+
+    @Test
+    public void updateBySelection_recordsAdjustmentOfEachChangedProduct() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 5));
+        Uri poloUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Polo", 2));
+        Uri upUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Up", 4));
+
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 4);
+        assertEquals(3, resolver.update(ProductEntry.CONTENT_URI, values,
+                ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + "=?", new String[] { "Volkswagen" }));
+
+        assertEquals(Arrays.asList("initial 5", "adjustment -1"), readMovements(golfUri));
+        assertEquals(Arrays.asList("initial 2", "adjustment 2"), readMovements(poloUri));
+        assertEquals(Arrays.asList("initial 4"), readMovements(upUri));
+    }
+
+    @Test
+    public void updateBySelection_withNullQuantity_failsWithoutMovement() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 5));
+
+        ContentValues values = new ContentValues();
+        values.putNull(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        try {
+            resolver.update(ProductEntry.CONTENT_URI, values, null, null);
+            fail("Null quantity accepted");
+        } catch (IllegalArgumentException e) {
+            // The update is rejected before the ledger is written.
+        }
+        assertEquals(Arrays.asList("initial 5"), readMovements(golfUri));
+    }
+
+    @Test
+    public void sell_recordsSale() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 5));
+
+        Bundle extras = new Bundle();
+        extras.putInt(ProductContract.EXTRA_UNITS, 2);
+        Bundle result = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL,
+                golfUri.getLastPathSegment(), extras);
+        assertTrue(result.getBoolean(ProductContract.EXTRA_SOLD));
+        // A sale of more units than in stock doesn't happen, so it isn't recorded.
+        extras.putInt(ProductContract.EXTRA_UNITS, 4);
+        result = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL,
+                golfUri.getLastPathSegment(), extras);
+        assertFalse(result.getBoolean(ProductContract.EXTRA_SOLD));
+
+        assertEquals(Arrays.asList("initial 5", "sale -2"), readMovements(golfUri));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sell_withoutProduct_fails() {
+        getMockContentResolver().call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stockAt_withMalformedProduct_fails() {
+        getMockContentResolver().call(ProductEntry.CONTENT_URI, ProductContract.METHOD_STOCK_AT, "golf", null);
+    }
+
+    /**
+     * Return the movements recorded for the given product, in their order, as their reason and delta.
+     */
+    private List<String> readMovements(Uri productUri) {
+        Cursor cursor = getProvider().getDbHelper().getReadableDatabase().query(StockMovementEntry.TABLE_NAME,
+                new String[] { StockMovementEntry.COLUMN_REASON, StockMovementEntry.COLUMN_DELTA },
+                StockMovementEntry.COLUMN_PRODUCT_ID + "=?",
+                new String[] { String.valueOf(ContentUris.parseId(productUri)) },
+                null, null, StockMovementEntry._ID);
+        List<String> movements = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                movements.add(cursor.getString(0) + " " + cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return movements;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.android.inventorymanager.data.ProductFixtures.createProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that {@link ProductProvider} records its operations in the metrics returned by
+ * {@link ProductContract#METHOD_METRICS}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderMetricsTest extends ProductProviderTestCase {
+
+    @Test
+    public void metrics_countOperationsRowsAndFailures() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri uri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 5));
+        resolver.bulkInsert(ProductEntry.CONTENT_URI, new ContentValues[] {createProduct("Polo", 5), createProduct("Passat", 5)});
+        Cursor cursor = resolver.query(ProductEntry.CONTENT_URI, null, null, null, null);
+        cursor.close();
+
+        Bundle extras = new Bundle();
+        extras.putInt(ProductContract.EXTRA_UNITS, 1);
+        resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL, uri.getLastPathSegment(), extras);
+        extras.putInt(ProductContract.EXTRA_UNITS, 0);
+        try {
+            resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL, uri.getLastPathSegment(), extras);
+            fail("A sale of 0 unit should be rejected");
+        } catch (IllegalArgumentException expected) {
+            // The failed sale is recorded too.
+        }
+
+        Bundle reset = new Bundle();
+        reset.putBoolean(ProductContract.EXTRA_RESET, true);
+        Bundle metrics = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_METRICS, null, reset);
+
+        assertMetrics(metrics.getBundle("insert products"), 1, 0, 1);
+        assertMetrics(metrics.getBundle("bulk_insert products"), 1, 0, 2);
+        assertMetrics(metrics.getBundle("query products"), 1, 0, 3);
+        assertMetrics(metrics.getBundle(ProductContract.METHOD_SELL), 2, 1, 1);
+        assertTrue(metrics.getLong(ProductContract.EXTRA_NOTIFICATIONS_REQUESTED) >= 3);
+
+        // The metrics have been reset once returned.
+        metrics = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_METRICS, null, null);
+        assertNull(metrics.getBundle("insert products"));
+    }
+
+    private static void assertMetrics(Bundle metrics, long count, long failureCount, long rowCount) {
+        assertNotNull(metrics);
+        assertEquals(count, metrics.getLong(ProductContract.METRIC_COUNT));
+        assertEquals(failureCount, metrics.getLong(ProductContract.METRIC_FAILURE_COUNT));
+        assertEquals(rowCount, metrics.getLong(ProductContract.METRIC_ROW_COUNT));
+        assertTrue(metrics.getLong(ProductContract.METRIC_P99_MICROS) <= metrics.getLong(ProductContract.METRIC_MAX_MICROS));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the products falling below their reorder threshold are queued by their write, and collected
+ * into one purchase order per supplier by {@link ProductContract#METHOD_COLLECT_REORDERS}, staying queued
+ * until {@link ProductContract#METHOD_ACKNOWLEDGE_REORDERS}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderReorderTest extends ProductProviderTestCase {
+
+    @Test
+    public void collectReorders_groupsProductsBelowThresholdBySupplier() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", "Volkswagen", 5, 3));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("Polo", "Volkswagen", 1, 2));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("A3", "Audi", 0, 1));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("A4", "Audi", 0, 0));
+
+        // Selling the Golf below its threshold queues it along with the products inserted below theirs.
+        Bundle extras = new Bundle();
+        extras.putInt(ProductContract.EXTRA_UNITS, 3);
+        resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL, golfUri.getLastPathSegment(), extras);
+
+        Bundle result = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_COLLECT_REORDERS, null, null);
+        assertEquals(3, result.getInt(ProductContract.EXTRA_ROW_COUNT));
+        ArrayList<Bundle> purchaseOrders = result.getParcelableArrayList(ProductContract.EXTRA_PURCHASE_ORDERS);
+        assertEquals(2, purchaseOrders.size());
+        Bundle volkswagen = purchaseOrders.get(0);
+        assertEquals("Volkswagen", volkswagen.getString(ProductContract.EXTRA_SUPPLIER_NAME));
+        assertEquals(Arrays.asList("Golf", "Polo"), volkswagen.getStringArrayList(ProductContract.EXTRA_PRODUCT_NAMES));
+        assertEquals(Arrays.asList(2, 1), volkswagen.getIntegerArrayList(ProductContract.EXTRA_QUANTITIES));
+        assertEquals(Arrays.asList(3, 2), volkswagen.getIntegerArrayList(ProductContract.EXTRA_REORDER_THRESHOLDS));
+        assertEquals(Arrays.asList("A3"), purchaseOrders.get(1).getStringArrayList(ProductContract.EXTRA_PRODUCT_NAMES));
+
+        // The purchase orders are collected again until they are acknowledged.
+        assertEquals(3, collectReorders(resolver));
+        assertEquals(2, acknowledgeReorders(resolver, volkswagen));
+        assertEquals(1, acknowledgeReorders(resolver, purchaseOrders.get(1)));
+        assertEquals(0, collectReorders(resolver));
+
+        // A product still below its threshold isn't queued again until it has been restocked.
+        resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL, golfUri.getLastPathSegment(), null);
+        assertEquals(0, collectReorders(resolver));
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 10);
+        resolver.update(golfUri, values, null, null);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 2);
+        resolver.update(golfUri, values, null, null);
+        assertEquals(1, collectReorders(resolver));
+        acknowledgeAllReorders(resolver);
+
+        // A product restocked or deleted before being collected leaves the queue.
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 10);
+        resolver.update(golfUri, values, null, null);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 1);
+        resolver.update(golfUri, values, null, null);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 10);
+        resolver.update(golfUri, values, null, null);
+        assertEquals(0, collectReorders(resolver));
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 1);
+        resolver.update(golfUri, values, null, null);
+        resolver.delete(golfUri, null, null);
+        assertEquals(0, collectReorders(resolver));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insert_withNegativeReorderThreshold_fails() {
+        getMockContentResolver().insert(ProductEntry.CONTENT_URI, createProduct("Golf", "Volkswagen", 5, -1));
+    }
+
+    @Test
+    public void acknowledgeReorders_keepsProductsQueuedAgainSinceCollection() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", "Volkswagen", 1, 3));
+        Bundle result = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_COLLECT_REORDERS, null, null);
+        ArrayList<Bundle> purchaseOrders = result.getParcelableArrayList(ProductContract.EXTRA_PURCHASE_ORDERS);
+
+        // The product is queued again right away, most likely within the same second.
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 10);
+        resolver.update(golfUri, values, null, null);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 1);
+        resolver.update(golfUri, values, null, null);
+
+        assertEquals(0, acknowledgeReorders(resolver, purchaseOrders.get(0)));
+        assertEquals(1, collectReorders(resolver));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void acknowledgeReorders_withoutProducts_fails() {
+        getMockContentResolver().call(ProductEntry.CONTENT_URI, ProductContract.METHOD_ACKNOWLEDGE_REORDERS,
+                null, new Bundle());
+    }
+
+    private static int collectReorders(ContentResolver resolver) {
+        Bundle result = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_COLLECT_REORDERS, null, null);
+        return result.getInt(ProductContract.EXTRA_ROW_COUNT);
+    }
+
+    private static int acknowledgeReorders(ContentResolver resolver, Bundle purchaseOrder) {
+        Bundle result = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_ACKNOWLEDGE_REORDERS,
+                null, purchaseOrder);
+        return result.getInt(ProductContract.EXTRA_ROW_COUNT);
+    }
+
+    private static void acknowledgeAllReorders(ContentResolver resolver) {
+        Bundle result = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_COLLECT_REORDERS, null, null);
+        ArrayList<Bundle> purchaseOrders = result.getParcelableArrayList(ProductContract.EXTRA_PURCHASE_ORDERS);
+        for (Bundle purchaseOrder : purchaseOrders) {
+            acknowledgeReorders(resolver, purchaseOrder);
+        }
+    }
+
+    private static ContentValues createProduct(String name, String supplierName, int quantity, int reorderThreshold) {
+        ContentValues values = ProductFixtures.createProduct(name, quantity, supplierName, "orders@example.com");
+        values.put(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD, reorderThreshold);
+        return values;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the products/search URI of {@link ProductProvider}: ranking, sync of the full-text index
+ * with the product table, refinement of the results by {@link ProductSearchLoader},
+ * and search-as-you-type latency on a large catalog.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderSearchTest extends ProductProviderTestCase {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ProductProviderSearchTest.class.getSimpleName();
+
+    /** Number of products of the large catalog */
+    private static final int LARGE_CATALOG_SIZE = 100000;
+
+    /** Number of products returned by the searches of the catalog */
+    private static final int SEARCH_LIMIT = 50;
+
+    /** Median latency of a search-as-you-type keystroke on the large catalog, in milliseconds */
+    private static final long TARGET_MEDIAN_LATENCY_MS = 5;
+
+    /** Latency of the slowest keystroke, the first letters matching most of the catalog, in milliseconds */
+    private static final long TARGET_MAX_LATENCY_MS = 50;
+
+    private static final String[] PROJECTION = { ProductEntry._ID, ProductEntry.COLUMN_PRODUCT_NAME };
+
+    private static final String[] LOADER_PROJECTION = { ProductEntry._ID, ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME };
+
+    @Test
+    public void search_ranksNameMatchesFirst() {
+        ContentResolver resolver = getMockContentResolver();
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", "Volkswagen Audi Group"));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("Cable for audio", "Sony"));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("Audi A3", "Audi"));
+
+        assertEquals(Arrays.asList("Audi A3", "Cable for audio", "Golf"), search(resolver, "aud"));
+        assertEquals(Arrays.asList("Audi A3"), search(resolver, "a3 AUD"));
+        assertTrue(search(resolver, " \"*( ").isEmpty());
+    }
+
+    @Test
+    public void search_followsUpdatesAndDeletions() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri productUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", "Volkswagen"));
+
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Polo");
+        resolver.update(productUri, values, null, null);
+        assertTrue(search(resolver, "golf").isEmpty());
+        assertEquals(Arrays.asList("Polo"), search(resolver, "pol"));
+
+        resolver.delete(productUri, null, null);
+        assertTrue(search(resolver, "pol").isEmpty());
+    }
+
+    @Test
+    public void refinedSearch_ranksLikeNewSearch() {
+        ContentResolver resolver = getMockContentResolver();
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("\u00c9clair", "Bakery"));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("\u00e9clair noir", "Bakery"));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("ECLAIR blanc", "Bakery"));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("eclair", "Bakery"));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("Zeta \u00e9clair", "Bakery"));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("Cake", "\u00c9clat foods"));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("e1 e2 e3 e4 e5 e6 e7 e8", "Bakery"));
+
+        // Refine the results of the first text for the second one, which only extends it.
+        String[][] searches = {
+                { "\u00e9", "\u00e9cl" },
+                { "\u00c9", "\u00c9cl" },
+                { "e", "ecl" },
+                { "E", "ECLAIR" },
+                { "e1", "e1 e2 e3 e4 e5 e6 e7 e8 e9" },
+        };
+        for (String[] texts : searches) {
+            Cursor cursor = searchCursor(resolver, texts[0]);
+            ProductSearchLoader.SearchResult result;
+            try {
+                result = new ProductSearchLoader.SearchResult(texts[0], cursor);
+            } finally {
+                cursor.close();
+            }
+            assertTrue(texts[1], result.canRefine(texts[1]));
+            assertEquals(texts[1], getIds(searchCursor(resolver, texts[1])), getIds(result.refine(texts[1])));
+        }
+    }
+
+    @Test
+    public void searchAsYouType_onLargeCatalog() {
+        ContentResolver resolver = getMockContentResolver();
+        ContentValues[] rows = new ContentValues[LARGE_CATALOG_SIZE];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = createProduct("Product " + Integer.toString(i, 36) + " model " + i % 1000,
+                    "Supplier " + i % 100);
+        }
+        assertEquals(LARGE_CATALOG_SIZE, resolver.bulkInsert(ProductEntry.CONTENT_URI, rows));
+
+        // Type the name of a product one character at a time.
+        String typed = "product 1z model 71";
+        long[] latencies = new long[typed.length()];
+        for (int length = 1; length <= typed.length(); length++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            search(resolver, typed.substring(0, length));
+            latencies[length - 1] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(latencies);
+        long medianLatencyMs = TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length / 2]);
+        long maxLatencyMs = TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length - 1]);
+        Log.i(LOG_TAG, "Search-as-you-type on " + LARGE_CATALOG_SIZE + " products: median "
+                + medianLatencyMs + "ms, max " + maxLatencyMs + "ms");
+        assertTrue("Median latency " + medianLatencyMs + "ms", medianLatencyMs < TARGET_MEDIAN_LATENCY_MS);
+        assertTrue("Max latency " + maxLatencyMs + "ms", maxLatencyMs < TARGET_MAX_LATENCY_MS);
+
+        // The product whose name starts with the typed text comes first.
+        assertEquals("Product 1z model 71", search(resolver, typed).get(0));
+    }
+
+    /**
+     * Return the names of the products found for the given text, in their order.
+     */
+    private static List<String> search(ContentResolver resolver, String text) {
+        Cursor cursor = resolver.query(ProductEntry.buildSearchUri(text, SEARCH_LIMIT), PROJECTION,
+                null, null, null);
+        assertNotNull(cursor);
+        List<String> names = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    /**
+     * Return the products found for the given text, with the columns the search loader needs.
+     */
+    private static Cursor searchCursor(ContentResolver resolver, String text) {
+        Cursor cursor = resolver.query(ProductEntry.buildSearchUri(text, ProductSearchLoader.SEARCH_LIMIT),
+                LOADER_PROJECTION, null, null, null);
+        assertNotNull(cursor);
+        return cursor;
+    }
+
+    /**
+     * Return the IDs of the products of the given cursor, in their order, and close it.
+     */
+    private static List<Long> getIds(Cursor cursor) {
+        List<Long> ids = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(cursor.getColumnIndexOrThrow(ProductEntry._ID)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    private static ContentValues createProduct(String name, String supplierName) {
+        return ProductFixtures.createProduct(name, 1, supplierName, "orders@example.com");
+    }
+}
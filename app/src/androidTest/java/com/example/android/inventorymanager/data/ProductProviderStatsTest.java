@@ -0,0 +1,84 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.StatsEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the totals of the products/stats URI of {@link ProductProvider} follow the writes of the products.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderStatsTest extends ProductProviderTestCase {
+
+    @Test
+    public void stats_followInsertsUpdatesSalesAndDeletions() {
+        ContentResolver resolver = getMockContentResolver();
+        assertStats(resolver, 0, 0, 0, 0);
+
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 100, 2));
+        resolver.bulkInsert(ProductEntry.CONTENT_URI, new ContentValues[] {
+                createProduct("Polo", 50, 0), createProduct("Passat", 200, 1)});
+        assertStats(resolver, 3, 3, 400, 1);
+
+        // Changing the price and the stock level of a product.
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, 150);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 4);
+        resolver.update(golfUri, values, null, null);
+        assertStats(resolver, 3, 5, 800, 1);
+
+        // Selling units until the stock is empty.
+        Bundle extras = new Bundle();
+        extras.putInt(ProductContract.EXTRA_UNITS, 4);
+        resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL, golfUri.getLastPathSegment(), extras);
+        assertStats(resolver, 3, 1, 200, 2);
+
+        // Renaming a product doesn't change the totals.
+        values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Golf GTI");
+        resolver.update(golfUri, values, null, null);
+        assertStats(resolver, 3, 1, 200, 2);
+
+        resolver.delete(golfUri, null, null);
+        assertStats(resolver, 2, 1, 200, 1);
+        resolver.delete(ProductEntry.CONTENT_URI, null, null);
+        assertStats(resolver, 0, 0, 0, 0);
+    }
+
+    /**
+     * Check the totals read from the stats URI.
+     */
+    private static void assertStats(ContentResolver resolver, int productCount, long totalUnits, long totalValue,
+                                    int outOfStockCount) {
+        Cursor cursor = resolver.query(ProductEntry.STATS_URI, null, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(productCount, cursor.getInt(cursor.getColumnIndexOrThrow(StatsEntry.COLUMN_PRODUCT_COUNT)));
+            assertEquals(totalUnits, cursor.getLong(cursor.getColumnIndexOrThrow(StatsEntry.COLUMN_TOTAL_UNITS)));
+            assertEquals(totalValue, cursor.getLong(cursor.getColumnIndexOrThrow(StatsEntry.COLUMN_TOTAL_VALUE)));
+            assertEquals(outOfStockCount,
+                    cursor.getInt(cursor.getColumnIndexOrThrow(StatsEntry.COLUMN_OUT_OF_STOCK_COUNT)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues createProduct(String name, int unitPrice, int quantity) {
+        ContentValues values = ProductFixtures.createProduct(name, quantity);
+        values.put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, unitPrice);
+        return values;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.SupplierEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.android.inventorymanager.data.ProductFixtures.createProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the supplier URIs of the provider, and that the products follow the changes of their supplier
+ * in the full-text index and the cache.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderSupplierTest extends ProductProviderTestCase {
+
+    private static final String VOLKSWAGEN_EMAIL = "orders@volkswagen.com";
+
+    @Test
+    public void insertSupplier_existing_returnsItsUri() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri productUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 1, "Volkswagen", VOLKSWAGEN_EMAIL));
+        long supplierId = getSupplierId(resolver, productUri);
+
+        Uri supplierUri = resolver.insert(SupplierEntry.CONTENT_URI, createSupplier("Volkswagen", VOLKSWAGEN_EMAIL));
+        assertEquals(supplierId, ContentUris.parseId(supplierUri));
+        assertEquals(1, countSuppliers(resolver));
+    }
+
+    @Test
+    public void querySupplierProducts_returnsOnlyItsProducts() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 1, "Volkswagen", VOLKSWAGEN_EMAIL));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("A3", 1, "Audi", "orders@audi.com"));
+        resolver.insert(ProductEntry.CONTENT_URI, createProduct("Polo", 1, "Volkswagen", VOLKSWAGEN_EMAIL));
+
+        Uri uri = SupplierEntry.buildProductsUri(getSupplierId(resolver, golfUri));
+        assertEquals(Arrays.asList("Golf", "Polo"), readNames(resolver.query(uri,
+                new String[] { ProductEntry.COLUMN_PRODUCT_NAME }, null, null, ProductEntry.SORT_ORDER_NAME)));
+    }
+
+    @Test
+    public void renameSupplier_indexesAndRefreshesItsProducts() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 1, "Volkswagen", VOLKSWAGEN_EMAIL));
+        long supplierId = getSupplierId(resolver, golfUri);
+        // Read the product once so that it's cached with the old name of its supplier.
+        assertEquals("Volkswagen", getSupplierName(resolver, golfUri));
+
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "Wolfsburg Motors");
+        assertEquals(1, resolver.update(ContentUris.withAppendedId(SupplierEntry.CONTENT_URI, supplierId),
+                values, null, null));
+
+        assertEquals(Arrays.asList("Golf"), search(resolver, "wolfsb"));
+        assertTrue(search(resolver, "volksw").isEmpty());
+        assertEquals("Wolfsburg Motors", getSupplierName(resolver, golfUri));
+    }
+
+    @Test
+    public void renameSupplier_toExistingSupplier_mergesThem() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 1, "Volkswagen", VOLKSWAGEN_EMAIL));
+        Uri poloUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Polo", 1, "Volkswagn", VOLKSWAGEN_EMAIL));
+        long supplierId = getSupplierId(resolver, golfUri);
+        long typoId = getSupplierId(resolver, poloUri);
+
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "Volkswagen");
+        assertEquals(1, resolver.update(ContentUris.withAppendedId(SupplierEntry.CONTENT_URI, typoId),
+                values, null, null));
+
+        assertEquals(supplierId, getSupplierId(resolver, poloUri));
+        assertEquals(1, countSuppliers(resolver));
+        List<String> found = search(resolver, "volksw");
+        Collections.sort(found);
+        assertEquals(Arrays.asList("Golf", "Polo"), found);
+    }
+
+    @Test
+    public void deleteLastProduct_deletesItsSupplier() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 1, "Volkswagen", VOLKSWAGEN_EMAIL));
+        Uri a3Uri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("A3", 1, "Audi", "orders@audi.com"));
+
+        // Moving the product to another supplier leaves its supplier without products.
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Audi");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "orders@audi.com");
+        resolver.update(golfUri, values, null, null);
+        assertEquals(1, countSuppliers(resolver));
+
+        resolver.delete(golfUri, null, null);
+        assertEquals(1, countSuppliers(resolver));
+        resolver.delete(a3Uri, null, null);
+        assertEquals(0, countSuppliers(resolver));
+    }
+
+    @Test
+    public void deleteSuppliers_onlyDeletesSuppliersWithoutProducts() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri golfUri = resolver.insert(ProductEntry.CONTENT_URI, createProduct("Golf", 1, "Volkswagen", VOLKSWAGEN_EMAIL));
+        Uri audiUri = resolver.insert(SupplierEntry.CONTENT_URI, createSupplier("Audi", "orders@audi.com"));
+
+        Uri volkswagenUri = ContentUris.withAppendedId(SupplierEntry.CONTENT_URI, getSupplierId(resolver, golfUri));
+        assertEquals(0, resolver.delete(volkswagenUri, null, null));
+        assertEquals(1, resolver.delete(SupplierEntry.CONTENT_URI, null, null));
+
+        Cursor cursor = resolver.query(audiUri, null, null, null, null);
+        try {
+            assertEquals(0, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+        assertEquals(1, countSuppliers(resolver));
+    }
+
+    private static long getSupplierId(ContentResolver resolver, Uri productUri) {
+        Cursor cursor = resolver.query(productUri, new String[] { ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID },
+                null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String getSupplierName(ContentResolver resolver, Uri productUri) {
+        Cursor cursor = resolver.query(productUri, new String[] { ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME },
+                null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int countSuppliers(ContentResolver resolver) {
+        Cursor cursor = resolver.query(SupplierEntry.CONTENT_URI, new String[] { SupplierEntry._ID },
+                null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<String> search(ContentResolver resolver, String text) {
+        return readNames(resolver.query(ProductEntry.buildSearchUri(text, 10),
+                new String[] { ProductEntry.COLUMN_PRODUCT_NAME }, null, null, null));
+    }
+
+    private static List<String> readNames(Cursor cursor) {
+        List<String> names = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    private static ContentValues createSupplier(String name, String email) {
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, name);
+        values.put(SupplierEntry.COLUMN_SUPPLIER_EMAIL, email);
+        return values;
+    }
+}
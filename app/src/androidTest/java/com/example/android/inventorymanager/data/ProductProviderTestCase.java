@@ -0,0 +1,31 @@
+package com.example.android.inventorymanager.data;
+
+import android.support.test.InstrumentationRegistry;
+import android.test.ProviderTestCase2;
+
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Base of the tests of {@link ProductProvider}, run against an isolated provider and database
+ * set up before each test.
+ */
+public abstract class ProductProviderTestCase extends ProviderTestCase2<ProductProvider> {
+
+    public ProductProviderTestCase() {
+        super(ProductProvider.class, ProductContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+}
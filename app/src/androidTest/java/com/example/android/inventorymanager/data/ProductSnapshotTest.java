@@ -0,0 +1,185 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.StatsEntry;
+import com.example.android.inventorymanager.data.ProductContract.StockMovementEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the binary snapshots of the products are restored unchanged, along with the data derived
+ * from the products, and that a corrupted snapshot or an invalid product leaves the products unchanged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductSnapshotTest {
+
+    /** Number of products of the snapshots, larger than a page and than the buffers */
+    private static final int PRODUCT_COUNT = 5000;
+
+    private ProductDbHelper mSourceHelper;
+    private ProductDbHelper mTargetHelper;
+    private File mSnapshotFile;
+
+    @Before
+    public void setUp() {
+        mSourceHelper = new ProductDbHelper(InstrumentationRegistry.getTargetContext(), null);
+        mTargetHelper = new ProductDbHelper(InstrumentationRegistry.getTargetContext(), null);
+        mSnapshotFile = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "products.snapshot");
+
+        // The products are inserted like the provider does, their suppliers being added along with them.
+        ProductStatements statements = new ProductStatements(mSourceHelper);
+        SQLiteDatabase database = statements.getDatabase();
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < PRODUCT_COUNT; i++) {
+                ContentValues values = new ContentValues();
+                values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Produit n\u00b0" + i);
+                values.put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, 100 + i);
+                values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, i % 10);
+                if (i % 2 == 0) {
+                    values.put(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH, "content://images/" + i);
+                }
+                values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, i % 3 == 0 ? "Volkswagen" : "Audi");
+                values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "orders@example.com");
+                statements.insert(values);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mSourceHelper.close();
+        mTargetHelper.close();
+        mSnapshotFile.delete();
+    }
+
+    @Test
+    public void restore_replacesProductsWithSnapshot() throws Exception {
+        for (boolean deflate : new boolean[] { false, true }) {
+            assertEquals(PRODUCT_COUNT, backup(deflate));
+            assertEquals(PRODUCT_COUNT, restore());
+
+            SQLiteDatabase source = mSourceHelper.getReadableDatabase();
+            SQLiteDatabase target = mTargetHelper.getReadableDatabase();
+            assertEquals(checksumProducts(source), checksumProducts(target));
+
+            // The data derived from the products follows them.
+            assertEquals(DatabaseUtils.longForQuery(source, "SELECT " + StatsEntry.COLUMN_TOTAL_VALUE
+                    + " FROM " + StatsEntry.TABLE_NAME, null), DatabaseUtils.longForQuery(target,
+                    "SELECT " + StatsEntry.COLUMN_TOTAL_VALUE + " FROM " + StatsEntry.TABLE_NAME, null));
+            assertEquals(PRODUCT_COUNT / 3 + 1, DatabaseUtils.longForQuery(target, "SELECT COUNT(*) FROM "
+                    + ProductDbHelper.FTS_TABLE_NAME + " WHERE " + ProductDbHelper.FTS_TABLE_NAME
+                    + " MATCH 'volkswagen'", null));
+            assertEquals(DatabaseUtils.longForQuery(target, "SELECT COUNT(*) FROM " + ProductEntry.TABLE_NAME
+                            + " WHERE " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " != 0", null),
+                    DatabaseUtils.queryNumEntries(target, StockMovementEntry.TABLE_NAME));
+            assertEquals(1, DatabaseUtils.longForQuery(target, "SELECT COUNT(*) FROM sqlite_master WHERE name = ?",
+                    new String[] { ProductDbHelper.INDEX_PRODUCT_NAME }));
+        }
+    }
+
+    @Test
+    public void restore_ofCorruptedSnapshot_leavesProductsUnchanged() throws Exception {
+        backup(true);
+        restore();
+        SQLiteDatabase target = mTargetHelper.getReadableDatabase();
+        String checksum = checksumProducts(target);
+
+        // Flip a bit in the middle of the body.
+        RandomAccessFile file = new RandomAccessFile(mSnapshotFile, "rw");
+        try {
+            file.seek(file.length() / 2);
+            int b = file.read();
+            file.seek(file.length() / 2);
+            file.write(b ^ 1);
+        } finally {
+            file.close();
+        }
+        try {
+            restore();
+            fail("The corrupted snapshot has been restored");
+        } catch (IOException expected) {
+            // The restore is rolled back.
+        }
+        assertEquals(checksum, checksumProducts(target));
+    }
+
+    @Test
+    public void restore_ofInvalidProduct_leavesProductsUnchanged() throws Exception {
+        backup(false);
+        restore();
+        SQLiteDatabase target = mTargetHelper.getReadableDatabase();
+        String checksum = checksumProducts(target);
+
+        // A negative stock level is well-formed in a record, but rejected by the provider.
+        mSourceHelper.getWritableDatabase().execSQL("UPDATE " + ProductEntry.TABLE_NAME + " SET "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = -1 WHERE " + ProductEntry._ID + " = "
+                + PRODUCT_COUNT / 2);
+        backup(false);
+        try {
+            restore();
+            fail("The invalid product has been restored");
+        } catch (IOException expected) {
+            // The restore is rolled back.
+        }
+        assertEquals(checksum, checksumProducts(target));
+    }
+
+    private long backup(boolean deflate) throws IOException {
+        FileChannel channel = new FileOutputStream(mSnapshotFile).getChannel();
+        try {
+            return ProductSnapshot.write(mSourceHelper.getWritableDatabase(), channel, deflate);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private long restore() throws IOException {
+        FileChannel channel = new FileInputStream(mSnapshotFile).getChannel();
+        try {
+            return ProductSnapshot.read(mTargetHelper.getWritableDatabase(), channel);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Return a digest of all the columns of all the products.
+     */
+    private static String checksumProducts(SQLiteDatabase database) {
+        Cursor cursor = database.query(ProductEntry.TABLE_NAME, null, null, null, null, null, ProductEntry._ID);
+        try {
+            long hash = 0;
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    hash = 31 * hash + (cursor.isNull(i) ? 0 : cursor.getString(i).hashCode());
+                }
+            }
+            return cursor.getCount() + ":" + hash;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.android.inventorymanager.data.ProductFixtures.createProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark comparing the latency and the garbage of the single product insert, update by _ID and
+ * lookup by _ID, through the generic {@link SQLiteDatabase} methods and through {@link ProductStatements}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductStatementsBenchmark {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ProductStatementsBenchmark.class.getSimpleName();
+
+    /** Name of the database used by the benchmark */
+    private static final String DATABASE_NAME = "statements-benchmark.db";
+
+    /** Number of times each operation is run */
+    private static final int OPERATION_COUNT = 2000;
+
+    private static final String[] PROJECTION = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY};
+
+    private Context mContext;
+    private ProductDbHelper mDbHelper;
+    private ProductStatements mStatements;
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDbHelper = new ProductDbHelper(mContext, DATABASE_NAME);
+        mStatements = new ProductStatements(mDbHelper);
+        mDatabase = mStatements.getDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void cachedStatements_allocateLessThanGenericMethods() {
+        // The product is linked to its supplier by _ID, so that both inserts write the same columns.
+        final ContentValues product = createProduct("Product", 10,
+                mStatements.getOrInsertSupplier("Supplier", "orders@example.com"));
+        final ContentValues quantity = new ContentValues();
+
+        // Inserts, each one in its own transaction.
+        Result genericInsert = measure(new Operation() {
+            @Override
+            public void run(int i) {
+                mDatabase.insert(ProductEntry.TABLE_NAME, null, product);
+            }
+        });
+        Result cachedInsert = measure(new Operation() {
+            @Override
+            public void run(int i) {
+                mStatements.insert(product);
+            }
+        });
+
+        // Updates of the stock level by _ID.
+        Result genericUpdate = measure(new Operation() {
+            @Override
+            public void run(int i) {
+                quantity.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, i);
+                mDatabase.update(ProductEntry.TABLE_NAME, quantity, ProductEntry._ID + "=?",
+                        new String[] { String.valueOf(1 + i) });
+            }
+        });
+        Result cachedUpdate = measure(new Operation() {
+            @Override
+            public void run(int i) {
+                quantity.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, i);
+                mStatements.updateById(1 + i, quantity);
+            }
+        });
+
+        // Lookups by _ID.
+        Result genericQuery = measure(new Operation() {
+            @Override
+            public void run(int i) {
+                Cursor cursor = mDatabase.query(ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER, PROJECTION,
+                        ProductEntry._ID + "=?",
+                        new String[] { String.valueOf(1 + i) }, null, null, null);
+                cursor.moveToFirst();
+                cursor.close();
+            }
+        });
+        Result cachedQuery = measure(new Operation() {
+            @Override
+            public void run(int i) {
+                Cursor cursor = mStatements.queryById(1 + i, PROJECTION, null);
+                cursor.moveToFirst();
+                cursor.close();
+            }
+        });
+
+        Log.i(LOG_TAG, "Insert: generic " + genericInsert + ", cached " + cachedInsert);
+        Log.i(LOG_TAG, "Update by _ID: generic " + genericUpdate + ", cached " + cachedUpdate);
+        Log.i(LOG_TAG, "Lookup by _ID: generic " + genericQuery + ", cached " + cachedQuery);
+
+        assertTrue("Cached update should allocate less", cachedUpdate.bytesPerOperation < genericUpdate.bytesPerOperation);
+        assertTrue("Cached insert should allocate less", cachedInsert.bytesPerOperation < genericInsert.bytesPerOperation);
+    }
+
+    private interface Operation {
+        void run(int i);
+    }
+
+    /**
+     * Run the operation {@link #OPERATION_COUNT} times, and return its average latency and allocated bytes.
+     */
+    private static Result measure(Operation operation) {
+        // Warm up, so that the statements are compiled and the code is hot.
+        for (int i = 0; i < 50; i++) {
+            operation.run(i);
+        }
+        long startBytes = allocatedBytes();
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            operation.run(i);
+        }
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        long bytes = allocatedBytes() - startBytes;
+        return new Result(elapsed / OPERATION_COUNT, bytes / OPERATION_COUNT);
+    }
+
+    /**
+     * Return the number of bytes allocated by the runtime so far.
+     */
+    private static long allocatedBytes() {
+        return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    }
+
+    private static class Result {
+        final long nanosPerOperation;
+        final long bytesPerOperation;
+
+        Result(long nanosPerOperation, long bytesPerOperation) {
+            this.nanosPerOperation = nanosPerOperation;
+            this.bytesPerOperation = bytesPerOperation;
+        }
+
+        @Override
+        public String toString() {
+            return nanosPerOperation / 1000 + "us/op " + bytesPerOperation + "B/op";
+        }
+    }
+}
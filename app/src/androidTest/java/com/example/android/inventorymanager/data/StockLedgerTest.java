@@ -0,0 +1,97 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.StockMovementEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the stock levels read from the ledger, before and after its movements are rolled into snapshots.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StockLedgerTest {
+
+    private static final long DAY = StockLedger.DAY_MILLIS;
+
+    /** Start of the day on which the product is received */
+    private static final long DAY_1 = 1000 * DAY;
+
+    private ProductDbHelper mDbHelper;
+    private ProductStatements mStatements;
+    private SQLiteDatabase mDatabase;
+    private long mProductId;
+
+    @Before
+    public void setUp() {
+        mDbHelper = new ProductDbHelper(InstrumentationRegistry.getTargetContext(), null);
+        mStatements = new ProductStatements(mDbHelper);
+        mDatabase = mStatements.getDatabase();
+
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "A3");
+        values.put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, 25000);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 10);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Audi");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "orders@audi.com");
+        mProductId = mStatements.insert(values);
+
+        // 10 units received on day 1, 3 sold on day 1, 2 sold on day 2, 5 added on day 4.
+        mStatements.recordMovement(mProductId, 10, StockMovementEntry.REASON_INITIAL, DAY_1 + 1000);
+        mStatements.recordMovement(mProductId, -3, StockMovementEntry.REASON_SALE, DAY_1 + 2000);
+        mStatements.recordMovement(mProductId, -2, StockMovementEntry.REASON_SALE, DAY_1 + DAY + 1000);
+        mStatements.recordMovement(mProductId, 5, StockMovementEntry.REASON_ADJUSTMENT, DAY_1 + 3 * DAY + 1000);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+    }
+
+    @Test
+    public void stockAt_sumsMovementsUpToTime() {
+        assertEquals(0, mStatements.getStockAt(mProductId, DAY_1));
+        assertEquals(10, mStatements.getStockAt(mProductId, DAY_1 + 1500));
+        assertEquals(7, mStatements.getStockAt(mProductId, DAY_1 + DAY));
+        assertEquals(5, mStatements.getStockAt(mProductId, DAY_1 + 3 * DAY));
+        assertEquals(10, mStatements.getStockAt(mProductId, DAY_1 + 4 * DAY));
+    }
+
+    @Test
+    public void compact_rollsWholeDaysIntoSnapshots() {
+        // Roll days 1 and 2, the time being in the middle of day 3.
+        assertEquals(3, StockLedger.compact(mDatabase, DAY_1 + 2 * DAY + DAY / 2));
+        assertEquals(1, DatabaseUtils.queryNumEntries(mDatabase, StockMovementEntry.TABLE_NAME));
+
+        // The stock levels at the end of the rolled days are kept, the intraday ones are not.
+        assertEquals(0, mStatements.getStockAt(mProductId, DAY_1 + 1500));
+        assertEquals(7, mStatements.getStockAt(mProductId, DAY_1 + DAY));
+        assertEquals(5, mStatements.getStockAt(mProductId, DAY_1 + 2 * DAY));
+        assertEquals(5, mStatements.getStockAt(mProductId, DAY_1 + 3 * DAY));
+        assertEquals(10, mStatements.getStockAt(mProductId, DAY_1 + 4 * DAY));
+
+        // A later compaction starts from the last snapshot.
+        assertEquals(1, StockLedger.compact(mDatabase, DAY_1 + 5 * DAY));
+        assertEquals(10, mStatements.getStockAt(mProductId, DAY_1 + 4 * DAY));
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDatabase, StockMovementEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void deletingProduct_deletesItsHistory() {
+        StockLedger.compact(mDatabase, DAY_1 + 2 * DAY);
+        mStatements.deleteById(mProductId);
+
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDatabase, StockMovementEntry.TABLE_NAME));
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDatabase, ProductContract.StockSnapshotEntry.TABLE_NAME));
+    }
+}
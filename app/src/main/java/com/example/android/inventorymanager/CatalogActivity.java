@@ -1,26 +1,50 @@
 package com.example.android.inventorymanager;
 
+import android.app.ProgressDialog;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.OperationCanceledException;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.view.ActionMode;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.text.InputType;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import com.example.android.inventorymanager.data.ProductContract;
 import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.StatsEntry;
+import com.example.android.inventorymanager.data.ProductExporter;
+import com.example.android.inventorymanager.data.ProductImporter;
+import com.example.android.inventorymanager.data.ProductPagedCursor;
+import com.example.android.inventorymanager.data.ProductPagedLoader;
+import com.example.android.inventorymanager.data.ProductRepository;
+import com.example.android.inventorymanager.data.ProductSearchLoader;
+import com.example.android.inventorymanager.data.StockLedgerCompactionService;
+import com.example.android.inventorymanager.image.ProductThumbnailStore;
+
+import java.io.IOException;
 
 /**
  * Displays list of products that were entered and stored in the app.
@@ -33,9 +57,114 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
     /** Unique identifier for the loader */
     private static final int PRODUCT_LOADER = 0;
 
+    /** Unique identifier for the loader of the totals of the inventory */
+    private static final int STATS_LOADER = 1;
+
+    /** Argument of the loader giving the text to search, the whole catalog being loaded without it */
+    private static final String ARG_SEARCH_QUERY = "search_query";
+
+    /** Key of the saved state holding the _IDs of the selected products */
+    private static final String STATE_SELECTED_IDS = "selected_ids";
+
+    /** Request code of the picker of the CSV file to import */
+    private static final int REQUEST_IMPORT_PRODUCTS = 1;
+
+    /** Request codes of the creation of the CSV and JSON documents to which the products are exported */
+    private static final int REQUEST_EXPORT_PRODUCTS_CSV = 2;
+    private static final int REQUEST_EXPORT_PRODUCTS_JSON = 3;
+
+    /** Request codes of the creation of a snapshot of the products, and of the pick of the snapshot to restore */
+    private static final int REQUEST_BACKUP_PRODUCTS = 4;
+    private static final int REQUEST_RESTORE_PRODUCTS = 5;
+
+    /** Delay after the last keystroke before the products are searched */
+    private static final long SEARCH_DEBOUNCE_MILLIS = 150;
+
+    /** Columns of the products displayed in the list, plus the supplier name matched by the searches */
+    private static final String[] PRODUCT_PROJECTION = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_UNIT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_IMAGE_PATH,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME};
+
     /** Instance of CursorAdapter */
     ProductCursorAdapter mCursorAdapter;
 
+    /** Applier of the new cursors to the adapter, only redrawing the rows that have changed */
+    private ProductListDiffer mListDiffer;
+
+    /** Views displaying the products, or the empty warehouse when there is none */
+    private RecyclerView mProductRecyclerView;
+    private LinearLayoutManager mLayoutManager;
+    private View mEmptyView;
+
+    /** Header displaying the totals of the inventory */
+    private TextView mStatsHeader;
+
+    /** Text currently searched, empty when the whole catalog is displayed */
+    private String mSearchQuery = "";
+
+    /** Text typed in the search view, searched once the typing pauses */
+    private String mTypedSearchQuery = "";
+
+    /** Import or export of products running in the background, or null if there is none */
+    private TransferTask<?> mTransferTask;
+
+    /** Contextual app bar of the selected products, or null if no product is selected */
+    private ActionMode mActionMode;
+
+    /**
+     * Callback of the contextual app bar, applying its actions to all the selected products at once.
+     */
+    private final ActionMode.Callback mActionModeCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_catalog_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            switch (item.getItemId()) {
+                case R.id.action_restock_selected:
+                    showBatchNumberDialog(ProductContract.BATCH_RESTOCK, R.string.restock_selected_dialog_title);
+                    return true;
+                case R.id.action_sell_selected:
+                    showBatchNumberDialog(ProductContract.BATCH_SELL, R.string.sell_selected_dialog_title);
+                    return true;
+                case R.id.action_change_price_selected:
+                    showBatchNumberDialog(ProductContract.BATCH_SET_UNIT_PRICE,
+                            R.string.change_price_selected_dialog_title);
+                    return true;
+                case R.id.action_delete_selected:
+                    showDeleteSelectedConfirmationDialog();
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            mActionMode = null;
+            mCursorAdapter.clearSelection();
+        }
+    };
+
+    private final Handler mSearchHandler = new Handler();
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            search(mTypedSearchQuery);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -51,22 +180,42 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
             }
         });
 
-        // Find the ListView which will be populated with the product data.
-        ListView productListView = (ListView) findViewById(R.id.list);
+        // Keep the stock ledger small by rolling its old movements into daily snapshots.
+        StockLedgerCompactionService.schedule(this);
+
+        // Gather the products running low into one purchase order per supplier.
+        PurchaseOrderService.schedule(this);
 
-        // Find and set empty view on the ListView, so that it only shows when the list has 0 items.
-        View emptyView = findViewById(R.id.empty_view);
-        productListView.setEmptyView(emptyView);
+        // Find the RecyclerView which will be populated with the product data.
+        mProductRecyclerView = (RecyclerView) findViewById(R.id.list);
+        mLayoutManager = new LinearLayoutManager(this);
+        mProductRecyclerView.setLayoutManager(mLayoutManager);
+        mProductRecyclerView.setHasFixedSize(true);
+
+        // Find the empty view, which is only shown when the list has 0 items.
+        mEmptyView = findViewById(R.id.empty_view);
+
+        // Find the header displaying the totals of the inventory.
+        mStatsHeader = (TextView) findViewById(R.id.stats_header);
 
         // Setup an Adapter to create a list item for each row of product data in the Cursor.
         // There is not product data yet (until the loader finishes), so we pass in null for the Cursor.
         mCursorAdapter = new ProductCursorAdapter(this, null);
-        productListView.setAdapter(mCursorAdapter);
+        mProductRecyclerView.setAdapter(mCursorAdapter);
+
+        // Setup the differ applying the new cursors to the adapter, and updating the empty view afterwards.
+        mListDiffer = new ProductListDiffer(mCursorAdapter);
+        mListDiffer.setOnCursorAppliedListener(new ProductListDiffer.OnCursorAppliedListener() {
+            @Override
+            public void onCursorApplied(Cursor cursor) {
+                updateEmptyView();
+            }
+        });
 
         // Setup the item click listener
-        productListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        mCursorAdapter.setOnProductClickListener(new ProductCursorAdapter.OnProductClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            public void onProductClick(long id) {
                 Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
                 Uri currentProductUri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id);
                 intent.setData(currentProductUri);
@@ -74,8 +223,249 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
             }
         });
 
-        // Kick-off the loader.
-        getSupportLoaderManager().initLoader(PRODUCT_LOADER, null, this);
+        // Show the contextual app bar while products are selected, with their number.
+        mCursorAdapter.setOnSelectionChangedListener(new ProductCursorAdapter.OnSelectionChangedListener() {
+            @Override
+            public void onSelectionChanged(int selectedCount) {
+                updateActionMode(selectedCount);
+            }
+        });
+
+        // Setup the scroll listener, fetching the pages of products ahead of the scrolling.
+        mProductRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                onVisibleProductsChanged(mLayoutManager.findFirstVisibleItemPosition(),
+                        mLayoutManager.findLastVisibleItemPosition());
+            }
+        });
+
+        // Kick-off the loader, searching the products again if a search was displayed.
+        if (savedInstanceState != null) {
+            mSearchQuery = savedInstanceState.getString(ARG_SEARCH_QUERY, "");
+            mTypedSearchQuery = mSearchQuery;
+            // Select the products again if some were selected.
+            long[] selectedIds = savedInstanceState.getLongArray(STATE_SELECTED_IDS);
+            if (selectedIds != null && selectedIds.length > 0) {
+                mCursorAdapter.setSelectedIds(selectedIds);
+                updateActionMode(selectedIds.length);
+            }
+        }
+        getSupportLoaderManager().initLoader(PRODUCT_LOADER, buildLoaderArgs(mSearchQuery), this);
+        // Display the transfer started before the activity was recreated, if it's still running.
+        mTransferTask = (TransferTask<?>) getLastCustomNonConfigurationInstance();
+        if (mTransferTask != null) {
+            mTransferTask.attach(this);
+        }
+        // Kick off the loader of the totals, which reloads them on each change of the products.
+        getSupportLoaderManager().initLoader(STATS_LOADER, null, this);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(ARG_SEARCH_QUERY, mSearchQuery);
+        if (mActionMode != null) {
+            outState.putLongArray(STATE_SELECTED_IDS, mCursorAdapter.getSelectedIds());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        if (mTransferTask == null) {
+            return;
+        }
+        mTransferTask.detach();
+        // A transfer goes on in the activity recreated for a configuration change. Otherwise stop the import
+        // after its current batch, the next import of the same file resuming it, or the export, whose
+        // incomplete document is deleted.
+        if (!isChangingConfigurations()) {
+            mTransferTask.cancel();
+        }
+    }
+
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        // Hand the running transfer over to the recreated activity.
+        return mTransferTask;
+    }
+
+    /**
+     * Display the products matching the given text, or the whole catalog if it's empty.
+     * While searching, the loader is given each new text, cancelling the query of the previous one,
+     * so that only the results of the latest text reach the list.
+     */
+    private void search(String query) {
+        query = query.trim();
+        if (query.equals(mSearchQuery)) {
+            return;
+        }
+        boolean wasSearching = !mSearchQuery.isEmpty();
+        mSearchQuery = query;
+
+        Loader<Cursor> loader = getSupportLoaderManager().getLoader(PRODUCT_LOADER);
+        if (wasSearching && !query.isEmpty() && loader instanceof ProductSearchLoader) {
+            ((ProductSearchLoader) loader).setQuery(query);
+        } else {
+            // Switch between the catalog and the search results.
+            getSupportLoaderManager().restartLoader(PRODUCT_LOADER, buildLoaderArgs(query), this);
+        }
+    }
+
+    /**
+     * Return the arguments of the loader searching the given text, or null to load the whole catalog.
+     */
+    private static Bundle buildLoaderArgs(String query) {
+        if (query.isEmpty()) {
+            return null;
+        }
+        Bundle args = new Bundle();
+        args.putString(ARG_SEARCH_QUERY, query);
+        return args;
+    }
+
+    /**
+     * Fetch the pages of products around the visible rows, and let the loader know where
+     * the list stands so that a reload after a change starts from there.
+     */
+    private void onVisibleProductsChanged(int firstPosition, int lastPosition) {
+        if (firstPosition < 0 || lastPosition < firstPosition) {
+            return;
+        }
+        Cursor cursor = mCursorAdapter.getCursor();
+        if (cursor instanceof ProductPagedCursor) {
+            ((ProductPagedCursor) cursor).prefetch(firstPosition, lastPosition);
+        }
+        Loader<Cursor> loader = getSupportLoaderManager().getLoader(PRODUCT_LOADER);
+        if (loader instanceof ProductPagedLoader) {
+            ((ProductPagedLoader) loader).setAnchorPosition(firstPosition);
+        }
+    }
+
+    /**
+     * Show the contextual app bar with the given number of selected products, or hide it if there is none.
+     */
+    private void updateActionMode(int selectedCount) {
+        if (selectedCount == 0) {
+            if (mActionMode != null) {
+                mActionMode.finish();
+            }
+            return;
+        }
+        if (mActionMode == null) {
+            mActionMode = startSupportActionMode(mActionModeCallback);
+        }
+        mActionMode.setTitle(getString(R.string.catalog_selected_products, selectedCount));
+    }
+
+    /**
+     * Ask the user for the number of units or the unit price the given action applies to each selected product.
+     */
+    private void showBatchNumberDialog(final String action, int titleId) {
+        final EditText numberEditText = new EditText(this);
+        numberEditText.setInputType(InputType.TYPE_CLASS_NUMBER);
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(titleId);
+        builder.setView(numberEditText);
+        builder.setPositiveButton(R.string.apply, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                int number = 0;
+                try {
+                    number = Integer.parseInt(numberEditText.getText().toString().trim());
+                } catch (NumberFormatException e) {
+                    // Left at 0, which is rejected below.
+                }
+                if (number <= 0) {
+                    Toast.makeText(CatalogActivity.this, getString(R.string.catalog_batch_requires_positive_number),
+                            Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                batchSelectedProducts(action, number);
+            }
+        });
+        builder.setNegativeButton(R.string.cancel, null);
+        builder.create().show();
+    }
+
+    /**
+     * Ask the user to confirm that the selected products are deleted.
+     */
+    private void showDeleteSelectedConfirmationDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        int selectedCount = mCursorAdapter.getSelectedIds().length;
+        builder.setMessage(getResources().getQuantityString(R.plurals.delete_selected_products_dialog_msg,
+                selectedCount, selectedCount));
+        builder.setPositiveButton(R.string.delete, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                // User clicked the "Delete" button, so delete the selected products.
+                batchSelectedProducts(ProductContract.BATCH_DELETE, 0);
+            }
+        });
+        builder.setNegativeButton(R.string.cancel, null);
+        builder.create().show();
+    }
+
+    /**
+     * Apply the given action to all the selected products, which the provider does in a single transaction,
+     * the catalog being reloaded once for all of them.
+     *
+     * @param action One of the BATCH_ actions of {@link ProductContract#METHOD_BATCH_PRODUCTS}
+     * @param number The number of units to restock or sell, or the new unit price
+     */
+    private void batchSelectedProducts(final String action, int number) {
+        if (mActionMode == null) {
+            return;
+        }
+        final long[] ids = mCursorAdapter.getSelectedIds();
+        Bundle extras = new Bundle();
+        if (ProductContract.BATCH_SET_UNIT_PRICE.equals(action)) {
+            extras.putInt(ProductContract.EXTRA_UNIT_PRICE, number);
+        } else {
+            extras.putInt(ProductContract.EXTRA_UNITS, number);
+        }
+        // The products are unselected right away, the result coming back on the main thread.
+        mActionMode.finish();
+
+        final Context context = getApplicationContext();
+        ProductRepository.getInstance(this).batchProducts(action, ids, extras, new ProductRepository.Callback<Integer>() {
+            @Override
+            public void onResult(Integer rowsChanged) {
+                // If the batch was rejected, then none of the products has changed.
+                if (rowsChanged == -1) {
+                    Toast.makeText(context, context.getString(R.string.catalog_batch_products_failed),
+                            Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                String message;
+                switch (action) {
+                    case ProductContract.BATCH_RESTOCK:
+                        message = context.getResources().getQuantityString(
+                                R.plurals.catalog_restock_selected_successful, rowsChanged, rowsChanged);
+                        break;
+                    case ProductContract.BATCH_SELL:
+                        // The products lacking units in stock are left unsold.
+                        message = context.getResources().getQuantityString(
+                                R.plurals.catalog_sell_selected_successful, ids.length, rowsChanged, ids.length);
+                        break;
+                    case ProductContract.BATCH_SET_UNIT_PRICE:
+                        message = context.getResources().getQuantityString(
+                                R.plurals.catalog_change_price_selected_successful, rowsChanged, rowsChanged);
+                        break;
+                    default:
+                        // The thumbnails of the deleted products aren't needed anymore.
+                        ProductThumbnailStore thumbnailStore = ProductThumbnailStore.getInstance(context);
+                        for (long id : ids) {
+                            thumbnailStore.deleteAsync(id);
+                        }
+                        message = context.getResources().getQuantityString(
+                                R.plurals.catalog_delete_selected_successful, rowsChanged, rowsChanged);
+                        break;
+                }
+                Toast.makeText(context, message, Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -95,18 +485,23 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Audi");
         values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "orders@audi.com");
 
-        Uri newUri = getContentResolver().insert(ProductEntry.CONTENT_URI, values);
-
-        // Show a toast message depending on whether or not the insertion was successful.
-        if (newUri == null) {
-            // If the new content URI is null, then there was an error with insertion.
-            Toast.makeText(this, getString(R.string.editor_insert_product_failed),
-                    Toast.LENGTH_SHORT).show();
-        } else {
-            // Otherwise, the insertion was successful and we can display a toast.
-            Toast.makeText(this, getString(R.string.editor_insert_product_successful),
-                    Toast.LENGTH_SHORT).show();
-        }
+        // Insert the product in the background, the result coming back on the main thread.
+        final Context context = getApplicationContext();
+        ProductRepository.getInstance(this).insertProduct(values, new ProductRepository.Callback<Uri>() {
+            @Override
+            public void onResult(Uri newUri) {
+                // Show a toast message depending on whether or not the insertion was successful.
+                if (newUri == null) {
+                    // If the new content URI is null, then there was an error with insertion.
+                    Toast.makeText(context, context.getString(R.string.editor_insert_product_failed),
+                            Toast.LENGTH_SHORT).show();
+                } else {
+                    // Otherwise, the insertion was successful and we can display a toast.
+                    Toast.makeText(context, context.getString(R.string.editor_insert_product_successful),
+                            Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
     @Override
@@ -114,6 +509,33 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        // Search as the user types, once the typing pauses.
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        if (!mSearchQuery.isEmpty()) {
+            searchItem.expandActionView();
+            searchView.setQuery(mSearchQuery, false);
+        }
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mTypedSearchQuery = newText;
+                mSearchHandler.removeCallbacks(mSearchRunnable);
+                mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DEBOUNCE_MILLIS);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // Search right away, and hide the keyboard.
+                mTypedSearchQuery = query;
+                mSearchHandler.removeCallbacks(mSearchRunnable);
+                search(query);
+                searchView.clearFocus();
+                return true;
+            }
+        });
         return true;
     }
 
@@ -125,48 +547,484 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
             case R.id.action_insert_dummy_data:
                 insertProduct();
                 return true;
+            // Respond to a click on the "Import products" menu option.
+            case R.id.action_import_products:
+                pickProductsFile();
+                return true;
+            // Respond to a click on the "Export to CSV" or "Export to JSON" menu options.
+            case R.id.action_export_products_csv:
+                createExportFile(ProductExporter.FORMAT_CSV);
+                return true;
+            case R.id.action_export_products_json:
+                createExportFile(ProductExporter.FORMAT_JSON);
+                return true;
+            // Respond to a click on the "Back up catalog" menu option.
+            case R.id.action_backup_products:
+                createBackupFile();
+                return true;
+            // Respond to a click on the "Restore catalog" menu option.
+            case R.id.action_restore_products:
+                pickBackupFile();
+                return true;
             // Respond to a click on the "Delete all entries" menu option.
             case R.id.action_delete_all_entries:
-                Cursor c = getContentResolver().query(ProductEntry.CONTENT_URI, null, null, null, null);
-                // If the products table is not empty, try to delete all its entries.
-                if(c.getCount() > 0) {
-                    // Pop up confirmation dialog for deletion.
-                    showDeleteConfirmationDialog();
-                }
-                // Otherwise, show a toast saying that the products table is empty.
-                else { Toast.makeText(this, getString(R.string.catalog_products_table_is_empty),
-                        Toast.LENGTH_SHORT).show(); }
-                c.close();
+                // Count the products in the background, without reading them.
+                ProductRepository.getInstance(this).countProducts(new ProductRepository.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer productCount) {
+                        if (isDestroyed()) {
+                            return;
+                        }
+                        // If the products table is not empty, try to delete all its entries.
+                        if (productCount > 0) {
+                            // Pop up confirmation dialog for deletion.
+                            showDeleteConfirmationDialog();
+                        }
+                        // Otherwise, show a toast saying that the products table is empty.
+                        else {
+                            Toast.makeText(CatalogActivity.this, getString(R.string.catalog_products_table_is_empty),
+                                    Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
                 return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Let the user pick the CSV file of products to import.
+     */
+    private void pickProductsFile() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("text/*");
+        startActivityForResult(intent, REQUEST_IMPORT_PRODUCTS);
+    }
+
+    /**
+     * Let the user create the document to which the products are exported in the given format.
+     */
+    private void createExportFile(int format) {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        if (format == ProductExporter.FORMAT_JSON) {
+            intent.setType("application/json");
+            intent.putExtra(Intent.EXTRA_TITLE, "products.json");
+            startActivityForResult(intent, REQUEST_EXPORT_PRODUCTS_JSON);
+        } else {
+            intent.setType("text/csv");
+            intent.putExtra(Intent.EXTRA_TITLE, "products.csv");
+            startActivityForResult(intent, REQUEST_EXPORT_PRODUCTS_CSV);
+        }
+    }
+
+    /**
+     * Let the user create the document holding the snapshot of the products.
+     */
+    private void createBackupFile() {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("application/octet-stream");
+        intent.putExtra(Intent.EXTRA_TITLE, "products.snapshot");
+        startActivityForResult(intent, REQUEST_BACKUP_PRODUCTS);
+    }
+
+    /**
+     * Let the user pick the snapshot of the products to restore.
+     */
+    private void pickBackupFile() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        startActivityForResult(intent, REQUEST_RESTORE_PRODUCTS);
+    }
+
+    /**
+     * Ask the user to confirm that the products are replaced with the ones of the given snapshot.
+     */
+    private void showRestoreConfirmationDialog(final Uri snapshotUri) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setMessage(R.string.restore_products_dialog_msg);
+        builder.setPositiveButton(R.string.restore, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                // User clicked the "Restore" button, so replace the products.
+                if (mTransferTask == null) {
+                    mTransferTask = new SnapshotTask(CatalogActivity.this, ProductContract.METHOD_RESTORE_PRODUCTS);
+                    mTransferTask.execute(snapshotUri);
+                }
+            }
+        });
+        builder.setNegativeButton(R.string.cancel, null);
+        builder.create().show();
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (resultCode != RESULT_OK || data == null || data.getData() == null || mTransferTask != null) {
+            return;
+        }
+        switch (requestCode) {
+            case REQUEST_IMPORT_PRODUCTS:
+                mTransferTask = new ImportProductsTask(this);
+                break;
+            case REQUEST_EXPORT_PRODUCTS_CSV:
+                mTransferTask = new ExportProductsTask(this, ProductExporter.FORMAT_CSV);
+                break;
+            case REQUEST_EXPORT_PRODUCTS_JSON:
+                mTransferTask = new ExportProductsTask(this, ProductExporter.FORMAT_JSON);
+                break;
+            case REQUEST_BACKUP_PRODUCTS:
+                mTransferTask = new SnapshotTask(this, ProductContract.METHOD_BACKUP_PRODUCTS);
+                break;
+            case REQUEST_RESTORE_PRODUCTS:
+                showRestoreConfirmationDialog(data.getData());
+                return;
+            default:
+                return;
+        }
+        mTransferTask.execute(data.getData());
+    }
+
+    /**
+     * Transfer of the products between the catalog and a document, displaying its progress in a dialog
+     * from which it can be cancelled if it reports its progress. The result is null if the transfer failed
+     * or was cancelled.
+     *
+     * The transfer outlives the activity when it's recreated for a configuration change: it only works
+     * with the application context, and is detached from the destroyed activity then attached to the new one,
+     * which displays its progress and outcome.
+     */
+    private static abstract class TransferTask<Result> extends AsyncTask<Uri, Integer, Result> {
+
+        final CancellationSignal mCancellationSignal = new CancellationSignal();
+        final Context mContext;
+        private final int mMessageId;
+        private final boolean mReportsProgress;
+        private CatalogActivity mActivity;
+        private ProgressDialog mProgressDialog;
+        private int mProgress;
+        Exception mError;
+
+        /** Whether the transfer finished while detached, its result waiting for the next activity */
+        private boolean mFinished;
+        private Result mResult;
+
+        TransferTask(CatalogActivity activity, int messageId) {
+            this(activity, messageId, true);
+        }
+
+        TransferTask(CatalogActivity activity, int messageId, boolean reportsProgress) {
+            mContext = activity.getApplicationContext();
+            mActivity = activity;
+            mMessageId = messageId;
+            mReportsProgress = reportsProgress;
+        }
+
+        @Override
+        protected void onPreExecute() {
+            showProgressDialog();
+        }
+
+        /**
+         * Attach the transfer to the given activity, recreated while the transfer was running,
+         * which displays its progress, or its outcome if it finished in the meantime.
+         */
+        void attach(CatalogActivity activity) {
+            mActivity = activity;
+            if (mFinished) {
+                finish(mResult);
+                return;
+            }
+            showProgressDialog();
+        }
+
+        /**
+         * Detach the transfer from its activity, which is destroyed, without stopping it.
+         */
+        void detach() {
+            if (mProgressDialog != null) {
+                mProgressDialog.dismiss();
+                mProgressDialog = null;
+            }
+            mActivity = null;
+        }
+
+        private void showProgressDialog() {
+            mProgressDialog = new ProgressDialog(mActivity);
+            mProgressDialog.setMessage(mActivity.getString(mMessageId));
+            mProgressDialog.setCancelable(false);
+            if (!mReportsProgress) {
+                mProgressDialog.setIndeterminate(true);
+                mProgressDialog.show();
+                return;
+            }
+            mProgressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+            mProgressDialog.setMax(100);
+            mProgressDialog.setProgress(mProgress);
+            mProgressDialog.setButton(DialogInterface.BUTTON_NEGATIVE, mActivity.getString(R.string.cancel),
+                    new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            TransferTask.this.cancel();
+                        }
+                    });
+            mProgressDialog.show();
+        }
+
+        @Override
+        protected void onProgressUpdate(Integer... values) {
+            mProgress = values[0];
+            if (mProgressDialog != null) {
+                mProgressDialog.setProgress(mProgress);
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Result result) {
+            finish(result);
+        }
+
+        @Override
+        protected void onCancelled(Result result) {
+            finish(result);
+        }
+
+        /**
+         * Cancel the transfer, which stops at its next check of the cancellation signal.
+         */
+        void cancel() {
+            mCancellationSignal.cancel();
+            cancel(false);
+        }
+
+        private void finish(Result result) {
+            if (mActivity == null) {
+                // The outcome is given to the next activity.
+                mFinished = true;
+                mResult = result;
+                return;
+            }
+            mActivity.mTransferTask = null;
+            mProgressDialog.dismiss();
+            mProgressDialog = null;
+            onFinished(mActivity, result);
+            mActivity = null;
+        }
+
+        /**
+         * Let the user know the outcome of the transfer.
+         */
+        abstract void onFinished(CatalogActivity activity, Result result);
+    }
+
+    /**
+     * Import of the products of a CSV file. The products are written in batches, the loaders reloading
+     * the catalog after each of them.
+     */
+    private static class ImportProductsTask extends TransferTask<ProductImporter.Result> {
+
+        ImportProductsTask(CatalogActivity activity) {
+            super(activity, R.string.catalog_import_products_in_progress);
+        }
+
+        @Override
+        protected ProductImporter.Result doInBackground(Uri... uris) {
+            try {
+                return new ProductImporter(mContext).importProducts(uris[0],
+                        new ProductImporter.ProgressListener() {
+                            @Override
+                            public void onProgress(long bytesRead, long totalBytes, int productsImported) {
+                                if (totalBytes > 0) {
+                                    publishProgress((int) (bytesRead * 100 / totalBytes));
+                                }
+                            }
+                        }, mCancellationSignal);
+            } catch (OperationCanceledException e) {
+                return null;
+            } catch (IOException | IllegalArgumentException e) {
+                Log.e(LOG_TAG, "Error with importing " + uris[0], e);
+                mError = e;
+                return null;
+            }
+        }
+
+        @Override
+        void onFinished(CatalogActivity activity, ProductImporter.Result result) {
+            if (result != null) {
+                Toast.makeText(activity, activity.getString(R.string.catalog_import_products_successful,
+                        result.importedCount, result.rejectedCount), Toast.LENGTH_LONG).show();
+            } else if (mError != null) {
+                Toast.makeText(activity, activity.getString(R.string.catalog_import_products_failed),
+                        Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(activity, activity.getString(R.string.catalog_import_products_cancelled),
+                        Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
+    /**
+     * Export of the products to a CSV or JSON document, streamed page by page from the provider.
+     */
+    private static class ExportProductsTask extends TransferTask<Integer> {
+
+        private final int mFormat;
+
+        ExportProductsTask(CatalogActivity activity, int format) {
+            super(activity, R.string.catalog_export_products_in_progress);
+            mFormat = format;
+        }
+
+        @Override
+        protected Integer doInBackground(Uri... uris) {
+            try {
+                return new ProductExporter(mContext).exportProducts(uris[0], mFormat,
+                        new ProductExporter.ProgressListener() {
+                            @Override
+                            public void onProgress(int productsExported, int productCount) {
+                                if (productCount > 0) {
+                                    publishProgress((int) (productsExported * 100L / productCount));
+                                }
+                            }
+                        }, mCancellationSignal);
+            } catch (OperationCanceledException e) {
+                return null;
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error with exporting to " + uris[0], e);
+                mError = e;
+                return null;
+            }
+        }
+
+        @Override
+        void onFinished(CatalogActivity activity, Integer exportedCount) {
+            if (exportedCount != null) {
+                Toast.makeText(activity, activity.getString(R.string.catalog_export_products_successful,
+                        exportedCount), Toast.LENGTH_SHORT).show();
+            } else if (mError != null) {
+                Toast.makeText(activity, activity.getString(R.string.catalog_export_products_failed),
+                        Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(activity, activity.getString(R.string.catalog_export_products_cancelled),
+                        Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
+    /**
+     * Backup of the products to a binary snapshot, or restore of the products from one, done by the provider
+     * in a single transaction.
+     */
+    private static class SnapshotTask extends TransferTask<Integer> {
+
+        private final String mMethod;
+
+        SnapshotTask(CatalogActivity activity, String method) {
+            super(activity, ProductContract.METHOD_BACKUP_PRODUCTS.equals(method)
+                    ? R.string.catalog_backup_products_in_progress
+                    : R.string.catalog_restore_products_in_progress, false);
+            mMethod = method;
+        }
+
+        @Override
+        protected Integer doInBackground(Uri... uris) {
+            Bundle extras = new Bundle();
+            // The snapshots are mostly text, which deflates well.
+            extras.putBoolean(ProductContract.EXTRA_DEFLATE, true);
+            Bundle result = mContext.getContentResolver().call(ProductEntry.CONTENT_URI, mMethod,
+                    uris[0].toString(), extras);
+            int rowCount = result != null ? result.getInt(ProductContract.EXTRA_ROW_COUNT, -1) : -1;
+            return rowCount != -1 ? rowCount : null;
+        }
+
+        @Override
+        void onFinished(CatalogActivity activity, Integer rowCount) {
+            boolean backup = ProductContract.METHOD_BACKUP_PRODUCTS.equals(mMethod);
+            if (rowCount == null) {
+                Toast.makeText(activity, activity.getString(backup ? R.string.catalog_backup_products_failed
+                        : R.string.catalog_restore_products_failed), Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (!backup) {
+                // The restored products replace the thumbnails of the previous ones.
+                ProductThumbnailStore.getInstance(mContext).clearAsync();
+            }
+            Toast.makeText(activity, activity.getString(backup ? R.string.catalog_backup_products_successful
+                    : R.string.catalog_restore_products_successful, rowCount), Toast.LENGTH_SHORT).show();
+        }
+    }
+
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        String[] projection = {
-                ProductEntry._ID,
-                ProductEntry.COLUMN_PRODUCT_NAME,
-                ProductEntry.COLUMN_PRODUCT_UNIT_PRICE,
-                ProductEntry.COLUMN_PRODUCT_QUANTITY};
-        return new CursorLoader(this,   // Parent's activity context
-                ProductEntry.CONTENT_URI,   // Provider content URI to query
-                projection,             // Columns to include in the resulting cursor
-                null,                   // No selection clause
-                null,                   // No selection arguments
-                null);                  // Default sort order
+        if (id == STATS_LOADER) {
+            // The totals are a single row maintained by the provider, so they don't need to be paged.
+            return new CursorLoader(this, ProductEntry.STATS_URI, null, null, null, null);
+        }
+        if (args != null && args.containsKey(ARG_SEARCH_QUERY)) {
+            // Load the products matching the searched text.
+            return new ProductSearchLoader(this, PRODUCT_PROJECTION, args.getString(ARG_SEARCH_QUERY));
+        }
+        // Load the products page by page, so that only the rows around the visible ones are in memory.
+        return new ProductPagedLoader(this,   // Parent's activity context
+                PRODUCT_PROJECTION,     // Columns to include in the resulting cursor
+                false);                 // Products sorted by _ID
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Update (@Link ProductCursorAdapter) with the new cursor containing updated products data.
-        mCursorAdapter.swapCursor(data);
+        if (loader.getId() == STATS_LOADER) {
+            // The cursor loader keeps ownership of its cursor.
+            bindStatsHeader(data);
+            return;
+        }
+        // Update (@Link ProductCursorAdapter) with the new cursor containing updated products data,
+        // only redrawing the rows that have changed.
+        mListDiffer.submitCursor(data, mLayoutManager.findFirstVisibleItemPosition(),
+                mLayoutManager.findLastVisibleItemPosition());
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
+        if (loader.getId() == STATS_LOADER) {
+            bindStatsHeader(null);
+            return;
+        }
         // Callback called when the data needs to be deleted.
-        mCursorAdapter.swapCursor(null);
+        mListDiffer.clear();
+    }
+
+    /**
+     * Display the totals of the inventory held by the given cursor, or hide them if there's no product.
+     */
+    private void bindStatsHeader(Cursor cursor) {
+        if (cursor == null || !cursor.moveToFirst()
+                || cursor.getInt(cursor.getColumnIndexOrThrow(StatsEntry.COLUMN_PRODUCT_COUNT)) == 0) {
+            mStatsHeader.setVisibility(View.GONE);
+            return;
+        }
+        // The total value is formatted like the prices of the rows below it.
+        PriceFormatter priceFormatter = mCursorAdapter.getPriceFormatter();
+        char[] buffer = priceFormatter.newBuffer();
+        int length = priceFormatter.format(
+                cursor.getLong(cursor.getColumnIndexOrThrow(StatsEntry.COLUMN_TOTAL_VALUE)), true, buffer);
+        String totalValue = new String(buffer, 0, length);
+        mStatsHeader.setText(getString(R.string.catalog_stats_header,
+                cursor.getInt(cursor.getColumnIndexOrThrow(StatsEntry.COLUMN_PRODUCT_COUNT)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(StatsEntry.COLUMN_TOTAL_UNITS)),
+                totalValue,
+                cursor.getInt(cursor.getColumnIndexOrThrow(StatsEntry.COLUMN_OUT_OF_STOCK_COUNT))));
+        mStatsHeader.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Show the empty view instead of the list when there is no product.
+     */
+    private void updateEmptyView() {
+        boolean isEmpty = mCursorAdapter.getItemCount() == 0;
+        mEmptyView.setVisibility(isEmpty ? View.VISIBLE : View.GONE);
+        mProductRecyclerView.setVisibility(isEmpty ? View.GONE : View.VISIBLE);
     }
 
     private void showDeleteConfirmationDialog() {
@@ -191,16 +1049,23 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
      * Helper method to delete all products in the database.
      */
     private void deleteAllProducts() {
-        int rowsDeleted = getContentResolver().delete(ProductEntry.CONTENT_URI, null, null);
-        // Show a toast message depending on whether or not the delete was successful.
-        if (rowsDeleted == 0) {
-            // If no rows were deleted, then there was an error with the delete.
-            Toast.makeText(this, getString(R.string.catalog_delete_all_products_failed),
-                    Toast.LENGTH_SHORT).show();
-        } else {
-            // Otherwise, the delete was successful and we can display a toast.
-            Toast.makeText(this, getString(R.string.catalog_delete_all_products_successful),
-                    Toast.LENGTH_SHORT).show();
-        }
+        // Delete the products in the background, the result coming back on the main thread.
+        final Context context = getApplicationContext();
+        ProductRepository.getInstance(this).deleteAllProducts(new ProductRepository.Callback<Integer>() {
+            @Override
+            public void onResult(Integer rowsDeleted) {
+                // Show a toast message depending on whether or not the delete was successful.
+                if (rowsDeleted == 0) {
+                    // If no rows were deleted, then there was an error with the delete.
+                    Toast.makeText(context, context.getString(R.string.catalog_delete_all_products_failed),
+                            Toast.LENGTH_SHORT).show();
+                } else {
+                    // Otherwise, the delete was successful and we can display a toast.
+                    ProductThumbnailStore.getInstance(context).clearAsync();
+                    Toast.makeText(context, context.getString(R.string.catalog_delete_all_products_successful),
+                            Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 }
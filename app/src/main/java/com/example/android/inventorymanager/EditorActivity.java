@@ -1,14 +1,14 @@
 package com.example.android.inventorymanager;
 
 import android.Manifest;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.drawable.BitmapDrawable;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.ActivityCompat;
@@ -25,16 +25,19 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
+import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
+import android.widget.SimpleCursorAdapter;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
-
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
+import com.example.android.inventorymanager.data.ProductContract.SupplierEntry;
+import com.example.android.inventorymanager.data.ProductRepository;
+import com.example.android.inventorymanager.data.ProductValidator;
+import com.example.android.inventorymanager.image.ProductImageLoader;
+import com.example.android.inventorymanager.image.ProductThumbnailStore;
 
 /**
  * Allows the user to create a new product or edit an existing one.
@@ -46,8 +49,8 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
     /** Constants definition */
     private static final int EXISTING_PRODUCT_LOADER = 0;
+    private static final int SUPPLIERS_LOADER = 1;
     private static final int MY_PERMISSIONS_REQUEST_READ_EXTERNAL_STORAGE = 0;
-    private static final String EMAIL_PATTERN = "[a-zA-Z0-9._-]+@[a-z]+\\.+[a-z]+";
     private static int PICK_IMAGE_REQUEST = 1;
 
     /** Global variables declaration */
@@ -65,9 +68,14 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     private EditText mSupplierEmailAddressEditText;
     private EditText mUnitPriceEditText;
     private TextView mProductQuantityTextView;
+    private EditText mReorderThresholdEditText;
+
+    /** Known suppliers, offered by the supplier picker, or null until they are loaded */
+    private Cursor mSuppliersCursor;
 
     private boolean mProductHasChanged = false;
     private boolean imageProductHasChanged = false;
+    private boolean productHasImage = false;
     private boolean productDataAreValid = true;
 
     /**
@@ -92,10 +100,12 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         mSupplierEmailAddressEditText = (EditText) findViewById(R.id.edit_product_supplier_email);
         mUnitPriceEditText = (EditText) findViewById(R.id.edit_product_unit_price);
         mProductQuantityTextView = (TextView) findViewById(R.id.product_quantity_text_view);
+        mReorderThresholdEditText = (EditText) findViewById(R.id.edit_product_reorder_threshold);
 
         ImageView mOrderNowImageView = (ImageView) findViewById(R.id.order_now);
         ImageView mDecrementStock = (ImageView) findViewById(R.id.decrement_stock);
         ImageView mIncrementStock = (ImageView) findViewById(R.id.increment_stock);
+        Button mPickSupplierButton = (Button) findViewById(R.id.pick_supplier);
 
         // Examine the intent that was used to launch this activity.
         Intent intent = getIntent();
@@ -111,6 +121,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             setTitle(getString(R.string.editor_activity_title_edit_product));
             getSupportLoaderManager().initLoader(EXISTING_PRODUCT_LOADER, null, this);
         }
+        getSupportLoaderManager().initLoader(SUPPLIERS_LOADER, null, this);
 
         // Setup OnTouchListeners on all the input fields,
         // to notify the user if he tries to leave the editor without saving.
@@ -121,6 +132,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         mUnitPriceEditText.setOnTouchListener(mTouchListener);
         mDecrementStock.setOnTouchListener(mTouchListener);
         mIncrementStock.setOnTouchListener(mTouchListener);
+        mReorderThresholdEditText.setOnTouchListener(mTouchListener);
 
         mPictureImageView.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -150,6 +162,13 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             }
         });
 
+        mPickSupplierButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showSupplierPickerDialog();
+            }
+        });
+
         mOrderNowImageView.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -188,16 +207,20 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         if (requestCode == PICK_IMAGE_REQUEST) {
             // Make sure the request was successful.
             if (resultCode == RESULT_OK) {
-                try {
-                    selectedImageUri = data.getData();
-                    imageProductHasChanged = true;
-                    final InputStream imageStream = getContentResolver().openInputStream(selectedImageUri);
-                    Bitmap selectedImage = BitmapFactory.decodeStream(imageStream);
-                    mPictureImageView.setImageBitmap(selectedImage);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    Toast.makeText(EditorActivity.this, "Something went wrong", Toast.LENGTH_LONG).show();
-                }
+                selectedImageUri = data.getData();
+                imageProductHasChanged = true;
+                // Decode the picked image in the background, downsampled to the size of the view.
+                ProductImageLoader.getInstance(this).load(selectedImageUri, mPictureImageView,
+                        new ProductImageLoader.Callback() {
+                            @Override
+                            public void onImageLoaded(Bitmap bitmap) {
+                            }
+
+                            @Override
+                            public void onImageFailed() {
+                                Toast.makeText(EditorActivity.this, "Something went wrong", Toast.LENGTH_LONG).show();
+                            }
+                        });
                 // The request was not successful.
             } else {
                 Toast.makeText(EditorActivity.this, "You haven't picked Image", Toast.LENGTH_LONG).show();
@@ -205,6 +228,35 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         }
     }
 
+    /**
+     * Show a dialog listing the known suppliers, the picked one filling the supplier fields.
+     */
+    private void showSupplierPickerDialog() {
+        if (mSuppliersCursor == null || mSuppliersCursor.getCount() == 0) {
+            Toast.makeText(this, getString(R.string.editor_no_known_supplier), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        final SimpleCursorAdapter adapter = new SimpleCursorAdapter(this, android.R.layout.simple_list_item_2,
+                mSuppliersCursor,
+                new String[] {SupplierEntry.COLUMN_SUPPLIER_NAME, SupplierEntry.COLUMN_SUPPLIER_EMAIL},
+                new int[] {android.R.id.text1, android.R.id.text2}, 0);
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(R.string.pick_supplier_dialog_title);
+        builder.setAdapter(adapter, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int position) {
+                Cursor supplier = (Cursor) adapter.getItem(position);
+                mSupplierNameEditText.setText(supplier.getString(
+                        supplier.getColumnIndex(SupplierEntry.COLUMN_SUPPLIER_NAME)));
+                mSupplierEmailAddressEditText.setText(supplier.getString(
+                        supplier.getColumnIndex(SupplierEntry.COLUMN_SUPPLIER_EMAIL)));
+                mProductHasChanged = true;
+            }
+        });
+        builder.setNegativeButton(R.string.cancel, null);
+        builder.create().show();
+    }
+
     /**
      * This method displays the given quantity value on the screen.
      */
@@ -222,6 +274,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         String supplierNameString = mSupplierNameEditText.getText().toString().trim();
         String supplierEmailString = mSupplierEmailAddressEditText.getText().toString().trim();
         String unitPriceString = mUnitPriceEditText.getText().toString().trim();
+        String reorderThresholdString = mReorderThresholdEditText.getText().toString().trim();
 
         // Check if this is supposed to be a new product,
         // and check if all the fields in the editor are blank.
@@ -257,7 +310,8 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         }
 
         // Check that the email of the supplier of the product has been provided.
-        if (!supplierNameString.isEmpty() && supplierEmailString.matches(EMAIL_PATTERN)) {
+        boolean supplierEmailIsValid = ProductValidator.isValidEmail(supplierEmailString);
+        if (!supplierNameString.isEmpty() && supplierEmailIsValid) {
             values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, supplierEmailString);
         }
         else if (supplierEmailString.isEmpty()) {
@@ -265,7 +319,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                     Toast.LENGTH_SHORT).show();
             productDataAreValid = false;
             return;
-        } else if (!supplierEmailString.matches(EMAIL_PATTERN)) {
+        } else if (!supplierEmailIsValid) {
             Toast.makeText(this, getString(R.string.editor_product_invalid_supplier_email),
                     Toast.LENGTH_SHORT).show();
             productDataAreValid = false;
@@ -299,12 +353,19 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             return;
         }
 
+        // A product without a reorder threshold is never reordered.
+        if (!reorderThresholdString.isEmpty()) {
+            values.put(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD, Integer.parseInt(reorderThresholdString));
+        } else {
+            values.put(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD, 0);
+        }
+
         // Check that the product has an image
         if (imageProductHasChanged) {
             String imageString = selectedImageUri.toString();
             values.put(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH, imageString);
         }
-        else if (((BitmapDrawable)mPictureImageView.getDrawable()).getBitmap() == ((BitmapDrawable)getDrawable(R.drawable.img_generic)).getBitmap()){
+        else if (!productHasImage) {
             Toast.makeText(this, getString(R.string.editor_product_requires_image),
                     Toast.LENGTH_SHORT).show();
             productDataAreValid = false;
@@ -315,24 +376,46 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         // then the data for the product are valid.
         productDataAreValid = true;
 
+        // The product is written in the background, and the editor is closed without waiting for it,
+        // so the result is reported with the context of the app.
+        final Context context = getApplicationContext();
+        final Uri imageUri = selectedImageUri;
         if (mCurrentProductUri == null) {
-            Uri newUri = getContentResolver().insert(ProductEntry.CONTENT_URI, values);
-            if (newUri == null) {
-                Toast.makeText(this, getString(R.string.editor_insert_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, getString(R.string.editor_insert_product_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            ProductRepository.getInstance(this).insertProduct(values, new ProductRepository.Callback<Uri>() {
+                @Override
+                public void onResult(Uri newUri) {
+                    if (newUri == null) {
+                        Toast.makeText(context, context.getString(R.string.editor_insert_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Store the thumbnail of the new product, for the catalog to display it.
+                        ProductThumbnailStore.getInstance(context).saveAsync(ContentUris.parseId(newUri), imageUri);
+                        Toast.makeText(context, context.getString(R.string.editor_insert_product_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         } else {
-            int rowsAffected = getContentResolver().update(mCurrentProductUri, values, null, null);
-            if (rowsAffected == 0) {
-                Toast.makeText(this, getString(R.string.editor_update_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, getString(R.string.editor_update_product_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            final Uri productUri = mCurrentProductUri;
+            final boolean imageHasChanged = imageProductHasChanged;
+            ProductRepository.getInstance(this).updateProduct(productUri, values,
+                    new ProductRepository.Callback<Integer>() {
+                        @Override
+                        public void onResult(Integer rowsAffected) {
+                            if (rowsAffected == 0) {
+                                Toast.makeText(context, context.getString(R.string.editor_update_product_failed),
+                                        Toast.LENGTH_SHORT).show();
+                            } else {
+                                if (imageHasChanged) {
+                                    // Replace the thumbnail of the product, for the catalog to display the new image.
+                                    ProductThumbnailStore.getInstance(context).saveAsync(ContentUris.parseId(productUri),
+                                            imageUri);
+                                }
+                                Toast.makeText(context, context.getString(R.string.editor_update_product_successful),
+                                        Toast.LENGTH_SHORT).show();
+                            }
+                        }
+                    });
         }
     }
 
@@ -404,6 +487,20 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
 
+        if (id == SUPPLIERS_LOADER) {
+            String[] projection = {
+                    SupplierEntry._ID,
+                    SupplierEntry.COLUMN_SUPPLIER_NAME,
+                    SupplierEntry.COLUMN_SUPPLIER_EMAIL};
+
+            return new CursorLoader(this,       // Parent activity context
+                    SupplierEntry.CONTENT_URI,  // Query the content URI of the suppliers
+                    projection,                 // Columns to include in the resulting Cursor
+                    null,                       // No selection clause
+                    null,                       // No selection arguments
+                    SupplierEntry.SORT_ORDER_NAME);
+        }
+
         String[] projection = {
                 ProductEntry._ID,
                 ProductEntry.COLUMN_PRODUCT_IMAGE_PATH,
@@ -411,7 +508,8 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                 ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
                 ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL,
                 ProductEntry.COLUMN_PRODUCT_UNIT_PRICE,
-                ProductEntry.COLUMN_PRODUCT_QUANTITY};
+                ProductEntry.COLUMN_PRODUCT_QUANTITY,
+                ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD};
 
         return new CursorLoader(this,   // Parent activity context
                 mCurrentProductUri,     // Query the content URI for the current product
@@ -424,6 +522,12 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
 
+        // The cursor of the suppliers is owned by the loader, which closes it once it's replaced.
+        if (loader.getId() == SUPPLIERS_LOADER) {
+            mSuppliersCursor = cursor;
+            return;
+        }
+
         if (cursor.moveToFirst()) {
             int imageColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH);
             int nameColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_NAME);
@@ -431,13 +535,16 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             int supplierEmailColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
             int unitPriceColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE);
             int quantityColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            int reorderThresholdColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD);
 
             String productImageURI = cursor.getString(imageColumnIndex);
+            productHasImage = productImageURI != null;
             productName = cursor.getString(nameColumnIndex);
             supplierName = cursor.getString(supplierNameColumnIndex);
             supplierEmail = cursor.getString(supplierEmailColumnIndex);
             int productUnitPrice = cursor.getInt(unitPriceColumnIndex);
             productQuantity = cursor.getInt(quantityColumnIndex);
+            int reorderThreshold = cursor.getInt(reorderThresholdColumnIndex);
 
             if (ContextCompat.checkSelfPermission(this,
                     Manifest.permission.READ_EXTERNAL_STORAGE)
@@ -449,14 +556,10 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                 }
 
             if (productImageURI != null) {
-                try {
-                    final InputStream imageStream = getContentResolver().openInputStream(Uri.parse(productImageURI));
-                    Bitmap productImage = BitmapFactory.decodeStream(imageStream);
-                    mPictureImageView.setImageBitmap(productImage);
-                } catch (FileNotFoundException e) {
-                    e.printStackTrace();
-                }
+                // Decode the image of the product in the background, downsampled to the size of the view.
+                ProductImageLoader.getInstance(this).load(Uri.parse(productImageURI), mPictureImageView, null);
             } else {
+                ProductImageLoader.getInstance(this).cancel(mPictureImageView);
                 mPictureImageView.setImageDrawable(getDrawable(R.drawable.img_generic));
             }
 
@@ -465,6 +568,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             mSupplierEmailAddressEditText.setText(supplierEmail);
             mUnitPriceEditText.setText(Integer.toString(productUnitPrice));
             mProductQuantityTextView.setText(Integer.toString(productQuantity));
+            mReorderThresholdEditText.setText(reorderThreshold != 0 ? Integer.toString(reorderThreshold) : "");
 
             // Update the color of the displayed product's quantity according to its stock level
             if (productQuantity == 0) {
@@ -480,13 +584,19 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
+        if (loader.getId() == SUPPLIERS_LOADER) {
+            mSuppliersCursor = null;
+            return;
+        }
         // If the loader is invalidated, clear out all the data from the input fields.
+        ProductImageLoader.getInstance(this).cancel(mPictureImageView);
         mPictureImageView.setImageBitmap(null);
         mNameEditText.setText("");
         mSupplierNameEditText.setText("");
         mSupplierEmailAddressEditText.setText("");
         mUnitPriceEditText.setText("");
         mProductQuantityTextView.setText("");
+        mReorderThresholdEditText.setText("");
     }
 
     /**
@@ -524,14 +634,22 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
      */
     private void deleteProduct() {
         if (mCurrentProductUri != null) {
-            int rowsDeleted = getContentResolver().delete(mCurrentProductUri, null, null);
-            if (rowsDeleted == 0) {
-                Toast.makeText(this, getString(R.string.editor_delete_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, getString(R.string.editor_delete_product_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            // The product is deleted in the background, after the editor is closed.
+            final Context context = getApplicationContext();
+            final Uri productUri = mCurrentProductUri;
+            ProductRepository.getInstance(this).deleteProduct(productUri, new ProductRepository.Callback<Integer>() {
+                @Override
+                public void onResult(Integer rowsDeleted) {
+                    if (rowsDeleted == 0) {
+                        Toast.makeText(context, context.getString(R.string.editor_delete_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        ProductThumbnailStore.getInstance(context).deleteAsync(ContentUris.parseId(productUri));
+                        Toast.makeText(context, context.getString(R.string.editor_delete_product_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         }
         finish();
     }
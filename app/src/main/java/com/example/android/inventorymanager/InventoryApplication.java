@@ -0,0 +1,29 @@
+package com.example.android.inventorymanager;
+
+import android.app.Application;
+import android.os.StrictMode;
+
+/**
+ * Application of the inventory manager. In debug builds, it logs any disk or network access made on
+ * the main thread, and the database cursors and streams which are never closed.
+ */
+public class InventoryApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectNetwork()
+                    .penaltyLog()
+                    .build());
+            StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                    .detectLeakedSqlLiteObjects()
+                    .detectLeakedClosableObjects()
+                    .penaltyLog()
+                    .build());
+        }
+    }
+}
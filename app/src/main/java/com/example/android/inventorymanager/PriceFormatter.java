@@ -0,0 +1,74 @@
+package com.example.android.inventorymanager;
+
+/**
+ * Formats integer values such as prices and stock levels into a reusable char buffer,
+ * so that binding a row of the catalog doesn't allocate any String.
+ */
+public final class PriceFormatter {
+
+    /** Maximum number of chars of a formatted long, with its sign and grouping separators */
+    private static final int MAX_VALUE_LENGTH = 26;
+
+    private final String mPrefix;
+    private final char mGroupingSeparator;
+
+    /**
+     * Constructs a new {@link PriceFormatter}.
+     *
+     * @param prefix            The text put before every value, such as a currency
+     * @param groupingSeparator The separator put between the groups of thousands
+     */
+    public PriceFormatter(String prefix, char groupingSeparator) {
+        mPrefix = prefix;
+        mGroupingSeparator = groupingSeparator;
+    }
+
+    /**
+     * Return a buffer large enough to hold any value formatted by this formatter.
+     */
+    public char[] newBuffer() {
+        return new char[mPrefix.length() + MAX_VALUE_LENGTH];
+    }
+
+    /**
+     * Write the given value in the buffer, after the prefix, and with separators between the groups of
+     * thousands if requested.
+     *
+     * @return the number of chars written at the start of the buffer
+     */
+    public int format(int value, boolean grouped, char[] buffer) {
+        return format((long) value, grouped, buffer);
+    }
+
+    /**
+     * Write the given value in the buffer, like {@link #format(int, boolean, char[])}, for the totals
+     * which may exceed an int.
+     *
+     * @return the number of chars written at the start of the buffer
+     */
+    public int format(long value, boolean grouped, char[] buffer) {
+        int length = mPrefix.length();
+        mPrefix.getChars(0, length, buffer, 0);
+        if (value < 0) {
+            buffer[length++] = '-';
+        }
+
+        // Count the digits to know where the value ends, then write it from its last digit.
+        int digitCount = 1;
+        for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+            digitCount++;
+        }
+        int end = length + digitCount + (grouped ? (digitCount - 1) / 3 : 0);
+
+        int position = end;
+        long remaining = value;
+        for (int written = 0; written < digitCount; written++) {
+            if (grouped && written > 0 && written % 3 == 0) {
+                buffer[--position] = mGroupingSeparator;
+            }
+            buffer[--position] = (char) ('0' + Math.abs(remaining % 10));
+            remaining /= 10;
+        }
+        return end;
+    }
+}
@@ -1,26 +1,142 @@
 package com.example.android.inventorymanager;
 
-import android.content.ContentUris;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.v4.content.ContextCompat;
+import android.support.v7.widget.RecyclerView;
+import android.util.LongSparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.CursorAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.example.android.inventorymanager.data.ProductContract;
 import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductPagedCursor;
+import com.example.android.inventorymanager.data.ProductRepository;
+import com.example.android.inventorymanager.image.ProductImageLoader;
 
-public class ProductCursorAdapter extends CursorAdapter {
+import java.text.DecimalFormatSymbols;
+import java.util.List;
+
+/**
+ * {@link RecyclerView.Adapter} displaying the products of a {@link Cursor} in the catalog.
+ * The view references are cached in a {@link ProductViewHolder}, the column indices once per cursor,
+ * and the rows are identified by the stable _ID of their product.
+ * A long click on a product selects it, and the clicks then toggle the selection of the products until
+ * none is selected anymore, so that an action can be applied to all of them at once.
+ */
+public class ProductCursorAdapter extends RecyclerView.Adapter<ProductCursorAdapter.ProductViewHolder> {
 
     /** Tag for the log messages */
     public static final String LOG_TAG = ProductCursorAdapter.class.getSimpleName();
 
+    /**
+     * Listener of the clicks on the products of the list.
+     */
+    public interface OnProductClickListener {
+        /**
+         * Called when the product with the given _ID has been clicked on.
+         */
+        void onProductClick(long id);
+    }
+
+    /**
+     * Listener of the changes of the selected products.
+     */
+    public interface OnSelectionChangedListener {
+        /**
+         * Called when a product has been selected or unselected, with the number of products now selected.
+         */
+        void onSelectionChanged(int selectedCount);
+    }
+
+    /** Payload of the change of a row whose selection has changed, which only redraws its selected state */
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    private final Context mContext;
+    private final LayoutInflater mInflater;
+    private final PriceFormatter mPriceFormatter;
+    private final PriceFormatter mQuantityFormatter;
+    private final ProductImageLoader mImageLoader;
+    private final int mEmptyStockColor;
+    private final int mPositiveStockColor;
+
+    private Cursor mCursor;
+    private OnProductClickListener mOnProductClickListener;
+    private OnSelectionChangedListener mOnSelectionChangedListener;
+
+    /**
+     * _IDs of the selected products, kept across the cursors as the _IDs are stable.
+     * They're the keys of a sparse array, so that looking a row up while binding it doesn't box its _ID.
+     */
+    private final LongSparseArray<Boolean> mSelectedIds = new LongSparseArray<>();
+
+    /** Indices of the columns of the current cursor */
+    private int mIdColumnIndex;
+    private int mNameColumnIndex;
+    private int mUnitPriceColumnIndex;
+    private int mQuantityColumnIndex;
+    private int mImagePathColumnIndex;
+
+    /**
+     * Click listener shared by the rows of the list, which finds the clicked product from the view holder
+     * set as tag on the clicked view.
+     */
+    private final View.OnClickListener mClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            ProductViewHolder holder = (ProductViewHolder) v.getTag();
+            long rowId = holder.getItemId();
+            if (rowId == RecyclerView.NO_ID) {
+                return;
+            }
+            if (v == holder.sellNowButtonImageView) {
+                // Let the provider check the stock level and sell 1 unit in a single write
+                sellProductUnit(mContext, rowId);
+            } else if (mSelectedIds.size() != 0) {
+                // While products are selected, the clicks add products to the selection or remove them.
+                toggleSelection(holder, rowId);
+            } else if (mOnProductClickListener != null) {
+                mOnProductClickListener.onProductClick(rowId);
+            }
+        }
+    };
+
+    /**
+     * Long click listener of the rows of the list, which starts the selection of the products.
+     */
+    private final View.OnLongClickListener mLongClickListener = new View.OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            ProductViewHolder holder = (ProductViewHolder) v.getTag();
+            long rowId = holder.getItemId();
+            if (rowId == RecyclerView.NO_ID) {
+                return false;
+            }
+            toggleSelection(holder, rowId);
+            return true;
+        }
+    };
+
+    /**
+     * Listener of the pages of products fetched after their rows were bound as placeholders,
+     * which binds these rows again.
+     */
+    private final ProductPagedCursor.OnPageLoadedListener mPageLoadedListener =
+            new ProductPagedCursor.OnPageLoadedListener() {
+                @Override
+                public void onPageLoaded(ProductPagedCursor cursor, int firstPosition, int rowCount) {
+                    if (cursor == mCursor) {
+                        notifyItemRangeChanged(firstPosition, rowCount);
+                    }
+                }
+            };
+
     /**
      * Constructs a new {@link ProductCursorAdapter}.
      *
@@ -28,123 +144,296 @@ public class ProductCursorAdapter extends CursorAdapter {
      * @param c       The cursor from which to get the data.
      */
     public ProductCursorAdapter(Context context, Cursor c) {
-        super(context, c, 0 /* flags */);
+        mContext = context;
+        mInflater = LayoutInflater.from(context);
+        char groupingSeparator = DecimalFormatSymbols.getInstance().getGroupingSeparator();
+        mPriceFormatter = new PriceFormatter(context.getString(R.string.currency_product_unit_price), groupingSeparator);
+        mQuantityFormatter = new PriceFormatter("", groupingSeparator);
+        mImageLoader = ProductImageLoader.getInstance(context);
+        mEmptyStockColor = ContextCompat.getColor(context, R.color.colorEmptyStock);
+        mPositiveStockColor = ContextCompat.getColor(context, R.color.colorPositiveStock);
+        setHasStableIds(true);
+        swapCursor(c);
     }
 
     /**
-     * Makes a new blank list item view. No data is set (or bound) to the views yet.
-     *
-     * @param context app context
-     * @param cursor  The cursor from which to get the data. The cursor is already moved to the correct position.
-     * @param parent  The parent to which the new view is attached to
-     * @return the newly created list item view.
+     * Return the formatter of the prices displayed by the catalog.
+     */
+    public PriceFormatter getPriceFormatter() {
+        return mPriceFormatter;
+    }
+
+    /**
+     * Set the listener of the clicks on the products of the list.
+     */
+    public void setOnProductClickListener(OnProductClickListener listener) {
+        mOnProductClickListener = listener;
+    }
+
+    /**
+     * Set the listener of the changes of the selected products.
+     */
+    public void setOnSelectionChangedListener(OnSelectionChangedListener listener) {
+        mOnSelectionChangedListener = listener;
+    }
+
+    /**
+     * Return the _IDs of the selected products.
+     */
+    public long[] getSelectedIds() {
+        long[] ids = new long[mSelectedIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = mSelectedIds.keyAt(i);
+        }
+        return ids;
+    }
+
+    /**
+     * Select the products with the given _IDs, such as the ones selected before the activity was recreated.
      */
+    public void setSelectedIds(long[] ids) {
+        mSelectedIds.clear();
+        for (long id : ids) {
+            mSelectedIds.put(id, Boolean.TRUE);
+        }
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
+    /**
+     * Unselect all the products, without notifying the listener.
+     */
+    public void clearSelection() {
+        if (mSelectedIds.size() == 0) {
+            return;
+        }
+        mSelectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
+    /**
+     * Return whether the product with the given _ID is selected.
+     */
+    private boolean isSelected(long id) {
+        return mSelectedIds.indexOfKey(id) >= 0;
+    }
+
+    /**
+     * Select the product of the given row, or unselect it if it's selected, and let the listener know.
+     */
+    private void toggleSelection(ProductViewHolder holder, long rowId) {
+        boolean selected = !isSelected(rowId);
+        if (selected) {
+            mSelectedIds.put(rowId, Boolean.TRUE);
+        } else {
+            mSelectedIds.remove(rowId);
+        }
+        // Only the selected state of the row changes, so it's updated right away rather than rebound.
+        holder.itemView.setActivated(selected);
+        if (mOnSelectionChangedListener != null) {
+            mOnSelectionChangedListener.onSelectionChanged(mSelectedIds.size());
+        }
+    }
+
+    /**
+     * Return the cursor currently displayed.
+     */
+    public Cursor getCursor() {
+        return mCursor;
+    }
+
+    /**
+     * Swap in a new cursor, refreshing the whole list, and return the old one without closing it.
+     */
+    public Cursor swapCursor(Cursor newCursor) {
+        if (newCursor == mCursor) {
+            return null;
+        }
+        Cursor oldCursor = replaceCursor(newCursor);
+        notifyDataSetChanged();
+        return oldCursor;
+    }
+
+    /**
+     * Swap in a new cursor without notifying any change, and return the old one without closing it.
+     * The caller is responsible for notifying the changes between the two cursors.
+     */
+    Cursor replaceCursor(Cursor newCursor) {
+        Cursor oldCursor = mCursor;
+        mCursor = newCursor;
+        if (oldCursor instanceof ProductPagedCursor) {
+            ((ProductPagedCursor) oldCursor).setOnPageLoadedListener(null);
+        }
+        if (newCursor instanceof ProductPagedCursor) {
+            ((ProductPagedCursor) newCursor).setOnPageLoadedListener(mPageLoadedListener);
+        }
+        if (newCursor != null) {
+            // Find the columns of product attributes that we're interested in, once for all the rows
+            mIdColumnIndex = newCursor.getColumnIndexOrThrow(ProductEntry._ID);
+            mNameColumnIndex = newCursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_NAME);
+            mUnitPriceColumnIndex = newCursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE);
+            mQuantityColumnIndex = newCursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            mImagePathColumnIndex = newCursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH);
+        }
+        return oldCursor;
+    }
+
     @Override
-    public View newView(Context context, Cursor cursor, ViewGroup parent) {
-        return LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+    public int getItemCount() {
+        return mCursor != null ? mCursor.getCount() : 0;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        // A row whose page is still being fetched has no _ID yet.
+        if (mCursor != null && mCursor.moveToPosition(position) && !mCursor.isNull(mIdColumnIndex)) {
+            return mCursor.getLong(mIdColumnIndex);
+        }
+        return RecyclerView.NO_ID;
     }
 
     /**
-     * This method binds the product data (in the current row pointed to by cursor) to the given
-     * list item layout.
-     *
-     * @param view    Existing view, returned earlier by newView() method
-     * @param context app context
-     * @param cursor  The cursor from which to get the data. The cursor is already moved to the correct row.
+     * Makes a new list item view, and its holder caching the views that are bound to the product data.
      */
     @Override
-    public void bindView(View view, final Context context, final Cursor cursor) {
+    public ProductViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = mInflater.inflate(R.layout.list_item, parent, false);
+        ProductViewHolder holder = new ProductViewHolder(view,
+                mPriceFormatter.newBuffer(), mQuantityFormatter.newBuffer());
+        view.setTag(holder);
+        view.setOnClickListener(mClickListener);
+        view.setOnLongClickListener(mLongClickListener);
+        holder.sellNowButtonImageView.setTag(holder);
+        holder.sellNowButtonImageView.setOnClickListener(mClickListener);
+        return holder;
+    }
 
-        // Get the current position of the cursor in order to set a TAG with it on the sell button
-        final int position = cursor.getPosition();
+    /**
+     * Only update the selected state of the row when it's the only change, rather than binding it again.
+     */
+    @Override
+    public void onBindViewHolder(ProductViewHolder holder, int position, List<Object> payloads) {
+        if (!payloads.isEmpty() && allSelectionPayloads(payloads)) {
+            holder.itemView.setActivated(isSelected(getItemId(position)));
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
 
-        // Find individual views that we want to modify in the list item layout
-        TextView nameTextView = (TextView) view.findViewById(R.id.name);
-        TextView unitPriceTextView = (TextView) view.findViewById(R.id.unit_price_value);
-        TextView quantityTextView = (TextView) view.findViewById(R.id.stock_level_value);
-        ImageView sellNowButtonImageView = (ImageView) view.findViewById(R.id.sell_button);
+    private static boolean allSelectionPayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_SELECTION) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        // Set a TAG on the sell button with current position of cursor
-        sellNowButtonImageView.setTag(position);
+    /**
+     * This method binds the product data (in the row of the cursor at the given position) to the given
+     * list item view holder.
+     */
+    @Override
+    public void onBindViewHolder(ProductViewHolder holder, int position) {
+        if (!mCursor.moveToPosition(position)) {
+            return;
+        }
 
-        // Find the columns of product attributes that we're interested in
-        int nameColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_NAME);
-        int unitPriceColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE);
-        int quantityColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        // The row of a page still being fetched is displayed empty, and bound again once the page is there.
+        if (mCursor.isNull(mIdColumnIndex)) {
+            holder.itemView.setActivated(false);
+            holder.nameTextView.setText(null);
+            holder.unitPriceTextView.setText(null);
+            holder.quantityTextView.setText(null);
+            holder.thumbnailImageView.setImageResource(R.drawable.img_generic);
+            mImageLoader.cancel(holder.thumbnailImageView);
+            return;
+        }
+
+        // Display whether the product is selected.
+        holder.itemView.setActivated(isSelected(mCursor.getLong(mIdColumnIndex)));
 
         // Read the product attributes from the Cursor for the current product
-        String productName = cursor.getString(nameColumnIndex);
-        int productUnitPrice = cursor.getInt(unitPriceColumnIndex);
-        int productQuantity = cursor.getInt(quantityColumnIndex);
+        int productUnitPrice = mCursor.getInt(mUnitPriceColumnIndex);
+        int productQuantity = mCursor.getInt(mQuantityColumnIndex);
 
-        // Update the TextViews with the attributes for the current product
-        nameTextView.setText(productName);
-        unitPriceTextView.setText(context.getString(R.string.currency_product_unit_price) + String.format("%,d", productUnitPrice));
-        quantityTextView.setText(String.valueOf(productQuantity));
+        // Update the TextViews with the attributes for the current product, the numbers being formatted
+        // in the buffers of the holder.
+        holder.nameTextView.setText(mCursor.getString(mNameColumnIndex));
+        holder.unitPriceTextView.setText(holder.unitPriceBuffer, 0,
+                mPriceFormatter.format(productUnitPrice, true, holder.unitPriceBuffer));
+        holder.quantityTextView.setText(holder.quantityBuffer, 0,
+                mQuantityFormatter.format(productQuantity, false, holder.quantityBuffer));
 
         // Update the color of the displayed product's quantity according to its stock level
-        if (productQuantity == 0) {
-            quantityTextView.setTextColor(ContextCompat.getColor(context, R.color.colorEmptyStock));
-        }
-        else {
-            quantityTextView.setTextColor(ContextCompat.getColor(context, R.color.colorPositiveStock));
+        holder.quantityTextView.setTextColor(productQuantity == 0 ? mEmptyStockColor : mPositiveStockColor);
+
+        // Display the stored thumbnail of the product image, rather than decoding the full-size image.
+        // The generic image is displayed until it's loaded, or if the product has no image.
+        String productImagePath = mCursor.getString(mImagePathColumnIndex);
+        holder.thumbnailImageView.setImageResource(R.drawable.img_generic);
+        if (productImagePath != null) {
+            mImageLoader.loadThumbnail(mCursor.getLong(mIdColumnIndex), Uri.parse(productImagePath),
+                    holder.thumbnailImageView, null);
+        } else {
+            mImageLoader.cancel(holder.thumbnailImageView);
         }
+    }
 
-        sellNowButtonImageView.setOnClickListener(new View.OnClickListener() {
+    /**
+     * Helper method to sell a unit of a product
+     */
+    private void sellProductUnit(final Context context, long rowId) {
+        // Ask the provider to sell 1 unit of the product, it only does it if the stock level allows it.
+        // The sale is written in the background, and its result comes back on the main thread.
+        ProductRepository.getInstance(context).sellProduct(rowId, 1, new ProductRepository.Callback<Bundle>() {
             @Override
-            public void onClick(View v) {
-                // Get the TAG of the view (sell ImageView) that was clicked on to arrive here
-                // Define a position from this TAG
-                Integer position = (Integer) v.getTag();
-                // Move the cursor to this position
-                cursor.moveToPosition(position);
-                // Get the rowID  in the database of the product for which a sell is requested
-                Long rowId = cursor.getLong(cursor.getColumnIndex(ProductEntry._ID));
-                // Find the column of product attributes that we're interested in : Quantity.
-                int quantityColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_QUANTITY);
-                // Get the current stock level (quantity) of the product for which a sell is requested
-                int currentQuantity = cursor.getInt(quantityColumnIndex);
-
-                // If the stock level is still positive, then proceed with the sell of 1 unit
-                if(currentQuantity > 0) {
-                    sellProductUnit(context, rowId, currentQuantity);
-                }
-                else {
+            public void onResult(Bundle result) {
+                // Show a toast message depending on whether or not the sale was successful.
+                if (result != null && result.getBoolean(ProductContract.EXTRA_SOLD)) {
+                    // The sell was successful and we can display a toast.
+                    Toast.makeText(context, context.getString(R.string.catalog_sell_product_item_successful),
+                            Toast.LENGTH_SHORT).show();
+                } else if (result != null && result.getLong(ProductContract.EXTRA_QUANTITY) == 0) {
                     // Otherwise, show a toast message saying that the sell action is not possible
                     // as the stock level has reached 0.
                     Toast.makeText(context, context.getString(R.string.catalog_sell_product_item_failed_stock_empty),
                             Toast.LENGTH_SHORT).show();
+                } else {
+                    // If nothing was sold, then there was an error with the sale.
+                    Toast.makeText(context, context.getString(R.string.catalog_sell_product_item_failed),
+                            Toast.LENGTH_SHORT).show();
                 }
-
             }
         });
     }
 
     /**
-     * Helper method to sell a unit of a product
+     * Holder of the views of a list item, found once when the item is created.
      */
-    private void sellProductUnit(Context context, Long rowId, int quantity) {
-        // sell 1 unit of the product by decrement its stock level by 1 unit.
-        quantity--;
-        // Form the content URI that represents the specific product that was clicked on.
-        Uri currentProductUri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, rowId);
-        // Create a ContentValues objectURI and put the decremented stock level in it
-        final ContentValues values = new ContentValues();
-        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, quantity);
-
-        // execute the modification in the database,
-        // and get the integer for the rows affected by the update.
-        int rowsAffected = context.getContentResolver().update(currentProductUri, values, null, null);
-        // Show a toast message depending on whether or not the update was successful.
-        if (rowsAffected == 0) {
-            // If no rows were affected, then there was an error with the update.
-            Toast.makeText(context, context.getString(R.string.catalog_sell_product_item_failed),
-                    Toast.LENGTH_SHORT).show();
+    static class ProductViewHolder extends RecyclerView.ViewHolder {
 
-        } else {
-            // Otherwise, the sell was successful and we can display a toast.
-            Toast.makeText(context, context.getString(R.string.catalog_sell_product_item_successful),
-                    Toast.LENGTH_SHORT).show();
+        final TextView nameTextView;
+        final TextView unitPriceTextView;
+        final TextView quantityTextView;
+        final ImageView sellNowButtonImageView;
+        final ImageView thumbnailImageView;
+
+        /**
+         * Buffers in which the numbers of the product are formatted.
+         * A TextView keeps a reference to the chars it displays, so each one gets its own buffer.
+         */
+        final char[] unitPriceBuffer;
+        final char[] quantityBuffer;
+
+        ProductViewHolder(View view, char[] unitPriceBuffer, char[] quantityBuffer) {
+            super(view);
+            nameTextView = (TextView) view.findViewById(R.id.name);
+            unitPriceTextView = (TextView) view.findViewById(R.id.unit_price_value);
+            quantityTextView = (TextView) view.findViewById(R.id.stock_level_value);
+            sellNowButtonImageView = (ImageView) view.findViewById(R.id.sell_button);
+            thumbnailImageView = (ImageView) view.findViewById(R.id.thumbnail);
+            this.unitPriceBuffer = unitPriceBuffer;
+            this.quantityBuffer = quantityBuffer;
         }
     }
-}
\ No newline at end of file
+}
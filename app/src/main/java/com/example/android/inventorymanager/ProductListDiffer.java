@@ -0,0 +1,320 @@
+package com.example.android.inventorymanager;
+
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.util.Log;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Applies the new cursors of the catalog to a {@link ProductCursorAdapter} incrementally.
+ * The rows around the visible ones are read from the new cursor on a background thread, diffed by _ID
+ * against the same rows of the displayed cursor, and only the resulting item insertions, removals and
+ * changes are dispatched to the list, so that a sale redraws one row instead of the whole screen.
+ *
+ * The displayed cursor is only ever read by the main thread, which binds its rows, so its rows are
+ * diffed from the snapshot taken in the background before it was displayed. The diffed rows are anchored
+ * by the row before them: if it isn't the same product in both cursors, rows have been inserted or removed
+ * above, the diffed rows aren't at the same positions any more, and the whole list is refreshed instead.
+ * So is it when the visible rows have been scrolled away from the snapshot of the displayed cursor.
+ *
+ * The differ takes the ownership of the submitted cursors, and closes them once they're replaced.
+ */
+public class ProductListDiffer {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ProductListDiffer.class.getSimpleName();
+
+    /** Number of rows diffed on each side of the visible rows */
+    private static final int WINDOW_MARGIN = 50;
+
+    /** Background thread computing the differences */
+    private static final ExecutorService sDiffExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Listener notified when a new cursor is displayed by the adapter.
+     */
+    public interface OnCursorAppliedListener {
+        void onCursorApplied(Cursor cursor);
+    }
+
+    private final ProductCursorAdapter mAdapter;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private OnCursorAppliedListener mListener;
+
+    /** Number of the latest submitted cursor, only touched on the main thread */
+    private int mGeneration;
+
+    /** Latest submitted cursor which is still being diffed, only touched on the main thread */
+    private Cursor mPendingCursor;
+
+    /**
+     * Snapshot of the rows of the displayed cursor, taken before it was displayed, or null if there is none,
+     * only touched on the main thread
+     */
+    private Snapshot mDisplayedSnapshot;
+
+    /**
+     * Constructs a new {@link ProductListDiffer}.
+     *
+     * @param adapter The adapter to which the cursors are applied
+     */
+    public ProductListDiffer(ProductCursorAdapter adapter) {
+        mAdapter = adapter;
+    }
+
+    public void setOnCursorAppliedListener(OnCursorAppliedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Apply a new cursor to the adapter. It must be called on the main thread.
+     *
+     * @param newCursor     The new cursor of products
+     * @param firstPosition The position of the first visible row, or -1 if there is none
+     * @param lastPosition  The position of the last visible row, or -1 if there is none
+     */
+    public void submitCursor(final Cursor newCursor, int firstPosition, int lastPosition) {
+        final Cursor oldCursor = mAdapter.getCursor();
+        if (newCursor == oldCursor || (newCursor != null && newCursor == mPendingCursor)) {
+            return;
+        }
+        final int generation = ++mGeneration;
+        mPendingCursor = null;
+
+        if (newCursor == null) {
+            applyCursor(null, null, null, 0);
+            return;
+        }
+
+        // Without any visible row, the rows at the top of the list are the ones about to be displayed.
+        if (firstPosition < 0) {
+            firstPosition = 0;
+            lastPosition = 0;
+        }
+        final int start = Math.max(0, firstPosition - WINDOW_MARGIN);
+        final int end = lastPosition + 1 + WINDOW_MARGIN;
+        final Snapshot oldSnapshot = oldCursor != null ? mDisplayedSnapshot : null;
+        mPendingCursor = newCursor;
+
+        sDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The new cursor isn't displayed yet, so it can be read here. Its snapshot includes the row
+                // anchoring the diffed rows, and is kept to diff it against the next cursor.
+                Snapshot newSnapshot = null;
+                DiffUtil.DiffResult diffResult = null;
+                try {
+                    newSnapshot = new Snapshot(newCursor, Math.max(0, start - 1), end);
+                    if (oldSnapshot != null && oldSnapshot.isAlignedWith(newSnapshot, start, end)) {
+                        diffResult = DiffUtil.calculateDiff(
+                                new SnapshotDiffCallback(oldSnapshot, newSnapshot, start, end), false);
+                    }
+                } catch (RuntimeException e) {
+                    // The new cursor may have been closed in the meantime: fall back to a full refresh.
+                    Log.w(LOG_TAG, "Failed to diff the products", e);
+                }
+
+                final Snapshot snapshot = newSnapshot;
+                final DiffUtil.DiffResult result = diffResult;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            // A newer cursor has been submitted since, so this one will never be displayed.
+                            newCursor.close();
+                            return;
+                        }
+                        mPendingCursor = null;
+                        applyCursor(newCursor, snapshot, result, start);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stop displaying any cursor, and close the ones owned by the differ.
+     */
+    public void clear() {
+        mGeneration++;
+        if (mPendingCursor != null) {
+            mPendingCursor.close();
+            mPendingCursor = null;
+        }
+        applyCursor(null, null, null, 0);
+    }
+
+    /**
+     * Swap the new cursor in the adapter, dispatching the given differences (starting at the given position)
+     * or refreshing the whole list if there are none, then close the replaced cursor.
+     * The given snapshot of the new cursor, if any, is kept to diff it against the next one.
+     */
+    private void applyCursor(Cursor newCursor, Snapshot snapshot, DiffUtil.DiffResult result, final int start) {
+        mDisplayedSnapshot = snapshot;
+        Cursor oldCursor;
+        if (result == null) {
+            oldCursor = mAdapter.swapCursor(newCursor);
+        } else {
+            int oldCount = mAdapter.getItemCount();
+            oldCursor = mAdapter.replaceCursor(newCursor);
+
+            // Dispatch the differences of the diffed rows, offset by the position of the first of them.
+            final int[] count = { oldCount };
+            result.dispatchUpdatesTo(new ListUpdateCallback() {
+                @Override
+                public void onInserted(int position, int itemCount) {
+                    count[0] += itemCount;
+                    mAdapter.notifyItemRangeInserted(start + position, itemCount);
+                }
+
+                @Override
+                public void onRemoved(int position, int itemCount) {
+                    count[0] -= itemCount;
+                    mAdapter.notifyItemRangeRemoved(start + position, itemCount);
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    mAdapter.notifyItemMoved(start + fromPosition, start + toPosition);
+                }
+
+                @Override
+                public void onChanged(int position, int itemCount, Object payload) {
+                    mAdapter.notifyItemRangeChanged(start + position, itemCount, payload);
+                }
+            });
+
+            // The rows after the diffed ones have only been added or removed at the end of the list.
+            int newCount = newCursor.getCount();
+            if (newCount > count[0]) {
+                mAdapter.notifyItemRangeInserted(count[0], newCount - count[0]);
+            } else if (newCount < count[0]) {
+                mAdapter.notifyItemRangeRemoved(newCount, count[0] - newCount);
+            }
+        }
+
+        if (oldCursor != null && oldCursor != newCursor) {
+            oldCursor.close();
+        }
+        if (mListener != null) {
+            mListener.onCursorApplied(newCursor);
+        }
+    }
+
+    /**
+     * Copy of the displayed attributes of a range of rows of a cursor, along with its number of rows.
+     */
+    private static class Snapshot {
+        final int start;
+        final int count;
+        final long[] ids;
+        final String[] names;
+        final int[] unitPrices;
+        final int[] quantities;
+        final String[] imagePaths;
+
+        Snapshot(Cursor cursor, int start, int end) {
+            this.start = start;
+            count = cursor.getCount();
+            int size = Math.max(0, Math.min(end, count) - start);
+            ids = new long[size];
+            names = new String[size];
+            unitPrices = new int[size];
+            quantities = new int[size];
+            imagePaths = new String[size];
+
+            int idColumnIndex = cursor.getColumnIndexOrThrow(ProductEntry._ID);
+            int nameColumnIndex = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_NAME);
+            int unitPriceColumnIndex = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE);
+            int quantityColumnIndex = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            int imagePathColumnIndex = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH);
+            for (int i = 0; i < size && cursor.moveToPosition(start + i); i++) {
+                ids[i] = cursor.getLong(idColumnIndex);
+                names[i] = cursor.getString(nameColumnIndex);
+                unitPrices[i] = cursor.getInt(unitPriceColumnIndex);
+                quantities[i] = cursor.getInt(quantityColumnIndex);
+                imagePaths[i] = cursor.getString(imagePathColumnIndex);
+            }
+        }
+
+        /**
+         * Return whether this snapshot holds the rows from the given start, and the row before it,
+         * up to the given end or its last row.
+         */
+        boolean covers(int windowStart, int windowEnd) {
+            return start <= Math.max(0, windowStart - 1) && windowStart <= count
+                    && start + ids.length >= Math.min(windowEnd, count);
+        }
+
+        /**
+         * Return whether both snapshots hold the given rows, and the row before them is the same product
+         * in both, so that the rows which are the same product are at the same positions.
+         */
+        boolean isAlignedWith(Snapshot other, int windowStart, int windowEnd) {
+            if (!covers(windowStart, windowEnd) || !other.covers(windowStart, windowEnd)) {
+                return false;
+            }
+            // A row which has vanished from a paged cursor reads as _ID 0, which anchors nothing.
+            long anchorId = windowStart == 0 ? 0 : ids[windowStart - 1 - start];
+            return windowStart == 0 || (anchorId != 0 && anchorId == other.ids[windowStart - 1 - other.start]);
+        }
+    }
+
+    /**
+     * Compares the rows of two snapshots within a range of positions, the rows being the same product
+     * when they have the same _ID.
+     */
+    private static class SnapshotDiffCallback extends DiffUtil.Callback {
+        private final Snapshot mOld;
+        private final Snapshot mNew;
+        private final int mOldOffset;
+        private final int mNewOffset;
+        private final int mOldSize;
+        private final int mNewSize;
+
+        SnapshotDiffCallback(Snapshot oldSnapshot, Snapshot newSnapshot, int start, int end) {
+            mOld = oldSnapshot;
+            mNew = newSnapshot;
+            mOldOffset = start - oldSnapshot.start;
+            mNewOffset = start - newSnapshot.start;
+            mOldSize = Math.min(end, oldSnapshot.count) - start;
+            mNewSize = Math.min(end, newSnapshot.count) - start;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldSize;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewSize;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.ids[mOldOffset + oldItemPosition] == mNew.ids[mNewOffset + newItemPosition];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            int oldIndex = mOldOffset + oldItemPosition;
+            int newIndex = mNewOffset + newItemPosition;
+            return mOld.unitPrices[oldIndex] == mNew.unitPrices[newIndex]
+                    && mOld.quantities[oldIndex] == mNew.quantities[newIndex]
+                    && equals(mOld.names[oldIndex], mNew.names[newIndex])
+                    && equals(mOld.imagePaths[oldIndex], mNew.imagePaths[newIndex]);
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.android.inventorymanager;
+
+import android.app.Activity;
+import android.content.ContentResolver;
+import android.content.Intent;
+import android.os.AsyncTask;
+import android.os.Bundle;
+
+import com.example.android.inventorymanager.data.ProductContract;
+
+/**
+ * Invisible activity opened by the notification of a purchase order. It opens the order email to the
+ * supplier and acknowledges the purchase order, so that its products leave the reorder queue only once
+ * the user has actually been through the notification.
+ */
+public class PurchaseOrderActivity extends Activity {
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        Intent intent = getIntent();
+        Intent emailIntent = intent.getParcelableExtra(Intent.EXTRA_INTENT);
+
+        final Bundle extras = new Bundle();
+        extras.putLongArray(ProductContract.EXTRA_PRODUCT_IDS,
+                intent.getLongArrayExtra(ProductContract.EXTRA_PRODUCT_IDS));
+        extras.putLong(ProductContract.EXTRA_TIMESTAMP, intent.getLongExtra(ProductContract.EXTRA_TIMESTAMP, 0));
+        // The acknowledgement writes to the database, so it's done off the main thread, and it outlives
+        // this activity which finishes right away.
+        final ContentResolver resolver = getApplicationContext().getContentResolver();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                resolver.call(ProductContract.ProductEntry.CONTENT_URI,
+                        ProductContract.METHOD_ACKNOWLEDGE_REORDERS, null, extras);
+            }
+        });
+
+        if (emailIntent != null) {
+            startActivity(emailIntent);
+        }
+        // The activity has no window, so it must finish before being resumed.
+        finish();
+    }
+}
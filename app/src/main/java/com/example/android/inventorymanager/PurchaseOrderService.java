@@ -0,0 +1,189 @@
+package com.example.android.inventorymanager;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.service.notification.StatusBarNotification;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+
+import com.example.android.inventorymanager.data.ProductContract;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job collecting the products queued for reordering into one purchase order per supplier, a few times
+ * a day. Each purchase order is posted as a notification which opens the order email to its supplier,
+ * listing all its products running low, rather than one email per product.
+ *
+ * The products stay queued until the email of their purchase order is opened through
+ * {@link PurchaseOrderActivity}, so each run posts again the purchase orders which haven't been sent yet,
+ * replacing the notification of the same supplier rather than adding another one, and cancels the
+ * notifications of the suppliers whose products have all been restocked in the meantime.
+ */
+public class PurchaseOrderService extends JobService {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = PurchaseOrderService.class.getSimpleName();
+
+    /** Unique identifier of the job, the stock ledger compaction being job 1 */
+    private static final int JOB_ID = 2;
+
+    /** Tag of the purchase order notifications, whose identifier is the _ID of their supplier */
+    private static final String NOTIFICATION_TAG = "purchase_order";
+
+    /** Period of the job, during which the products running low are coalesced into the same purchase orders */
+    private static final long PERIOD_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    /** Task running the collection off the main thread */
+    private AsyncTask<Void, Void, Void> mTask;
+
+    /**
+     * Schedule the job, unless it's already scheduled, so that its period isn't restarted on each call.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler.getPendingJob(JOB_ID) != null) {
+            return;
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, PurchaseOrderService.class))
+                .setPeriodic(PERIOD_MILLIS)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mTask = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... voids) {
+                Bundle result = getContentResolver().call(ProductContract.ProductEntry.CONTENT_URI,
+                        ProductContract.METHOD_COLLECT_REORDERS, null, null);
+                if (result == null) {
+                    return null;
+                }
+                ArrayList<Bundle> purchaseOrders =
+                        result.getParcelableArrayList(ProductContract.EXTRA_PURCHASE_ORDERS);
+                Log.i(LOG_TAG, "Collected " + result.getInt(ProductContract.EXTRA_ROW_COUNT)
+                        + " products to reorder into " + purchaseOrders.size() + " purchase orders");
+
+                // Each supplier gets its own notification, updated with the products queued since
+                // the previous run if its purchase order hasn't been sent yet.
+                for (Bundle purchaseOrder : purchaseOrders) {
+                    notifyPurchaseOrder(purchaseOrder);
+                }
+                cancelStalePurchaseOrders(purchaseOrders);
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Void aVoid) {
+                jobFinished(params, false);
+            }
+        };
+        mTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        // The job goes on in the background.
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The reorders stay in the queue until their purchase order is sent, so the next period
+        // collects them again.
+        if (mTask != null) {
+            mTask.cancel(false);
+        }
+        return false;
+    }
+
+    /**
+     * Post the notification of a purchase order, which opens its email when touched.
+     */
+    private void notifyPurchaseOrder(Bundle purchaseOrder) {
+        int notificationId = (int) purchaseOrder.getLong(ProductContract.EXTRA_SUPPLIER_ID);
+        String supplierName = purchaseOrder.getString(ProductContract.EXTRA_SUPPLIER_NAME);
+        String supplierEmail = purchaseOrder.getString(ProductContract.EXTRA_SUPPLIER_EMAIL);
+        int productCount = purchaseOrder.getStringArrayList(ProductContract.EXTRA_PRODUCT_NAMES).size();
+        String message = createPurchaseOrderEmailMessage(purchaseOrder);
+
+        Intent intent = new Intent(Intent.ACTION_SENDTO);
+        intent.setData(Uri.parse("mailto:")); // only email apps should handle this
+        intent.putExtra(Intent.EXTRA_EMAIL, new String[] {supplierEmail});
+        intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.purchase_order_email_subject));
+        intent.putExtra(Intent.EXTRA_TEXT, message);
+
+        Notification.Builder builder = new Notification.Builder(this)
+                .setSmallIcon(R.drawable.ic_warehouse_inventory)
+                .setContentTitle(getString(R.string.purchase_order_notification_title, supplierName))
+                .setContentText(getString(R.string.purchase_order_notification_text, productCount))
+                .setStyle(new Notification.BigTextStyle().bigText(message))
+                .setAutoCancel(true);
+        if (intent.resolveActivity(getPackageManager()) != null) {
+            // The email is opened through an activity acknowledging the purchase order, so that its
+            // products leave the queue only once it's sent.
+            Intent acknowledgeIntent = new Intent(this, PurchaseOrderActivity.class)
+                    .putExtra(Intent.EXTRA_INTENT, intent)
+                    .putExtra(ProductContract.EXTRA_PRODUCT_IDS,
+                            purchaseOrder.getLongArray(ProductContract.EXTRA_PRODUCT_IDS))
+                    .putExtra(ProductContract.EXTRA_TIMESTAMP,
+                            purchaseOrder.getLong(ProductContract.EXTRA_TIMESTAMP));
+            // The request code sets apart the pending intents, whose extras alone aren't enough to.
+            builder.setContentIntent(PendingIntent.getActivity(this, notificationId, acknowledgeIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT));
+        }
+        NotificationManager notificationManager =
+                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(NOTIFICATION_TAG, notificationId, builder.build());
+    }
+
+    /**
+     * Cancel the notifications of the suppliers which no longer have a purchase order, all their queued
+     * products having been restocked before the order was sent, so that it isn't sent for nothing.
+     */
+    private void cancelStalePurchaseOrders(ArrayList<Bundle> purchaseOrders) {
+        SparseBooleanArray notificationIds = new SparseBooleanArray();
+        for (Bundle purchaseOrder : purchaseOrders) {
+            notificationIds.put((int) purchaseOrder.getLong(ProductContract.EXTRA_SUPPLIER_ID), true);
+        }
+        NotificationManager notificationManager =
+                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        for (StatusBarNotification notification : notificationManager.getActiveNotifications()) {
+            if (NOTIFICATION_TAG.equals(notification.getTag()) && !notificationIds.get(notification.getId())) {
+                notificationManager.cancel(NOTIFICATION_TAG, notification.getId());
+            }
+        }
+    }
+
+    /**
+     * This method creates the text of the email of a purchase order, with a line per product.
+     */
+    private String createPurchaseOrderEmailMessage(Bundle purchaseOrder) {
+        ArrayList<String> productNames = purchaseOrder.getStringArrayList(ProductContract.EXTRA_PRODUCT_NAMES);
+        ArrayList<Integer> quantities = purchaseOrder.getIntegerArrayList(ProductContract.EXTRA_QUANTITIES);
+        ArrayList<Integer> reorderThresholds =
+                purchaseOrder.getIntegerArrayList(ProductContract.EXTRA_REORDER_THRESHOLDS);
+
+        StringBuilder message = new StringBuilder(getString(R.string.order_email_starting_greeting))
+                .append(purchaseOrder.getString(ProductContract.EXTRA_SUPPLIER_NAME))
+                .append(getString(R.string.order_email_comma))
+                .append(getString(R.string.order_email_jump_line))
+                .append(getString(R.string.purchase_order_email_request));
+        for (int i = 0; i < productNames.size(); i++) {
+            message.append(getString(R.string.purchase_order_email_line,
+                    productNames.get(i), quantities.get(i), reorderThresholds.get(i)));
+        }
+        return message.append(getString(R.string.order_email_jump_line))
+                .append(getString(R.string.purchase_order_email_end_greetings))
+                .toString();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.inventorymanager.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Streaming reader of CSV records: fields separated by commas, optionally enclosed in double quotes,
+ * in which case they can hold commas, line breaks and doubled double quotes (RFC 4180).
+ * Only the record being read is in memory, whatever the size of the input. Empty lines are skipped.
+ */
+public class CsvReader implements Closeable {
+
+    /** Number of chars read from the input at once */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /** Byte order mark some editors put at the start of their UTF-8 files */
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPosition;
+    private int mLimit;
+
+    /** Field being read, reused from one field to the next */
+    private final StringBuilder mField = new StringBuilder();
+
+    /** Number of records read so far */
+    private long mRecordCount;
+
+    /**
+     * Constructs a new {@link CsvReader}.
+     *
+     * @param reader The input to read, which doesn't need to be buffered
+     */
+    public CsvReader(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Return the number of records read so far.
+     */
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * Read the next record into the given list, which is cleared first.
+     *
+     * @return false if the end of the input has been reached, in which case the list is left empty
+     * @throws IOException if the input can't be read, or ends within a quoted field
+     */
+    public boolean readRecord(List<String> fields) throws IOException {
+        fields.clear();
+        int c = read();
+        if (mRecordCount == 0 && c == BYTE_ORDER_MARK) {
+            c = read();
+        }
+        // Skip the empty lines, and the line feed of the CR LF ending the previous record.
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == -1) {
+            return false;
+        }
+
+        mField.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field in record " + (mRecordCount + 1));
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        // End of the quoted text, the current char being the one following it.
+                        quoted = false;
+                        continue;
+                    }
+                }
+                mField.append((char) c);
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(mField.toString());
+                mField.setLength(0);
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                fields.add(mField.toString());
+                break;
+            } else {
+                mField.append((char) c);
+            }
+            c = read();
+        }
+        mRecordCount++;
+        return true;
+    }
+
+    /**
+     * Return the next char of the input, or -1 at its end.
+     */
+    private int read() throws IOException {
+        if (mPosition == mLimit) {
+            mLimit = mReader.read(mBuffer, 0, mBuffer.length);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mPosition++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.android.inventorymanager.data;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming writer of CSV records, quoting the fields which hold a comma, a double quote or a line break
+ * (RFC 4180), so that they are read back by {@link CsvReader}. Nothing is kept once written.
+ */
+public class CsvWriter implements Closeable, Flushable {
+
+    private final Writer mWriter;
+
+    /** Whether the next field is the first one of its record */
+    private boolean mFirstField = true;
+
+    /**
+     * Constructs a new {@link CsvWriter}.
+     *
+     * @param writer The output to write, which should be buffered
+     */
+    public CsvWriter(Writer writer) {
+        mWriter = writer;
+    }
+
+    /**
+     * Write the next field of the current record, an empty one if the value is null.
+     */
+    public void writeField(String value) throws IOException {
+        if (!mFirstField) {
+            mWriter.write(',');
+        }
+        mFirstField = false;
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            mWriter.write(value);
+            return;
+        }
+        mWriter.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                // A double quote within a quoted field is doubled.
+                mWriter.write('"');
+            }
+            mWriter.write(c);
+        }
+        mWriter.write('"');
+    }
+
+    /**
+     * End the current record, the next field starting a new one.
+     */
+    public void endRecord() throws IOException {
+        mWriter.write("\r\n");
+        mFirstField = true;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWriter.close();
+    }
+}
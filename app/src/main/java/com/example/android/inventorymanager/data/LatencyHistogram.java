@@ -0,0 +1,124 @@
+package com.example.android.inventorymanager.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in microseconds, recorded from any thread without any lock.
+ * Like HdrHistogram, each power of two is split into {@link #SUB_BUCKET_COUNT} buckets of equal width,
+ * so that every latency is counted with a relative error of at most 1/{@link #SUB_BUCKET_COUNT},
+ * in a fixed number of counters whatever the range of the latencies.
+ */
+final class LatencyHistogram {
+
+    /** Number of bits of a latency kept once its power of two is known */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** Number of buckets each power of two is split into */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Latencies below this one have a bucket each, in which they are counted exactly */
+    private static final int EXACT_LIMIT = SUB_BUCKET_COUNT * 2;
+
+    /** Highest power of two told apart, about 19 hours; longer latencies are counted in the last bucket */
+    private static final int MAX_EXPONENT = 36;
+
+    /** Exact buckets, split buckets of each power of two up to the highest one, and a last one for the longer latencies */
+    private static final int BUCKET_COUNT = EXACT_LIMIT
+            + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + 1;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalMicros = new AtomicLong();
+    private final AtomicLong mMaxMicros = new AtomicLong();
+
+    /**
+     * Count a latency, in microseconds.
+     */
+    void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        mCounts.incrementAndGet(bucketOf(micros));
+        mCount.incrementAndGet();
+        mTotalMicros.addAndGet(micros);
+        long max = mMaxMicros.get();
+        while (micros > max && !mMaxMicros.compareAndSet(max, micros)) {
+            max = mMaxMicros.get();
+        }
+    }
+
+    long getCount() {
+        return mCount.get();
+    }
+
+    long getMaxMicros() {
+        return mMaxMicros.get();
+    }
+
+    long getMeanMicros() {
+        long count = mCount.get();
+        return count != 0 ? mTotalMicros.get() / count : 0;
+    }
+
+    /**
+     * Return the latency below which the given percentage of the recorded latencies are, rounded up to the
+     * highest latency of its bucket, or 0 if nothing has been recorded. The counters aren't read atomically,
+     * so the latencies recorded meanwhile may or may not be taken into account.
+     */
+    long getPercentileMicros(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        // Rank of the latency in the sorted latencies, from 1.
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // The bucket's highest latency can't be above the highest one recorded.
+                return Math.min(highestMicrosOf(i), mMaxMicros.get());
+            }
+        }
+        return mMaxMicros.get();
+    }
+
+    /**
+     * Return the index of the bucket counting the given latency.
+     */
+    static int bucketOf(long micros) {
+        if (micros < EXACT_LIMIT) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        // The latency is in [2^exponent, 2^(exponent + 1)), split by its bits following the highest one.
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) - SUB_BUCKET_COUNT;
+        return EXACT_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Return the highest latency counted by the bucket with the given index.
+     */
+    static long highestMicrosOf(int bucket) {
+        if (bucket < EXACT_LIMIT) {
+            return bucket;
+        }
+        if (bucket == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = (bucket - EXACT_LIMIT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+        int subBucket = (bucket - EXACT_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (subBucket + 1) << shift) - 1;
+    }
+}
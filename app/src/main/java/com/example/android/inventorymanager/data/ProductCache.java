@@ -0,0 +1,527 @@
+package com.example.android.inventorymanager.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.LongSparseArray;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Read-through cache of the products in front of the database of {@link ProductProvider}.
+ * The products are kept by _ID, the least recently used one being evicted once the capacity is reached.
+ * Once it holds every product, the cache also answers the queries of the catalog pages.
+ *
+ * The provider invalidates it on each write. A product read from the database is only stored if no
+ * write happened since the read started, which is tracked by a generation number bumped on each write.
+ */
+public class ProductCache {
+
+    /** Default maximum number of products kept in memory */
+    public static final int DEFAULT_CAPACITY = 2000;
+
+    /** Projection counting the products, as queried by {@link ProductPagedCursor} */
+    private static final String COUNT_COLUMN = "COUNT(*)";
+
+    /** Columns of a cached product, in the order of the fields of a {@link Record} */
+    static final String[] COLUMNS = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_UNIT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_IMAGE_PATH,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD};
+
+    /** Order of {@link ProductEntry#SORT_ORDER_ID} */
+    private static final Comparator<Record> ORDER_BY_ID = new Comparator<Record>() {
+        @Override
+        public int compare(Record a, Record b) {
+            return Long.compare(a.id, b.id);
+        }
+    };
+
+    /** Order of {@link ProductEntry#SORT_ORDER_NAME} */
+    private static final Comparator<Record> ORDER_BY_NAME = new Comparator<Record>() {
+        @Override
+        public int compare(Record a, Record b) {
+            int result = compareNoCase(a.name, b.name);
+            return result != 0 ? result : Long.compare(a.id, b.id);
+        }
+    };
+
+    private final int mCapacity;
+
+    /** Cached products by _ID */
+    private final LongSparseArray<Record> mRecords = new LongSparseArray<>();
+
+    /** Ends of the list of the cached products in order of use, from the most recently used */
+    private Record mMostRecent;
+    private Record mLeastRecent;
+
+    /** Whether every product is cached */
+    private boolean mComplete;
+
+    /** Whether storing the product being read again makes the cache complete again */
+    private boolean mCompletedByPut;
+
+    /** Number of writes seen so far */
+    private int mGeneration;
+
+    /** Cached products sorted by _ID and by name, built on demand while the cache is complete */
+    private Record[] mSortedById;
+    private Record[] mSortedByName;
+
+    private long mHitCount;
+    private long mMissCount;
+
+    /**
+     * Constructs a new {@link ProductCache}.
+     *
+     * @param capacity The maximum number of products kept in memory, 0 disabling the cache
+     */
+    public ProductCache(int capacity) {
+        mCapacity = capacity;
+    }
+
+    /**
+     * Return the number of queries answered by the cache.
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Return the number of queries the cache couldn't answer.
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Return the number of products in memory.
+     */
+    public synchronized int size() {
+        return mRecords.size();
+    }
+
+    int getCapacity() {
+        return mCapacity;
+    }
+
+    synchronized boolean isComplete() {
+        return mComplete;
+    }
+
+    /**
+     * Return the generation to give back when storing the products about to be read from the database.
+     */
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Return whether the given projection counts the products, which the cache can answer for a list of products.
+     */
+    static boolean isCount(String[] projection) {
+        return projection != null && projection.length == 1 && COUNT_COLUMN.equalsIgnoreCase(projection[0]);
+    }
+
+    /**
+     * Return whether the cache can answer the given projection, which is null or made of product columns.
+     */
+    static boolean canProject(String[] projection) {
+        if (projection == null) {
+            return true;
+        }
+        for (String column : projection) {
+            if (indexOf(column) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return a cursor holding the given columns of the product with the given _ID,
+     * or null if the cache doesn't know about it.
+     */
+    synchronized Cursor query(long id, String[] projection) {
+        Record record = mRecords.get(id);
+        if (record == null && !mComplete) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        if (record == null) {
+            // Every product is cached, so there is no product with this _ID.
+            return toCursor(projection, new Record[0], 0, 0);
+        }
+        moveToFront(record);
+        return toCursor(projection, new Record[] { record }, 0, 1);
+    }
+
+    /**
+     * Return a cursor holding the given columns of a page of products, or null if not every product is cached.
+     *
+     * @param sortByName Whether the products are sorted by name rather than by _ID
+     * @param afterName  The name of the product preceding the page when sorted by name, or null
+     * @param afterId    The _ID of the product preceding the page, or -1 to start from the first product
+     * @param offset     The number of products to skip
+     * @param limit      The maximum number of products of the page, or -1 for all of them
+     */
+    synchronized Cursor queryList(String[] projection, boolean sortByName, String afterName, long afterId,
+                                  int offset, int limit) {
+        if (!mComplete) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        Record[] sorted = getSorted(sortByName);
+        int start = 0;
+        if (afterId != -1) {
+            // Find the first product following the key of the previous page.
+            Record key = new Record();
+            key.id = afterId;
+            key.name = afterName;
+            int index = Arrays.binarySearch(sorted, key, sortByName ? ORDER_BY_NAME : ORDER_BY_ID);
+            start = index >= 0 ? index + 1 : -index - 1;
+        }
+        start = Math.min(start + offset, sorted.length);
+        int end = limit >= 0 ? Math.min(start + limit, sorted.length) : sorted.length;
+        if (isCount(projection)) {
+            MatrixCursor count = new MatrixCursor(projection, 1);
+            count.addRow(new Object[] { end - start });
+            return count;
+        }
+        return toCursor(projection, sorted, start, end);
+    }
+
+    /**
+     * Return a cursor holding the given columns of the product held by the current row of the given cursor,
+     * which must include all the {@link #COLUMNS}, or no row if the cursor isn't on a row.
+     */
+    static Cursor project(Cursor cursor, String[] projection) {
+        if (cursor.isBeforeFirst() || cursor.isAfterLast()) {
+            return toCursor(projection, new Record[0], 0, 0);
+        }
+        return toCursor(projection, new Record[] { Record.fromCursor(cursor) }, 0, 1);
+    }
+
+    /**
+     * Store the product held by the current row of the given cursor, which must include all the
+     * {@link #COLUMNS}, unless a write happened since the given generation.
+     */
+    synchronized void put(int generation, Cursor cursor) {
+        if (generation != mGeneration || mCapacity == 0) {
+            return;
+        }
+        store(Record.fromCursor(cursor));
+        clearSorted();
+        if (mCompletedByPut) {
+            mComplete = true;
+            mCompletedByPut = false;
+        }
+    }
+
+    /**
+     * Store every product held by the given cursor, which must include all the {@link #COLUMNS}, and hold
+     * all the products invalidated together by {@link #invalidate(long[], int)}, unless a write happened
+     * since the given generation.
+     */
+    synchronized void putEach(int generation, Cursor cursor) {
+        if (generation != mGeneration || mCapacity == 0) {
+            return;
+        }
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            store(Record.fromCursor(cursor));
+        }
+        clearSorted();
+        if (mCompletedByPut) {
+            mComplete = true;
+            mCompletedByPut = false;
+        }
+    }
+
+    /**
+     * Store the given product in place of its old record, evicting the least recently used product if needed.
+     */
+    private void store(Record record) {
+        Record oldRecord = mRecords.get(record.id);
+        if (oldRecord != null) {
+            unlink(oldRecord);
+        } else if (mRecords.size() >= mCapacity) {
+            // Evicting a product makes the cache incomplete.
+            mRecords.remove(mLeastRecent.id);
+            unlink(mLeastRecent);
+            mComplete = false;
+            mCompletedByPut = false;
+        }
+        mRecords.put(record.id, record);
+        moveToFront(record);
+    }
+
+    /**
+     * Store every product held by the given cursor, which must include all the {@link #COLUMNS},
+     * and consider the cache complete, unless a write happened since the given generation or the
+     * products exceed the capacity.
+     */
+    synchronized void putAll(int generation, Cursor cursor) {
+        if (generation != mGeneration || mCapacity == 0 || cursor.getCount() > mCapacity) {
+            return;
+        }
+        mRecords.clear();
+        mMostRecent = null;
+        mLeastRecent = null;
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            Record record = Record.fromCursor(cursor);
+            mRecords.put(record.id, record);
+            moveToFront(record);
+        }
+        mComplete = true;
+        clearSorted();
+    }
+
+    /**
+     * Forget the product with the given _ID, which has been deleted. The cache stays complete.
+     */
+    synchronized void remove(long id) {
+        remove(new long[] { id }, 1);
+    }
+
+    /**
+     * Forget the products with the first given number of _IDs, which have been deleted together.
+     * The cache stays complete.
+     */
+    synchronized void remove(long[] ids, int count) {
+        mGeneration++;
+        mCompletedByPut = false;
+        for (int i = 0; i < count; i++) {
+            Record record = mRecords.get(ids[i]);
+            if (record != null) {
+                mRecords.remove(ids[i]);
+                unlink(record);
+            }
+        }
+        clearSorted();
+    }
+
+    /**
+     * Forget the product with the given _ID, which has been inserted or updated, so that it's read again.
+     * Return the generation to give back when storing it again.
+     */
+    synchronized int invalidate(long id) {
+        return invalidate(new long[] { id }, 1);
+    }
+
+    /**
+     * Forget the products with the first given number of _IDs, which have been updated together, so that
+     * they're read again all at once by {@link #putEach(int, Cursor)}.
+     * Return the generation to give back when storing them again.
+     */
+    synchronized int invalidate(long[] ids, int count) {
+        boolean wasComplete = mComplete;
+        remove(ids, count);
+        // Until they're read again, the products are missing from the cache.
+        mComplete = false;
+        mCompletedByPut = wasComplete;
+        return mGeneration;
+    }
+
+    /**
+     * Consider that products have been added to the database, the ones in memory still being valid.
+     */
+    synchronized void invalidateList() {
+        mGeneration++;
+        mComplete = false;
+        mCompletedByPut = false;
+        clearSorted();
+    }
+
+    /**
+     * Forget all the products, as an unknown set of them has changed.
+     */
+    synchronized void invalidateAll() {
+        mGeneration++;
+        mComplete = false;
+        mCompletedByPut = false;
+        mRecords.clear();
+        mMostRecent = null;
+        mLeastRecent = null;
+        clearSorted();
+    }
+
+    private Record[] getSorted(boolean sortByName) {
+        Record[] sorted = sortByName ? mSortedByName : mSortedById;
+        if (sorted == null) {
+            sorted = new Record[mRecords.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = mRecords.valueAt(i);
+            }
+            // The records are already sorted by _ID in the sparse array.
+            if (sortByName) {
+                Arrays.sort(sorted, ORDER_BY_NAME);
+                mSortedByName = sorted;
+            } else {
+                mSortedById = sorted;
+            }
+        }
+        return sorted;
+    }
+
+    private void clearSorted() {
+        mSortedById = null;
+        mSortedByName = null;
+    }
+
+    private void moveToFront(Record record) {
+        if (record == mMostRecent) {
+            return;
+        }
+        unlink(record);
+        record.next = mMostRecent;
+        if (mMostRecent != null) {
+            mMostRecent.previous = record;
+        }
+        mMostRecent = record;
+        if (mLeastRecent == null) {
+            mLeastRecent = record;
+        }
+    }
+
+    private void unlink(Record record) {
+        if (record.previous != null) {
+            record.previous.next = record.next;
+        } else if (mMostRecent == record) {
+            mMostRecent = record.next;
+        }
+        if (record.next != null) {
+            record.next.previous = record.previous;
+        } else if (mLeastRecent == record) {
+            mLeastRecent = record.previous;
+        }
+        record.previous = null;
+        record.next = null;
+    }
+
+    /**
+     * Return a cursor holding the given columns of the records within the given range.
+     */
+    private static Cursor toCursor(String[] projection, Record[] records, int start, int end) {
+        String[] columns = projection != null ? projection : COLUMNS;
+        int[] columnIndexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnIndexes[i] = indexOf(columns[i]);
+        }
+        MatrixCursor cursor = new MatrixCursor(columns, end - start);
+        for (int i = start; i < end; i++) {
+            Object[] row = new Object[columns.length];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = records[i].get(columnIndexes[j]);
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private static int indexOf(String column) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare two texts like the NOCASE collation of SQLite, which only folds the case of ASCII letters.
+     */
+    static int compareNoCase(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char charA = a.charAt(i);
+            char charB = b.charAt(i);
+            if (charA >= 'A' && charA <= 'Z') {
+                charA += 'a' - 'A';
+            }
+            if (charB >= 'A' && charB <= 'Z') {
+                charB += 'a' - 'A';
+            }
+            if (charA != charB) {
+                return charA - charB;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Return whether the given text starts with the given prefix, folding the case of ASCII letters only
+     * like the LIKE operator of SQLite.
+     */
+    static boolean startsWithNoCase(String text, String prefix) {
+        return text.length() >= prefix.length()
+                && compareNoCase(text.substring(0, prefix.length()), prefix) == 0;
+    }
+
+    /**
+     * Cached product, with its numbers kept as primitives, linked to the products used right before and after it.
+     */
+    private static class Record {
+        long id;
+        String name;
+        int unitPrice;
+        int quantity;
+        String imagePath;
+        String supplierName;
+        String supplierEmail;
+        int reorderThreshold;
+
+        Record previous;
+        Record next;
+
+        static Record fromCursor(Cursor cursor) {
+            Record record = new Record();
+            record.id = cursor.getLong(cursor.getColumnIndexOrThrow(ProductEntry._ID));
+            record.name = cursor.getString(cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_NAME));
+            record.unitPrice = cursor.getInt(cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE));
+            record.quantity = cursor.getInt(cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_QUANTITY));
+            record.imagePath = cursor.getString(cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH));
+            record.supplierName = cursor.getString(
+                    cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME));
+            record.supplierEmail = cursor.getString(
+                    cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL));
+            record.reorderThreshold = cursor.getInt(
+                    cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD));
+            return record;
+        }
+
+        /**
+         * Return the value of the column with the given index in {@link #COLUMNS}.
+         */
+        Object get(int columnIndex) {
+            switch (columnIndex) {
+                case 0:
+                    return id;
+                case 1:
+                    return name;
+                case 2:
+                    return unitPrice;
+                case 3:
+                    return quantity;
+                case 4:
+                    return imagePath;
+                case 5:
+                    return supplierName;
+                case 6:
+                    return supplierEmail;
+                default:
+                    return reorderThreshold;
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.text.TextUtils;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Coalesces the change notifications of {@link ProductProvider}.
+ * All the changes requested within a time window are collapsed into a single notification per URI,
+ * sent at the end of the window. When a single product is the only one that has changed during
+ * the window, its own URI (products/#) is notified rather than the whole products URI.
+ */
+public class ProductChangeNotifier {
+
+    /** Default duration of the window in which the changes are collapsed, in milliseconds */
+    public static final long DEFAULT_WINDOW_MILLIS = 100;
+
+    /** Value of {@link #mPendingRowId} when no single product has changed */
+    private static final long NO_ROW = -1;
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler;
+    private final Object mLock = new Object();
+
+    /** Duration of the coalescing window, in milliseconds */
+    private volatile long mWindowMillis;
+
+    /** URIs waiting to be notified at the end of the current window, guarded by mLock */
+    private final LinkedHashSet<Uri> mPendingUris = new LinkedHashSet<>();
+
+    /** ID of the only product that has changed during the current window, guarded by mLock */
+    private long mPendingRowId = NO_ROW;
+
+    /** Whether the end of the current window is already scheduled, guarded by mLock */
+    private boolean mFlushScheduled;
+
+    /** Number of notifications requested, and actually sent to the content resolver */
+    private long mRequestedCount;
+    private long mSentCount;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Constructs a new {@link ProductChangeNotifier}.
+     *
+     * @param resolver     The content resolver to notify
+     * @param windowMillis The duration of the coalescing window, in milliseconds
+     */
+    public ProductChangeNotifier(ContentResolver resolver, long windowMillis) {
+        mResolver = resolver;
+        mWindowMillis = windowMillis;
+        HandlerThread thread = new HandlerThread(ProductChangeNotifier.class.getSimpleName(),
+                Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Set the duration of the coalescing window. A window of 0 sends every notification right away.
+     */
+    public void setWindowMillis(long windowMillis) {
+        mWindowMillis = windowMillis;
+    }
+
+    public long getWindowMillis() {
+        return mWindowMillis;
+    }
+
+    /**
+     * Request a notification that the data at the given URI has changed.
+     */
+    public void notifyChange(Uri uri) {
+        synchronized (mLock) {
+            mRequestedCount++;
+            if (isProductUri(uri)) {
+                long id = ContentUris.parseId(uri);
+                if (mPendingUris.contains(ProductEntry.CONTENT_URI)) {
+                    // The change is already covered by the notification of the whole list.
+                } else if (mPendingRowId == NO_ROW || mPendingRowId == id) {
+                    mPendingRowId = id;
+                } else {
+                    // Several products have changed, so the whole list is notified instead.
+                    mPendingRowId = NO_ROW;
+                    mPendingUris.add(ProductEntry.CONTENT_URI);
+                }
+            } else {
+                if (uri.equals(ProductEntry.CONTENT_URI)) {
+                    // The products URI covers any single product that has changed.
+                    mPendingRowId = NO_ROW;
+                }
+                mPendingUris.add(uri);
+            }
+
+            if (mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+
+        long windowMillis = mWindowMillis;
+        if (windowMillis > 0) {
+            mHandler.postDelayed(mFlushRunnable, windowMillis);
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Send the notifications collected during the current window.
+     */
+    public void flush() {
+        Uri[] uris;
+        long rowId;
+        synchronized (mLock) {
+            uris = mPendingUris.toArray(new Uri[mPendingUris.size()]);
+            rowId = mPendingRowId;
+            mPendingUris.clear();
+            mPendingRowId = NO_ROW;
+            // Cancel the scheduled end of the window before another one can be scheduled, so that
+            // a change requested right after this flush is never left without a flush to send it.
+            mHandler.removeCallbacks(mFlushRunnable);
+            mFlushScheduled = false;
+            mSentCount += uris.length + (rowId != NO_ROW ? 1 : 0);
+        }
+
+        if (rowId != NO_ROW) {
+            mResolver.notifyChange(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, rowId), null);
+        }
+        for (Uri uri : uris) {
+            mResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Return the number of notifications requested so far.
+     */
+    public long getRequestedCount() {
+        synchronized (mLock) {
+            return mRequestedCount;
+        }
+    }
+
+    /**
+     * Return the number of notifications actually sent so far.
+     */
+    public long getSentCount() {
+        synchronized (mLock) {
+            return mSentCount;
+        }
+    }
+
+    /**
+     * Return the number of notifications that were collapsed into other ones, and never sent on their own.
+     */
+    public long getSuppressedCount() {
+        synchronized (mLock) {
+            return mRequestedCount - mSentCount - mPendingUris.size() - (mPendingRowId != NO_ROW ? 1 : 0);
+        }
+    }
+
+    /**
+     * Tell whether the given URI is the URI of a single product.
+     */
+    private static boolean isProductUri(Uri uri) {
+        return ProductContract.CONTENT_AUTHORITY.equals(uri.getAuthority())
+                && uri.getPathSegments().size() == 2
+                && ProductContract.PATH_PRODUCTS.equals(uri.getPathSegments().get(0))
+                && TextUtils.isDigitsOnly(uri.getLastPathSegment());
+    }
+}
@@ -15,6 +15,201 @@ public final class ProductContract {
     public static final String CONTENT_AUTHORITY = "com.example.android.inventorymanager";
     public static final Uri BASE_CONTENT_URI = Uri.parse("content://" + CONTENT_AUTHORITY);
     public static final String PATH_PRODUCTS = "products";
+    public static final String PATH_SEARCH = "search";
+    public static final String PATH_STATS = "stats";
+    public static final String PATH_SUPPLIERS = "suppliers";
+    public static final String PATH_IMPORTS = "imports";
+
+    /**
+     * Name of the provider method selling units of a product in a single conditional write.
+     * The argument of the call is the _ID of the product, and the number of units to sell
+     * can be given with {@link #EXTRA_UNITS} (1 unit by default).
+     * The sale only happens if enough units are in stock.
+     */
+    public static final String METHOD_SELL = "sell";
+
+    /** Extra holding the number of units involved in a stock operation. Type: int */
+    public static final String EXTRA_UNITS = "units";
+
+    /** Extra telling whether a sale has been executed or not. Type: boolean */
+    public static final String EXTRA_SOLD = "sold";
+
+    /**
+     * Extra holding the stock level of a product once a stock operation is done,
+     * or -1 if the product doesn't exist. Type: long
+     */
+    public static final String EXTRA_QUANTITY = "quantity";
+
+    /**
+     * Name of the provider method returning, in {@link #EXTRA_QUANTITY}, the stock level a product had
+     * at the time given by {@link #EXTRA_TIMESTAMP}. The argument of the call is the _ID of the product.
+     * Past the retention of the stock movements, the stock level is the one at the end of the previous day.
+     */
+    public static final String METHOD_STOCK_AT = "stock_at";
+
+    /**
+     * Name of the provider method rolling the stock movements older than the day of the time given by
+     * {@link #EXTRA_TIMESTAMP} into per-day snapshots, the retention of the stock movements
+     * being applied without it. The number of rolled movements is returned in {@link #EXTRA_ROW_COUNT}.
+     */
+    public static final String METHOD_COMPACT_STOCK_MOVEMENTS = "compact_stock_movements";
+
+    /**
+     * Name of the provider method writing a binary snapshot of all the products to the document whose URI
+     * is the argument of the call, deflated if {@link #EXTRA_DEFLATE} is true. The number of products written
+     * is returned in {@link #EXTRA_ROW_COUNT}, or -1 if the snapshot couldn't be written.
+     */
+    public static final String METHOD_BACKUP_PRODUCTS = "backup_products";
+
+    /**
+     * Name of the provider method replacing all the products with the ones of the binary snapshot whose URI
+     * is the argument of the call. The number of products restored is returned in {@link #EXTRA_ROW_COUNT},
+     * or -1 if the snapshot couldn't be read or holds an invalid product, in which case the products are
+     * left unchanged.
+     */
+    public static final String METHOD_RESTORE_PRODUCTS = "restore_products";
+
+    /**
+     * Name of the provider method collecting the pending reorders of the {@link ReorderEntry} queue into one
+     * purchase order per supplier. The purchase orders are returned in {@link #EXTRA_PURCHASE_ORDERS},
+     * and the number of reordered products in {@link #EXTRA_ROW_COUNT}.
+     * The reorders stay in the queue until their purchase order is acknowledged with
+     * {@link #METHOD_ACKNOWLEDGE_REORDERS}, so that a purchase order which never reached the user is
+     * collected again.
+     */
+    public static final String METHOD_COLLECT_REORDERS = "collect_reorders";
+
+    /**
+     * Name of the provider method removing from the {@link ReorderEntry} queue the products of a purchase
+     * order once it has been sent, given by its {@link #EXTRA_PRODUCT_IDS} and {@link #EXTRA_TIMESTAMP}.
+     * The products queued again since the purchase order was collected come later in the sequence of the
+     * queue, so they stay in it.
+     * The number of removed products is returned in {@link #EXTRA_ROW_COUNT}.
+     */
+    public static final String METHOD_ACKNOWLEDGE_REORDERS = "acknowledge_reorders";
+
+    /**
+     * Extra holding the purchase orders, one bundle per supplier holding its {@link #EXTRA_SUPPLIER_ID},
+     * {@link #EXTRA_SUPPLIER_NAME} and {@link #EXTRA_SUPPLIER_EMAIL}, then the {@link #EXTRA_PRODUCT_IDS},
+     * {@link #EXTRA_PRODUCT_NAMES}, {@link #EXTRA_QUANTITIES} and {@link #EXTRA_REORDER_THRESHOLDS} of its
+     * products, in the same order, and in {@link #EXTRA_TIMESTAMP} the {@link ReorderEntry#COLUMN_SEQUENCE}
+     * of the last of them to be queued, rather than a time. Type: ArrayList of Bundle
+     */
+    public static final String EXTRA_PURCHASE_ORDERS = "purchase_orders";
+
+    /** Extra holding the _ID of the supplier of a purchase order. Type: long */
+    public static final String EXTRA_SUPPLIER_ID = "supplier_id";
+
+    /** Extras holding the name and email of the supplier of a purchase order. Type: String */
+    public static final String EXTRA_SUPPLIER_NAME = "supplier_name";
+    public static final String EXTRA_SUPPLIER_EMAIL = "supplier_email";
+
+    /** Extra holding the _IDs of the products of a purchase order. Type: long[] */
+    public static final String EXTRA_PRODUCT_IDS = "product_ids";
+
+    /** Extra holding the names of the products of a purchase order. Type: ArrayList of String */
+    public static final String EXTRA_PRODUCT_NAMES = "product_names";
+
+    /** Extra holding the stock levels of the products of a purchase order. Type: ArrayList of Integer */
+    public static final String EXTRA_QUANTITIES = "quantities";
+
+    /** Extra holding the reorder thresholds of the products of a purchase order. Type: ArrayList of Integer */
+    public static final String EXTRA_REORDER_THRESHOLDS = "reorder_thresholds";
+
+    /**
+     * Name of the provider method applying the same action to several products in a single transaction,
+     * the listeners being notified once for all of them. The argument of the call is one of the BATCH_
+     * actions, and the products are given by their _IDs in {@link #EXTRA_IDS}. Restocking and selling take
+     * their number of units per product from {@link #EXTRA_UNITS}, the products without enough units in stock
+     * being left unsold, and the new price is given by {@link #EXTRA_UNIT_PRICE}.
+     * The number of products changed is returned in {@link #EXTRA_ROW_COUNT}.
+     */
+    public static final String METHOD_BATCH_PRODUCTS = "batch_products";
+
+    /** Possible actions of {@link #METHOD_BATCH_PRODUCTS} */
+    public static final String BATCH_RESTOCK = "restock";
+    public static final String BATCH_SELL = "sell";
+    public static final String BATCH_SET_UNIT_PRICE = "set_unit_price";
+    public static final String BATCH_DELETE = "delete";
+
+    /** Extra holding the _IDs of the products of a batch. Type: long[] */
+    public static final String EXTRA_IDS = "ids";
+
+    /** Extra holding the unit price given to the products of a batch. Type: int */
+    public static final String EXTRA_UNIT_PRICE = "unit_price";
+
+    /** Extra telling whether a snapshot is deflated. Type: boolean */
+    public static final String EXTRA_DEFLATE = "deflate";
+
+    /** Extra holding a time, in milliseconds since the epoch. Type: long */
+    public static final String EXTRA_TIMESTAMP = "timestamp";
+
+    /** Extra holding the number of rows written by a provider method. Type: int */
+    public static final String EXTRA_ROW_COUNT = "row_count";
+
+    /**
+     * Name of the provider method returning the metrics of the operations run by the provider since it started,
+     * or since they were last reset with {@link #EXTRA_RESET}. The result holds, for each operation run so far,
+     * a bundle of METRIC_ values keyed by the name of the operation and of its URI, such as "query products/#"
+     * or "sell", along with {@link #EXTRA_NOTIFICATIONS_REQUESTED} and {@link #EXTRA_NOTIFICATIONS_SENT}.
+     * The same metrics are printed by "adb shell dumpsys activity provider ProductProvider".
+     */
+    public static final String METHOD_METRICS = "metrics";
+
+    /** Extra telling whether the metrics are reset once returned. Type: boolean */
+    public static final String EXTRA_RESET = "reset";
+
+    /** Extra holding the number of change notifications requested by the operations. Type: long */
+    public static final String EXTRA_NOTIFICATIONS_REQUESTED = "notifications_requested";
+
+    /** Extra holding the number of change notifications actually sent, once coalesced. Type: long */
+    public static final String EXTRA_NOTIFICATIONS_SENT = "notifications_sent";
+
+    /** Metrics of an operation: number of runs, of failed runs, and of rows read or written. Type: long */
+    public static final String METRIC_COUNT = "count";
+    public static final String METRIC_FAILURE_COUNT = "failure_count";
+    public static final String METRIC_ROW_COUNT = "row_count";
+
+    /** Metrics of an operation: mean, percentiles and maximum of its latency, in microseconds. Type: long */
+    public static final String METRIC_MEAN_MICROS = "mean_us";
+    public static final String METRIC_P50_MICROS = "p50_us";
+    public static final String METRIC_P90_MICROS = "p90_us";
+    public static final String METRIC_P99_MICROS = "p99_us";
+    public static final String METRIC_MAX_MICROS = "max_us";
+
+    /** Query parameter limiting the number of products returned by a query of the products URI */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /** Query parameter giving the number of products to skip before the returned ones */
+    public static final String QUERY_PARAMETER_OFFSET = "offset";
+
+    /**
+     * Query parameter giving the _ID of the last product of the previous page (keyset pagination).
+     * Without {@link #QUERY_PARAMETER_AFTER_NAME}, the products are sorted by _ID.
+     */
+    public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+
+    /**
+     * Query parameter giving the name of the last product of the previous page (keyset pagination).
+     * It requires {@link #QUERY_PARAMETER_AFTER_ID}, and sorts the products by name then _ID.
+     */
+    public static final String QUERY_PARAMETER_AFTER_NAME = "after_name";
+
+    /**
+     * Query parameter giving the text searched in the names and supplier names of the products.
+     * Each word of the text matches the words starting with it.
+     */
+    public static final String QUERY_PARAMETER_SEARCH = "q";
+
+    /**
+     * Query parameters of a bulk insert of the products URI which is a batch of an import, giving the URI and
+     * size of the imported document and the number of its records read so far. They're written to the
+     * {@link ImportEntry} table in the same transaction as the products, so the position can't be lost or
+     * get ahead of the written products.
+     */
+    public static final String QUERY_PARAMETER_IMPORT_DOCUMENT = "import_document";
+    public static final String QUERY_PARAMETER_IMPORT_SIZE = "import_size";
+    public static final String QUERY_PARAMETER_IMPORT_RECORD_COUNT = "import_record_count";
 
     /**
      * Inner class that defines constant values for the products database table.
@@ -25,6 +220,18 @@ public final class ProductContract {
         /** The content URI to access the product data in the provider */
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_PRODUCTS);
 
+        /**
+         * The content URI to search the products in the provider, the products whose name matches
+         * coming first. Its notification URI is the {@link #CONTENT_URI}.
+         */
+        public static final Uri SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * The content URI to read the totals of the inventory, as a single row of {@link StatsEntry} columns.
+         * Its notification URI is the {@link #CONTENT_URI}.
+         */
+        public static final Uri STATS_URI = Uri.withAppendedPath(CONTENT_URI, PATH_STATS);
+
         /**
          * The MIME type of the {@link #CONTENT_URI} for a list of products.
          */
@@ -37,6 +244,12 @@ public final class ProductContract {
         public static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_PRODUCTS;
 
+        /**
+         * The MIME type of the {@link #STATS_URI} for the totals of the inventory.
+         */
+        public static final String CONTENT_STATS_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+
         /** Name of database table for products */
         public final static String TABLE_NAME = "products";
 
@@ -76,17 +289,355 @@ public final class ProductContract {
         public final static String COLUMN_PRODUCT_IMAGE_PATH = "image";
 
         /**
-         * Name of the supplier of the product.
+         * _ID of the supplier of the product in the {@link SupplierEntry} table.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_SUPPLIER_ID = "supplier_id";
+
+        /**
+         * Name of the supplier of the product, read from the {@link SupplierEntry} table.
+         * It's written along with {@link #COLUMN_PRODUCT_SUPPLIER_EMAIL}, the product being linked to
+         * the supplier with both, which is added if there is none yet.
          *
          * Type: TEXT
          */
         public final static String COLUMN_PRODUCT_SUPPLIER_NAME = "supplier_name";
 
         /**
-         * Email of the supplier of the product.
+         * Email of the supplier of the product, read from the {@link SupplierEntry} table.
+         * It's written along with {@link #COLUMN_PRODUCT_SUPPLIER_NAME}.
          *
          * Type: TEXT
          */
         public final static String COLUMN_PRODUCT_SUPPLIER_EMAIL = "supplier_email";
+
+        /**
+         * Stock level below which the product is queued for reordering, 0 for a product which is never
+         * reordered (the default).
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_REORDER_THRESHOLD = "reorder_threshold";
+
+        /** Sort order of the products by _ID, used by the keyset pagination on _ID */
+        public static final String SORT_ORDER_ID = _ID;
+
+        /** Sort order of the products by name, used by the keyset pagination on name */
+        public static final String SORT_ORDER_NAME = COLUMN_PRODUCT_NAME + " COLLATE NOCASE, " + _ID;
+
+        /**
+         * Build the URI of the page of products following the product with the given _ID,
+         * the products being sorted by _ID.
+         */
+        public static Uri buildPageUri(int limit, long afterId) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId))
+                    .build();
+        }
+
+        /**
+         * Build the URI of the page of products following the product with the given name and _ID,
+         * the products being sorted by name then _ID.
+         */
+        public static Uri buildPageUri(int limit, String afterName, long afterId) {
+            return buildPageUri(limit, afterId).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_AFTER_NAME, afterName)
+                    .build();
+        }
+
+        /**
+         * Build the URI of the page of products starting at the given position, when the key of
+         * the previous product is unknown.
+         */
+        public static Uri buildOffsetPageUri(int limit, int offset) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .appendQueryParameter(QUERY_PARAMETER_OFFSET, String.valueOf(offset))
+                    .build();
+        }
+
+        /**
+         * Build the URI searching the products for the given text, returning at most the given number of them.
+         */
+        public static Uri buildSearchUri(String text, int limit) {
+            return SEARCH_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SEARCH, text)
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Build the URI bulk inserting a batch of the import of the given document, which saves the number
+         * of records of the document read once the batch is written.
+         */
+        public static Uri buildImportBatchUri(Uri documentUri, long documentSize, long recordCount) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_IMPORT_DOCUMENT, documentUri.toString())
+                    .appendQueryParameter(QUERY_PARAMETER_IMPORT_SIZE, String.valueOf(documentSize))
+                    .appendQueryParameter(QUERY_PARAMETER_IMPORT_RECORD_COUNT, String.valueOf(recordCount))
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the suppliers database table.
+     * Each entry in the table is a supplier, shared by all the products it supplies, and deleted along with
+     * the last of them. Deleting suppliers through the provider only deletes the ones without products.
+     */
+    public static final class SupplierEntry implements BaseColumns {
+
+        /** The content URI to access the supplier data in the provider */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of suppliers.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single supplier.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /** Name of database table for suppliers */
+        public final static String TABLE_NAME = "suppliers";
+
+        /**
+         * Unique ID number for the supplier (only for use in the database table).
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * Name of the supplier.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SUPPLIER_NAME = "name";
+
+        /**
+         * Email of the supplier. A supplier is identified by its name and email together.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SUPPLIER_EMAIL = "email";
+
+        /** Sort order of the suppliers by name */
+        public static final String SORT_ORDER_NAME = COLUMN_SUPPLIER_NAME + " COLLATE NOCASE, " + _ID;
+
+        /**
+         * Build the URI of the products of the supplier with the given _ID, as {@link ProductEntry} columns.
+         * Its notification URI is the {@link ProductEntry#CONTENT_URI}.
+         */
+        public static Uri buildProductsUri(long supplierId) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(supplierId))
+                    .appendPath(PATH_PRODUCTS)
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the stock movements database table.
+     * Each entry in the table is a change of the stock level of a product, the table being only appended to
+     * until its old entries are rolled into the {@link StockSnapshotEntry} table.
+     */
+    public static final class StockMovementEntry implements BaseColumns {
+
+        /** Name of database table for stock movements */
+        public final static String TABLE_NAME = "stock_movements";
+
+        /**
+         * Unique ID number for the movement (only for use in the database table).
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * _ID of the product whose stock level has changed.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_ID = "product_id";
+
+        /**
+         * Number of units added to the stock, negative when units were removed.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DELTA = "delta";
+
+        /**
+         * Reason of the movement, one of {@link #REASON_INITIAL}, {@link #REASON_SALE}, {@link #REASON_RESTOCK}
+         * or {@link #REASON_ADJUSTMENT}.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_REASON = "reason";
+
+        /**
+         * Time of the movement, in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_TIMESTAMP = "timestamp";
+
+        /** Possible values for the reason of a movement */
+        public static final String REASON_INITIAL = "initial";
+        public static final String REASON_SALE = "sale";
+        public static final String REASON_RESTOCK = "restock";
+        public static final String REASON_ADJUSTMENT = "adjustment";
+    }
+
+    /**
+     * Inner class that defines constant values for the stock snapshots database table.
+     * Each entry in the table is the stock level of a product at the end of a day in which it has changed.
+     */
+    public static final class StockSnapshotEntry {
+
+        /** Name of database table for stock snapshots */
+        public final static String TABLE_NAME = "stock_snapshots";
+
+        /**
+         * _ID of the product.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_ID = "product_id";
+
+        /**
+         * Day of the snapshot, in days since the epoch (UTC).
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DAY = "day";
+
+        /**
+         * Stock level of the product at the end of the day.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_QUANTITY = "quantity";
+    }
+
+    /**
+     * Inner class that defines constant values for the reorder queue database table.
+     * Each entry in the table is a product whose stock level has fallen below its reorder threshold.
+     * It's added by the same write as the stock level, and removed once the purchase order of the product
+     * has been sent or the product is back above its threshold.
+     */
+    public static final class ReorderEntry {
+
+        /** Name of database table for the reorder queue */
+        public final static String TABLE_NAME = "reorder_queue";
+
+        /**
+         * Position of the reorder in the queue, greater than the one of every reorder queued before it.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SEQUENCE = "sequence";
+
+        /**
+         * _ID of the product to reorder.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_ID = "product_id";
+
+        /**
+         * Time at which the stock level has fallen below the threshold, in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_TIMESTAMP = "timestamp";
+    }
+
+    /**
+     * Inner class that defines constant values for the import positions database table.
+     * Each entry in the table is an interrupted import of a document, with the number of its records whose
+     * products have been written, so that importing the document again resumes after them.
+     * It's written by the batches of the import and deleted once the whole document is imported.
+     */
+    public static final class ImportEntry {
+
+        /** The content URI to query and delete the import positions in the provider */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_IMPORTS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of import positions.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORTS;
+
+        /** Name of database table for import positions */
+        public final static String TABLE_NAME = "import_positions";
+
+        /**
+         * URI of the imported document.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_DOCUMENT_URI = "document_uri";
+
+        /**
+         * Size of the imported document in bytes, or -1 if it's unknown, telling whether the document
+         * has changed since the import was interrupted.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DOCUMENT_SIZE = "document_size";
+
+        /**
+         * Number of records of the document read, header included, whose products have been written.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_RECORD_COUNT = "record_count";
+    }
+
+    /**
+     * Inner class that defines constant values for the inventory statistics database table.
+     * Its single entry holds the totals of the products, kept up to date by each write of the products
+     * so that reading them doesn't scan the products.
+     */
+    public static final class StatsEntry {
+
+        /** Name of database table for inventory statistics */
+        public final static String TABLE_NAME = "inventory_stats";
+
+        /**
+         * Number of products.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_COUNT = "product_count";
+
+        /**
+         * Number of units in stock, all products included.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_TOTAL_UNITS = "total_units";
+
+        /**
+         * Value of the stock, the sum of the unit price times the stock level of each product.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_TOTAL_VALUE = "total_value";
+
+        /**
+         * Number of products out of stock.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_OUT_OF_STOCK_COUNT = "out_of_stock_count";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.v4.content.AsyncTaskLoader;
+
+/**
+ * Base of the loaders of the products, which works like a CursorLoader but leaves the closing of the
+ * delivered cursors to the receiver of the results: a delivered cursor may still be displayed while the
+ * changes with the next one are computed, so only the receiver knows when it can be closed.
+ * The loader only closes the cursors that never reached the receiver.
+ */
+public abstract class ProductCursorLoader extends AsyncTaskLoader<Cursor> {
+
+    /** Observer reloading the cursor on any change of the products, to be registered on the loaded cursors */
+    protected final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+
+    /** Last loaded cursor */
+    private Cursor mCursor;
+
+    /** Last cursor delivered to the receiver of the results */
+    private Cursor mDeliveredCursor;
+
+    protected ProductCursorLoader(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void deliverResult(Cursor cursor) {
+        if (isReset()) {
+            // An async query came in while the loader is stopped
+            if (cursor != null) {
+                cursor.close();
+            }
+            return;
+        }
+        Cursor oldCursor = mCursor;
+        // Remember whether the replaced cursor reached the receiver, before the new one is delivered.
+        boolean oldCursorDelivered = oldCursor == mDeliveredCursor;
+        mCursor = cursor;
+
+        if (isStarted()) {
+            mDeliveredCursor = cursor;
+            super.deliverResult(cursor);
+        }
+
+        // Only a cursor that never reached the receiver is closed here, the receiver closing the other ones.
+        if (oldCursor != null && oldCursor != cursor && !oldCursorDelivered && !oldCursor.isClosed()) {
+            oldCursor.close();
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mCursor != null) {
+            deliverResult(mCursor);
+        }
+        if (takeContentChanged() || mCursor == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        // Attempt to cancel the current load task if possible.
+        cancelLoad();
+    }
+
+    @Override
+    public void onCanceled(Cursor cursor) {
+        if (cursor != null && !cursor.isClosed()) {
+            cursor.close();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        // Ensure the loader is stopped
+        onStopLoading();
+
+        // A delivered cursor belongs to the receiver, which closes it once it doesn't display it anymore.
+        if (mCursor != null && mCursor != mDeliveredCursor && !mCursor.isClosed()) {
+            mCursor.close();
+        }
+        mCursor = null;
+        mDeliveredCursor = null;
+    }
+}
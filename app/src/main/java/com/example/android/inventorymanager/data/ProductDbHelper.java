@@ -1,10 +1,19 @@
 package com.example.android.inventorymanager.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
+import com.example.android.inventorymanager.data.ProductContract.ImportEntry;
 import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.ReorderEntry;
+import com.example.android.inventorymanager.data.ProductContract.StatsEntry;
+import com.example.android.inventorymanager.data.ProductContract.StockMovementEntry;
+import com.example.android.inventorymanager.data.ProductContract.StockSnapshotEntry;
+import com.example.android.inventorymanager.data.ProductContract.SupplierEntry;
 
 /**
  * Database helper for Products app. It manages database creation and version management.
@@ -16,7 +25,86 @@ public class ProductDbHelper extends SQLiteOpenHelper {
 
     /** Declaration of database name and initialisation of its version number */
     private static final String DATABASE_NAME = "warehouse.db";
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 10;
+
+    /** Size of the pages of a new database, in bytes */
+    private static final int PAGE_SIZE = 4096;
+
+    /** Size of the page cache of the connection, in kilobytes */
+    private static final int CACHE_SIZE_KB = 2048;
+
+    /** Number of pages in the write-ahead log after which a commit checkpoints it into the database */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    /** Size to which the write-ahead log file is truncated after a checkpoint, in bytes */
+    private static final int JOURNAL_SIZE_LIMIT = 4 * 1024 * 1024;
+
+    /** Names of the secondary indexes of the product table, added in version 2 */
+    public static final String INDEX_PRODUCT_NAME = "products_name_index";
+    public static final String INDEX_PRODUCT_QUANTITY = "products_quantity_index";
+
+    /** Name of the index of the products by supplier name, from version 2 to version 5 */
+    public static final String INDEX_PRODUCT_SUPPLIER_NAME = "products_supplier_name_index";
+
+    /** Name of the index of the products by supplier, added in version 6 */
+    public static final String INDEX_PRODUCT_SUPPLIER = "products_supplier_index";
+
+    /**
+     * Name of the full-text index of the names and supplier names of the products, added in version 3.
+     * Its docid is the _ID of the indexed product.
+     */
+    static final String FTS_TABLE_NAME = "products_fts";
+
+    /**
+     * Name of the view joining each product to its supplier, with the columns of {@link ProductEntry},
+     * added in version 6 and extended in version 7. The products are read through it, and written to the product table.
+     */
+    static final String VIEW_PRODUCTS_WITH_SUPPLIER = "products_with_supplier";
+
+    /**
+     * Name of the view the full-text index reads the indexed text from since version 6, the supplier
+     * names being in their own table. Its rowid column is the _ID of the product.
+     */
+    static final String VIEW_FTS_CONTENT = "products_fts_content";
+
+    /** Name of the index of the stock movements by product and time, added in version 4 */
+    static final String INDEX_STOCK_MOVEMENT_PRODUCT = "stock_movements_product_index";
+
+    /** SQL statement creating the product table, as it was in version 1 */
+    static final String SQL_CREATE_PRODUCTS_TABLE = "CREATE TABLE " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+            + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + " INTEGER NOT NULL DEFAULT 1, "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+            + ProductEntry.COLUMN_PRODUCT_IMAGE_PATH + " TEXT, "
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + " TEXT NOT NULL, "
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " TEXT NOT NULL);";
+
+    /** SQL statement creating the supplier table, added in version 6 */
+    static final String SQL_CREATE_SUPPLIERS_TABLE = "CREATE TABLE " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL, "
+            + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " TEXT NOT NULL, "
+            + "UNIQUE (" + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + "));";
+
+    /**
+     * Columns of the product table as it is since version 6, following its name in a CREATE TABLE statement.
+     * It's a compile-time constant, so that the benchmarks can create the table without loading this class.
+     */
+    static final String SQL_PRODUCTS_TABLE_COLUMNS = " ("
+            + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+            + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + " INTEGER NOT NULL DEFAULT 1, "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+            + ProductEntry.COLUMN_PRODUCT_IMAGE_PATH + " TEXT, "
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES "
+            + SupplierEntry.TABLE_NAME + " (" + SupplierEntry._ID + "));";
+
+    /** Context of the app, giving the path of the database */
+    private final Context mContext;
+
+    /** Whether the database uses a write-ahead log rather than a rollback journal */
+    private final boolean mWriteAheadLogging;
 
     /**
      * Constructs a new instance of {@link ProductDbHelper}.
@@ -24,33 +112,604 @@ public class ProductDbHelper extends SQLiteOpenHelper {
      * @param context of the app
      */
     public ProductDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructs a new instance of {@link ProductDbHelper} on the database with the given name,
+     * or on an in-memory database if the name is null.
+     */
+    ProductDbHelper(Context context, String databaseName) {
+        this(context, databaseName, true);
+    }
+
+    /**
+     * Constructs a new instance of {@link ProductDbHelper} on the database with the given name,
+     * with or without write-ahead logging.
+     */
+    ProductDbHelper(Context context, String databaseName, boolean writeAheadLogging) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        mContext = context;
+        mWriteAheadLogging = writeAheadLogging;
+    }
+
+    /**
+     * This method is called when the database connection is being configured, before the database
+     * is created or upgraded.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // The page size only applies to a database which doesn't have any table yet.
+        executePragma(db, "page_size = " + PAGE_SIZE);
+
+        // Log the writes ahead rather than journaling the overwritten pages, so that the readers of the
+        // catalog aren't blocked by a write, and a commit only appends to the log instead of syncing
+        // the journal and the database. An in-memory database doesn't support it.
+        if (mWriteAheadLogging && db.enableWriteAheadLogging()) {
+            // With a write-ahead log, a commit that isn't synced can be lost on power loss but can't
+            // corrupt the database, so only the checkpoints are synced.
+            executePragma(db, "synchronous = NORMAL");
+            executePragma(db, "wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES);
+            executePragma(db, "journal_size_limit = " + JOURNAL_SIZE_LIMIT);
+        } else if (!mWriteAheadLogging) {
+            // Don't let the platform pick the journal mode by default.
+            db.disableWriteAheadLogging();
+        }
+
+        // A negative cache size is in kilobytes rather than in pages.
+        executePragma(db, "cache_size = -" + CACHE_SIZE_KB);
+
+        // Don't let a product point to a supplier which doesn't exist.
+        db.setForeignKeyConstraintsEnabled(true);
     }
 
     /**
      * This method is called when the database is created for the first time.
+     * The table is created as it was in version 1, then goes through the same migrations as
+     * an upgraded database, so that both end up with the same schema.
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create a String that contains the SQL statement to create the product table
-        String SQL_CREATE_PRODUCTS_TABLE =  "CREATE TABLE " + ProductEntry.TABLE_NAME + " ("
-                + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
-                + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + " INTEGER NOT NULL DEFAULT 1, "
-                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
-                + ProductEntry.COLUMN_PRODUCT_IMAGE_PATH + " TEXT, "
-                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + " TEXT NOT NULL, "
-                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " TEXT NOT NULL);";
-
-        // Execute the SQL statement
+        // Execute the SQL statement creating the product table
         db.execSQL(SQL_CREATE_PRODUCTS_TABLE);
+
+        migrate(db, 1, DATABASE_VERSION);
     }
 
     /**
      * This is called when the database needs to be upgraded.
+     * It runs within a transaction, so a failed migration leaves the database at its old version.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+        migrate(db, oldVersion, newVersion);
+    }
+
+    /**
+     * Copy the pages of the write-ahead log into the database without waiting for its readers or writers,
+     * so that the log doesn't keep growing after a large write.
+     */
+    public void checkpoint() {
+        SQLiteDatabase db = getWritableDatabase();
+        if (db.isWriteAheadLoggingEnabled()) {
+            executePragma(db, "wal_checkpoint(PASSIVE)");
+        }
+    }
+
+    /**
+     * Open a read-only database with a single connection of its own, whose read transactions don't hold
+     * the primary connection that every write waits for, and see a single version of the database while
+     * the writes go on in the write-ahead log. The caller closes it.
+     * Return null for an in-memory database, which can't be opened twice.
+     */
+    SQLiteDatabase openSnapshotDatabase() {
+        if (getDatabaseName() == null) {
+            return null;
+        }
+        // Make sure the database is created and migrated before it's opened aside.
+        getWritableDatabase();
+        return SQLiteDatabase.openDatabase(mContext.getDatabasePath(getDatabaseName()).getPath(), null,
+                SQLiteDatabase.OPEN_READONLY);
+    }
+
+    /**
+     * Execute a PRAGMA statement. Some of them return a row, which execSQL() doesn't allow,
+     * so they're run as a query whose cursor is read then closed.
+     */
+    private static void executePragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Apply, in order, the migration steps bringing the database from the old to the new version.
+     * Each step only alters the schema in place, keeping the stored products.
+     */
+    private static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Log.i(LOG_TAG, "Migrating the database to version " + version);
+            switch (version) {
+                case 2:
+                    migrateToVersion2(db);
+                    break;
+                case 3:
+                    migrateToVersion3(db);
+                    break;
+                case 4:
+                    migrateToVersion4(db);
+                    break;
+                case 5:
+                    migrateToVersion5(db);
+                    break;
+                case 6:
+                    migrateToVersion6(db);
+                    break;
+                case 7:
+                    migrateToVersion7(db);
+                    break;
+                case 8:
+                    migrateToVersion8(db);
+                    break;
+                case 9:
+                    migrateToVersion9(db);
+                    break;
+                case 10:
+                    migrateToVersion10(db);
+                    break;
+                default:
+                    throw new IllegalStateException("No migration to the database version " + version);
+            }
+        }
+    }
+
+    /**
+     * Version 2: index the columns by which the products are sorted and filtered, so that sorting
+     * by name, filtering by supplier or finding the products out of stock don't scan the whole table.
+     */
+    private static void migrateToVersion2(SQLiteDatabase db) {
+        // The name index is case insensitive like the name sort order, and ends with the _ID as
+        // every SQLite index does, so it also serves the ties of the name sort order.
+        db.execSQL("CREATE INDEX " + INDEX_PRODUCT_NAME + " ON " + ProductEntry.TABLE_NAME
+                + " (" + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE);");
+        db.execSQL("CREATE INDEX " + INDEX_PRODUCT_SUPPLIER_NAME + " ON " + ProductEntry.TABLE_NAME
+                + " (" + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ");");
+        db.execSQL("CREATE INDEX " + INDEX_PRODUCT_QUANTITY + " ON " + ProductEntry.TABLE_NAME
+                + " (" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ");");
+    }
+
+    /**
+     * Create the secondary indexes of the product table, as they are since version 6.
+     */
+    static void createProductIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PRODUCT_NAME + " ON " + ProductEntry.TABLE_NAME
+                + " (" + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE);");
+        // The products of a supplier are found by its _ID, which also serves the join from the suppliers.
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PRODUCT_SUPPLIER + " ON " + ProductEntry.TABLE_NAME
+                + " (" + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PRODUCT_QUANTITY + " ON " + ProductEntry.TABLE_NAME
+                + " (" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ");");
+    }
+
+    /**
+     * Drop the secondary indexes of the product table, so that a large number of products can be
+     * written without updating them row by row. They must be created again with {@link #createProductIndexes}.
+     */
+    static void dropProductIndexes(SQLiteDatabase db) {
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_PRODUCT_NAME + ";");
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_PRODUCT_SUPPLIER + ";");
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_PRODUCT_QUANTITY + ";");
+    }
+
+    /**
+     * Version 3: add a full-text index of the names and supplier names of the products, so that
+     * searching them doesn't scan the whole table.
+     * The index doesn't store a copy of the text but reads it from the product table, and is kept
+     * in sync by triggers on the writes of the indexed columns only, so that the stock updates don't touch it.
+     */
+    private static void migrateToVersion3(SQLiteDatabase db) {
+        // The prefixes of 2 and 3 characters are indexed too, as they are the most frequent ones
+        // while typing and the most expensive ones to expand.
+        db.execSQL("CREATE VIRTUAL TABLE " + FTS_TABLE_NAME + " USING fts4("
+                + "content=\"" + ProductEntry.TABLE_NAME + "\", "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + "tokenize=unicode61, prefix=\"2,3\");");
+
+        String insertIndexedColumns = "INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ")"
+                + " VALUES (new." + ProductEntry._ID + ", new." + ProductEntry.COLUMN_PRODUCT_NAME
+                + ", new." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ");";
+        // The old text must still be in the product table to be removed from the index.
+        String deleteIndexedColumns = "DELETE FROM " + FTS_TABLE_NAME + " WHERE docid = old." + ProductEntry._ID + ";";
+        String indexedColumns = ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME;
+
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_after_insert AFTER INSERT ON " + ProductEntry.TABLE_NAME
+                + " BEGIN " + insertIndexedColumns + " END;");
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_before_update BEFORE UPDATE OF " + indexedColumns
+                + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + deleteIndexedColumns + " END;");
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_after_update AFTER UPDATE OF " + indexedColumns
+                + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + insertIndexedColumns + " END;");
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_before_delete BEFORE DELETE ON " + ProductEntry.TABLE_NAME
+                + " BEGIN " + deleteIndexedColumns + " END;");
+
+        // Index the products already stored.
+        db.execSQL("INSERT INTO " + FTS_TABLE_NAME + " (" + FTS_TABLE_NAME + ") VALUES ('rebuild');");
+    }
+
+    /**
+     * Version 4: add the ledger of the stock movements and the per-day snapshots its old movements are
+     * rolled into, so that the stock level of a product can be known at any time.
+     * The stock levels already stored become the initial movements of the ledger.
+     */
+    private static void migrateToVersion4(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + StockMovementEntry.TABLE_NAME + " ("
+                + StockMovementEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + StockMovementEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+                + StockMovementEntry.COLUMN_DELTA + " INTEGER NOT NULL, "
+                + StockMovementEntry.COLUMN_REASON + " TEXT NOT NULL, "
+                + StockMovementEntry.COLUMN_TIMESTAMP + " INTEGER NOT NULL);");
+        // The stock level at a time sums the movements of a single product up to that time.
+        db.execSQL("CREATE INDEX " + INDEX_STOCK_MOVEMENT_PRODUCT + " ON " + StockMovementEntry.TABLE_NAME
+                + " (" + StockMovementEntry.COLUMN_PRODUCT_ID + ", " + StockMovementEntry.COLUMN_TIMESTAMP + ");");
+
+        // The primary key serves the lookup of the last snapshot of a product before a day.
+        db.execSQL("CREATE TABLE " + StockSnapshotEntry.TABLE_NAME + " ("
+                + StockSnapshotEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+                + StockSnapshotEntry.COLUMN_DAY + " INTEGER NOT NULL, "
+                + StockSnapshotEntry.COLUMN_QUANTITY + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + StockSnapshotEntry.COLUMN_PRODUCT_ID + ", " + StockSnapshotEntry.COLUMN_DAY + "));");
+
+        createStockLedgerTriggers(db);
+
+        insertInitialStockMovements(db, System.currentTimeMillis());
+    }
+
+    /**
+     * Create the triggers of the product table keeping the stock ledger in sync.
+     */
+    private static void createStockLedgerTriggers(SQLiteDatabase db) {
+        // The history of a product goes away with it.
+        db.execSQL("CREATE TRIGGER " + StockMovementEntry.TABLE_NAME + "_after_product_delete AFTER DELETE ON "
+                + ProductEntry.TABLE_NAME + " BEGIN "
+                + "DELETE FROM " + StockMovementEntry.TABLE_NAME
+                + " WHERE " + StockMovementEntry.COLUMN_PRODUCT_ID + " = old." + ProductEntry._ID + "; "
+                + "DELETE FROM " + StockSnapshotEntry.TABLE_NAME
+                + " WHERE " + StockSnapshotEntry.COLUMN_PRODUCT_ID + " = old." + ProductEntry._ID + "; "
+                + "END;");
+    }
+
+    /**
+     * Append the stock levels of all the products to the stock ledger, as their initial movements at the given time.
+     */
+    static void insertInitialStockMovements(SQLiteDatabase db, long timestamp) {
+        db.execSQL("INSERT INTO " + StockMovementEntry.TABLE_NAME + " ("
+                + StockMovementEntry.COLUMN_PRODUCT_ID + ", " + StockMovementEntry.COLUMN_DELTA + ", "
+                + StockMovementEntry.COLUMN_REASON + ", " + StockMovementEntry.COLUMN_TIMESTAMP + ")"
+                + " SELECT " + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", '"
+                + StockMovementEntry.REASON_INITIAL + "', ? FROM " + ProductEntry.TABLE_NAME
+                + " WHERE " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " != 0;",
+                new Object[] { timestamp });
+    }
+
+    /**
+     * Version 5: add the totals of the inventory, in a single row kept up to date by triggers applying
+     * the difference between the old and the new values of each written product, so that reading them
+     * doesn't scan the products.
+     */
+    private static void migrateToVersion5(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + StatsEntry.TABLE_NAME + " ("
+                + StatsEntry.COLUMN_PRODUCT_COUNT + " INTEGER NOT NULL, "
+                + StatsEntry.COLUMN_TOTAL_UNITS + " INTEGER NOT NULL, "
+                + StatsEntry.COLUMN_TOTAL_VALUE + " INTEGER NOT NULL, "
+                + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " INTEGER NOT NULL);");
+
+        createStatsTriggers(db);
+
+        // Compute the totals of the products already stored, which is the only scan of the products.
+        String quantity = ProductEntry.COLUMN_PRODUCT_QUANTITY;
+        String unitPrice = ProductEntry.COLUMN_PRODUCT_UNIT_PRICE;
+        db.execSQL("INSERT INTO " + StatsEntry.TABLE_NAME + " SELECT COUNT(*), "
+                + "COALESCE(SUM(" + quantity + "), 0), "
+                + "COALESCE(SUM(" + unitPrice + " * " + quantity + "), 0), "
+                + "COALESCE(SUM(" + quantity + " = 0), 0) FROM " + ProductEntry.TABLE_NAME + ";");
+    }
+
+    /**
+     * Create the triggers of the product table keeping the totals of the inventory up to date.
+     */
+    private static void createStatsTriggers(SQLiteDatabase db) {
+        String quantity = ProductEntry.COLUMN_PRODUCT_QUANTITY;
+        String unitPrice = ProductEntry.COLUMN_PRODUCT_UNIT_PRICE;
+        db.execSQL("CREATE TRIGGER " + StatsEntry.TABLE_NAME + "_after_insert AFTER INSERT ON "
+                + ProductEntry.TABLE_NAME + " BEGIN UPDATE " + StatsEntry.TABLE_NAME + " SET "
+                + StatsEntry.COLUMN_PRODUCT_COUNT + " = " + StatsEntry.COLUMN_PRODUCT_COUNT + " + 1, "
+                + StatsEntry.COLUMN_TOTAL_UNITS + " = " + StatsEntry.COLUMN_TOTAL_UNITS + " + new." + quantity + ", "
+                + StatsEntry.COLUMN_TOTAL_VALUE + " = " + StatsEntry.COLUMN_TOTAL_VALUE
+                + " + new." + unitPrice + " * new." + quantity + ", "
+                + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " = " + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT
+                + " + (new." + quantity + " = 0); END;");
+        // The names and images of the products don't change the totals, so their updates don't touch them.
+        db.execSQL("CREATE TRIGGER " + StatsEntry.TABLE_NAME + "_after_update AFTER UPDATE OF "
+                + unitPrice + ", " + quantity + " ON " + ProductEntry.TABLE_NAME
+                + " BEGIN UPDATE " + StatsEntry.TABLE_NAME + " SET "
+                + StatsEntry.COLUMN_TOTAL_UNITS + " = " + StatsEntry.COLUMN_TOTAL_UNITS
+                + " + new." + quantity + " - old." + quantity + ", "
+                + StatsEntry.COLUMN_TOTAL_VALUE + " = " + StatsEntry.COLUMN_TOTAL_VALUE
+                + " + new." + unitPrice + " * new." + quantity + " - old." + unitPrice + " * old." + quantity + ", "
+                + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " = " + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT
+                + " + (new." + quantity + " = 0) - (old." + quantity + " = 0); END;");
+        db.execSQL("CREATE TRIGGER " + StatsEntry.TABLE_NAME + "_after_delete AFTER DELETE ON "
+                + ProductEntry.TABLE_NAME + " BEGIN UPDATE " + StatsEntry.TABLE_NAME + " SET "
+                + StatsEntry.COLUMN_PRODUCT_COUNT + " = " + StatsEntry.COLUMN_PRODUCT_COUNT + " - 1, "
+                + StatsEntry.COLUMN_TOTAL_UNITS + " = " + StatsEntry.COLUMN_TOTAL_UNITS + " - old." + quantity + ", "
+                + StatsEntry.COLUMN_TOTAL_VALUE + " = " + StatsEntry.COLUMN_TOTAL_VALUE
+                + " - old." + unitPrice + " * old." + quantity + ", "
+                + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " = " + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT
+                + " - (old." + quantity + " = 0); END;");
+    }
+
+    /**
+     * Version 6: move the suppliers into their own table, each product pointing to its supplier by _ID,
+     * so that the name and email of a supplier are stored once rather than in each of its products,
+     * and the products of a supplier are found through an integer index.
+     * The products are read through a view joining them to their supplier, which keeps the columns of
+     * {@link ProductEntry}, and the full-text index reads the supplier names through another one.
+     */
+    private static void migrateToVersion6(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_SUPPLIERS_TABLE);
+        db.execSQL("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + ")"
+                + " SELECT DISTINCT " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " FROM " + ProductEntry.TABLE_NAME + ";");
+
+        // SQLite can't drop a column, so the products are copied into a new table, keeping their _ID.
+        String newTableName = ProductEntry.TABLE_NAME + "_new";
+        String copiedColumns = ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                + ProductEntry.COLUMN_PRODUCT_IMAGE_PATH;
+        db.execSQL("CREATE TABLE " + newTableName + SQL_PRODUCTS_TABLE_COLUMNS);
+        db.execSQL("INSERT INTO " + newTableName
+                + " (" + copiedColumns + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ")"
+                + " SELECT " + qualify(ProductEntry.TABLE_NAME, copiedColumns) + ", "
+                + SupplierEntry.TABLE_NAME + "." + SupplierEntry._ID
+                + " FROM " + ProductEntry.TABLE_NAME + " JOIN " + SupplierEntry.TABLE_NAME
+                + " ON " + SupplierEntry.TABLE_NAME + "." + SupplierEntry.COLUMN_SUPPLIER_NAME
+                + " = " + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME
+                + " AND " + SupplierEntry.TABLE_NAME + "." + SupplierEntry.COLUMN_SUPPLIER_EMAIL
+                + " = " + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + ";");
+
+        // The _IDs of the deleted products must not be given again, as the caches and thumbnails are keyed by them.
+        long lastProductId = DatabaseUtils.longForQuery(db, "SELECT COALESCE((SELECT seq FROM sqlite_sequence"
+                + " WHERE name = ?), 0)", new String[] { ProductEntry.TABLE_NAME });
+
+        // Dropping the old table drops its indexes and triggers without firing them, so the stock ledger and
+        // the totals are left as they are. The full-text index is created again on the supplier names.
+        db.execSQL("DROP TABLE " + ProductEntry.TABLE_NAME + ";");
+        db.execSQL("DROP TABLE " + FTS_TABLE_NAME + ";");
+        db.execSQL("ALTER TABLE " + newTableName + " RENAME TO " + ProductEntry.TABLE_NAME + ";");
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name = ?;", new Object[] { ProductEntry.TABLE_NAME });
+        if (lastProductId > 0) {
+            db.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?);",
+                    new Object[] { ProductEntry.TABLE_NAME, lastProductId });
+        }
+
+        createProductIndexes(db);
+        createStockLedgerTriggers(db);
+        createStatsTriggers(db);
+
+        String join = " FROM " + ProductEntry.TABLE_NAME + " JOIN " + SupplierEntry.TABLE_NAME
+                + " ON " + SupplierEntry.TABLE_NAME + "." + SupplierEntry._ID
+                + " = " + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID;
+        db.execSQL("CREATE VIEW " + VIEW_PRODUCTS_WITH_SUPPLIER + " AS SELECT "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry._ID) + " AS " + ProductEntry._ID + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_NAME)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_UNIT_PRICE)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_QUANTITY)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_IMAGE_PATH)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_IMAGE_PATH + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", "
+                + qualify(SupplierEntry.TABLE_NAME, SupplierEntry.COLUMN_SUPPLIER_NAME)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + qualify(SupplierEntry.TABLE_NAME, SupplierEntry.COLUMN_SUPPLIER_EMAIL)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
+                + join + ";");
+
+        // An external content table is read by rowid, which a view only has if it names a column so.
+        db.execSQL("CREATE VIEW " + VIEW_FTS_CONTENT + " AS SELECT "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry._ID) + " AS rowid, "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_NAME)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + qualify(SupplierEntry.TABLE_NAME, SupplierEntry.COLUMN_SUPPLIER_NAME)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME
+                + join + ";");
+        db.execSQL("CREATE VIRTUAL TABLE " + FTS_TABLE_NAME + " USING fts4("
+                + "content=\"" + VIEW_FTS_CONTENT + "\", "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + "tokenize=unicode61, prefix=\"2,3\");");
+
+        // The old text must still be readable through the view to be removed from the index.
+        String insertProduct = "INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ")"
+                + " SELECT new." + ProductEntry._ID + ", new." + ProductEntry.COLUMN_PRODUCT_NAME
+                + ", " + SupplierEntry.COLUMN_SUPPLIER_NAME + " FROM " + SupplierEntry.TABLE_NAME
+                + " WHERE " + SupplierEntry._ID + " = new." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ";";
+        String deleteProduct = "DELETE FROM " + FTS_TABLE_NAME + " WHERE docid = old." + ProductEntry._ID + ";";
+        String indexedColumns = ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID;
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_after_insert AFTER INSERT ON " + ProductEntry.TABLE_NAME
+                + " BEGIN " + insertProduct + " END;");
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_before_update BEFORE UPDATE OF " + indexedColumns
+                + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + deleteProduct + " END;");
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_after_update AFTER UPDATE OF " + indexedColumns
+                + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + insertProduct + " END;");
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_before_delete BEFORE DELETE ON " + ProductEntry.TABLE_NAME
+                + " BEGIN " + deleteProduct + " END;");
+
+        // Renaming a supplier indexes its products again.
+        String supplierProducts = " FROM " + ProductEntry.TABLE_NAME
+                + " WHERE " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " = ";
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_before_supplier_update BEFORE UPDATE OF "
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + " ON " + SupplierEntry.TABLE_NAME + " BEGIN "
+                + "DELETE FROM " + FTS_TABLE_NAME + " WHERE docid IN (SELECT " + ProductEntry._ID
+                + supplierProducts + "old." + SupplierEntry._ID + "); END;");
+        db.execSQL("CREATE TRIGGER " + FTS_TABLE_NAME + "_after_supplier_update AFTER UPDATE OF "
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + " ON " + SupplierEntry.TABLE_NAME + " BEGIN "
+                + "INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ")"
+                + " SELECT " + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", new."
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + supplierProducts + "new." + SupplierEntry._ID + "; END;");
+
+        // Index the products already stored.
+        db.execSQL("INSERT INTO " + FTS_TABLE_NAME + " (" + FTS_TABLE_NAME + ") VALUES ('rebuild');");
+    }
+
+    /**
+     * Version 7: add the reorder threshold of the products and the queue of the products to reorder.
+     * A product is queued by the same write which makes its stock level fall below its threshold, so that
+     * finding the products to reorder doesn't scan the catalog, and each fall queues it once.
+     * The existing products are never reordered until they are given a threshold.
+     */
+    private static void migrateToVersion7(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + ProductEntry.TABLE_NAME + " ADD COLUMN "
+                + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + " INTEGER NOT NULL DEFAULT 0;");
+
+        // A product is at most once in the queue.
+        db.execSQL("CREATE TABLE " + ReorderEntry.TABLE_NAME + " ("
+                + ReorderEntry.COLUMN_PRODUCT_ID + " INTEGER PRIMARY KEY, "
+                + ReorderEntry.COLUMN_TIMESTAMP + " INTEGER NOT NULL);");
+
+        createReorderTriggers(db);
+
+        // A view doesn't pick up the new columns of its tables, so it's created again with the threshold.
+        db.execSQL("DROP VIEW " + VIEW_PRODUCTS_WITH_SUPPLIER + ";");
+        db.execSQL("CREATE VIEW " + VIEW_PRODUCTS_WITH_SUPPLIER + " AS SELECT "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry._ID) + " AS " + ProductEntry._ID + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_NAME)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_UNIT_PRICE)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_QUANTITY)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_IMAGE_PATH)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_IMAGE_PATH + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", "
+                + qualify(SupplierEntry.TABLE_NAME, SupplierEntry.COLUMN_SUPPLIER_NAME)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + qualify(SupplierEntry.TABLE_NAME, SupplierEntry.COLUMN_SUPPLIER_EMAIL)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + ", "
+                + qualify(ProductEntry.TABLE_NAME, ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD)
+                + " AS " + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD
+                + " FROM " + ProductEntry.TABLE_NAME + " JOIN " + SupplierEntry.TABLE_NAME
+                + " ON " + SupplierEntry.TABLE_NAME + "." + SupplierEntry._ID
+                + " = " + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ";");
+    }
+
+    /**
+     * Version 8: delete a supplier once its last product is deleted or moved to another supplier, so that
+     * the suppliers mistyped in the editor don't stay in its list of suppliers forever.
+     * The suppliers left without products by the earlier versions are deleted too.
+     */
+    private static void migrateToVersion8(SQLiteDatabase db) {
+        String supplierId = ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID;
+        String withoutProducts = " WHEN NOT EXISTS (SELECT 1 FROM " + ProductEntry.TABLE_NAME
+                + " WHERE " + supplierId + " = old." + supplierId + ")";
+        String deleteSupplier = "DELETE FROM " + SupplierEntry.TABLE_NAME
+                + " WHERE " + SupplierEntry._ID + " = old." + supplierId + ";";
+        // The existence check is served by the index of the products by supplier.
+        db.execSQL("CREATE TRIGGER " + SupplierEntry.TABLE_NAME + "_after_product_delete AFTER DELETE ON "
+                + ProductEntry.TABLE_NAME + withoutProducts + " BEGIN " + deleteSupplier + " END;");
+        db.execSQL("CREATE TRIGGER " + SupplierEntry.TABLE_NAME + "_after_product_move AFTER UPDATE OF "
+                + supplierId + " ON " + ProductEntry.TABLE_NAME + withoutProducts
+                + " AND new." + supplierId + " <> old." + supplierId + " BEGIN " + deleteSupplier + " END;");
+
+        db.execSQL("DELETE FROM " + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry._ID
+                + " NOT IN (SELECT " + supplierId + " FROM " + ProductEntry.TABLE_NAME + ");");
+    }
+
+    /**
+     * Version 9: add the positions of the interrupted imports, which were kept in the preferences. Written
+     * by the same transaction as the products of a batch, a position can't be saved without its products
+     * or the other way round, which imported them twice when the app died between the two.
+     */
+    private static void migrateToVersion9(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + ImportEntry.TABLE_NAME + " ("
+                + ImportEntry.COLUMN_DOCUMENT_URI + " TEXT PRIMARY KEY, "
+                + ImportEntry.COLUMN_DOCUMENT_SIZE + " INTEGER NOT NULL, "
+                + ImportEntry.COLUMN_RECORD_COUNT + " INTEGER NOT NULL);");
+    }
+
+    /**
+     * Version 10: number the reorders from a strictly increasing sequence. Their timestamps are in whole
+     * seconds, so a product queued again in the same second as the last product of a purchase order was
+     * removed from the queue along with it when the purchase order was acknowledged.
+     */
+    private static void migrateToVersion10(SQLiteDatabase db) {
+        // The triggers writing the queue are dropped while the table is rebuilt, then created again.
+        dropReorderTriggers(db);
+        db.execSQL("ALTER TABLE " + ReorderEntry.TABLE_NAME + " RENAME TO " + ReorderEntry.TABLE_NAME + "_old;");
+        // AUTOINCREMENT never gives a sequence number twice, even once the last reorder is removed.
+        db.execSQL("CREATE TABLE " + ReorderEntry.TABLE_NAME + " ("
+                + ReorderEntry.COLUMN_SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + ReorderEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL UNIQUE, "
+                + ReorderEntry.COLUMN_TIMESTAMP + " INTEGER NOT NULL);");
+        db.execSQL("INSERT INTO " + ReorderEntry.TABLE_NAME + " ("
+                + ReorderEntry.COLUMN_PRODUCT_ID + ", " + ReorderEntry.COLUMN_TIMESTAMP + ")"
+                + " SELECT " + ReorderEntry.COLUMN_PRODUCT_ID + ", " + ReorderEntry.COLUMN_TIMESTAMP
+                + " FROM " + ReorderEntry.TABLE_NAME + "_old ORDER BY " + ReorderEntry.COLUMN_TIMESTAMP + ", "
+                + ReorderEntry.COLUMN_PRODUCT_ID + ";");
+        db.execSQL("DROP TABLE " + ReorderEntry.TABLE_NAME + "_old;");
+        createReorderTriggers(db);
+    }
+
+    /**
+     * Create the triggers queuing a product when its stock level falls below its threshold, and removing it
+     * from the queue when it's restocked or deleted. A product is at most once in the queue.
+     */
+    private static void createReorderTriggers(SQLiteDatabase db) {
+        String quantity = ProductEntry.COLUMN_PRODUCT_QUANTITY;
+        String threshold = ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD;
+        String queueProduct = "INSERT OR IGNORE INTO " + ReorderEntry.TABLE_NAME + " ("
+                + ReorderEntry.COLUMN_PRODUCT_ID + ", " + ReorderEntry.COLUMN_TIMESTAMP + ")"
+                + " VALUES (new." + ProductEntry._ID + ", CAST(strftime('%s', 'now') AS INTEGER) * 1000);";
+        String removeProduct = "DELETE FROM " + ReorderEntry.TABLE_NAME
+                + " WHERE " + ReorderEntry.COLUMN_PRODUCT_ID + " = old." + ProductEntry._ID + ";";
+        // The triggers only fire when the product crosses its threshold, not on each write below it.
+        db.execSQL("CREATE TRIGGER " + ReorderEntry.TABLE_NAME + "_after_insert AFTER INSERT ON "
+                + ProductEntry.TABLE_NAME + " WHEN new." + quantity + " < new." + threshold
+                + " BEGIN " + queueProduct + " END;");
+        db.execSQL("CREATE TRIGGER " + ReorderEntry.TABLE_NAME + "_after_fall AFTER UPDATE OF "
+                + quantity + ", " + threshold + " ON " + ProductEntry.TABLE_NAME
+                + " WHEN new." + quantity + " < new." + threshold + " AND old." + quantity + " >= old." + threshold
+                + " BEGIN " + queueProduct + " END;");
+        // A product restocked before being ordered doesn't need to be ordered any more.
+        db.execSQL("CREATE TRIGGER " + ReorderEntry.TABLE_NAME + "_after_restock AFTER UPDATE OF "
+                + quantity + ", " + threshold + " ON " + ProductEntry.TABLE_NAME
+                + " WHEN new." + quantity + " >= new." + threshold + " AND old." + quantity + " < old." + threshold
+                + " BEGIN " + removeProduct + " END;");
+        db.execSQL("CREATE TRIGGER " + ReorderEntry.TABLE_NAME + "_after_product_delete AFTER DELETE ON "
+                + ProductEntry.TABLE_NAME + " BEGIN " + removeProduct + " END;");
+    }
+
+    private static void dropReorderTriggers(SQLiteDatabase db) {
+        String[] suffixes = { "_after_insert", "_after_fall", "_after_restock", "_after_product_delete" };
+        for (String suffix : suffixes) {
+            db.execSQL("DROP TRIGGER " + ReorderEntry.TABLE_NAME + suffix + ";");
+        }
+    }
+
+    /**
+     * Prefix each of the given comma separated columns with the given table name.
+     */
+    private static String qualify(String tableName, String columns) {
+        return tableName + "." + columns.replace(", ", ", " + tableName + ".");
     }
 }
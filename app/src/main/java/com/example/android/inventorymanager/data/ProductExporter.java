@@ -0,0 +1,256 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.provider.DocumentsContract;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.StatsEntry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exporter of the products to a CSV or JSON document. The products are read from {@link ProductProvider}
+ * one page at a time with keyset pagination on _ID, and each row is written to the document as soon as
+ * it's read, so that memory stays bounded whatever the size of the catalog.
+ *
+ * The CSV documents have a header naming the columns after the ones of the product table, so that they
+ * can be imported again by {@link ProductImporter}.
+ */
+public class ProductExporter {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ProductExporter.class.getSimpleName();
+
+    /** Number of products read from the provider at once */
+    public static final int PAGE_SIZE = 500;
+
+    /** Size of the buffer in front of the document */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Formats of the exported document */
+    public static final int FORMAT_CSV = 0;
+    public static final int FORMAT_JSON = 1;
+
+    /** Columns of the products written to the document, the _ID being the key of the pages */
+    private static final String[] PROJECTION = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_UNIT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_IMAGE_PATH,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD};
+
+    /** Index of the _ID in the projection */
+    private static final int ID_COLUMN_INDEX = 0;
+
+    /**
+     * Listener of the progress of an export, called on the exporting thread after each page.
+     */
+    public interface ProgressListener {
+        void onProgress(int productsExported, int productCount);
+    }
+
+    /**
+     * Writer of the products in one of the formats.
+     */
+    private interface RowWriter {
+        void begin() throws IOException;
+
+        void writeRow(Cursor cursor) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    private final ContentResolver mResolver;
+
+    public ProductExporter(Context context) {
+        mResolver = context.getContentResolver();
+    }
+
+    /**
+     * Export all the products to the given document, which is replaced. It reads the products and writes
+     * the document, so it must not be called on the main thread. If the export fails or is cancelled,
+     * the incomplete document is deleted.
+     *
+     * @param documentUri        The URI of the document, typically created through the Storage Access Framework
+     * @param format             {@link #FORMAT_CSV} or {@link #FORMAT_JSON}
+     * @param listener           The listener of the progress, or null
+     * @param cancellationSignal The signal cancelling the export, or null
+     * @return the number of products exported
+     * @throws IOException                          if the document can't be written
+     * @throws android.os.OperationCanceledException if the export has been cancelled
+     */
+    public int exportProducts(Uri documentUri, int format, ProgressListener listener,
+                              CancellationSignal cancellationSignal) throws IOException {
+        OutputStream output = mResolver.openOutputStream(documentUri, "w");
+        if (output == null) {
+            throw new IOException("Cannot open " + documentUri);
+        }
+        boolean completed = false;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            RowWriter rowWriter = format == FORMAT_JSON ? new JsonRowWriter(writer) : new CsvRowWriter(writer);
+            int exportedCount = writeProducts(rowWriter, listener, cancellationSignal);
+            writer.flush();
+            completed = true;
+            return exportedCount;
+        } finally {
+            writer.close();
+            if (!completed) {
+                deleteDocument(documentUri);
+            }
+        }
+    }
+
+    /**
+     * Write all the products page by page, only the page being written being in memory.
+     */
+    private int writeProducts(RowWriter rowWriter, ProgressListener listener, CancellationSignal cancellationSignal)
+            throws IOException {
+        int productCount = getProductCount();
+        int exportedCount = 0;
+        long lastId = 0;
+
+        rowWriter.begin();
+        while (true) {
+            Cursor page = mResolver.query(ProductEntry.buildPageUri(PAGE_SIZE, lastId), PROJECTION,
+                    null, null, null, cancellationSignal);
+            if (page == null) {
+                throw new IOException("Cannot query the products");
+            }
+            int pageCount;
+            try {
+                pageCount = page.getCount();
+                while (page.moveToNext()) {
+                    rowWriter.writeRow(page);
+                    lastId = page.getLong(ID_COLUMN_INDEX);
+                }
+            } finally {
+                page.close();
+            }
+            exportedCount += pageCount;
+            if (listener != null) {
+                // Products may have been inserted since the count, so it can't be lower than the progress.
+                listener.onProgress(exportedCount, Math.max(productCount, exportedCount));
+            }
+            if (pageCount < PAGE_SIZE) {
+                break;
+            }
+            if (cancellationSignal != null) {
+                cancellationSignal.throwIfCanceled();
+            }
+        }
+        rowWriter.end();
+        return exportedCount;
+    }
+
+    /**
+     * Return the number of products, read from the totals maintained by the provider.
+     */
+    private int getProductCount() {
+        Cursor cursor = mResolver.query(ProductEntry.STATS_URI, new String[] { StatsEntry.COLUMN_PRODUCT_COUNT },
+                null, null, null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Delete the incomplete document, which isn't possible for every provider of documents.
+     */
+    private void deleteDocument(Uri documentUri) {
+        try {
+            DocumentsContract.deleteDocument(mResolver, documentUri);
+        } catch (Exception e) {
+            Log.w(LOG_TAG, "Cannot delete the incomplete export " + documentUri, e);
+        }
+    }
+
+    /**
+     * Writer of the products as CSV records, after a header naming their columns.
+     */
+    private static class CsvRowWriter implements RowWriter {
+        private final CsvWriter mCsvWriter;
+
+        CsvRowWriter(Writer writer) {
+            mCsvWriter = new CsvWriter(writer);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            for (String column : PROJECTION) {
+                mCsvWriter.writeField(column);
+            }
+            mCsvWriter.endRecord();
+        }
+
+        @Override
+        public void writeRow(Cursor cursor) throws IOException {
+            for (int i = 0; i < PROJECTION.length; i++) {
+                mCsvWriter.writeField(cursor.getString(i));
+            }
+            mCsvWriter.endRecord();
+        }
+
+        @Override
+        public void end() {
+            // The records don't need any end.
+        }
+    }
+
+    /**
+     * Writer of the products as an array of JSON objects, whose members are named after their columns.
+     */
+    private static class JsonRowWriter implements RowWriter {
+        private final JsonWriter mJsonWriter;
+
+        JsonRowWriter(Writer writer) {
+            mJsonWriter = new JsonWriter(writer);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            mJsonWriter.beginArray();
+        }
+
+        @Override
+        public void writeRow(Cursor cursor) throws IOException {
+            mJsonWriter.beginObject();
+            for (int i = 0; i < PROJECTION.length; i++) {
+                mJsonWriter.name(PROJECTION[i]);
+                if (cursor.isNull(i)) {
+                    mJsonWriter.nullValue();
+                } else if (cursor.getType(i) == Cursor.FIELD_TYPE_INTEGER) {
+                    mJsonWriter.value(cursor.getLong(i));
+                } else {
+                    mJsonWriter.value(cursor.getString(i));
+                }
+            }
+            mJsonWriter.endObject();
+        }
+
+        @Override
+        public void end() throws IOException {
+            mJsonWriter.endArray();
+            mJsonWriter.flush();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import com.example.android.inventorymanager.data.ProductContract.ImportEntry;
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Importer of the products of a CSV document, whose first record names the columns after the ones of
+ * the product table. The document is streamed one record at a time, and the valid products are written
+ * in batches, each in a single transaction.
+ *
+ * Each batch saves the position in the document along with its products, in the same transaction, so that
+ * an import which failed, was cancelled or was killed resumes after the last written batch when the same
+ * document is imported again, without writing any product twice.
+ */
+public class ProductImporter {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ProductImporter.class.getSimpleName();
+
+    /** Number of products written in a single transaction */
+    public static final int BATCH_SIZE = 1000;
+
+    /** Columns which must be present in the header of the document */
+    private static final String[] REQUIRED_COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_UNIT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL};
+
+    /** Columns which may be present in the header of the document */
+    private static final String[] OPTIONAL_COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_IMAGE_PATH,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD};
+
+    /** Columns of a product which hold an integer */
+    private static final String[] INTEGER_COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_UNIT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD};
+
+    /**
+     * Listener of the progress of an import, called on the importing thread after each batch.
+     */
+    public interface ProgressListener {
+        void onProgress(long bytesRead, long totalBytes, int productsImported);
+    }
+
+    /**
+     * Outcome of an import.
+     */
+    public static class Result {
+
+        /** Number of products written by this import */
+        public final int importedCount;
+
+        /** Number of records rejected because they don't describe a valid product */
+        public final int rejectedCount;
+
+        /** Number of records skipped because a previous import had already written them */
+        public final long resumedCount;
+
+        Result(int importedCount, int rejectedCount, long resumedCount) {
+            this.importedCount = importedCount;
+            this.rejectedCount = rejectedCount;
+            this.resumedCount = resumedCount;
+        }
+    }
+
+    private final ContentResolver mResolver;
+
+    public ProductImporter(Context context) {
+        mResolver = context.getContentResolver();
+    }
+
+    /**
+     * Import the products of the given CSV document. It reads the document and writes the products,
+     * so it must not be called on the main thread.
+     *
+     * @param documentUri        The URI of the document, typically chosen through the Storage Access Framework
+     * @param listener           The listener of the progress, or null
+     * @param cancellationSignal The signal cancelling the import between two batches, or null
+     * @throws IOException                          if the document can't be read
+     * @throws IllegalArgumentException             if the header of the document lacks a required column
+     * @throws android.os.OperationCanceledException if the import has been cancelled
+     */
+    public Result importProducts(Uri documentUri, ProgressListener listener, CancellationSignal cancellationSignal)
+            throws IOException {
+        long totalBytes = getDocumentSize(documentUri);
+        long resumedCount = getResumedRecordCount(documentUri, totalBytes);
+
+        InputStream input = mResolver.openInputStream(documentUri);
+        if (input == null) {
+            throw new IOException("Cannot open " + documentUri);
+        }
+        CountingInputStream countingInput = new CountingInputStream(input);
+        CsvReader reader = new CsvReader(new InputStreamReader(countingInput, StandardCharsets.UTF_8));
+        try {
+            List<String> fields = new ArrayList<>();
+            if (!reader.readRecord(fields)) {
+                return new Result(0, 0, 0);
+            }
+            int[] columnIndexes = mapColumns(fields);
+
+            // Skip the records written by the interrupted import, without validating them again.
+            while (reader.getRecordCount() < resumedCount && reader.readRecord(fields)) {
+                // Nothing to do with the record.
+            }
+            if (resumedCount > 0) {
+                Log.i(LOG_TAG, "Resuming the import of " + documentUri + " after " + resumedCount + " records");
+            }
+
+            ContentValues[] batch = new ContentValues[BATCH_SIZE];
+            int batchSize = 0;
+            int importedCount = 0;
+            int rejectedCount = 0;
+            while (reader.readRecord(fields)) {
+                ContentValues values = toProduct(fields, columnIndexes);
+                if (values == null) {
+                    rejectedCount++;
+                } else {
+                    batch[batchSize++] = values;
+                }
+                if (batchSize == BATCH_SIZE) {
+                    if (cancellationSignal != null) {
+                        cancellationSignal.throwIfCanceled();
+                    }
+                    importedCount += mResolver.bulkInsert(ProductEntry.buildImportBatchUri(
+                            documentUri, totalBytes, reader.getRecordCount()), batch);
+                    batchSize = 0;
+                    if (listener != null) {
+                        listener.onProgress(countingInput.getCount(), totalBytes, importedCount);
+                    }
+                }
+            }
+            if (batchSize > 0) {
+                ContentValues[] lastBatch = new ContentValues[batchSize];
+                System.arraycopy(batch, 0, lastBatch, 0, batchSize);
+                importedCount += mResolver.bulkInsert(ProductEntry.buildImportBatchUri(
+                        documentUri, totalBytes, reader.getRecordCount()), lastBatch);
+            }
+            if (listener != null) {
+                listener.onProgress(countingInput.getCount(), totalBytes, importedCount);
+            }
+
+            // The whole document is imported, so importing it again starts from its first record.
+            mResolver.delete(ImportEntry.CONTENT_URI, null, null);
+            return new Result(importedCount, rejectedCount, Math.max(resumedCount - 1, 0));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Return the index of each product column in the records, from the header of the document,
+     * the ones of the absent optional columns being -1.
+     */
+    private static int[] mapColumns(List<String> header) {
+        String[] columns = new String[REQUIRED_COLUMNS.length + OPTIONAL_COLUMNS.length];
+        System.arraycopy(REQUIRED_COLUMNS, 0, columns, 0, REQUIRED_COLUMNS.length);
+        System.arraycopy(OPTIONAL_COLUMNS, 0, columns, REQUIRED_COLUMNS.length, OPTIONAL_COLUMNS.length);
+
+        int[] columnIndexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnIndexes[i] = -1;
+            for (int j = 0; j < header.size(); j++) {
+                if (columns[i].equalsIgnoreCase(header.get(j).trim())) {
+                    columnIndexes[i] = j;
+                    break;
+                }
+            }
+            if (columnIndexes[i] == -1 && i < REQUIRED_COLUMNS.length) {
+                throw new IllegalArgumentException("Import requires a " + columns[i] + " column");
+            }
+        }
+        return columnIndexes;
+    }
+
+    /**
+     * Return the product described by the given record, or null if it's not a valid product
+     * according to the same rules as the provider.
+     */
+    private static ContentValues toProduct(List<String> fields, int[] columnIndexes) {
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < columnIndexes.length; i++) {
+            int index = columnIndexes[i];
+            if (index == -1 || index >= fields.size()) {
+                continue;
+            }
+            String column = i < REQUIRED_COLUMNS.length ? REQUIRED_COLUMNS[i] : OPTIONAL_COLUMNS[i - REQUIRED_COLUMNS.length];
+            String field = fields.get(index).trim();
+            if (field.isEmpty()) {
+                // An empty field is a missing value.
+                continue;
+            }
+            if (isIntegerColumn(column)) {
+                try {
+                    values.put(column, Integer.parseInt(field));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            } else {
+                values.put(column, field);
+            }
+        }
+        try {
+            ProductValidator.checkProduct(values);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return values;
+    }
+
+    private static boolean isIntegerColumn(String column) {
+        for (String integerColumn : INTEGER_COLUMNS) {
+            if (integerColumn.equals(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the size of the given document in bytes, or -1 if it's unknown.
+     */
+    private long getDocumentSize(Uri documentUri) {
+        Cursor cursor = mResolver.query(documentUri, new String[] { OpenableColumns.SIZE }, null, null, null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return the number of records of the given document already read by an interrupted import,
+     * or 0 if there is none for this document.
+     */
+    private long getResumedRecordCount(Uri documentUri, long totalBytes) {
+        Cursor cursor = mResolver.query(ImportEntry.CONTENT_URI, new String[] { ImportEntry.COLUMN_RECORD_COUNT },
+                ImportEntry.COLUMN_DOCUMENT_URI + "=? AND " + ImportEntry.COLUMN_DOCUMENT_SIZE + "=?",
+                new String[] { documentUri.toString(), String.valueOf(totalBytes) }, null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Input stream counting the bytes read through it, to report the progress within the document.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                mCount += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long count = super.skip(n);
+            mCount += count;
+            return count;
+        }
+    }
+}
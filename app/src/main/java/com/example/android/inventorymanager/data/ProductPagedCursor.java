@@ -0,0 +1,374 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link Cursor} over the whole products table that only keeps a few pages of products in memory.
+ * The pages are fetched from {@link ProductProvider} with keyset pagination as the cursor moves,
+ * or ahead of time with {@link #prefetch(int, int)}, and the pages far from the visible rows are dropped,
+ * so that memory stays bounded whatever the size of the table.
+ *
+ * The main thread never waits for a page: a row of a page which isn't in memory reads as a placeholder,
+ * whose columns are all null, while the page is fetched in the background, and the
+ * {@link OnPageLoadedListener} is told when its rows can be read again.
+ */
+public class ProductPagedCursor extends AbstractCursor {
+
+    /** Number of products in each page */
+    public static final int PAGE_SIZE = 50;
+
+    /** Number of pages kept in memory on each side of the visible pages */
+    private static final int RESIDENT_PAGE_RADIUS = 2;
+
+    /** Background thread fetching the pages ahead of the scrolling */
+    private static final ExecutorService sPrefetchExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Listener of the pages fetched in the background after some of their rows were read as placeholders,
+     * called on the main thread.
+     */
+    public interface OnPageLoadedListener {
+        void onPageLoaded(ProductPagedCursor cursor, int firstPosition, int rowCount);
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final ContentResolver mResolver;
+    private final String[] mProjection;
+    private final boolean mSortByName;
+    private final int mIdColumnIndex;
+    private final int mNameColumnIndex;
+    private final int mCount;
+
+    /** Pages in memory, by page index, guarded by the cursor instance */
+    private final SparseArray<Cursor> mPages = new SparseArray<>();
+
+    /**
+     * _ID and name of the last product of every page fetched so far, by page index, guarded by the cursor instance.
+     * These keys are tiny, so they are kept after their pages are dropped to fetch the next pages again
+     * without an OFFSET scan.
+     */
+    private final SparseLongArray mLastIds = new SparseLongArray();
+    private final SparseArray<String> mLastNames = new SparseArray<>();
+
+    /** Page holding the current row, or null if the current row has vanished since the count was done */
+    private Cursor mCurrentPage;
+
+    /** Index of the page around which the resident pages are kept, guarded by the cursor instance */
+    private int mCenterPage;
+
+    /** Range of pages requested by the last prefetch, guarded by the cursor instance */
+    private int mPrefetchedFirstPage = -1;
+    private int mPrefetchedLastPage = -1;
+
+    /** Pages read as placeholders on the main thread and being fetched, guarded by the cursor instance */
+    private final SparseBooleanArray mRequestedPages = new SparseBooleanArray();
+
+    private volatile OnPageLoadedListener mOnPageLoadedListener;
+
+    /**
+     * Constructs a new {@link ProductPagedCursor}, counting the products and fetching their first page.
+     * It queries the provider, so it must not be called on the main thread.
+     *
+     * @param resolver   The content resolver to query
+     * @param projection The columns of the products to fetch, which must include the _ID
+     *                   (and the name if the products are sorted by name)
+     * @param sortByName Whether the products are sorted by name rather than by _ID
+     * @param position   The position from which the products will be read first
+     */
+    public ProductPagedCursor(ContentResolver resolver, String[] projection, boolean sortByName, int position) {
+        mResolver = resolver;
+        mProjection = projection;
+        mSortByName = sortByName;
+        mIdColumnIndex = indexOf(projection, ProductEntry._ID);
+        mNameColumnIndex = indexOf(projection, ProductEntry.COLUMN_PRODUCT_NAME);
+        if (mIdColumnIndex == -1 || (sortByName && mNameColumnIndex == -1)) {
+            throw new IllegalArgumentException("Projection is missing the key of the pages");
+        }
+
+        Cursor countCursor = resolver.query(ProductEntry.CONTENT_URI, new String[] { "COUNT(*)" },
+                null, null, null);
+        int count = 0;
+        if (countCursor != null) {
+            if (countCursor.moveToFirst()) {
+                count = countCursor.getInt(0);
+            }
+            countCursor.close();
+        }
+        mCount = count;
+
+        // Warm up the pages that are about to be displayed.
+        if (mCount > 0) {
+            int page = Math.min(position, mCount - 1) / PAGE_SIZE;
+            mCenterPage = page;
+            getPage(page);
+        }
+    }
+
+    /**
+     * Set the listener of the pages fetched after their rows were read as placeholders, or null.
+     */
+    public void setOnPageLoadedListener(OnPageLoadedListener listener) {
+        mOnPageLoadedListener = listener;
+    }
+
+    /**
+     * Fetch in the background the pages holding the given range of rows and their neighbours,
+     * and drop the pages that are far from this range.
+     */
+    public void prefetch(final int firstPosition, final int lastPosition) {
+        if (isClosed() || mCount == 0) {
+            return;
+        }
+        final int firstPage = Math.max(firstPosition / PAGE_SIZE - 1, 0);
+        final int lastPage = Math.min(lastPosition / PAGE_SIZE + 1, (mCount - 1) / PAGE_SIZE);
+        synchronized (this) {
+            // Nothing to do while the scrolling stays within the same pages.
+            if (firstPage == mPrefetchedFirstPage && lastPage == mPrefetchedLastPage) {
+                return;
+            }
+            mPrefetchedFirstPage = firstPage;
+            mPrefetchedLastPage = lastPage;
+            mCenterPage = (firstPage + lastPage) / 2;
+            dropDistantPages();
+        }
+        sPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int page = firstPage; page <= lastPage && !isClosed(); page++) {
+                    getPage(page);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return the page with the given index, fetching it from the provider if it isn't in memory.
+     * The lock isn't held during the query, so that the main thread never waits for a prefetch.
+     */
+    private Cursor getPage(int pageIndex) {
+        Uri pageUri;
+        synchronized (this) {
+            Cursor page = mPages.get(pageIndex);
+            if (page != null || isClosed()) {
+                return page;
+            }
+            pageUri = buildPageUri(pageIndex);
+        }
+
+        Cursor page = mResolver.query(pageUri, mProjection, null, null,
+                mSortByName ? ProductEntry.SORT_ORDER_NAME : ProductEntry.SORT_ORDER_ID);
+        if (page == null) {
+            return null;
+        }
+        boolean hasRows = page.moveToLast();
+
+        synchronized (this) {
+            // Keep the page fetched by another thread in the meantime, if any.
+            Cursor loadedPage = mPages.get(pageIndex);
+            if (loadedPage != null || isClosed()) {
+                page.close();
+                return loadedPage;
+            }
+            if (hasRows) {
+                mLastIds.put(pageIndex, page.getLong(mIdColumnIndex));
+                if (mSortByName) {
+                    mLastNames.put(pageIndex, page.getString(mNameColumnIndex));
+                }
+            }
+            mPages.put(pageIndex, page);
+            dropDistantPages();
+            return page;
+        }
+    }
+
+    /**
+     * Fetch the page with the given index in the background, whose rows were read as placeholders,
+     * and tell the listener once it's in memory.
+     */
+    private void requestPage(final int pageIndex) {
+        synchronized (this) {
+            if (mRequestedPages.get(pageIndex)) {
+                return;
+            }
+            mRequestedPages.put(pageIndex, true);
+        }
+        sPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Cursor page = isClosed() ? null : getPage(pageIndex);
+                synchronized (ProductPagedCursor.this) {
+                    mRequestedPages.delete(pageIndex);
+                }
+                if (page == null) {
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        OnPageLoadedListener listener = mOnPageLoadedListener;
+                        if (listener != null && !isClosed()) {
+                            int firstPosition = pageIndex * PAGE_SIZE;
+                            listener.onPageLoaded(ProductPagedCursor.this, firstPosition,
+                                    Math.min(PAGE_SIZE, mCount - firstPosition));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Build the URI of the page with the given index, following the key of the previous page when it's known.
+     */
+    private Uri buildPageUri(int pageIndex) {
+        int previousPage = pageIndex - 1;
+        if (pageIndex == 0) {
+            return ProductEntry.buildOffsetPageUri(PAGE_SIZE, 0);
+        } else if (mLastIds.indexOfKey(previousPage) < 0) {
+            return ProductEntry.buildOffsetPageUri(PAGE_SIZE, pageIndex * PAGE_SIZE);
+        } else if (mSortByName) {
+            return ProductEntry.buildPageUri(PAGE_SIZE, mLastNames.get(previousPage), mLastIds.get(previousPage));
+        } else {
+            return ProductEntry.buildPageUri(PAGE_SIZE, mLastIds.get(previousPage));
+        }
+    }
+
+    /**
+     * Close the pages that are too far from the center page, except the one holding the current row.
+     */
+    private void dropDistantPages() {
+        for (int i = mPages.size() - 1; i >= 0; i--) {
+            Cursor page = mPages.valueAt(i);
+            if (Math.abs(mPages.keyAt(i) - mCenterPage) > RESIDENT_PAGE_RADIUS && page != mCurrentPage) {
+                page.close();
+                mPages.removeAt(i);
+            }
+        }
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        int pageIndex = newPosition / PAGE_SIZE;
+        synchronized (this) {
+            if (Math.abs(pageIndex - mCenterPage) > RESIDENT_PAGE_RADIUS) {
+                mCenterPage = pageIndex;
+            }
+        }
+        Cursor page;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            // The main thread doesn't query the provider: the row reads as a placeholder until its page
+            // is fetched in the background.
+            synchronized (this) {
+                page = mPages.get(pageIndex);
+            }
+            if (page == null) {
+                requestPage(pageIndex);
+            }
+        } else {
+            page = getPage(pageIndex);
+        }
+        synchronized (this) {
+            // If the row has vanished since the products were counted, the row reads as empty
+            // until the change notification brings a new cursor.
+            if (page != null && !page.isClosed() && page.moveToPosition(newPosition - pageIndex * PAGE_SIZE)) {
+                mCurrentPage = page;
+            } else {
+                mCurrentPage = null;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mProjection;
+    }
+
+    @Override
+    public String getString(int column) {
+        return mCurrentPage != null ? mCurrentPage.getString(column) : null;
+    }
+
+    @Override
+    public short getShort(int column) {
+        return mCurrentPage != null ? mCurrentPage.getShort(column) : 0;
+    }
+
+    @Override
+    public int getInt(int column) {
+        return mCurrentPage != null ? mCurrentPage.getInt(column) : 0;
+    }
+
+    @Override
+    public long getLong(int column) {
+        return mCurrentPage != null ? mCurrentPage.getLong(column) : 0;
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return mCurrentPage != null ? mCurrentPage.getFloat(column) : 0;
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return mCurrentPage != null ? mCurrentPage.getDouble(column) : 0;
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        return mCurrentPage != null ? mCurrentPage.getBlob(column) : null;
+    }
+
+    @Override
+    public int getType(int column) {
+        return mCurrentPage != null ? mCurrentPage.getType(column) : FIELD_TYPE_NULL;
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return mCurrentPage == null || mCurrentPage.isNull(column);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        synchronized (this) {
+            for (int i = 0; i < mPages.size(); i++) {
+                mPages.valueAt(i).close();
+            }
+            mPages.clear();
+            mCurrentPage = null;
+        }
+    }
+
+    /**
+     * Return the index of the given column in the projection, or -1 if it isn't there.
+     */
+    private static int indexOf(String[] projection, String column) {
+        for (int i = 0; i < projection.length; i++) {
+            if (projection[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
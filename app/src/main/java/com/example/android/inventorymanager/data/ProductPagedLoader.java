@@ -0,0 +1,51 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+/**
+ * Loader of a {@link ProductPagedCursor}, which works like a CursorLoader on the products URI
+ * but only fetches the pages of products that are about to be displayed.
+ * Unlike a CursorLoader, it leaves the closing of the replaced cursors to the receiver of the results.
+ */
+public class ProductPagedLoader extends ProductCursorLoader {
+
+    private final String[] mProjection;
+    private final boolean mSortByName;
+
+    /** Position of the first visible row, from which the next cursor is warmed up */
+    private volatile int mAnchorPosition;
+
+    /**
+     * Constructs a new {@link ProductPagedLoader}.
+     *
+     * @param context    The context
+     * @param projection The columns of the products to load, which must include the _ID
+     * @param sortByName Whether the products are sorted by name rather than by _ID
+     */
+    public ProductPagedLoader(Context context, String[] projection, boolean sortByName) {
+        super(context);
+        mProjection = projection;
+        mSortByName = sortByName;
+    }
+
+    /**
+     * Set the position of the first visible row, so that the cursor loaded after a change
+     * already holds the rows that are on screen.
+     */
+    public void setAnchorPosition(int position) {
+        mAnchorPosition = position;
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        ProductPagedCursor cursor = new ProductPagedCursor(getContext().getContentResolver(),
+                mProjection, mSortByName, mAnchorPosition);
+        // Register an observer on the products, so that any change reloads the cursor.
+        cursor.setNotificationUri(getContext().getContentResolver(), ProductEntry.CONTENT_URI);
+        cursor.registerContentObserver(mObserver);
+        return cursor;
+    }
+}
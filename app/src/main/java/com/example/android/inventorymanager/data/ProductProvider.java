@@ -1,17 +1,38 @@
 package com.example.android.inventorymanager.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.util.Log;
 
+import com.example.android.inventorymanager.data.ProductContract.ImportEntry;
 import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.StatsEntry;
+import com.example.android.inventorymanager.data.ProductContract.StockMovementEntry;
+import com.example.android.inventorymanager.data.ProductContract.SupplierEntry;
 
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
 import java.sql.Blob;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * {@link ContentProvider} for Inventory Manager app.
@@ -27,6 +48,24 @@ public class ProductProvider extends ContentProvider {
     /** URI matcher code for the content URI for a single product in the products table */
     private static final int PRODUCT_ID = 101;
 
+    /** URI matcher code for the content URI searching the products */
+    private static final int PRODUCT_SEARCH = 102;
+
+    /** URI matcher code for the content URI for the totals of the inventory */
+    private static final int PRODUCT_STATS = 103;
+
+    /** URI matcher code for the content URI for the suppliers table */
+    private static final int SUPPLIERS = 104;
+
+    /** URI matcher code for the content URI for a single supplier in the suppliers table */
+    private static final int SUPPLIER_ID = 105;
+
+    /** URI matcher code for the content URI for the products of a single supplier */
+    private static final int SUPPLIER_PRODUCTS = 106;
+
+    /** URI matcher code for the content URI for the import positions table */
+    private static final int IMPORTS = 107;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -36,14 +75,88 @@ public class ProductProvider extends ContentProvider {
     static {
         sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_PRODUCTS, PRODUCTS);
         sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_PRODUCTS + "/#", PRODUCT_ID);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_PRODUCTS + "/" + ProductContract.PATH_SEARCH, PRODUCT_SEARCH);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_PRODUCTS + "/" + ProductContract.PATH_STATS, PRODUCT_STATS);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_SUPPLIERS, SUPPLIERS);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_SUPPLIERS + "/#", SUPPLIER_ID);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_SUPPLIERS + "/#/" + ProductContract.PATH_PRODUCTS, SUPPLIER_PRODUCTS);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_IMPORTS, IMPORTS);
     }
 
+    /**
+     * Names of the URIs in the metrics, indexed by {@link #getMetricsTarget}.
+     * The first one stands for the provider methods, which aren't run on a URI.
+     */
+    private static final String[] METRICS_TARGETS = {
+            "",
+            ProductContract.PATH_PRODUCTS,
+            ProductContract.PATH_PRODUCTS + "/#",
+            ProductContract.PATH_PRODUCTS + "/" + ProductContract.PATH_SEARCH,
+            ProductContract.PATH_PRODUCTS + "/" + ProductContract.PATH_STATS,
+            ProductContract.PATH_SUPPLIERS,
+            ProductContract.PATH_SUPPLIERS + "/#",
+            ProductContract.PATH_SUPPLIERS + "/#/" + ProductContract.PATH_PRODUCTS,
+            ProductContract.PATH_IMPORTS};
+
+    /** Index of the provider methods in {@link #METRICS_TARGETS} */
+    private static final int METRICS_TARGET_NONE = 0;
+
+    /**
+     * Clause selecting the suppliers which no product refers to, the only ones which can be deleted.
+     * The products of a supplier are found through their index by supplier.
+     */
+    private static final String SQL_SUPPLIER_WITHOUT_PRODUCTS = "NOT EXISTS (SELECT 1 FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry.TABLE_NAME + "."
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " = " + SupplierEntry.TABLE_NAME + "." + SupplierEntry._ID + ")";
+
+    /** Default maximum number of products returned by a search */
+    private static final int DEFAULT_SEARCH_LIMIT = 100;
+
+    /** Maximum number of products of each group of matches read before the search results are sorted */
+    private static final int SEARCH_CANDIDATE_LIMIT = 1000;
+
+    /** Maximum number of words of a search taken into account */
+    private static final int MAX_SEARCH_WORDS = 8;
+
+    /** Number of rows written by a bulk operation from which the write-ahead log is checkpointed right after */
+    private static final int CHECKPOINT_ROW_COUNT = 500;
+
     /** Database helper object */
     private ProductDbHelper mDbHelper;
 
+    /** Coalescer of the change notifications sent to the listeners */
+    private ProductChangeNotifier mChangeNotifier;
+
+    /** Compiled statements of the single product writes and lookups */
+    private ProductStatements mStatements;
+
+    /** Products kept in memory, answering the lookups by _ID and the catalog pages */
+    private ProductCache mCache;
+
+    /** Latencies and counters of the operations, per URI */
+    private ProductProviderMetrics mMetrics;
+
+    /**
+     * Set while the current thread applies a batch of operations,
+     * telling whether the batch has changed any data so far.
+     */
+    private final ThreadLocal<Boolean> mBatchHasChanges = new ThreadLocal<>();
+
     @Override
     public boolean onCreate() {
         mDbHelper = new ProductDbHelper(getContext());
+        mStatements = new ProductStatements(mDbHelper);
+        mCache = new ProductCache(ProductCache.DEFAULT_CAPACITY);
+        mChangeNotifier = new ProductChangeNotifier(getContext().getContentResolver(),
+                ProductChangeNotifier.DEFAULT_WINDOW_MILLIS);
+        String[] methodNames = new String[mCallMethods.length];
+        for (int i = 0; i < methodNames.length; i++) {
+            methodNames[i] = mCallMethods[i].name;
+        }
+        mMetrics = new ProductProviderMetrics(methodNames, METRICS_TARGETS);
         return true;
     }
 
@@ -54,25 +167,121 @@ public class ProductProvider extends ContentProvider {
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Perform the query for the given URI, which is aborted with an {@link android.os.OperationCanceledException}
+     * if the given signal is cancelled while it runs.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder, CancellationSignal cancellationSignal) {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        // Figure out if the URI matcher can match the URI to a specific code.
+        int match = sUriMatcher.match(uri);
+        int rowCount = 0;
+        boolean succeeded = false;
+        try {
+            Cursor cursor = queryMatched(match, uri, projection, selection, selectionArgs, sortOrder,
+                    cancellationSignal);
+            // Run the query now rather than when the client first reads the cursor, which it does right after,
+            // so that the latency covers the execution of the query and its number of rows is known.
+            rowCount = cursor.getCount();
+            succeeded = true;
+            return cursor;
+        } finally {
+            mMetrics.record(ProductProviderMetrics.OPERATION_QUERY, getMetricsTarget(match), startNanos,
+                    rowCount, succeeded);
+        }
+    }
+
+    /**
+     * Perform the query for the given URI, matched to the given code.
+     */
+    private Cursor queryMatched(int match, Uri uri, String[] projection, String selection, String[] selectionArgs,
+                                String sortOrder, CancellationSignal cancellationSignal) {
         // Get readable database.
         SQLiteDatabase database = mDbHelper.getReadableDatabase();
 
         // This cursor will hold the result of the query.
         Cursor cursor;
 
-        // Figure out if the URI matcher can match the URI to a specific code.
-        int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
-                cursor = database.query(ProductEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                if ((selection == null || selection.isEmpty())
+                        && (ProductCache.canProject(projection) || ProductCache.isCount(projection))) {
+                    cursor = queryCachedProducts(database, uri, projection, sortOrder);
+                    if (cursor != null) {
+                        break;
+                    }
+                }
+                // If a page of products is requested, restrict the query to the rows following
+                // the key of the previous page, sorted in the same order as the key.
+                String afterId = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_AFTER_ID);
+                String afterName = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_AFTER_NAME);
+                if (afterName != null && afterId != null) {
+                    selection = appendSelection(selection, ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE >= ? AND ("
+                            + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE > ? OR " + ProductEntry._ID + " > ?)");
+                    selectionArgs = appendSelectionArgs(selectionArgs,
+                            afterName, afterName, String.valueOf(Long.parseLong(afterId)));
+                    sortOrder = ProductEntry.SORT_ORDER_NAME;
+                } else if (afterId != null) {
+                    selection = appendSelection(selection, ProductEntry._ID + " > ?");
+                    selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(Long.parseLong(afterId)));
+                    sortOrder = ProductEntry.SORT_ORDER_ID;
+                }
+                cursor = database.query(false, ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER, projection, selection,
+                        selectionArgs, null, null, sortOrder, buildLimit(uri), cancellationSignal);
                 break;
             case PRODUCT_ID:
-                selection = ProductEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                cursor = database.query(ProductEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                if (selection == null || selection.isEmpty()) {
+                    cursor = queryProductById(ContentUris.parseId(uri), projection, cancellationSignal);
+                } else {
+                    selection = appendSelection(selection, ProductEntry._ID + "=?");
+                    selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(ContentUris.parseId(uri)));
+                    cursor = database.query(false, ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER, projection, selection,
+                            selectionArgs, null, null, sortOrder, null, cancellationSignal);
+                }
                 break;
+            case PRODUCT_SEARCH:
+                cursor = searchProducts(database, uri, projection, selection, selectionArgs, cancellationSignal);
+                // The search results change with any product, not only when the search URI is notified.
+                cursor.setNotificationUri(getContext().getContentResolver(), ProductEntry.CONTENT_URI);
+                return cursor;
+            case PRODUCT_STATS:
+                // The totals are maintained by the writes of the products, so reading them is a single row lookup.
+                cursor = database.query(false, StatsEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, null, null, cancellationSignal);
+                // The totals change with any product.
+                cursor.setNotificationUri(getContext().getContentResolver(), ProductEntry.CONTENT_URI);
+                return cursor;
+            case SUPPLIERS:
+                cursor = database.query(false, SupplierEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder, buildLimit(uri), cancellationSignal);
+                // The suppliers are also added by the writes of the products, so any change is notified.
+                cursor.setNotificationUri(getContext().getContentResolver(), ProductContract.BASE_CONTENT_URI);
+                return cursor;
+            case SUPPLIER_ID:
+                selection = appendSelection(selection, SupplierEntry._ID + "=?");
+                selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(ContentUris.parseId(uri)));
+                cursor = database.query(false, SupplierEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder, null, cancellationSignal);
+                cursor.setNotificationUri(getContext().getContentResolver(), ProductContract.BASE_CONTENT_URI);
+                return cursor;
+            case SUPPLIER_PRODUCTS:
+                // The products of a supplier are found through the index of the products by supplier.
+                selection = appendSelection(selection, ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + "=?");
+                selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(getSupplierId(uri)));
+                cursor = database.query(false, ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER, projection, selection,
+                        selectionArgs, null, null, sortOrder, buildLimit(uri), cancellationSignal);
+                // The products of the supplier change with any product.
+                cursor.setNotificationUri(getContext().getContentResolver(), ProductEntry.CONTENT_URI);
+                return cursor;
+            case IMPORTS:
+                // The positions are only read by the importer before it starts, so no change is notified.
+                return database.query(false, ImportEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder, null, cancellationSignal);
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
@@ -83,17 +292,337 @@ public class ProductProvider extends ContentProvider {
         return cursor;
     }
 
+    /**
+     * Answer a query of all the products or of a page of them from the cache, loading every product into it
+     * first if they fit. Return null if the cache can't answer it.
+     */
+    private Cursor queryCachedProducts(SQLiteDatabase database, Uri uri, String[] projection, String sortOrder) {
+        String afterId = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_AFTER_ID);
+        String afterName = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_AFTER_NAME);
+        boolean sortByName;
+        if (afterId != null) {
+            // The key of the previous page gives the sort order.
+            sortByName = afterName != null;
+        } else if (sortOrder == null || ProductEntry.SORT_ORDER_ID.equals(sortOrder)) {
+            sortByName = false;
+        } else if (ProductEntry.SORT_ORDER_NAME.equals(sortOrder)) {
+            sortByName = true;
+        } else {
+            return null;
+        }
+        String limit = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_LIMIT);
+        String offset = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_OFFSET);
+
+        if (!mCache.isComplete()) {
+            loadCache(database);
+        }
+        return mCache.queryList(projection, sortByName, afterName,
+                afterId != null ? Long.parseLong(afterId) : -1,
+                limit != null && offset != null ? Integer.parseInt(offset) : 0,
+                limit != null ? Integer.parseInt(limit) : -1);
+    }
+
+    /**
+     * Load every product into the cache, if they fit in it.
+     */
+    private void loadCache(SQLiteDatabase database) {
+        if (mCache.getCapacity() == 0) {
+            return;
+        }
+        // The number of products is read from the totals, so that a catalog too large for the cache isn't scanned.
+        long productCount = DatabaseUtils.longForQuery(database, "SELECT " + StatsEntry.COLUMN_PRODUCT_COUNT
+                + " FROM " + StatsEntry.TABLE_NAME, null);
+        if (productCount > mCache.getCapacity()) {
+            return;
+        }
+        int generation = mCache.getGeneration();
+        Cursor cursor = database.query(ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER, ProductCache.COLUMNS,
+                null, null, null, null, null);
+        try {
+            mCache.putAll(generation, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Look the product with the given _ID up in the cache, or read it through the SQL prepared for
+     * its projection and keep it in the cache.
+     */
+    private Cursor queryProductById(long id, String[] projection, CancellationSignal cancellationSignal) {
+        if (!ProductCache.canProject(projection)) {
+            return mStatements.queryById(id, projection, cancellationSignal);
+        }
+        Cursor cursor = mCache.query(id, projection);
+        if (cursor != null) {
+            return cursor;
+        }
+        int generation = mCache.getGeneration();
+        Cursor row = mStatements.queryById(id, ProductCache.COLUMNS, cancellationSignal);
+        try {
+            if (row.moveToFirst()) {
+                mCache.put(generation, row);
+            }
+            return ProductCache.project(row, projection);
+        } finally {
+            row.close();
+        }
+    }
+
+    /**
+     * Read the product with the given _ID, which has just been inserted or updated, again into the cache.
+     * Within a batch, which may be rolled back, the whole cache is dropped at the end of the batch instead.
+     */
+    private void refreshCachedProduct(long id) {
+        if (mBatchHasChanges.get() != null) {
+            return;
+        }
+        int generation = mCache.invalidate(id);
+        Cursor row = mStatements.queryById(id, ProductCache.COLUMNS, null);
+        try {
+            if (row.moveToFirst()) {
+                mCache.put(generation, row);
+            }
+        } finally {
+            row.close();
+        }
+    }
+
+    /**
+     * Read the products with the first given number of _IDs, which have just been updated together, again
+     * into the cache with a single query. Within a batch, the whole cache is dropped at the end of the batch
+     * instead, and so it is when the products wouldn't fit in the cache anyway.
+     */
+    private void refreshCachedProducts(long[] ids, int count) {
+        if (mBatchHasChanges.get() != null) {
+            return;
+        }
+        if (count > mCache.getCapacity()) {
+            mCache.invalidateAll();
+            return;
+        }
+        int generation = mCache.invalidate(ids, count);
+        // The _IDs are numbers, so they're written in the SQL rather than bound to as many variables,
+        // whose number SQLite limits.
+        StringBuilder selection = new StringBuilder(ProductEntry._ID).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            if (i != 0) {
+                selection.append(',');
+            }
+            selection.append(ids[i]);
+        }
+        selection.append(')');
+        Cursor cursor = mDbHelper.getReadableDatabase().query(ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER,
+                ProductCache.COLUMNS, selection.toString(), null, null, null, null);
+        try {
+            mCache.putEach(generation, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return the cache of the products, giving access to its hit and miss counters.
+     */
+    public ProductCache getProductCache() {
+        return mCache;
+    }
+
+    /**
+     * Return the database helper, giving the tests access to the tables which no URI exposes.
+     */
+    ProductDbHelper getDbHelper() {
+        return mDbHelper;
+    }
+
+    /**
+     * Search the products for the text given by the search URI, through the full-text index of their
+     * names and supplier names. The products whose name starts with the text come first, then the ones
+     * whose name matches it, then the ones whose supplier name only matches it, each group sorted by name.
+     *
+     * Each group is read first with its own limit, through the name index for the first one and the
+     * full-text index for the others, so that only a bounded set of candidates is sorted whatever the
+     * number of products matching the first typed letters. Past {@link #SEARCH_CANDIDATE_LIMIT} matches,
+     * a group only ranks some of them, until further typing narrows the search.
+     */
+    private static Cursor searchProducts(SQLiteDatabase database, Uri uri, String[] projection,
+                                         String selection, String[] selectionArgs,
+                                         CancellationSignal cancellationSignal) {
+        String text = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_SEARCH);
+        // The products are read along with their supplier, whose name is indexed too.
+        String products = ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER;
+        String matchQuery = buildMatchQuery(text, null);
+        if (matchQuery == null) {
+            // Nothing to search for, so return no product with the requested columns.
+            return database.query(products, projection, "0", null, null, null, null);
+        }
+
+        String columns = products + ".*";
+        if (projection != null) {
+            StringBuilder qualifiedColumns = new StringBuilder();
+            for (String column : projection) {
+                if (qualifiedColumns.length() > 0) {
+                    qualifiedColumns.append(", ");
+                }
+                qualifiedColumns.append(products).append('.').append(column);
+            }
+            columns = qualifiedColumns.toString();
+        }
+
+        String fts = ProductDbHelper.FTS_TABLE_NAME;
+        String name = ProductEntry.COLUMN_PRODUCT_NAME;
+        String limit = buildLimit(uri);
+        String sql = "SELECT " + columns + " FROM " + products
+                + " JOIN (SELECT docid, MIN(rank) AS rank FROM ("
+                // The names starting with the text are a range of the name index, read in order.
+                + "SELECT " + ProductEntry._ID + " AS docid, 0 AS rank FROM (SELECT " + ProductEntry._ID
+                + " FROM " + ProductEntry.TABLE_NAME
+                + " WHERE " + name + " COLLATE NOCASE >= ? AND " + name + " COLLATE NOCASE < ?"
+                + " AND " + name + " LIKE ? ESCAPE '\\'"
+                + " ORDER BY " + name + " COLLATE NOCASE LIMIT " + SEARCH_CANDIDATE_LIMIT + ")"
+                + " UNION ALL SELECT docid, 1 FROM (SELECT docid FROM " + fts + " WHERE " + fts + " MATCH ?"
+                + " LIMIT " + SEARCH_CANDIDATE_LIMIT + ")"
+                + " UNION ALL SELECT docid, 2 FROM (SELECT docid FROM " + fts + " WHERE " + fts + " MATCH ?"
+                + " LIMIT " + SEARCH_CANDIDATE_LIMIT + ")"
+                + ") GROUP BY docid) AS matches"
+                + " ON " + products + "." + ProductEntry._ID + " = matches.docid"
+                + (selection == null || selection.isEmpty() ? "" : " WHERE (" + selection + ")")
+                + " ORDER BY matches.rank, "
+                + products + "." + name + " COLLATE NOCASE, "
+                + products + "." + ProductEntry._ID
+                + " LIMIT " + (limit != null ? limit : String.valueOf(DEFAULT_SEARCH_LIMIT));
+
+        // The range of the names starting with the text ends before the greatest code point appended to it.
+        String prefix = text.trim();
+        String prefixEnd = new StringBuilder(prefix).appendCodePoint(Character.MAX_CODE_POINT).toString();
+        String[] args = { prefix, prefixEnd, escapeLikePattern(prefix) + "%",
+                buildMatchQuery(text, name), matchQuery };
+        if (selectionArgs != null) {
+            args = appendSelectionArgs(args, selectionArgs);
+        }
+        return database.rawQuery(sql, args, cancellationSignal);
+    }
+
+    /**
+     * Build the full-text query matching the products in which each word of the given text starts
+     * a word of the given column, or of any indexed column if it's null.
+     * Only the letters and digits of the text are kept, so that its punctuation can't be taken for
+     * the operators of the query syntax. Return null if the text has no word.
+     */
+    static String buildMatchQuery(String text, String column) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder matchQuery = new StringBuilder();
+        for (String word : splitSearchWords(text)) {
+            if (matchQuery.length() > 0) {
+                matchQuery.append(' ');
+            }
+            if (column != null) {
+                matchQuery.append(column).append(':');
+            }
+            matchQuery.append(word).append('*');
+        }
+        return matchQuery.length() > 0 ? matchQuery.toString() : null;
+    }
+
+    /**
+     * Split the given search text into the words searched for: its first {@link #MAX_SEARCH_WORDS}
+     * sequences of letters and digits, lower cased.
+     */
+    static List<String> splitSearchWords(String text) {
+        // The words are lower cased so that none of them is taken for an operator like OR or NOT.
+        String lowerCaseText = text.toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        int i = 0;
+        while (i < lowerCaseText.length() && words.size() < MAX_SEARCH_WORDS) {
+            while (i < lowerCaseText.length() && !Character.isLetterOrDigit(lowerCaseText.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < lowerCaseText.length() && Character.isLetterOrDigit(lowerCaseText.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(lowerCaseText.substring(start, i));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Escape the wildcards of a LIKE pattern, with a backslash as escape character.
+     */
+    static String escapeLikePattern(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Combine the given selection with an additional clause.
+     */
+    private static String appendSelection(String selection, String clause) {
+        if (selection == null || selection.isEmpty()) {
+            return clause;
+        }
+        return "(" + selection + ") AND " + clause;
+    }
+
+    /**
+     * Combine the given selection arguments with the arguments of an additional clause.
+     */
+    private static String[] appendSelectionArgs(String[] selectionArgs, String... args) {
+        if (selectionArgs == null || selectionArgs.length == 0) {
+            return args;
+        }
+        String[] combined = new String[selectionArgs.length + args.length];
+        System.arraycopy(selectionArgs, 0, combined, 0, selectionArgs.length);
+        System.arraycopy(args, 0, combined, selectionArgs.length, args.length);
+        return combined;
+    }
+
+    /**
+     * Build the LIMIT clause from the limit and offset query parameters of the given URI,
+     * or return null if the URI doesn't limit the number of rows.
+     */
+    private static String buildLimit(Uri uri) {
+        String limit = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_LIMIT);
+        if (limit == null) {
+            return null;
+        }
+        // Parse the parameters, so that nothing but numbers can end up in the query.
+        int rowCount = Integer.parseInt(limit);
+        String offset = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_OFFSET);
+        if (offset == null) {
+            return String.valueOf(rowCount);
+        }
+        return Integer.parseInt(offset) + "," + rowCount;
+    }
+
     /**
      * Insert new data into the provider with the given ContentValues.
      */
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
         final int match = sUriMatcher.match(uri);
-        switch (match) {
-            case PRODUCTS:
-                return insertProduct(uri, contentValues);
-            default:
-                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        Uri newUri = null;
+        boolean succeeded = false;
+        try {
+            switch (match) {
+                case PRODUCTS:
+                    newUri = insertProduct(uri, contentValues);
+                    break;
+                case SUPPLIERS:
+                    newUri = insertSupplier(uri, contentValues);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Insertion is not supported for " + uri);
+            }
+            succeeded = true;
+            return newUri;
+        } finally {
+            mMetrics.record(ProductProviderMetrics.OPERATION_INSERT, getMetricsTarget(match), startNanos,
+                    newUri != null ? 1 : 0, succeeded);
         }
     }
 
@@ -102,53 +631,266 @@ public class ProductProvider extends ContentProvider {
      * Return the new content URI for that specific row in the database.
      */
     private Uri insertProduct(Uri uri, ContentValues values) {
-        // Check that the name is not null
-        String name = values.getAsString(ProductEntry.COLUMN_PRODUCT_NAME);
-        if (name == null) {
-            throw new IllegalArgumentException("Product requires a name");
+        // Check that all the attributes of the product are valid
+        ProductValidator.checkProduct(values);
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        long id;
+        // Record the initial stock level in the same transaction as the product.
+        database.beginTransaction();
+        try {
+            if (ProductStatements.canWrite(values)) {
+                id = mStatements.insert(values);
+            } else {
+                // Let the database reject the unknown columns.
+                id = database.insert(ProductEntry.TABLE_NAME, null, mStatements.resolveSupplier(values));
+            }
+            if (id != -1) {
+                recordInitialStock(id, values, System.currentTimeMillis());
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
         }
 
-        // Check that the unit price is valid
-        Integer unitPrice = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE);
-        if (unitPrice == null) {
-            throw new IllegalArgumentException("Product requires a valid unit price");
+        // If the ID is -1, then the insertion failed. Log an error and return null.
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
         }
 
-        // If the quantity is provided, check that it's greater than or equal to 0 unit
+        refreshCachedProduct(id);
+
+        // Once we know the ID of the new row in the table,
+        // notify all listeners that the data has changed for the new product URI,
+        // and return this URI with the ID appended to the end of it
+        Uri newUri = ContentUris.withAppendedId(uri, id);
+        notifyChange(newUri);
+        return newUri;
+    }
+
+    /**
+     * Append the initial stock level of a new product to the stock ledger, if it has any unit in stock.
+     */
+    private void recordInitialStock(long id, ContentValues values, long timestamp) {
         Integer quantity = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY);
-        if (quantity != null && quantity < 0) {
-            throw new IllegalArgumentException("Product requires a valid quantity");
+        if (quantity != null && quantity != 0) {
+            mStatements.recordMovement(id, quantity, StockMovementEntry.REASON_INITIAL, timestamp);
         }
+    }
+
+    /**
+     * Insert a supplier into the database with the given content values, unless there is already one with
+     * the same name and email. Return the content URI of the new or existing supplier.
+     */
+    private Uri insertSupplier(Uri uri, ContentValues values) {
+        String name = values.getAsString(SupplierEntry.COLUMN_SUPPLIER_NAME);
+        String email = values.getAsString(SupplierEntry.COLUMN_SUPPLIER_EMAIL);
+        ProductValidator.checkSupplierName(name);
+        ProductValidator.checkSupplierEmail(email);
 
-        // Check that the name is not null
-        String supplierName = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
-        if (supplierName == null) {
-            throw new IllegalArgumentException("Product requires a supplier's name");
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        long id;
+        database.beginTransaction();
+        try {
+            id = mStatements.getOrInsertSupplier(name, email);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        Uri newUri = ContentUris.withAppendedId(uri, id);
+        notifyChange(newUri);
+        return newUri;
+    }
+
+    /**
+     * Return the row of the {@link ImportEntry} table saving the position of the import whose batch is
+     * bulk inserted with the given URI, or null if it's not a batch of an import.
+     */
+    private static ContentValues getImportPosition(Uri uri) {
+        String documentUri = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_IMPORT_DOCUMENT);
+        if (documentUri == null) {
+            return null;
+        }
+        String documentSize = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_IMPORT_SIZE);
+        String recordCount = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_IMPORT_RECORD_COUNT);
+        if (documentSize == null || recordCount == null) {
+            throw new IllegalArgumentException("Import batch requires a document size and a record count");
+        }
+        ContentValues position = new ContentValues();
+        position.put(ImportEntry.COLUMN_DOCUMENT_URI, documentUri);
+        try {
+            position.put(ImportEntry.COLUMN_DOCUMENT_SIZE, Long.parseLong(documentSize));
+            position.put(ImportEntry.COLUMN_RECORD_COUNT, Long.parseLong(recordCount));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Import batch requires a numeric document size and record count");
+        }
+        return position;
+    }
+
+    /**
+     * Insert several rows of data into the provider, all within a single transaction.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        final int match = sUriMatcher.match(uri);
+        int rowsInserted = 0;
+        boolean succeeded = false;
+        try {
+            switch (match) {
+                case PRODUCTS:
+                    rowsInserted = bulkInsertProducts(uri, values);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Insertion is not supported for " + uri);
+            }
+            succeeded = true;
+            return rowsInserted;
+        } finally {
+            mMetrics.record(ProductProviderMetrics.OPERATION_BULK_INSERT, getMetricsTarget(match), startNanos,
+                    rowsInserted, succeeded);
         }
+    }
 
-        // Check that the name is not null
-        String supplierEmail = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
-        if (supplierEmail == null) {
-            throw new IllegalArgumentException("Product requires a supplier's email address");
+    /**
+     * Insert products into the database with the given content values, reusing the compiled
+     * insert statement within a single transaction.
+     * Return the number of rows that were successfully inserted.
+     */
+    private int bulkInsertProducts(Uri uri, ContentValues[] values) {
+        // Check all the products before writing anything, so that an invalid row can't leave
+        // the catalog half imported.
+        for (ContentValues row : values) {
+            ProductValidator.checkProduct(row);
         }
+        ContentValues importPosition = getImportPosition(uri);
 
         // Gets writeable database
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
-        long id = database.insert(ProductEntry.TABLE_NAME, null, values);
+        int rowsInserted = 0;
+        long timestamp = System.currentTimeMillis();
+        database.beginTransaction();
+        try {
+            for (ContentValues row : values) {
+                long id = mStatements.insert(row);
+                if (id != -1) {
+                    recordInitialStock(id, row, timestamp);
+                    rowsInserted++;
+                }
+            }
+            // The position of an import is saved with its products, so that they can't be imported twice.
+            if (importPosition != null) {
+                database.insertWithOnConflict(ImportEntry.TABLE_NAME, null, importPosition,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
-        // If the ID is -1, then the insertion failed. Log an error and return null.
-        if (id == -1) {
-            Log.e(LOG_TAG, "Failed to insert row for " + uri);
-            return null;
+        // If 1 or more rows were inserted,
+        // then notify all listeners once that the data at the given URI has changed.
+        if (rowsInserted != 0) {
+            // The cached products are still valid, but they're not all the products anymore.
+            mCache.invalidateList();
+            notifyChange(uri);
+        }
+        // Don't leave a large write in the write-ahead log until the next automatic checkpoint.
+        if (rowsInserted >= CHECKPOINT_ROW_COUNT) {
+            mDbHelper.checkpoint();
         }
+        // Return the number of rows inserted
+        return rowsInserted;
+    }
 
-        // Notify all listeners that the data has changed for the product content URI
-        getContext().getContentResolver().notifyChange(uri, null);
+    /**
+     * Apply a batch of operations within a single transaction,
+     * and notify the listeners only once when the whole batch is done.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        boolean succeeded = false;
+        try {
+            ContentProviderResult[] results = applyBatchInTransaction(operations);
+            succeeded = true;
+            return results;
+        } finally {
+            // Each operation of the batch is also recorded on its own.
+            mMetrics.record(ProductProviderMetrics.OPERATION_APPLY_BATCH, METRICS_TARGET_NONE, startNanos,
+                    operations.size(), succeeded);
+        }
+    }
 
-        // Once we know the ID of the new row in the table,
-        // return the new URI with the ID appended to the end of it
-        return ContentUris.withAppendedId(uri, id);
+    private ContentProviderResult[] applyBatchInTransaction(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        // Gets writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        ContentProviderResult[] results;
+        boolean dataHasChanged;
+        mBatchHasChanges.set(Boolean.FALSE);
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            dataHasChanged = mBatchHasChanges.get();
+            mBatchHasChanges.remove();
+            // The batch may have been rolled back, so none of its writes is applied to the cache.
+            if (dataHasChanged) {
+                mCache.invalidateAll();
+            }
+        }
+
+        if (dataHasChanged) {
+            notifyChange(ProductEntry.CONTENT_URI);
+        }
+        if (operations.size() >= CHECKPOINT_ROW_COUNT) {
+            mDbHelper.checkpoint();
+        }
+        return results;
+    }
+
+    /**
+     * Notify all listeners that the data at the given URI has changed.
+     * While a batch is being applied, the notification is postponed until the end of the batch,
+     * and otherwise it's coalesced with the other changes happening within a short window.
+     */
+    private void notifyChange(Uri uri) {
+        if (mBatchHasChanges.get() != null) {
+            mBatchHasChanges.set(Boolean.TRUE);
+            return;
+        }
+        mChangeNotifier.notifyChange(uri);
+    }
+
+    /**
+     * Return the coalescer of the change notifications, giving access to its window and counters.
+     */
+    public ProductChangeNotifier getChangeNotifier() {
+        return mChangeNotifier;
+    }
+
+    /**
+     * Return the latencies and counters of the operations of the provider.
+     */
+    public ProductProviderMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Return the index in {@link #METRICS_TARGETS} of the URI matched to the given code.
+     */
+    private static int getMetricsTarget(int match) {
+        return match == UriMatcher.NO_MATCH ? METRICS_TARGET_NONE : match - PRODUCTS + 1;
     }
 
     /**
@@ -157,13 +899,33 @@ public class ProductProvider extends ContentProvider {
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection,
                       String[] selectionArgs) {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
         final int match = sUriMatcher.match(uri);
+        int rowsUpdated = 0;
+        boolean succeeded = false;
+        try {
+            rowsUpdated = updateMatched(match, uri, contentValues, selection, selectionArgs);
+            succeeded = true;
+            return rowsUpdated;
+        } finally {
+            mMetrics.record(ProductProviderMetrics.OPERATION_UPDATE, getMetricsTarget(match), startNanos,
+                    rowsUpdated, succeeded);
+        }
+    }
+
+    private int updateMatched(int match, Uri uri, ContentValues contentValues, String selection,
+                              String[] selectionArgs) {
         switch (match) {
+            case SUPPLIER_ID:
+                return updateSupplier(uri, contentValues);
             case PRODUCTS:
                 return updateProduct(uri, contentValues, selection, selectionArgs);
             case PRODUCT_ID:
-                selection = ProductEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
+                if (selection == null || selection.isEmpty()) {
+                    return updateProductById(uri, contentValues);
+                }
+                selection = appendSelection(selection, ProductEntry._ID + "=?");
+                selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(ContentUris.parseId(uri)));
                 return updateProduct(uri, contentValues, selection, selectionArgs);
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
@@ -175,52 +937,157 @@ public class ProductProvider extends ContentProvider {
      * Return the number of rows that were successfully updated.
      */
     private int updateProduct(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        validateProductUpdate(values);
+
+        // If there are no values to update, then don't try to update the database.
+        if (values.size() == 0) {
+            return 0;
+        }
+
+        // Otherwise, get writeable database to update the data.
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // The selection may refer to the supplier columns, which are only found in the view.
+        selection = selectFromView(selection);
+
+        int rowsUpdated;
+        database.beginTransaction();
+        try {
+            // Record the change of the stock level of each selected product before the update overwrites it.
+            Integer quantity = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            if (quantity != null) {
+                String movementSelection = appendSelection(selection,
+                        ProductEntry.COLUMN_PRODUCT_QUANTITY + " != " + quantity);
+                String[] movementArgs = selectionArgs != null ? selectionArgs : new String[0];
+                database.execSQL("INSERT INTO " + StockMovementEntry.TABLE_NAME + " ("
+                        + StockMovementEntry.COLUMN_PRODUCT_ID + ", " + StockMovementEntry.COLUMN_DELTA + ", "
+                        + StockMovementEntry.COLUMN_REASON + ", " + StockMovementEntry.COLUMN_TIMESTAMP + ")"
+                        + " SELECT " + ProductEntry._ID + ", " + quantity + " - " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                        + ", '" + StockMovementEntry.REASON_ADJUSTMENT + "', " + System.currentTimeMillis()
+                        + " FROM " + ProductEntry.TABLE_NAME + " WHERE " + movementSelection, movementArgs);
+            }
+            // Perform the update on the database and get the number of rows affected.
+            rowsUpdated = database.update(ProductEntry.TABLE_NAME, mStatements.resolveSupplier(values),
+                    selection, selectionArgs);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (rowsUpdated != 0) {
+            // The updated products are unknown.
+            mCache.invalidateAll();
+        }
+        // If 1 or more rows were updated,
+        // then notify all listeners that the data at the given URI has changed.
+        if (rowsUpdated != 0) {
+            notifyChange(uri);
+        }
+        // Return the number of rows updated
+        return rowsUpdated;
+    }
+
+    /**
+     * Update the product with the given content URI through the update statement compiled for
+     * the updated columns. Return the number of rows that were successfully updated.
+     */
+    private int updateProductById(Uri uri, ContentValues values) {
+        validateProductUpdate(values);
+
+        // If there are no values to update, then don't try to update the database.
+        if (values.size() == 0) {
+            return 0;
+        }
+
+        long id = ContentUris.parseId(uri);
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        int rowsUpdated;
+        database.beginTransaction();
+        try {
+            // Read the stock level the update overwrites, in the same transaction, to record its change.
+            Integer quantity = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            long oldQuantity = quantity != null ? mStatements.getQuantity(id) : -1;
+
+            rowsUpdated = mStatements.updateById(id, values);
+            if (rowsUpdated == -1) {
+                // Let the database reject the unknown columns.
+                rowsUpdated = database.update(ProductEntry.TABLE_NAME, mStatements.resolveSupplier(values),
+                        ProductEntry._ID + "=?", new String[] { String.valueOf(id) });
+            }
+            if (rowsUpdated != 0 && quantity != null && oldQuantity != -1 && quantity != oldQuantity) {
+                mStatements.recordMovement(id, quantity - oldQuantity, StockMovementEntry.REASON_ADJUSTMENT,
+                        System.currentTimeMillis());
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        // If the product was updated, then notify all listeners that its data has changed.
+        if (rowsUpdated != 0) {
+            refreshCachedProduct(id);
+            notifyChange(uri);
+        }
+        return rowsUpdated;
+    }
 
+    /**
+     * Check that the attributes of a product present in the given content values are valid.
+     */
+    private static void validateProductUpdate(ContentValues values) {
         // If the {@link ProductEntry#COLUMN_PRODUCT_NAME} key is present,
         // check that the name value is not null.
         if (values.containsKey(ProductEntry.COLUMN_PRODUCT_NAME)) {
-            String name = values.getAsString(ProductEntry.COLUMN_PRODUCT_NAME);
-            if (name == null) {
-                throw new IllegalArgumentException("Product requires a name");
-            }
+            ProductValidator.checkName(values.getAsString(ProductEntry.COLUMN_PRODUCT_NAME));
         }
 
         // If the {@link ProductEntry#COLUMN_PRODUCT_UNIT_PRICE} key is present,
         // check that the unit price value is valid.
         if (values.containsKey(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE)) {
-            // Check that the unit price is valid
-            Integer unitPrice = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE);
-            if (unitPrice == null) {
-                throw new IllegalArgumentException("Product requires a valid unit price");
-            }
+            ProductValidator.checkUnitPrice(values.getAsInteger(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE));
         }
 
         // If the {@link ProductEntry#COLUMN_PRODUCT_QUANTITY} key is present,
-        // check that the quantity value is valid.
+        // check that the quantity value is valid. Unlike on insertion, a null quantity isn't a missing one
+        // falling back to its default, so it's rejected before the stock ledger records its change.
         if (values.containsKey(ProductEntry.COLUMN_PRODUCT_QUANTITY)) {
-            // Check that the quantity is valid
             Integer quantity = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY);
-            if (quantity != null && quantity < 0) {
+            if (quantity == null) {
                 throw new IllegalArgumentException("Product requires a valid quantity");
             }
+            ProductValidator.checkQuantity(quantity);
+        }
+
+        // If the {@link ProductEntry#COLUMN_PRODUCT_REORDER_THRESHOLD} key is present,
+        // check that the reorder threshold value is valid.
+        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD)) {
+            ProductValidator.checkReorderThreshold(
+                    values.getAsInteger(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD));
         }
 
         // If the {@link ProductEntry#COLUMN_PRODUCT_SUPPLIER_NAME} key is present,
         // check that the supplier's name value is not null.
         if (values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME)) {
-            String supplierName = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
-            if (supplierName == null) {
-                throw new IllegalArgumentException("Product requires a supplier's name");
-            }
+            ProductValidator.checkSupplierName(values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME));
         }
 
         // If the {@link ProductEntry#COLUMN_PRODUCT_SUPPLIER_EMAIL} key is present,
         // check that the supplier's email value is not null.
         if (values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL)) {
-            String supplierEmail = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
-            if (supplierEmail == null) {
-                throw new IllegalArgumentException("Product requires a supplier's email address");
-            }
+            ProductValidator.checkSupplierEmail(values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL));
+        }
+    }
+
+    /**
+     * Update the supplier with the given content URI, which changes the supplier of all its products at once.
+     * Renaming it to another supplier, with the same name and email, merges it into that one.
+     * Return the number of rows that were successfully updated.
+     */
+    private int updateSupplier(Uri uri, ContentValues values) {
+        if (values.containsKey(SupplierEntry.COLUMN_SUPPLIER_NAME)) {
+            ProductValidator.checkSupplierName(values.getAsString(SupplierEntry.COLUMN_SUPPLIER_NAME));
+        }
+        if (values.containsKey(SupplierEntry.COLUMN_SUPPLIER_EMAIL)) {
+            ProductValidator.checkSupplierEmail(values.getAsString(SupplierEntry.COLUMN_SUPPLIER_EMAIL));
         }
 
         // If there are no values to update, then don't try to update the database.
@@ -228,43 +1095,139 @@ public class ProductProvider extends ContentProvider {
             return 0;
         }
 
-        // Otherwise, get writeable database to update the data.
+        long id = ContentUris.parseId(uri);
+        String[] idArgs = new String[] { String.valueOf(id) };
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int rowsUpdated = 0;
+        database.beginTransaction();
+        try {
+            Cursor supplier = database.query(SupplierEntry.TABLE_NAME, new String[] {
+                    SupplierEntry.COLUMN_SUPPLIER_NAME, SupplierEntry.COLUMN_SUPPLIER_EMAIL },
+                    SupplierEntry._ID + "=?", idArgs, null, null, null);
+            String name = null;
+            String email = null;
+            try {
+                if (supplier.moveToFirst()) {
+                    name = values.containsKey(SupplierEntry.COLUMN_SUPPLIER_NAME)
+                            ? values.getAsString(SupplierEntry.COLUMN_SUPPLIER_NAME) : supplier.getString(0);
+                    email = values.containsKey(SupplierEntry.COLUMN_SUPPLIER_EMAIL)
+                            ? values.getAsString(SupplierEntry.COLUMN_SUPPLIER_EMAIL) : supplier.getString(1);
+                }
+            } finally {
+                supplier.close();
+            }
 
-        // Perform the update on the database and get the number of rows affected.
-        int rowsUpdated = database.update(ProductEntry.TABLE_NAME, values, selection, selectionArgs);
-        // If 1 or more rows were updated,
-        // then notify all listeners that the data at the given URI has changed.
+            if (name != null) {
+                long otherId = mStatements.findSupplier(name, email);
+                if (otherId == -1 || otherId == id) {
+                    // The products of the supplier are indexed again by the triggers of the supplier table.
+                    rowsUpdated = database.update(SupplierEntry.TABLE_NAME, values, SupplierEntry._ID + "=?", idArgs);
+                } else {
+                    // The name and email of a supplier are unique, so the supplier already having them takes
+                    // the products, which indexes them again, and this supplier is deleted.
+                    ContentValues merged = new ContentValues();
+                    merged.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID, otherId);
+                    database.update(ProductEntry.TABLE_NAME, merged,
+                            ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + "=?", idArgs);
+                    // Moving the last product deletes the supplier already, unless it had none.
+                    database.delete(SupplierEntry.TABLE_NAME, SupplierEntry._ID + "=?", idArgs);
+                    rowsUpdated = 1;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // If the supplier was updated, then the products read with it have changed too.
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            mCache.invalidateAll();
+            notifyChange(uri);
+            notifyChange(ProductEntry.CONTENT_URI);
         }
-        // Return the number of rows updated
         return rowsUpdated;
     }
 
+    /**
+     * Return the _ID of the supplier of the given URI of the products of a supplier.
+     */
+    private static long getSupplierId(Uri uri) {
+        return Long.parseLong(uri.getPathSegments().get(1));
+    }
+
+    /**
+     * Turn a selection of the products, which may refer to any column of the view joining them to
+     * their supplier, into a selection of the product table. Return it as is if it's empty.
+     */
+    private static String selectFromView(String selection) {
+        if (selection == null || selection.isEmpty()) {
+            return selection;
+        }
+        return ProductEntry._ID + " IN (SELECT " + ProductEntry._ID + " FROM "
+                + ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER + " WHERE " + selection + ")";
+    }
+
     /**
      * Delete the data at the given selection and selection arguments.
      */
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        final int match = sUriMatcher.match(uri);
+        int rowsDeleted = 0;
+        boolean succeeded = false;
+        try {
+            rowsDeleted = deleteMatched(match, uri, selection, selectionArgs);
+            succeeded = true;
+            return rowsDeleted;
+        } finally {
+            mMetrics.record(ProductProviderMetrics.OPERATION_DELETE, getMetricsTarget(match), startNanos,
+                    rowsDeleted, succeeded);
+        }
+    }
+
+    private int deleteMatched(int match, Uri uri, String selection, String[] selectionArgs) {
         // Get writeable database.
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
         // Track the number of rows that were deleted.
         int rowsDeleted;
 
-        final int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
                 // Delete all rows that match the selection and selection args.
-                rowsDeleted = database.delete(ProductEntry.TABLE_NAME, selection, selectionArgs);
+                rowsDeleted = database.delete(ProductEntry.TABLE_NAME, selectFromView(selection), selectionArgs);
+                if (rowsDeleted != 0) {
+                    mCache.invalidateAll();
+                }
                 break;
             case PRODUCT_ID:
                 // Delete a single row given by the ID in the URI.
-                selection = ProductEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                rowsDeleted = database.delete(ProductEntry.TABLE_NAME, selection, selectionArgs);
+                if (selection == null || selection.isEmpty()) {
+                    rowsDeleted = mStatements.deleteById(ContentUris.parseId(uri));
+                } else {
+                    selection = appendSelection(selection, ProductEntry._ID + "=?");
+                    selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(ContentUris.parseId(uri)));
+                    rowsDeleted = database.delete(ProductEntry.TABLE_NAME, selectFromView(selection), selectionArgs);
+                }
+                if (rowsDeleted != 0) {
+                    mCache.remove(ContentUris.parseId(uri));
+                }
+                break;
+            case SUPPLIERS:
+                // Only the suppliers without products are deleted, the others being still used by their products.
+                rowsDeleted = database.delete(SupplierEntry.TABLE_NAME,
+                        appendSelection(selection, SQL_SUPPLIER_WITHOUT_PRODUCTS), selectionArgs);
                 break;
+            case SUPPLIER_ID:
+                selection = appendSelection(selection, SupplierEntry._ID + "=?");
+                selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(ContentUris.parseId(uri)));
+                rowsDeleted = database.delete(SupplierEntry.TABLE_NAME,
+                        appendSelection(selection, SQL_SUPPLIER_WITHOUT_PRODUCTS), selectionArgs);
+                break;
+            case IMPORTS:
+                // Nobody observes the positions of the imports, so there is nothing to notify.
+                return database.delete(ImportEntry.TABLE_NAME, selection, selectionArgs);
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
@@ -272,12 +1235,430 @@ public class ProductProvider extends ContentProvider {
         // If 1 or more rows were deleted,
         // then notify all listeners that the data at the given URI has changed.
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         // Return the number of rows deleted.
         return rowsDeleted;
     }
 
+    /**
+     * Provider specific method, which can't be expressed as a plain insert, update or delete.
+     */
+    private abstract class CallMethod {
+
+        /** Name under which the method is called */
+        final String name;
+
+        CallMethod(String name) {
+            this.name = name;
+        }
+
+        abstract Bundle call(String arg, Bundle extras);
+    }
+
+    /**
+     * Methods handled by {@link #call(String, String, Bundle)}, whose metrics are recorded under the operation
+     * numbered after their position, from {@link ProductProviderMetrics#OPERATION_FIRST_METHOD}.
+     * So that the operations keep their numbers, the new methods are added at the end.
+     */
+    private final CallMethod[] mCallMethods = {
+            new CallMethod(ProductContract.METHOD_SELL) {
+                @Override
+                Bundle call(String arg, Bundle extras) {
+                    int units = extras != null ? extras.getInt(ProductContract.EXTRA_UNITS, 1) : 1;
+                    return sellProduct(parseIdArgument(arg, "Sale"), units);
+                }
+            },
+            new CallMethod(ProductContract.METHOD_STOCK_AT) {
+                @Override
+                Bundle call(String arg, Bundle extras) {
+                    long timestamp = extras != null
+                            ? extras.getLong(ProductContract.EXTRA_TIMESTAMP, System.currentTimeMillis())
+                            : System.currentTimeMillis();
+                    Bundle result = new Bundle();
+                    result.putLong(ProductContract.EXTRA_QUANTITY,
+                            mStatements.getStockAt(parseIdArgument(arg, "Stock level"), timestamp));
+                    return result;
+                }
+            },
+            new CallMethod(ProductContract.METHOD_COMPACT_STOCK_MOVEMENTS) {
+                @Override
+                Bundle call(String arg, Bundle extras) {
+                    return compactStockMovements(extras);
+                }
+            },
+            new CallMethod(ProductContract.METHOD_BACKUP_PRODUCTS) {
+                @Override
+                Bundle call(String arg, Bundle extras) {
+                    return backupProducts(parseUriArgument(arg, "Backup"),
+                            extras != null && extras.getBoolean(ProductContract.EXTRA_DEFLATE, false));
+                }
+            },
+            new CallMethod(ProductContract.METHOD_RESTORE_PRODUCTS) {
+                @Override
+                Bundle call(String arg, Bundle extras) {
+                    return restoreProducts(parseUriArgument(arg, "Restore"));
+                }
+            },
+            new CallMethod(ProductContract.METHOD_COLLECT_REORDERS) {
+                @Override
+                Bundle call(String arg, Bundle extras) {
+                    return collectReorders();
+                }
+            },
+            new CallMethod(ProductContract.METHOD_BATCH_PRODUCTS) {
+                @Override
+                Bundle call(String arg, Bundle extras) {
+                    return batchProducts(arg, extras);
+                }
+            },
+            new CallMethod(ProductContract.METHOD_ACKNOWLEDGE_REORDERS) {
+                @Override
+                Bundle call(String arg, Bundle extras) {
+                    return acknowledgeReorders(extras);
+                }
+            }};
+
+    /**
+     * Return the _ID of the product given as the argument of a method, which the given action requires.
+     */
+    private static long parseIdArgument(String arg, String action) {
+        if (arg == null) {
+            throw new IllegalArgumentException(action + " requires the _ID of a product");
+        }
+        try {
+            return Long.parseLong(arg);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(action + " requires a valid _ID, not " + arg, e);
+        }
+    }
+
+    /**
+     * Return the URI of the snapshot given as the argument of a method, which the given action requires.
+     */
+    private static Uri parseUriArgument(String arg, String action) {
+        if (TextUtils.isEmpty(arg)) {
+            throw new IllegalArgumentException(action + " requires the URI of a snapshot");
+        }
+        return Uri.parse(arg);
+    }
+
+    /**
+     * Handle the provider specific methods that can't be expressed as a plain insert, update or delete.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (ProductContract.METHOD_METRICS.equals(method)) {
+            return getMetricsBundle(extras != null && extras.getBoolean(ProductContract.EXTRA_RESET, false));
+        }
+        int index = 0;
+        while (index < mCallMethods.length && !mCallMethods[index].name.equals(method)) {
+            index++;
+        }
+        if (index == mCallMethods.length) {
+            return super.call(method, arg, extras);
+        }
+
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        Bundle result = null;
+        try {
+            result = mCallMethods[index].call(arg, extras);
+            return result;
+        } finally {
+            // The snapshots report their failures with a row count of -1 rather than an exception.
+            int rowCount = result != null ? result.getInt(ProductContract.EXTRA_ROW_COUNT, 0) : 0;
+            if (result != null && result.getBoolean(ProductContract.EXTRA_SOLD, false)) {
+                rowCount = 1;
+            }
+            mMetrics.record(ProductProviderMetrics.OPERATION_FIRST_METHOD + index, METRICS_TARGET_NONE,
+                    startNanos, rowCount, result != null && rowCount != -1);
+        }
+    }
+
+    /**
+     * Return the metrics of the operations and of the change notifications, resetting the metrics of the
+     * operations if requested.
+     */
+    private Bundle getMetricsBundle(boolean reset) {
+        Bundle result = mMetrics.toBundle();
+        if (reset) {
+            mMetrics.reset();
+        }
+        result.putLong(ProductContract.EXTRA_NOTIFICATIONS_REQUESTED, mChangeNotifier.getRequestedCount());
+        result.putLong(ProductContract.EXTRA_NOTIFICATIONS_SENT, mChangeNotifier.getSentCount());
+        return result;
+    }
+
+    /**
+     * Roll the old stock movements into per-day snapshots, by default the ones past their retention.
+     * Return a bundle holding the number of rolled movements.
+     */
+    private Bundle compactStockMovements(Bundle extras) {
+        long before = System.currentTimeMillis() - StockLedger.RETENTION_DAYS * StockLedger.DAY_MILLIS;
+        if (extras != null) {
+            before = extras.getLong(ProductContract.EXTRA_TIMESTAMP, before);
+        }
+        int rowsCompacted = StockLedger.compact(mDbHelper.getWritableDatabase(), before);
+        if (rowsCompacted >= CHECKPOINT_ROW_COUNT) {
+            mDbHelper.checkpoint();
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(ProductContract.EXTRA_ROW_COUNT, rowsCompacted);
+        return result;
+    }
+
+    /**
+     * Collect the pending reorders into one purchase order per supplier, leaving them in the reorder queue
+     * until they are acknowledged. Return a bundle holding the purchase orders and the number of products
+     * they reorder.
+     */
+    private Bundle collectReorders() {
+        // The products themselves are left unchanged, so there is nothing to notify.
+        ArrayList<Bundle> purchaseOrders = ReorderQueue.collect(mDbHelper.getReadableDatabase());
+
+        Bundle result = new Bundle();
+        result.putParcelableArrayList(ProductContract.EXTRA_PURCHASE_ORDERS, purchaseOrders);
+        result.putInt(ProductContract.EXTRA_ROW_COUNT, ReorderQueue.countProducts(purchaseOrders));
+        return result;
+    }
+
+    /**
+     * Remove from the reorder queue the products of a sent purchase order, given by the extras.
+     * Return a bundle holding the number of products removed.
+     */
+    private Bundle acknowledgeReorders(Bundle extras) {
+        long[] productIds = extras != null ? extras.getLongArray(ProductContract.EXTRA_PRODUCT_IDS) : null;
+        if (productIds == null || !extras.containsKey(ProductContract.EXTRA_TIMESTAMP)) {
+            throw new IllegalArgumentException("Acknowledging reorders requires their product IDs and sequence number");
+        }
+        int rowsDeleted = ReorderQueue.acknowledge(mDbHelper.getWritableDatabase(), productIds,
+                extras.getLong(ProductContract.EXTRA_TIMESTAMP));
+
+        Bundle result = new Bundle();
+        result.putInt(ProductContract.EXTRA_ROW_COUNT, rowsDeleted);
+        return result;
+    }
+
+    /**
+     * Write a binary snapshot of all the products to the given document.
+     * Return a bundle holding the number of products written, or -1 if the snapshot couldn't be written.
+     */
+    private Bundle backupProducts(Uri documentUri, boolean deflate) {
+        long rowCount;
+        try {
+            ParcelFileDescriptor descriptor = getContext().getContentResolver().openFileDescriptor(documentUri, "w");
+            if (descriptor == null) {
+                throw new IOException("Cannot open " + documentUri);
+            }
+            FileChannel channel = new ParcelFileDescriptor.AutoCloseOutputStream(descriptor).getChannel();
+            // The snapshot is read through a connection of its own, so that the writes go on meanwhile.
+            SQLiteDatabase snapshotDatabase = mDbHelper.openSnapshotDatabase();
+            try {
+                rowCount = ProductSnapshot.write(snapshotDatabase != null ? snapshotDatabase
+                        : mDbHelper.getWritableDatabase(), channel, deflate);
+            } finally {
+                if (snapshotDatabase != null) {
+                    snapshotDatabase.close();
+                }
+                channel.close();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to back up the products to " + documentUri, e);
+            rowCount = -1;
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(ProductContract.EXTRA_ROW_COUNT, (int) rowCount);
+        return result;
+    }
+
+    /**
+     * Replace all the products with the ones of the binary snapshot in the given document.
+     * Return a bundle holding the number of products restored, or -1 if the snapshot couldn't be read
+     * or holds a product which the provider rejects.
+     */
+    private Bundle restoreProducts(Uri documentUri) {
+        long rowCount;
+        try {
+            ParcelFileDescriptor descriptor = getContext().getContentResolver().openFileDescriptor(documentUri, "r");
+            if (descriptor == null) {
+                throw new IOException("Cannot open " + documentUri);
+            }
+            FileChannel channel = new ParcelFileDescriptor.AutoCloseInputStream(descriptor).getChannel();
+            try {
+                rowCount = ProductSnapshot.read(mDbHelper.getWritableDatabase(), channel);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException | SQLiteConstraintException e) {
+            // The transaction is rolled back, so the products are left unchanged.
+            Log.e(LOG_TAG, "Failed to restore the products from " + documentUri, e);
+            rowCount = -1;
+        }
+
+        if (rowCount != -1) {
+            // Every product may have changed, so drop them all from the cache.
+            mCache.invalidateAll();
+            mDbHelper.checkpoint();
+            notifyChange(ProductEntry.CONTENT_URI);
+        }
+        Bundle result = new Bundle();
+        result.putInt(ProductContract.EXTRA_ROW_COUNT, (int) rowCount);
+        return result;
+    }
+
+    /**
+     * Sell the given number of units of a product with a single conditional update,
+     * so that concurrent sales can't lose units nor bring the stock level below 0.
+     * Return a bundle telling if the sale happened, along with the resulting stock level.
+     */
+    private Bundle sellProduct(long id, int units) {
+        // Check that the number of units to sell is valid
+        if (units <= 0) {
+            throw new IllegalArgumentException("Sale requires a positive number of units");
+        }
+
+        // Gets writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        int rowsUpdated;
+        long quantity;
+        // Record the sale and read back the new stock level in the same transaction as the sale.
+        database.beginTransaction();
+        try {
+            rowsUpdated = mStatements.sell(id, units);
+            if (rowsUpdated != 0) {
+                mStatements.recordMovement(id, -units, StockMovementEntry.REASON_SALE, System.currentTimeMillis());
+            }
+            quantity = mStatements.getQuantity(id);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // If the sale happened, notify all listeners that the data of this product has changed.
+        if (rowsUpdated != 0) {
+            refreshCachedProduct(id);
+            notifyChange(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id));
+        }
+
+        Bundle result = new Bundle();
+        result.putBoolean(ProductContract.EXTRA_SOLD, rowsUpdated != 0);
+        result.putLong(ProductContract.EXTRA_QUANTITY, quantity);
+        return result;
+    }
+
+    /**
+     * Apply the given action to the products whose _IDs are given in the extras, within a single transaction
+     * so that the batch is applied as a whole or not at all, and notify the listeners once for all of them.
+     * Return a bundle holding the number of products changed.
+     */
+    private Bundle batchProducts(String action, Bundle extras) {
+        long[] ids = extras != null ? extras.getLongArray(ProductContract.EXTRA_IDS) : null;
+        if (ids == null || ids.length == 0) {
+            throw new IllegalArgumentException("Batch requires the _IDs of its products");
+        }
+
+        // Check the parameters of the action before writing anything.
+        int units = 0;
+        ContentValues unitPriceValues = null;
+        switch (action != null ? action : "") {
+            case ProductContract.BATCH_RESTOCK:
+            case ProductContract.BATCH_SELL:
+                units = extras.getInt(ProductContract.EXTRA_UNITS, 0);
+                if (units <= 0) {
+                    throw new IllegalArgumentException("Batch requires a positive number of units");
+                }
+                break;
+            case ProductContract.BATCH_SET_UNIT_PRICE:
+                Integer unitPrice = extras.containsKey(ProductContract.EXTRA_UNIT_PRICE)
+                        ? extras.getInt(ProductContract.EXTRA_UNIT_PRICE) : null;
+                ProductValidator.checkUnitPrice(unitPrice);
+                unitPriceValues = new ContentValues();
+                unitPriceValues.put(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE, unitPrice);
+                break;
+            case ProductContract.BATCH_DELETE:
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown batch action " + action);
+        }
+
+        // Gets writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // Each product goes through the same compiled statement, and the products that are gone
+        // or, for a sale, lack units in stock are skipped.
+        long[] changedIds = new long[ids.length];
+        int rowsChanged = 0;
+        long timestamp = System.currentTimeMillis();
+        database.beginTransaction();
+        try {
+            for (long id : ids) {
+                int rowsUpdated;
+                switch (action) {
+                    case ProductContract.BATCH_RESTOCK:
+                        rowsUpdated = mStatements.restock(id, units);
+                        if (rowsUpdated != 0) {
+                            mStatements.recordMovement(id, units, StockMovementEntry.REASON_RESTOCK, timestamp);
+                        }
+                        break;
+                    case ProductContract.BATCH_SELL:
+                        rowsUpdated = mStatements.sell(id, units);
+                        if (rowsUpdated != 0) {
+                            mStatements.recordMovement(id, -units, StockMovementEntry.REASON_SALE, timestamp);
+                        }
+                        break;
+                    case ProductContract.BATCH_SET_UNIT_PRICE:
+                        rowsUpdated = mStatements.updateById(id, unitPriceValues);
+                        break;
+                    default:
+                        rowsUpdated = mStatements.deleteById(id);
+                        break;
+                }
+                if (rowsUpdated != 0) {
+                    changedIds[rowsChanged++] = id;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // If 1 or more products have changed, then notify all listeners once for the whole batch.
+        if (rowsChanged != 0) {
+            if (ProductContract.BATCH_DELETE.equals(action)) {
+                mCache.remove(changedIds, rowsChanged);
+            } else {
+                refreshCachedProducts(changedIds, rowsChanged);
+            }
+            notifyChange(ProductEntry.CONTENT_URI);
+        }
+        // Don't leave a large write in the write-ahead log until the next automatic checkpoint.
+        if (rowsChanged >= CHECKPOINT_ROW_COUNT) {
+            mDbHelper.checkpoint();
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(ProductContract.EXTRA_ROW_COUNT, rowsChanged);
+        return result;
+    }
+
+    /**
+     * Print the metrics of the provider, for "adb shell dumpsys activity provider ProductProvider".
+     */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mMetrics.dump(writer);
+        writer.print("Notifications: ");
+        writer.print(mChangeNotifier.getRequestedCount());
+        writer.print(" requested, ");
+        writer.print(mChangeNotifier.getSentCount());
+        writer.print(" sent, ");
+        writer.print(mChangeNotifier.getSuppressedCount());
+        writer.println(" coalesced");
+    }
+
     /**
      * Returns the MIME type of data for the content URI.
      */
@@ -289,6 +1670,18 @@ public class ProductProvider extends ContentProvider {
                 return ProductEntry.CONTENT_LIST_TYPE;
             case PRODUCT_ID:
                 return ProductEntry.CONTENT_ITEM_TYPE;
+            case PRODUCT_SEARCH:
+                return ProductEntry.CONTENT_LIST_TYPE;
+            case PRODUCT_STATS:
+                return ProductEntry.CONTENT_STATS_TYPE;
+            case SUPPLIERS:
+                return SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIER_ID:
+                return SupplierEntry.CONTENT_ITEM_TYPE;
+            case SUPPLIER_PRODUCTS:
+                return ProductEntry.CONTENT_LIST_TYPE;
+            case IMPORTS:
+                return ImportEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
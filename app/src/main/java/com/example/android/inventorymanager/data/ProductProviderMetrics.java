@@ -0,0 +1,177 @@
+package com.example.android.inventorymanager.data;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency histograms and counters of the operations of {@link ProductProvider}, one set per operation and
+ * URI it was run on. Recording never takes a lock, so that it can stay enabled in production.
+ */
+public class ProductProviderMetrics {
+
+    /** Operations of the provider on its URIs */
+    public static final int OPERATION_QUERY = 0;
+    public static final int OPERATION_INSERT = 1;
+    public static final int OPERATION_BULK_INSERT = 2;
+    public static final int OPERATION_UPDATE = 3;
+    public static final int OPERATION_DELETE = 4;
+    public static final int OPERATION_APPLY_BATCH = 5;
+
+    /** First operation of the provider methods, which are numbered in the order of their names */
+    public static final int OPERATION_FIRST_METHOD = 6;
+
+    /** Names of the operations of the provider on its URIs */
+    private static final String[] URI_OPERATION_NAMES = {
+            "query",
+            "insert",
+            "bulk_insert",
+            "update",
+            "delete",
+            "apply_batch"};
+
+    /** Percentiles of the latencies reported for each operation */
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    /**
+     * Metrics of one operation on one URI.
+     */
+    private static class OperationMetrics {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong failureCount = new AtomicLong();
+        final AtomicLong rowCount = new AtomicLong();
+    }
+
+    /** Names of the provider methods, which the operations are named after */
+    private final String[] mMethodNames;
+
+    /** Names of the URIs the operations are run on, the first one standing for no URI */
+    private final String[] mTargetNames;
+
+    /** Metrics of each operation and URI, created when the operation is first run on the URI */
+    private final AtomicReferenceArray<OperationMetrics> mMetrics;
+
+    /**
+     * Constructs a new {@link ProductProviderMetrics}.
+     *
+     * @param methodNames The names of the provider methods, the operation of the first one being
+     *                    {@link #OPERATION_FIRST_METHOD}
+     * @param targetNames The names of the URIs the operations are run on, the first one standing for
+     *                    the operations run without a URI, such as the provider methods
+     */
+    public ProductProviderMetrics(String[] methodNames, String[] targetNames) {
+        mMethodNames = methodNames;
+        mTargetNames = targetNames;
+        mMetrics = new AtomicReferenceArray<>((OPERATION_FIRST_METHOD + methodNames.length) * targetNames.length);
+    }
+
+    /**
+     * Record an operation which has just ended.
+     *
+     * @param operation  One of the OPERATION_ constants
+     * @param target     The index of the URI the operation has been run on in the names given to the constructor
+     * @param startNanos The start of the operation, from {@link SystemClock#elapsedRealtimeNanos()}
+     * @param rowCount   The number of rows the operation has read or written
+     * @param succeeded  Whether the operation has succeeded, or has failed with an exception
+     */
+    public void record(int operation, int target, long startNanos, int rowCount, boolean succeeded) {
+        long micros = (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000;
+        OperationMetrics metrics = getOrCreate(operation * mTargetNames.length + target);
+        metrics.latency.record(micros);
+        if (rowCount > 0) {
+            metrics.rowCount.addAndGet(rowCount);
+        }
+        if (!succeeded) {
+            metrics.failureCount.incrementAndGet();
+        }
+    }
+
+    private OperationMetrics getOrCreate(int index) {
+        OperationMetrics metrics = mMetrics.get(index);
+        if (metrics == null) {
+            // If another thread creates them at the same time, its metrics are the ones kept.
+            mMetrics.compareAndSet(index, null, new OperationMetrics());
+            metrics = mMetrics.get(index);
+        }
+        return metrics;
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < mMetrics.length(); i++) {
+            mMetrics.set(i, null);
+        }
+    }
+
+    /**
+     * Return a bundle holding, for each operation run so far, a bundle of its metrics keyed by the name of the
+     * operation and of its URI, such as "query products/#". See {@link ProductContract#METHOD_METRICS}.
+     */
+    public Bundle toBundle() {
+        Bundle result = new Bundle();
+        for (int i = 0; i < mMetrics.length(); i++) {
+            OperationMetrics metrics = mMetrics.get(i);
+            if (metrics == null) {
+                continue;
+            }
+            LatencyHistogram latency = metrics.latency;
+            Bundle bundle = new Bundle();
+            bundle.putLong(ProductContract.METRIC_COUNT, latency.getCount());
+            bundle.putLong(ProductContract.METRIC_FAILURE_COUNT, metrics.failureCount.get());
+            bundle.putLong(ProductContract.METRIC_ROW_COUNT, metrics.rowCount.get());
+            bundle.putLong(ProductContract.METRIC_MEAN_MICROS, latency.getMeanMicros());
+            bundle.putLong(ProductContract.METRIC_P50_MICROS, latency.getPercentileMicros(50));
+            bundle.putLong(ProductContract.METRIC_P90_MICROS, latency.getPercentileMicros(90));
+            bundle.putLong(ProductContract.METRIC_P99_MICROS, latency.getPercentileMicros(99));
+            bundle.putLong(ProductContract.METRIC_MAX_MICROS, latency.getMaxMicros());
+            result.putBundle(getName(i), bundle);
+        }
+        return result;
+    }
+
+    /**
+     * Print the metrics of the operations run so far, one line per operation.
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("Operations (count, failures, rows, latency in us: mean p50 p90 p99 max):");
+        for (int i = 0; i < mMetrics.length(); i++) {
+            OperationMetrics metrics = mMetrics.get(i);
+            if (metrics == null) {
+                continue;
+            }
+            LatencyHistogram latency = metrics.latency;
+            writer.print("  ");
+            writer.print(getName(i));
+            writer.print(": ");
+            writer.print(latency.getCount());
+            writer.print(' ');
+            writer.print(metrics.failureCount.get());
+            writer.print(' ');
+            writer.print(metrics.rowCount.get());
+            writer.print(", ");
+            writer.print(latency.getMeanMicros());
+            for (double percentile : PERCENTILES) {
+                writer.print(' ');
+                writer.print(latency.getPercentileMicros(percentile));
+            }
+            writer.print(' ');
+            writer.println(latency.getMaxMicros());
+        }
+    }
+
+    /**
+     * Return the name of the operation and URI with the given index, such as "query products" or "sell".
+     */
+    private String getName(int index) {
+        int operation = index / mTargetNames.length;
+        String operationName = operation < OPERATION_FIRST_METHOD ? URI_OPERATION_NAMES[operation]
+                : mMethodNames[operation - OPERATION_FIRST_METHOD];
+        int target = index % mTargetNames.length;
+        return target == 0 ? operationName : operationName + " " + mTargetNames[target];
+    }
+}
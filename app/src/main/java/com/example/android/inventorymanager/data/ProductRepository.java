@@ -0,0 +1,187 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Entry point of the UI for the writes of the products, so that they don't touch the disk on the main thread.
+ * The writes run one after the other on a background thread, in the order they were requested, and their
+ * results are posted back to the main thread.
+ */
+public class ProductRepository {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ProductRepository.class.getSimpleName();
+
+    /**
+     * Callback receiving the result of an operation on the main thread.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private static ProductRepository sInstance;
+
+    private final ContentResolver mResolver;
+
+    /** Background thread running the operations, in the order they were requested */
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Return the product repository of the app.
+     */
+    public static synchronized ProductRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ProductRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ProductRepository(Context context) {
+        mResolver = context.getContentResolver();
+    }
+
+    /**
+     * Insert a new product, the callback receiving its URI, or null if it couldn't be inserted.
+     */
+    public void insertProduct(final ContentValues values, Callback<Uri> callback) {
+        execute(new Callable<Uri>() {
+            @Override
+            public Uri call() {
+                return mResolver.insert(ProductEntry.CONTENT_URI, values);
+            }
+        }, null, callback);
+    }
+
+    /**
+     * Update the product with the given URI, the callback receiving the number of rows updated.
+     */
+    public void updateProduct(final Uri uri, final ContentValues values, Callback<Integer> callback) {
+        execute(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return mResolver.update(uri, values, null, null);
+            }
+        }, 0, callback);
+    }
+
+    /**
+     * Delete the product with the given URI, the callback receiving the number of rows deleted.
+     */
+    public void deleteProduct(final Uri uri, Callback<Integer> callback) {
+        execute(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return mResolver.delete(uri, null, null);
+            }
+        }, 0, callback);
+    }
+
+    /**
+     * Delete all the products, the callback receiving the number of rows deleted.
+     */
+    public void deleteAllProducts(Callback<Integer> callback) {
+        deleteProduct(ProductEntry.CONTENT_URI, callback);
+    }
+
+    /**
+     * Sell the given number of units of a product, the callback receiving the result of
+     * {@link ProductContract#METHOD_SELL}, or null if the sale failed.
+     */
+    public void sellProduct(final long id, final int units, Callback<Bundle> callback) {
+        execute(new Callable<Bundle>() {
+            @Override
+            public Bundle call() {
+                Bundle extras = new Bundle();
+                extras.putInt(ProductContract.EXTRA_UNITS, units);
+                return mResolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SELL, String.valueOf(id), extras);
+            }
+        }, null, callback);
+    }
+
+    /**
+     * Apply one of the BATCH_ actions of {@link ProductContract#METHOD_BATCH_PRODUCTS} to the products with
+     * the given _IDs in a single transaction, the callback receiving the number of products changed,
+     * or -1 if the batch was rejected.
+     */
+    public void batchProducts(final String action, final long[] ids, final Bundle extras, Callback<Integer> callback) {
+        execute(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                Bundle batchExtras = extras != null ? new Bundle(extras) : new Bundle();
+                batchExtras.putLongArray(ProductContract.EXTRA_IDS, ids);
+                Bundle result = mResolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_BATCH_PRODUCTS,
+                        action, batchExtras);
+                return result != null ? result.getInt(ProductContract.EXTRA_ROW_COUNT) : -1;
+            }
+        }, -1, callback);
+    }
+
+    /**
+     * Count the products, the callback receiving their number. Queued after the writes already requested,
+     * the count includes them.
+     */
+    public void countProducts(Callback<Integer> callback) {
+        execute(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                // Only the count is read, not the rows.
+                Cursor cursor = mResolver.query(ProductEntry.CONTENT_URI, new String[] { "COUNT(*)" },
+                        null, null, null);
+                if (cursor == null) {
+                    return 0;
+                }
+                try {
+                    return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+                } finally {
+                    cursor.close();
+                }
+            }
+        }, 0, callback);
+    }
+
+    /**
+     * Run the operation on the background thread and post its result to the callback, or the given
+     * result if the provider rejected the operation.
+     */
+    private <T> void execute(final Callable<T> operation, final T failedResult, final Callback<T> callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                T result;
+                try {
+                    result = operation.call();
+                } catch (Exception e) {
+                    // The provider throws an IllegalArgumentException for an invalid product.
+                    Log.e(LOG_TAG, "Failed to access the products", e);
+                    result = failedResult;
+                }
+                if (callback == null) {
+                    return;
+                }
+                final T finalResult = result;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(finalResult);
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.v4.content.ContentResolverCompat;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.os.OperationCanceledException;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Loader of the products matching a search text, which can be changed while the loader runs.
+ * A new text cancels the query still running for the previous one, and when it only extends
+ * the previous text whose results were complete, these results are filtered in memory instead
+ * of querying the provider again.
+ * Like {@link ProductPagedLoader}, it leaves the closing of the delivered cursors to their receiver.
+ */
+public class ProductSearchLoader extends ProductCursorLoader {
+
+    /** Maximum number of products returned by a search */
+    public static final int SEARCH_LIMIT = 100;
+
+    private final String[] mProjection;
+
+    /** Text searched by the next load */
+    private volatile String mQuery;
+
+    /** Signal cancelling the query in progress, guarded by this */
+    private CancellationSignal mCancellationSignal;
+
+    /** Complete results of the last query, which may be refined by the next ones, guarded by this */
+    private SearchResult mLastResult;
+
+    /** Number of changes of the products seen so far, guarded by this */
+    private int mContentGeneration;
+
+    /**
+     * Constructs a new {@link ProductSearchLoader}.
+     *
+     * @param context    The context
+     * @param projection The columns of the products to load, which must include the _ID,
+     *                   the name and the supplier name
+     * @param query      The text to search
+     */
+    public ProductSearchLoader(Context context, String[] projection, String query) {
+        super(context);
+        mProjection = projection;
+        mQuery = query;
+    }
+
+    /**
+     * Search another text, cancelling the search of the current one if it's still running.
+     * It must be called on the main thread.
+     */
+    public void setQuery(String query) {
+        if (query.equals(mQuery)) {
+            return;
+        }
+        mQuery = query;
+        // Reload without forgetting the last results, since the products haven't changed.
+        super.onContentChanged();
+    }
+
+    @Override
+    public void onContentChanged() {
+        // The products have changed, so the last results can't be refined anymore.
+        synchronized (this) {
+            mContentGeneration++;
+            mLastResult = null;
+        }
+        super.onContentChanged();
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        String query = mQuery;
+        SearchResult lastResult;
+        int contentGeneration;
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            mCancellationSignal = new CancellationSignal();
+            lastResult = mLastResult;
+            contentGeneration = mContentGeneration;
+        }
+        try {
+            Cursor cursor;
+            if (lastResult != null && lastResult.canRefine(query)) {
+                cursor = lastResult.refine(query);
+            } else {
+                cursor = ContentResolverCompat.query(getContext().getContentResolver(),
+                        ProductEntry.buildSearchUri(query, SEARCH_LIMIT), mProjection, null, null, null,
+                        mCancellationSignal);
+                if (cursor == null) {
+                    return null;
+                }
+                try {
+                    // Keep the results for the next searches if none has been left out.
+                    if (cursor.getCount() < SEARCH_LIMIT) {
+                        SearchResult result = new SearchResult(query, cursor);
+                        synchronized (this) {
+                            if (contentGeneration == mContentGeneration) {
+                                mLastResult = result;
+                            }
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    cursor.close();
+                    throw e;
+                }
+            }
+            // Register an observer on the products, so that any change reloads the results.
+            cursor.setNotificationUri(getContext().getContentResolver(), ProductEntry.CONTENT_URI);
+            cursor.registerContentObserver(mObserver);
+            return cursor;
+        } finally {
+            synchronized (this) {
+                mCancellationSignal = null;
+            }
+        }
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+
+        synchronized (this) {
+            if (mCancellationSignal != null) {
+                mCancellationSignal.cancel();
+            }
+        }
+    }
+
+    /**
+     * Split the given text into the words the full-text index of the products is made of:
+     * sequences of letters and digits, lower cased and without diacritics.
+     */
+    static List<String> splitWords(String text) {
+        String normalizedText = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{Mn}+", "").toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        int i = 0;
+        while (i < normalizedText.length()) {
+            while (i < normalizedText.length() && !Character.isLetterOrDigit(normalizedText.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < normalizedText.length() && Character.isLetterOrDigit(normalizedText.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(normalizedText.substring(start, i));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Split the given search text into the words the provider searches for, which are the ones of
+     * its full-text query, without diacritics like the full-text index folds them.
+     */
+    private static List<String> splitSearchWords(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : ProductProvider.splitSearchWords(text)) {
+            words.addAll(splitWords(word));
+        }
+        return words;
+    }
+
+    /**
+     * Return whether each of the given words starts one of the words of the given texts.
+     */
+    private static boolean startWords(List<String> words, List<String> textWords) {
+        for (String word : words) {
+            boolean found = false;
+            for (String textWord : textWords) {
+                if (textWord.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy of all the products found for a text, which can be filtered for a longer text
+     * with the same matching and ranking as the provider.
+     */
+    static class SearchResult {
+        final String query;
+        final String[] columnNames;
+        final List<Object[]> rows = new ArrayList<>();
+        final int idColumnIndex;
+        final int nameColumnIndex;
+        final int supplierNameColumnIndex;
+
+        SearchResult(String query, Cursor cursor) {
+            this.query = query;
+            columnNames = cursor.getColumnNames();
+            idColumnIndex = cursor.getColumnIndexOrThrow(ProductEntry._ID);
+            nameColumnIndex = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_NAME);
+            supplierNameColumnIndex = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                Object[] row = new Object[columnNames.length];
+                for (int i = 0; i < row.length; i++) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row[i] = cursor.getLong(i);
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row[i] = cursor.getDouble(i);
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            row[i] = cursor.getBlob(i);
+                            break;
+                        case Cursor.FIELD_TYPE_STRING:
+                            row[i] = cursor.getString(i);
+                            break;
+                        default:
+                            row[i] = null;
+                    }
+                }
+                rows.add(row);
+            }
+            cursor.moveToPosition(-1);
+        }
+
+        /**
+         * Return whether the products found for the given text are among these ones, which is the case
+         * when the text only adds characters or words to the text of these results.
+         */
+        boolean canRefine(String newQuery) {
+            return newQuery.startsWith(query) && !splitWords(query).isEmpty();
+        }
+
+        /**
+         * Return the products of these results found for the given text, ranked like the provider does:
+         * first the ones whose name starts with the text, then the ones whose name matches it,
+         * each group sorted by name.
+         */
+        Cursor refine(String newQuery) {
+            List<String> words = splitSearchWords(newQuery);
+            String namePrefix = newQuery.trim();
+            final List<Object[]> matchingRows = new ArrayList<>();
+            final List<Integer> ranks = new ArrayList<>();
+            for (Object[] row : rows) {
+                String name = String.valueOf(row[nameColumnIndex]);
+                List<String> nameWords = splitWords(name);
+                List<String> allWords = new ArrayList<>(nameWords);
+                allWords.addAll(splitWords(String.valueOf(row[supplierNameColumnIndex])));
+                // Like the LIKE operator, the prefix of the name only ignores the case of ASCII letters.
+                boolean startsName = ProductCache.startsWithNoCase(name, namePrefix);
+                if (!startsName && !startWords(words, allWords)) {
+                    continue;
+                }
+                int rank = startsName ? 0 : startWords(words, nameWords) ? 1 : 2;
+                matchingRows.add(row);
+                ranks.add(rank);
+            }
+
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < matchingRows.size(); i++) {
+                order.add(i);
+            }
+            Collections.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int result = ranks.get(a).compareTo(ranks.get(b));
+                    if (result == 0) {
+                        // Sort the names like the NOCASE collation of the provider.
+                        result = ProductCache.compareNoCase(String.valueOf(matchingRows.get(a)[nameColumnIndex]),
+                                String.valueOf(matchingRows.get(b)[nameColumnIndex]));
+                    }
+                    if (result == 0) {
+                        result = ((Long) matchingRows.get(a)[idColumnIndex])
+                                .compareTo((Long) matchingRows.get(b)[idColumnIndex]);
+                    }
+                    return result;
+                }
+            });
+
+            MatrixCursor cursor = new MatrixCursor(columnNames, order.size());
+            for (int i : order) {
+                cursor.addRow(matchingRows.get(i));
+            }
+            return cursor;
+        }
+    }
+}
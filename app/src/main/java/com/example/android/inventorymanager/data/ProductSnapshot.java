@@ -0,0 +1,588 @@
+package com.example.android.inventorymanager.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.SupplierEntry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary snapshot of the product table, written and read through NIO channels.
+ *
+ * A snapshot starts with a fixed header: a magic number, the version of the format, its flags, the version
+ * of the database it was taken from, the number of products and a CRC32 of the preceding header bytes.
+ * The body, deflated if {@link #FLAG_DEFLATE} is set, holds one length-prefixed record per product,
+ * then {@link #END_OF_RECORDS} and a CRC32 of all the preceding body bytes.
+ * A record holds the _ID, unit price, quantity and, since version 2 of the format, reorder threshold as
+ * integers, then the name, image, supplier name and supplier email as UTF-8 bytes prefixed by their length,
+ * which is -1 for a null value. The products of a version 1 snapshot are restored without a threshold.
+ * The suppliers are written with each of their products, and shared again by the products restored
+ * with the same one.
+ *
+ * Unlike a CSV export, it keeps the _ID and image of the products as they are, and is restored in a single
+ * transaction without parsing text, so it's also the fastest way to fill a database with many products.
+ */
+final class ProductSnapshot {
+
+    /** Magic number starting every snapshot: "IMPS" */
+    static final int MAGIC = 0x494D5053;
+
+    /** Version of the format written */
+    static final short FORMAT_VERSION = 2;
+
+    /** Flag of the snapshots whose body is deflated */
+    static final short FLAG_DEFLATE = 1;
+
+    /** Size of the header, in bytes */
+    static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 8 + 4;
+
+    /** Length written in place of a record after the last one */
+    private static final int END_OF_RECORDS = -1;
+
+    /**
+     * Size of the fixed part of a record: _ID, unit price, quantity, reorder threshold and the lengths
+     * of the 4 texts
+     */
+    private static final int FIXED_RECORD_SIZE = 8 + 4 + 4 + 4 + 4 * 4;
+
+    /** Size of the fixed part of a record of version 1, which has no reorder threshold */
+    private static final int FIXED_RECORD_SIZE_V1 = FIXED_RECORD_SIZE - 4;
+
+    /** Size of the buffers in front of the channels, in bytes */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Number of products read from the database at once */
+    private static final int PAGE_SIZE = 1000;
+
+    /** Columns of the products held by a record, in order */
+    private static final String[] COLUMNS = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_UNIT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_IMAGE_PATH,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL};
+
+    /** Index of the first text column of a record */
+    private static final int FIRST_TEXT_COLUMN = 3;
+
+    /** Index of the first supplier column of a record, which are stored in the supplier table */
+    private static final int FIRST_SUPPLIER_COLUMN = 5;
+
+    /**
+     * SQL query reading the page of products following an _ID, along with their supplier, the reorder
+     * threshold following the other columns of a record
+     */
+    private static final String SQL_PAGE = "SELECT " + join(COLUMNS) + ", "
+            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD
+            + " FROM " + ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER + " WHERE " + ProductEntry._ID + " > ?"
+            + " ORDER BY " + ProductEntry._ID + " LIMIT " + PAGE_SIZE;
+
+    /**
+     * SQL statement inserting a product with its _ID, the columns preceding the supplier ones being bound
+     * first, then the _ID of the supplier and the reorder threshold
+     */
+    private static final String SQL_INSERT = "INSERT INTO " + ProductEntry.TABLE_NAME + " ("
+            + join(Arrays.copyOf(COLUMNS, FIRST_SUPPLIER_COLUMN)) + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID
+            + ", " + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /** Name of the savepoint holding the read transaction of a snapshot being written */
+    private static final String SAVEPOINT_WRITE = "snapshot_write";
+
+    /** SQL statement inserting a supplier */
+    private static final String SQL_INSERT_SUPPLIER = "INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + ") VALUES (?, ?)";
+
+    // To prevent someone from accidentally instantiating the snapshot class, an empty constructor is given
+    private ProductSnapshot() {}
+
+    /**
+     * Write a snapshot of all the products to the given channel. The products are read in a deferred
+     * transaction, so that the snapshot is consistent even if they're written meanwhile, without keeping
+     * the writers waiting for the whole snapshot.
+     *
+     * SQLiteDatabase turns a BEGIN into an immediate or exclusive transaction, so the deferred transaction
+     * is started by a savepoint. It only spans the pages of products if the given database has a single
+     * connection, like the read-only one of {@link ProductDbHelper#openSnapshotDatabase()}.
+     *
+     * @param deflate Whether the body of the snapshot is deflated
+     * @return the number of products written
+     */
+    static long write(SQLiteDatabase db, WritableByteChannel channel, boolean deflate) throws IOException {
+        db.execSQL("SAVEPOINT " + SAVEPOINT_WRITE);
+        try {
+            long rowCount = DatabaseUtils.queryNumEntries(db, ProductEntry.TABLE_NAME);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort(FORMAT_VERSION);
+            header.putShort(deflate ? FLAG_DEFLATE : 0);
+            header.putInt(db.getVersion());
+            header.putLong(rowCount);
+            header.putInt(checksum(header.array(), header.position()));
+            header.flip();
+            writeFully(channel, header);
+
+            BodyWriter body = new BodyWriter(channel, deflate);
+            long lastId = 0;
+            long writtenCount = 0;
+            String[] selectionArgs = new String[1];
+            int pageCount;
+            do {
+                selectionArgs[0] = String.valueOf(lastId);
+                Cursor page = db.rawQuery(SQL_PAGE, selectionArgs);
+                try {
+                    pageCount = page.getCount();
+                    while (page.moveToNext()) {
+                        writeRecord(body, page);
+                        lastId = page.getLong(0);
+                    }
+                } finally {
+                    page.close();
+                }
+                writtenCount += pageCount;
+            } while (pageCount == PAGE_SIZE);
+            body.finish();
+            return writtenCount;
+        } finally {
+            // Nothing was written, so releasing the savepoint only ends the read transaction.
+            db.execSQL("RELEASE " + SAVEPOINT_WRITE);
+        }
+    }
+
+    /**
+     * Replace all the products and suppliers with the ones of the snapshot read from the given channel,
+     * in a single transaction, so that nothing is changed if the snapshot is corrupted. The secondary indexes
+     * are dropped while the products are inserted and built again once afterwards, and the stock levels
+     * of the products become their initial movements in the stock ledger.
+     *
+     * @return the number of products restored
+     * @throws IOException if the snapshot can't be read, is corrupted or holds an invalid product
+     */
+    static long read(SQLiteDatabase db, ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a product snapshot");
+        }
+        if (header.getInt(HEADER_SIZE - 4) != checksum(header.array(), HEADER_SIZE - 4)) {
+            throw new IOException("Corrupted snapshot header");
+        }
+        short formatVersion = header.getShort();
+        if (formatVersion > FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format " + formatVersion);
+        }
+        boolean deflate = (header.getShort() & FLAG_DEFLATE) != 0;
+        // The version of the database doesn't matter as long as the records hold the columns of the format.
+        header.getInt();
+        long rowCount = header.getLong();
+
+        BodyReader body = new BodyReader(channel, deflate);
+        db.beginTransaction();
+        try {
+            // The triggers remove the products from the full-text index, the stock ledger, the totals and
+            // the reorder queue, and queue again the restored ones below their threshold.
+            db.delete(ProductEntry.TABLE_NAME, null, null);
+            db.delete(SupplierEntry.TABLE_NAME, null, null);
+            ProductDbHelper.dropProductIndexes(db);
+
+            SQLiteStatement insert = db.compileStatement(SQL_INSERT);
+            SupplierIds supplierIds = new SupplierIds(db.compileStatement(SQL_INSERT_SUPPLIER));
+            String[] supplier = new String[COLUMNS.length - FIRST_SUPPLIER_COLUMN];
+            long readCount = 0;
+            try {
+                while (readRecord(body, formatVersion, insert, supplier)) {
+                    insert.bindLong(FIRST_SUPPLIER_COLUMN + 1, supplierIds.get(supplier[0], supplier[1]));
+                    insert.executeInsert();
+                    readCount++;
+                }
+            } finally {
+                insert.close();
+                supplierIds.close();
+            }
+            body.finish();
+            if (readCount != rowCount) {
+                throw new IOException("Snapshot holds " + readCount + " products instead of " + rowCount);
+            }
+
+            ProductDbHelper.createProductIndexes(db);
+            ProductDbHelper.insertInitialStockMovements(db, System.currentTimeMillis());
+            db.setTransactionSuccessful();
+            return readCount;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Write the product at the current position of the cursor as a record.
+     */
+    private static void writeRecord(BodyWriter body, Cursor cursor) throws IOException {
+        byte[][] texts = new byte[COLUMNS.length - FIRST_TEXT_COLUMN][];
+        int length = FIXED_RECORD_SIZE;
+        for (int i = 0; i < texts.length; i++) {
+            String text = cursor.getString(FIRST_TEXT_COLUMN + i);
+            if (text != null) {
+                texts[i] = text.getBytes(StandardCharsets.UTF_8);
+                length += texts[i].length;
+            }
+        }
+
+        ByteBuffer buffer = body.reserve(4 + length);
+        buffer.putInt(length);
+        buffer.putLong(cursor.getLong(0));
+        buffer.putInt(cursor.getInt(1));
+        buffer.putInt(cursor.getInt(2));
+        buffer.putInt(cursor.getInt(COLUMNS.length));
+        for (byte[] text : texts) {
+            if (text == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(text.length);
+                buffer.put(text);
+            }
+        }
+        body.commit(buffer);
+    }
+
+    /**
+     * Read the next record of a snapshot of the given format version and bind its values to the insert statement,
+     * except its supplier name and email which are read into the given array.
+     *
+     * @return false if there is no record left
+     */
+    private static boolean readRecord(BodyReader body, short formatVersion, SQLiteStatement insert,
+            String[] supplier) throws IOException {
+        int length = body.require(4).getInt();
+        if (length == END_OF_RECORDS) {
+            return false;
+        }
+        if (length < (formatVersion >= 2 ? FIXED_RECORD_SIZE : FIXED_RECORD_SIZE_V1)) {
+            throw new IOException("Corrupted snapshot record");
+        }
+        ByteBuffer buffer = body.require(length);
+        int end = buffer.position() + length;
+        insert.bindLong(1, buffer.getLong());
+        int unitPrice = buffer.getInt();
+        int quantity = buffer.getInt();
+        int reorderThreshold = formatVersion >= 2 ? buffer.getInt() : 0;
+        insert.bindLong(2, unitPrice);
+        insert.bindLong(3, quantity);
+        insert.bindLong(FIRST_SUPPLIER_COLUMN + 2, reorderThreshold);
+        String name = null;
+        for (int i = FIRST_TEXT_COLUMN; i < COLUMNS.length; i++) {
+            int textLength = buffer.getInt();
+            String text = null;
+            if (textLength != -1) {
+                if (textLength < 0 || textLength > end - buffer.position()) {
+                    throw new IOException("Corrupted snapshot record");
+                }
+                text = new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                        textLength, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + textLength);
+            }
+            if (i == FIRST_TEXT_COLUMN) {
+                name = text;
+            }
+            if (i >= FIRST_SUPPLIER_COLUMN) {
+                supplier[i - FIRST_SUPPLIER_COLUMN] = text;
+            } else if (text == null) {
+                insert.bindNull(i + 1);
+            } else {
+                insert.bindString(i + 1, text);
+            }
+        }
+        if (buffer.position() != end) {
+            throw new IOException("Corrupted snapshot record");
+        }
+
+        // A well-formed record may still hold a product the provider would have rejected.
+        try {
+            ProductValidator.checkName(name);
+            ProductValidator.checkUnitPrice(unitPrice);
+            ProductValidator.checkQuantity(quantity);
+            ProductValidator.checkReorderThreshold(reorderThreshold);
+            ProductValidator.checkSupplierName(supplier[0]);
+            ProductValidator.checkSupplierEmail(supplier[1]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid snapshot record", e);
+        }
+        return true;
+    }
+
+    /**
+     * _IDs of the suppliers of the restored products, each supplier being inserted with its first product.
+     */
+    private static final class SupplierIds {
+        private final SQLiteStatement mInsert;
+        private final HashMap<List<String>, Long> mIds = new HashMap<>();
+
+        SupplierIds(SQLiteStatement insert) {
+            mInsert = insert;
+        }
+
+        long get(String name, String email) throws IOException {
+            if (name == null || email == null) {
+                throw new IOException("Corrupted snapshot record");
+            }
+            List<String> key = Arrays.asList(name, email);
+            Long id = mIds.get(key);
+            if (id == null) {
+                mInsert.bindString(1, name);
+                mInsert.bindString(2, email);
+                id = mInsert.executeInsert();
+                mIds.put(key, id);
+            }
+            return id;
+        }
+
+        void close() {
+            mInsert.close();
+        }
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException("Truncated product snapshot");
+            }
+        }
+    }
+
+    private static String join(String[] columns) {
+        StringBuilder builder = new StringBuilder();
+        for (String column : columns) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(column);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writer of the body of a snapshot, checksumming and optionally deflating the bytes
+     * before they reach the channel.
+     */
+    private static final class BodyWriter {
+        private final WritableByteChannel mChannel;
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 mCrc = new CRC32();
+        private final Deflater mDeflater;
+        private final ByteBuffer mDeflated;
+
+        BodyWriter(WritableByteChannel channel, boolean deflate) {
+            mChannel = channel;
+            mDeflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+            mDeflated = deflate ? ByteBuffer.allocate(BUFFER_SIZE) : null;
+        }
+
+        /**
+         * Return a buffer with room for the given number of bytes, which must be given back to
+         * {@link #commit} once they're put.
+         */
+        ByteBuffer reserve(int size) throws IOException {
+            if (mBuffer.remaining() < size) {
+                flush();
+            }
+            // A record larger than the buffer gets a buffer of its own.
+            return size <= mBuffer.remaining() ? mBuffer : ByteBuffer.allocate(size);
+        }
+
+        void commit(ByteBuffer buffer) throws IOException {
+            if (buffer != mBuffer) {
+                buffer.flip();
+                drain(buffer, true);
+            }
+        }
+
+        /**
+         * Write the end of the records and the checksum of the body, then the bytes left in the deflater.
+         */
+        void finish() throws IOException {
+            reserve(4).putInt(END_OF_RECORDS);
+            flush();
+            ByteBuffer checksum = ByteBuffer.allocate(4);
+            checksum.putInt((int) mCrc.getValue());
+            checksum.flip();
+            drain(checksum, false);
+            if (mDeflater != null) {
+                try {
+                    mDeflater.finish();
+                    while (!mDeflater.finished()) {
+                        writeDeflated();
+                    }
+                } finally {
+                    mDeflater.end();
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            mBuffer.flip();
+            drain(mBuffer, true);
+            mBuffer.clear();
+        }
+
+        private void drain(ByteBuffer buffer, boolean checksum) throws IOException {
+            if (checksum) {
+                mCrc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+            if (mDeflater == null) {
+                writeFully(mChannel, buffer);
+                return;
+            }
+            mDeflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            while (!mDeflater.needsInput()) {
+                writeDeflated();
+            }
+        }
+
+        private void writeDeflated() throws IOException {
+            mDeflated.clear();
+            mDeflated.position(mDeflater.deflate(mDeflated.array(), 0, mDeflated.capacity()));
+            mDeflated.flip();
+            writeFully(mChannel, mDeflated);
+        }
+    }
+
+    /**
+     * Reader of the body of a snapshot, optionally inflating the bytes of the channel,
+     * and checksumming them as they're consumed.
+     */
+    private static final class BodyReader {
+        private final ReadableByteChannel mChannel;
+        private final CRC32 mCrc = new CRC32();
+        private final Inflater mInflater;
+        private final ByteBuffer mDeflated;
+
+        /** Inflated bytes, ready to be read */
+        private ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /** Position in the buffer up to which the consumed bytes have been checksummed */
+        private int mChecksumPosition;
+
+        BodyReader(ReadableByteChannel channel, boolean deflate) {
+            mChannel = channel;
+            mInflater = deflate ? new Inflater() : null;
+            mDeflated = deflate ? ByteBuffer.allocate(BUFFER_SIZE) : null;
+            mBuffer.flip();
+        }
+
+        /**
+         * Return the buffer holding at least the given number of bytes from its position.
+         */
+        ByteBuffer require(int size) throws IOException {
+            if (mBuffer.remaining() >= size) {
+                return mBuffer;
+            }
+            updateChecksum();
+            if (size > mBuffer.capacity()) {
+                // A record larger than the buffer gets a larger buffer.
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                buffer.put(mBuffer);
+                mBuffer = buffer;
+            } else {
+                mBuffer.compact();
+            }
+            while (mBuffer.position() < size) {
+                fill();
+            }
+            mBuffer.flip();
+            mChecksumPosition = 0;
+            return mBuffer;
+        }
+
+        /**
+         * Check the checksum of the body against the one following the records.
+         */
+        void finish() throws IOException {
+            updateChecksum();
+            int expected = (int) mCrc.getValue();
+            int checksum = require(4).getInt();
+            if (checksum != expected || mBuffer.hasRemaining()) {
+                throw new IOException("Corrupted snapshot body");
+            }
+            if (mInflater != null) {
+                try {
+                    // Inflate up to the end of the deflated stream, so that its own trailer is checked too.
+                    mBuffer.clear();
+                    while (!mInflater.finished()) {
+                        fill();
+                    }
+                    if (mBuffer.position() != 0) {
+                        throw new IOException("Corrupted snapshot body");
+                    }
+                } finally {
+                    mInflater.end();
+                }
+            }
+        }
+
+        private void updateChecksum() {
+            mCrc.update(mBuffer.array(), mBuffer.arrayOffset() + mChecksumPosition,
+                    mBuffer.position() - mChecksumPosition);
+            mChecksumPosition = mBuffer.position();
+        }
+
+        /**
+         * Append the next bytes of the body to the buffer.
+         */
+        private void fill() throws IOException {
+            if (mInflater == null) {
+                if (mChannel.read(mBuffer) == -1) {
+                    throw new EOFException("Truncated product snapshot");
+                }
+                return;
+            }
+            if (mInflater.finished()) {
+                throw new EOFException("Truncated product snapshot");
+            }
+            if (mInflater.needsInput()) {
+                mDeflated.clear();
+                if (mChannel.read(mDeflated) == -1) {
+                    throw new EOFException("Truncated product snapshot");
+                }
+                mInflater.setInput(mDeflated.array(), 0, mDeflated.position());
+            }
+            try {
+                int count = mInflater.inflate(mBuffer.array(), mBuffer.arrayOffset() + mBuffer.position(),
+                        mBuffer.remaining());
+                mBuffer.position(mBuffer.position() + count);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted snapshot body", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.StockMovementEntry;
+import com.example.android.inventorymanager.data.ProductContract.StockSnapshotEntry;
+import com.example.android.inventorymanager.data.ProductContract.SupplierEntry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Cache of the compiled statements of the provider's hot paths: single product insert, lookup,
+ * update and delete by _ID, sale, supplier lookup, and the writes and reads of the stock ledger.
+ * The SQL of each statement is built once, its compiled form is kept by the connection, and the _IDs
+ * are bound as primitive longs rather than as selection argument strings.
+ *
+ * A statement holds its bindings, so each thread gets its own statements. They aren't shared under
+ * a lock, as a thread waiting for it could hold the transaction that the owner of the lock waits for.
+ */
+class ProductStatements {
+
+    /**
+     * Columns of the product table that can be written through the cached statements, in the order of their
+     * bit in the masks keying the update statements. The supplier name and email are written as the _ID
+     * of the supplier.
+     */
+    private static final String[] PRODUCT_COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_UNIT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_IMAGE_PATH,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD};
+
+    /** SQL statement inserting a product with all its attributes */
+    private static final String SQL_INSERT_PRODUCT = "INSERT INTO " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_IMAGE_PATH + ", "
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    /** SQL statement reading the _ID of the supplier with a name and an email, served by their unique index */
+    private static final String SQL_FIND_SUPPLIER = "SELECT " + SupplierEntry._ID
+            + " FROM " + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?"
+            + " AND " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " = ?";
+
+    /** SQL statement inserting a supplier */
+    private static final String SQL_INSERT_SUPPLIER = "INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+            + SupplierEntry.COLUMN_SUPPLIER_EMAIL + ") VALUES (?, ?)";
+
+    /** SQL statement deleting a product */
+    private static final String SQL_DELETE_PRODUCT = "DELETE FROM " + ProductEntry.TABLE_NAME
+            + " WHERE " + ProductEntry._ID + " = ?";
+
+    /** SQL statement selling units of a product, only if enough of them are in stock */
+    private static final String SQL_SELL_PRODUCT = "UPDATE " + ProductEntry.TABLE_NAME
+            + " SET " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " - ?"
+            + " WHERE " + ProductEntry._ID + " = ? AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " >= ?";
+
+    /** SQL statement adding units to the stock of a product */
+    private static final String SQL_RESTOCK_PRODUCT = "UPDATE " + ProductEntry.TABLE_NAME
+            + " SET " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " + ?"
+            + " WHERE " + ProductEntry._ID + " = ?";
+
+    /** SQL statement reading the stock level of a product */
+    private static final String SQL_PRODUCT_QUANTITY = "SELECT " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+            + " FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ?";
+
+    /** SQL statement appending a movement to the stock ledger */
+    private static final String SQL_RECORD_MOVEMENT = "INSERT INTO " + StockMovementEntry.TABLE_NAME + " ("
+            + StockMovementEntry.COLUMN_PRODUCT_ID + ", "
+            + StockMovementEntry.COLUMN_DELTA + ", "
+            + StockMovementEntry.COLUMN_REASON + ", "
+            + StockMovementEntry.COLUMN_TIMESTAMP + ") VALUES (?, ?, ?, ?)";
+
+    /**
+     * SQL statement reading the stock level of a product (?1) at a time (?3) of a day (?2): the last
+     * snapshot of the product before that day, plus the movements following the snapshot up to that time.
+     * It's a single statement, so that a compaction can't move the movements between two reads.
+     */
+    private static final String SQL_STOCK_AT = "SELECT"
+            + " COALESCE((SELECT " + StockSnapshotEntry.COLUMN_QUANTITY + " FROM " + StockSnapshotEntry.TABLE_NAME
+            + " WHERE " + StockSnapshotEntry.COLUMN_PRODUCT_ID + " = ?1 AND " + StockSnapshotEntry.COLUMN_DAY + " < ?2"
+            + " ORDER BY " + StockSnapshotEntry.COLUMN_DAY + " DESC LIMIT 1), 0)"
+            + " + COALESCE((SELECT SUM(" + StockMovementEntry.COLUMN_DELTA + ") FROM " + StockMovementEntry.TABLE_NAME
+            + " WHERE " + StockMovementEntry.COLUMN_PRODUCT_ID + " = ?1"
+            + " AND " + StockMovementEntry.COLUMN_TIMESTAMP + " < ?3"
+            + " AND " + StockMovementEntry.COLUMN_TIMESTAMP + " >= " + StockLedger.DAY_MILLIS + " * COALESCE((SELECT "
+            + StockSnapshotEntry.COLUMN_DAY + " + 1 FROM " + StockSnapshotEntry.TABLE_NAME
+            + " WHERE " + StockSnapshotEntry.COLUMN_PRODUCT_ID + " = ?1 AND " + StockSnapshotEntry.COLUMN_DAY + " < ?2"
+            + " ORDER BY " + StockSnapshotEntry.COLUMN_DAY + " DESC LIMIT 1), 0)), 0)";
+
+    /** Maximum number of SQL statements kept prepared by each connection to the database */
+    private static final int MAX_SQL_CACHE_SIZE = 50;
+
+    private final ProductDbHelper mDbHelper;
+
+    private SQLiteDatabase mDatabase;
+
+    /** Statements of each thread */
+    private final ThreadLocal<ThreadStatements> mThreadStatements = new ThreadLocal<ThreadStatements>() {
+        @Override
+        protected ThreadStatements initialValue() {
+            return new ThreadStatements();
+        }
+    };
+
+    /** SQL of the lookups by _ID, by projection, guarded by this */
+    private final HashMap<List<String>, String> mQueryByIdSql = new HashMap<>();
+
+    ProductStatements(ProductDbHelper dbHelper) {
+        mDbHelper = dbHelper;
+    }
+
+    /**
+     * Return the database, opening it on first use.
+     */
+    synchronized SQLiteDatabase getDatabase() {
+        if (mDatabase == null) {
+            mDatabase = mDbHelper.getWritableDatabase();
+            // Keep the SQL of all the statements below prepared, along with the ones of the catalog queries.
+            mDatabase.setMaxSqlCacheSize(MAX_SQL_CACHE_SIZE);
+        }
+        return mDatabase;
+    }
+
+    /**
+     * Insert a validated product, the columns missing from the content values getting the same
+     * defaults as in the table definition, and its supplier if it's a new one.
+     * Return the _ID of the new product, or -1 if the insertion failed.
+     */
+    long insert(ContentValues values) {
+        values = resolveSupplier(values);
+        ThreadStatements statements = mThreadStatements.get();
+        if (statements.insert == null) {
+            statements.insert = getDatabase().compileStatement(SQL_INSERT_PRODUCT);
+        }
+        SQLiteStatement statement = statements.insert;
+        statement.clearBindings();
+        statement.bindString(1, values.getAsString(ProductEntry.COLUMN_PRODUCT_NAME));
+        statement.bindLong(2, values.getAsInteger(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE));
+        Integer quantity = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        statement.bindLong(3, quantity != null ? quantity : 0);
+        String image = values.getAsString(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH);
+        if (image != null) {
+            statement.bindString(4, image);
+        }
+        statement.bindLong(5, values.getAsLong(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID));
+        Integer reorderThreshold = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD);
+        statement.bindLong(6, reorderThreshold != null ? reorderThreshold : 0);
+        return statement.executeInsert();
+    }
+
+    /**
+     * Return the given content values with the supplier name and email replaced by the _ID of the supplier,
+     * or the content values themselves if they hold neither. It must be called in the same transaction as
+     * the write of the product, as the supplier is inserted if there is none with that name and email yet.
+     */
+    ContentValues resolveSupplier(ContentValues values) {
+        boolean hasName = values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
+        boolean hasEmail = values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
+        if (!hasName && !hasEmail) {
+            return values;
+        }
+        if (!hasName || !hasEmail) {
+            throw new IllegalArgumentException("Supplier requires both a name and an email address");
+        }
+        ContentValues resolved = new ContentValues(values);
+        resolved.remove(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
+        resolved.remove(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
+        resolved.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID, getOrInsertSupplier(
+                values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME),
+                values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL)));
+        return resolved;
+    }
+
+    /**
+     * Return the _ID of the supplier with the given name and email, or -1 if there is none.
+     */
+    long findSupplier(String name, String email) {
+        ThreadStatements statements = mThreadStatements.get();
+        if (statements.findSupplier == null) {
+            statements.findSupplier = getDatabase().compileStatement(SQL_FIND_SUPPLIER);
+        }
+        statements.findSupplier.bindString(1, name);
+        statements.findSupplier.bindString(2, email);
+        try {
+            return statements.findSupplier.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            // There is no supplier with this name and email.
+            return -1;
+        }
+    }
+
+    /**
+     * Return the _ID of the supplier with the given name and email, inserting it if there is none yet.
+     * It must be called within a transaction, so that the supplier can't be inserted twice.
+     */
+    long getOrInsertSupplier(String name, String email) {
+        long id = findSupplier(name, email);
+        if (id != -1) {
+            return id;
+        }
+        ThreadStatements statements = mThreadStatements.get();
+        if (statements.insertSupplier == null) {
+            statements.insertSupplier = getDatabase().compileStatement(SQL_INSERT_SUPPLIER);
+        }
+        statements.insertSupplier.bindString(1, name);
+        statements.insertSupplier.bindString(2, email);
+        return statements.insertSupplier.executeInsert();
+    }
+
+    /**
+     * Return whether the given content values can be written by the cached statements,
+     * which is the case when they only hold product columns.
+     */
+    static boolean canWrite(ContentValues values) {
+        return columnMask(values) != -1;
+    }
+
+    /**
+     * Update the given columns of the product with the given _ID.
+     * Return the number of updated rows, or -1 if the content values hold other columns than
+     * the ones of a product.
+     */
+    int updateById(long id, ContentValues values) {
+        if (!canWrite(values)) {
+            return -1;
+        }
+        values = resolveSupplier(values);
+        int mask = columnMask(values);
+        if (mask == 0) {
+            return 0;
+        }
+        SparseArray<SQLiteStatement> updateStatements = mThreadStatements.get().updates;
+        SQLiteStatement statement = updateStatements.get(mask);
+        if (statement == null) {
+            statement = getDatabase().compileStatement(buildUpdateSql(mask));
+            updateStatements.put(mask, statement);
+        }
+        statement.clearBindings();
+        int index = 1;
+        for (int i = 0; i < PRODUCT_COLUMNS.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                DatabaseUtils.bindObjectToProgram(statement, index++, values.get(PRODUCT_COLUMNS[i]));
+            }
+        }
+        statement.bindLong(index, id);
+        return statement.executeUpdateDelete();
+    }
+
+    /**
+     * Delete the product with the given _ID, and return the number of deleted rows.
+     */
+    int deleteById(long id) {
+        ThreadStatements statements = mThreadStatements.get();
+        if (statements.delete == null) {
+            statements.delete = getDatabase().compileStatement(SQL_DELETE_PRODUCT);
+        }
+        statements.delete.bindLong(1, id);
+        return statements.delete.executeUpdateDelete();
+    }
+
+    /**
+     * Sell the given number of units of a product if enough of them are in stock,
+     * and return the number of updated rows.
+     */
+    int sell(long id, int units) {
+        ThreadStatements statements = mThreadStatements.get();
+        if (statements.sell == null) {
+            statements.sell = getDatabase().compileStatement(SQL_SELL_PRODUCT);
+        }
+        statements.sell.bindLong(1, units);
+        statements.sell.bindLong(2, id);
+        statements.sell.bindLong(3, units);
+        return statements.sell.executeUpdateDelete();
+    }
+
+    /**
+     * Add the given number of units to the stock of a product, and return the number of updated rows.
+     */
+    int restock(long id, int units) {
+        ThreadStatements statements = mThreadStatements.get();
+        if (statements.restock == null) {
+            statements.restock = getDatabase().compileStatement(SQL_RESTOCK_PRODUCT);
+        }
+        statements.restock.bindLong(1, units);
+        statements.restock.bindLong(2, id);
+        return statements.restock.executeUpdateDelete();
+    }
+
+    /**
+     * Return the stock level of a product, or -1 if there is no product with this _ID.
+     */
+    long getQuantity(long id) {
+        ThreadStatements statements = mThreadStatements.get();
+        if (statements.quantity == null) {
+            statements.quantity = getDatabase().compileStatement(SQL_PRODUCT_QUANTITY);
+        }
+        statements.quantity.bindLong(1, id);
+        try {
+            return statements.quantity.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            // There is no product with this ID.
+            return -1;
+        }
+    }
+
+    /**
+     * Append a movement of the stock of a product to the ledger. It must be called in the same
+     * transaction as the change of the stock level.
+     */
+    void recordMovement(long productId, long delta, String reason, long timestamp) {
+        ThreadStatements statements = mThreadStatements.get();
+        if (statements.recordMovement == null) {
+            statements.recordMovement = getDatabase().compileStatement(SQL_RECORD_MOVEMENT);
+        }
+        statements.recordMovement.bindLong(1, productId);
+        statements.recordMovement.bindLong(2, delta);
+        statements.recordMovement.bindString(3, reason);
+        statements.recordMovement.bindLong(4, timestamp);
+        statements.recordMovement.executeInsert();
+    }
+
+    /**
+     * Return the stock level the product with the given _ID had at the given time, according to the ledger.
+     */
+    long getStockAt(long productId, long timestamp) {
+        ThreadStatements statements = mThreadStatements.get();
+        if (statements.stockAt == null) {
+            statements.stockAt = getDatabase().compileStatement(SQL_STOCK_AT);
+        }
+        statements.stockAt.bindLong(1, productId);
+        statements.stockAt.bindLong(2, StockLedger.getDay(timestamp));
+        statements.stockAt.bindLong(3, timestamp);
+        return statements.stockAt.simpleQueryForLong();
+    }
+
+    /**
+     * Query the given columns of the product with the given _ID.
+     * The SQL of each projection is built once, so that the prepared statement of the connection is
+     * reused. A cursor can only be bound to strings, so the _ID is still converted to one.
+     */
+    Cursor queryById(long id, String[] projection, CancellationSignal cancellationSignal) {
+        String sql;
+        synchronized (this) {
+            List<String> key = projection != null ? Arrays.asList(projection) : null;
+            sql = mQueryByIdSql.get(key);
+            if (sql == null) {
+                sql = "SELECT " + (projection != null ? TextUtils.join(", ", projection) : "*")
+                        + " FROM " + ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER
+                        + " WHERE " + ProductEntry._ID + " = ?";
+                mQueryByIdSql.put(key != null ? Arrays.asList(projection.clone()) : null, sql);
+            }
+        }
+        return getDatabase().rawQuery(sql, new String[] { Long.toString(id) }, cancellationSignal);
+    }
+
+    /**
+     * Return the mask of the product columns held by the given content values, or -1 if they hold another one
+     * than these and the supplier name and email.
+     */
+    private static int columnMask(ContentValues values) {
+        int mask = 0;
+        int columnCount = 0;
+        for (int i = 0; i < PRODUCT_COLUMNS.length; i++) {
+            if (values.containsKey(PRODUCT_COLUMNS[i])) {
+                mask |= 1 << i;
+                columnCount++;
+            }
+        }
+        // The supplier name and email are written as the _ID of the supplier.
+        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME)) {
+            columnCount++;
+        }
+        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL)) {
+            columnCount++;
+        }
+        return columnCount == values.size() ? mask : -1;
+    }
+
+    private static String buildUpdateSql(int mask) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(ProductEntry.TABLE_NAME).append(" SET ");
+        boolean first = true;
+        for (int i = 0; i < PRODUCT_COLUMNS.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                if (!first) {
+                    sql.append(", ");
+                }
+                sql.append(PRODUCT_COLUMNS[i]).append(" = ?");
+                first = false;
+            }
+        }
+        return sql.append(" WHERE ").append(ProductEntry._ID).append(" = ?").toString();
+    }
+
+    /**
+     * Statements compiled for a thread.
+     */
+    private static class ThreadStatements {
+        SQLiteStatement insert;
+        SQLiteStatement delete;
+        SQLiteStatement sell;
+        SQLiteStatement restock;
+        SQLiteStatement quantity;
+        SQLiteStatement recordMovement;
+        SQLiteStatement stockAt;
+        SQLiteStatement findSupplier;
+        SQLiteStatement insertSupplier;
+
+        /** Update statements by mask of the updated columns */
+        final SparseArray<SQLiteStatement> updates = new SparseArray<>();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.android.inventorymanager.data;
+
+import android.content.ContentValues;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import java.util.regex.Pattern;
+
+/**
+ * Validation rules for the attributes of a product, shared by all the write paths of
+ * {@link ProductProvider}. Each check throws an {@link IllegalArgumentException} if the value is not valid.
+ */
+public final class ProductValidator {
+
+    /** Pattern of the email addresses accepted by the editor, compiled once rather than on each check */
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("[a-zA-Z0-9._-]+@[a-z]+\\.+[a-z]+");
+
+    // To prevent someone from accidentally instantiating the validator class, an empty constructor is given
+    private ProductValidator() {}
+
+    /**
+     * Check that all the attributes required by a new product are valid.
+     */
+    public static void checkProduct(ContentValues values) {
+        checkName(values.getAsString(ProductEntry.COLUMN_PRODUCT_NAME));
+        checkUnitPrice(values.getAsInteger(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE));
+        checkQuantity(values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY));
+        checkReorderThreshold(values.getAsInteger(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD));
+        // A product is linked to its supplier either by _ID or by the supplier's name and email.
+        if (values.getAsLong(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID) == null) {
+            checkSupplierName(values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME));
+            checkSupplierEmail(values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL));
+        }
+    }
+
+    /**
+     * Check that the name is not null.
+     */
+    public static void checkName(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Product requires a name");
+        }
+    }
+
+    /**
+     * Check that the unit price is valid.
+     */
+    public static void checkUnitPrice(Integer unitPrice) {
+        if (unitPrice == null) {
+            throw new IllegalArgumentException("Product requires a valid unit price");
+        }
+    }
+
+    /**
+     * If the quantity is provided, check that it's greater than or equal to 0 unit.
+     */
+    public static void checkQuantity(Integer quantity) {
+        if (quantity != null && quantity < 0) {
+            throw new IllegalArgumentException("Product requires a valid quantity");
+        }
+    }
+
+    /**
+     * If the reorder threshold is provided, check that it's greater than or equal to 0 unit.
+     */
+    public static void checkReorderThreshold(Integer reorderThreshold) {
+        if (reorderThreshold != null && reorderThreshold < 0) {
+            throw new IllegalArgumentException("Product requires a valid reorder threshold");
+        }
+    }
+
+    /**
+     * Check that the supplier's name is not null.
+     */
+    public static void checkSupplierName(String supplierName) {
+        if (supplierName == null) {
+            throw new IllegalArgumentException("Product requires a supplier's name");
+        }
+    }
+
+    /**
+     * Return whether the given text looks like an email address.
+     */
+    public static boolean isValidEmail(String email) {
+        return EMAIL_PATTERN.matcher(email).matches();
+    }
+
+    /**
+     * Check that the supplier's email address is not null.
+     */
+    public static void checkSupplierEmail(String supplierEmail) {
+        if (supplierEmail == null) {
+            throw new IllegalArgumentException("Product requires a supplier's email address");
+        }
+    }
+}
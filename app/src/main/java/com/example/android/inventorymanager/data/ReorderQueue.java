@@ -0,0 +1,139 @@
+package com.example.android.inventorymanager.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.ReorderEntry;
+
+import java.util.ArrayList;
+
+/**
+ * Collection of the reorder queue: the products queued by the triggers of the product table are grouped into
+ * one purchase order per supplier, so that a supplier gets a single order for all its products running low
+ * rather than one per product.
+ *
+ * A collection leaves the products in the queue, and they only leave it once their purchase order has been
+ * acknowledged as sent. A collection which never reached the user, because its process died before posting
+ * the purchase orders for instance, is thereby made again by the next one instead of being lost.
+ */
+final class ReorderQueue {
+
+    /** SQL query reading the queued products along with their supplier, grouped by supplier */
+    private static final String SQL_QUEUED_PRODUCTS = "SELECT "
+            + "p." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", "
+            + "p." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+            + "p." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + ", "
+            + "p." + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + "p." + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + "p." + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ", "
+            + "p." + ProductEntry._ID + ", "
+            + "q." + ReorderEntry.COLUMN_SEQUENCE
+            + " FROM " + ReorderEntry.TABLE_NAME + " q JOIN " + ProductDbHelper.VIEW_PRODUCTS_WITH_SUPPLIER + " p"
+            + " ON p." + ProductEntry._ID + " = q." + ReorderEntry.COLUMN_PRODUCT_ID
+            + " ORDER BY p." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", p." + ProductEntry.COLUMN_PRODUCT_NAME
+            + " COLLATE NOCASE, p." + ProductEntry._ID;
+
+    // Only static methods, so no instance is needed
+    private ReorderQueue() {}
+
+    /**
+     * Read the queued products into purchase orders, leaving them in the queue until they are acknowledged.
+     * Return one bundle per supplier, as described by {@link ProductContract#EXTRA_PURCHASE_ORDERS}.
+     */
+    static ArrayList<Bundle> collect(SQLiteDatabase db) {
+        ArrayList<Bundle> purchaseOrders = new ArrayList<>();
+        Cursor cursor = db.rawQuery(SQL_QUEUED_PRODUCTS, null);
+        try {
+            long supplierId = 0;
+            Bundle purchaseOrder = null;
+            ArrayList<Long> productIds = new ArrayList<>();
+            ArrayList<String> productNames = null;
+            ArrayList<Integer> quantities = null;
+            ArrayList<Integer> reorderThresholds = null;
+            long lastSequence = 0;
+            while (cursor.moveToNext()) {
+                if (purchaseOrder == null || cursor.getLong(0) != supplierId) {
+                    // The products of the previous supplier are all in its purchase order.
+                    if (purchaseOrder != null) {
+                        finishPurchaseOrder(purchaseOrder, productIds, lastSequence);
+                    }
+                    supplierId = cursor.getLong(0);
+                    productIds.clear();
+                    productNames = new ArrayList<>();
+                    quantities = new ArrayList<>();
+                    reorderThresholds = new ArrayList<>();
+                    lastSequence = 0;
+                    purchaseOrder = new Bundle();
+                    purchaseOrder.putLong(ProductContract.EXTRA_SUPPLIER_ID, supplierId);
+                    purchaseOrder.putString(ProductContract.EXTRA_SUPPLIER_NAME, cursor.getString(1));
+                    purchaseOrder.putString(ProductContract.EXTRA_SUPPLIER_EMAIL, cursor.getString(2));
+                    purchaseOrder.putStringArrayList(ProductContract.EXTRA_PRODUCT_NAMES, productNames);
+                    purchaseOrder.putIntegerArrayList(ProductContract.EXTRA_QUANTITIES, quantities);
+                    purchaseOrder.putIntegerArrayList(ProductContract.EXTRA_REORDER_THRESHOLDS, reorderThresholds);
+                    purchaseOrders.add(purchaseOrder);
+                }
+                productNames.add(cursor.getString(3));
+                quantities.add(cursor.getInt(4));
+                reorderThresholds.add(cursor.getInt(5));
+                productIds.add(cursor.getLong(6));
+                lastSequence = Math.max(lastSequence, cursor.getLong(7));
+            }
+            if (purchaseOrder != null) {
+                finishPurchaseOrder(purchaseOrder, productIds, lastSequence);
+            }
+        } finally {
+            cursor.close();
+        }
+        return purchaseOrders;
+    }
+
+    /**
+     * Add to a purchase order the _IDs of its products and the sequence number of the last of them to be queued,
+     * which identify the reorders to remove from the queue once it's sent.
+     */
+    private static void finishPurchaseOrder(Bundle purchaseOrder, ArrayList<Long> productIds, long lastSequence) {
+        long[] ids = new long[productIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = productIds.get(i);
+        }
+        purchaseOrder.putLongArray(ProductContract.EXTRA_PRODUCT_IDS, ids);
+        purchaseOrder.putLong(ProductContract.EXTRA_TIMESTAMP, lastSequence);
+    }
+
+    /**
+     * Remove from the queue the given products of a sent purchase order, within a single transaction.
+     * A product restocked and queued again after the purchase order was collected has a later sequence number,
+     * even within the same second, so it stays in the queue for the next purchase order.
+     * Return the number of products removed.
+     */
+    static int acknowledge(SQLiteDatabase db, long[] productIds, long lastSequence) {
+        int rowsDeleted = 0;
+        String[] args = new String[2];
+        args[1] = String.valueOf(lastSequence);
+        db.beginTransaction();
+        try {
+            for (long productId : productIds) {
+                args[0] = String.valueOf(productId);
+                rowsDeleted += db.delete(ReorderEntry.TABLE_NAME, ReorderEntry.COLUMN_PRODUCT_ID + "=? AND "
+                        + ReorderEntry.COLUMN_SEQUENCE + "<=?", args);
+            }
+            db.setTransactionSuccessful();
+            return rowsDeleted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Return the number of products of the given purchase orders.
+     */
+    static int countProducts(ArrayList<Bundle> purchaseOrders) {
+        int productCount = 0;
+        for (Bundle purchaseOrder : purchaseOrders) {
+            productCount += purchaseOrder.getStringArrayList(ProductContract.EXTRA_PRODUCT_NAMES).size();
+        }
+        return productCount;
+    }
+}
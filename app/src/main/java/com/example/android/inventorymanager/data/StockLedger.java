@@ -0,0 +1,131 @@
+package com.example.android.inventorymanager.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.inventorymanager.data.ProductContract.StockMovementEntry;
+import com.example.android.inventorymanager.data.ProductContract.StockSnapshotEntry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compaction of the stock ledger: the movements older than a day are rolled into the snapshots of
+ * the stock levels at the end of each day, so that the ledger stays small and the stock level at
+ * a time only sums the movements since the last snapshot.
+ */
+final class StockLedger {
+
+    /** Duration of a day of the snapshots, which are in UTC */
+    static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /** Number of days during which the movements are kept before being rolled into snapshots */
+    static final int RETENTION_DAYS = 90;
+
+    /** SQL query reading the movements to roll, grouped by product in time order */
+    private static final String SQL_MOVEMENTS_BEFORE = "SELECT "
+            + StockMovementEntry.COLUMN_PRODUCT_ID + ", "
+            + StockMovementEntry.COLUMN_DELTA + ", "
+            + StockMovementEntry.COLUMN_TIMESTAMP
+            + " FROM " + StockMovementEntry.TABLE_NAME
+            + " WHERE " + StockMovementEntry.COLUMN_TIMESTAMP + " < ?"
+            + " ORDER BY " + StockMovementEntry.COLUMN_PRODUCT_ID + ", " + StockMovementEntry.COLUMN_TIMESTAMP;
+
+    /** SQL statement reading the stock level of the last snapshot of a product before a day */
+    private static final String SQL_LAST_SNAPSHOT = "SELECT " + StockSnapshotEntry.COLUMN_QUANTITY
+            + " FROM " + StockSnapshotEntry.TABLE_NAME
+            + " WHERE " + StockSnapshotEntry.COLUMN_PRODUCT_ID + " = ? AND " + StockSnapshotEntry.COLUMN_DAY + " < ?"
+            + " ORDER BY " + StockSnapshotEntry.COLUMN_DAY + " DESC LIMIT 1";
+
+    /** SQL statement writing the snapshot of a product at the end of a day */
+    private static final String SQL_WRITE_SNAPSHOT = "INSERT OR REPLACE INTO " + StockSnapshotEntry.TABLE_NAME + " ("
+            + StockSnapshotEntry.COLUMN_PRODUCT_ID + ", "
+            + StockSnapshotEntry.COLUMN_DAY + ", "
+            + StockSnapshotEntry.COLUMN_QUANTITY + ") VALUES (?, ?, ?)";
+
+    // Only static methods, so no instance is needed
+    private StockLedger() {}
+
+    /**
+     * Return the day of the given time, in days since the epoch.
+     */
+    static long getDay(long timestamp) {
+        return Math.floorDiv(timestamp, DAY_MILLIS);
+    }
+
+    /**
+     * Roll the movements of the days before the day of the given time into per-day snapshots, within
+     * a single transaction. Return the number of movements rolled and removed from the ledger.
+     */
+    static int compact(SQLiteDatabase db, long before) {
+        // Only whole days are rolled, so that the movements of a day are either all in its snapshot or all in the ledger.
+        long endDay = getDay(before);
+        String end = String.valueOf(endDay * DAY_MILLIS);
+
+        SQLiteStatement lastSnapshot = db.compileStatement(SQL_LAST_SNAPSHOT);
+        SQLiteStatement writeSnapshot = db.compileStatement(SQL_WRITE_SNAPSHOT);
+        db.beginTransaction();
+        try {
+            Cursor cursor = db.rawQuery(SQL_MOVEMENTS_BEFORE, new String[] { end });
+            try {
+                long productId = 0;
+                long day = 0;
+                long quantity = 0;
+                boolean hasProduct = false;
+                while (cursor.moveToNext()) {
+                    long movementProductId = cursor.getLong(0);
+                    long movementDay = getDay(cursor.getLong(2));
+                    if (!hasProduct || movementProductId != productId) {
+                        // The previous product has no more movements, so its last day is complete.
+                        if (hasProduct) {
+                            writeSnapshot(writeSnapshot, productId, day, quantity);
+                        }
+                        productId = movementProductId;
+                        quantity = getLastSnapshot(lastSnapshot, productId, movementDay);
+                        hasProduct = true;
+                    } else if (movementDay != day) {
+                        writeSnapshot(writeSnapshot, productId, day, quantity);
+                    }
+                    day = movementDay;
+                    quantity += cursor.getLong(1);
+                }
+                if (hasProduct) {
+                    writeSnapshot(writeSnapshot, productId, day, quantity);
+                }
+            } finally {
+                cursor.close();
+            }
+
+            int rowsDeleted = db.delete(StockMovementEntry.TABLE_NAME,
+                    StockMovementEntry.COLUMN_TIMESTAMP + " < ?", new String[] { end });
+            db.setTransactionSuccessful();
+            return rowsDeleted;
+        } finally {
+            db.endTransaction();
+            lastSnapshot.close();
+            writeSnapshot.close();
+        }
+    }
+
+    /**
+     * Return the stock level of the last snapshot of a product before the given day, or 0 if there is none.
+     */
+    private static long getLastSnapshot(SQLiteStatement statement, long productId, long day) {
+        statement.bindLong(1, productId);
+        statement.bindLong(2, day);
+        try {
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            // The product had no stock before this day.
+            return 0;
+        }
+    }
+
+    private static void writeSnapshot(SQLiteStatement statement, long productId, long day, long quantity) {
+        statement.bindLong(1, productId);
+        statement.bindLong(2, day);
+        statement.bindLong(3, quantity);
+        statement.executeInsert();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.android.inventorymanager.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job rolling the stock movements past their retention into per-day snapshots, once a day while
+ * the device is idle and charging.
+ */
+public class StockLedgerCompactionService extends JobService {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = StockLedgerCompactionService.class.getSimpleName();
+
+    /** Unique identifier of the job */
+    private static final int JOB_ID = 1;
+
+    /** Period of the job */
+    private static final long PERIOD_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /** Task running the compaction off the main thread */
+    private AsyncTask<Void, Void, Void> mTask;
+
+    /**
+     * Schedule the job, unless it's already scheduled, so that its period isn't restarted on each call.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler.getPendingJob(JOB_ID) != null) {
+            return;
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, StockLedgerCompactionService.class))
+                .setPeriodic(PERIOD_MILLIS)
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mTask = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... voids) {
+                Bundle result = getContentResolver().call(ProductContract.ProductEntry.CONTENT_URI,
+                        ProductContract.METHOD_COMPACT_STOCK_MOVEMENTS, null, null);
+                if (result != null) {
+                    Log.i(LOG_TAG, "Rolled " + result.getInt(ProductContract.EXTRA_ROW_COUNT) + " stock movements");
+                }
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Void aVoid) {
+                jobFinished(params, false);
+            }
+        };
+        mTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        // The job goes on in the background.
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The compaction is a single transaction, so it either completes or leaves the ledger as it was.
+        // Retry it with the next period.
+        if (mTask != null) {
+            mTask.cancel(false);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.android.inventorymanager.image;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.android.inventorymanager.R;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the images of the products into {@link ImageView}s.
+ * The images are decoded on a background executor, downsampled to the size of their target view,
+ * and kept in a memory-bounded cache keyed by image URI, or product _ID for the thumbnails, and target size.
+ * The bitmaps evicted from the cache are reused to decode the next images when they're no longer displayed.
+ */
+public class ProductImageLoader {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ProductImageLoader.class.getSimpleName();
+
+    /** Number of threads decoding the images */
+    private static final int DECODER_THREAD_COUNT = 2;
+
+    /** Maximum number of evicted bitmaps kept for reuse */
+    private static final int MAX_REUSABLE_BITMAPS = 4;
+
+    /**
+     * Prefix of the cache keys of the product thumbnails, which are keyed by product _ID rather than
+     * by the URI of their file, so that the main thread doesn't have to look up the directory of the store
+     */
+    private static final String THUMBNAIL_KEY_PREFIX = "thumbnail:";
+
+    /**
+     * Listener of the end of the loading of an image.
+     */
+    public interface Callback {
+        /**
+         * Called on the main thread once the image is displayed by its view.
+         */
+        void onImageLoaded(Bitmap bitmap);
+
+        /**
+         * Called on the main thread if the image couldn't be decoded.
+         */
+        void onImageFailed();
+    }
+
+    private static ProductImageLoader sInstance;
+
+    private final Context mContext;
+    private final ContentResolver mResolver;
+    private final DisplayMetrics mDisplayMetrics;
+    private final ExecutorService mDecoderExecutor = Executors.newFixedThreadPool(DECODER_THREAD_COUNT);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    /** Bitmaps currently displayed by each view, guarded by mLock */
+    private final WeakHashMap<ImageView, Bitmap> mDisplayedBitmaps = new WeakHashMap<>();
+
+    /** Bitmaps evicted from the cache, which may be reused once no view displays them, guarded by mLock */
+    private final ArrayList<Bitmap> mReusableBitmaps = new ArrayList<>();
+
+    /**
+     * Bitmaps decoded and cached but not handed to their view yet, which must not be reused meanwhile
+     * even if they're evicted from the cache, guarded by mLock
+     */
+    private final ArrayList<Bitmap> mPendingBitmaps = new ArrayList<>();
+
+    private final Object mLock = new Object();
+
+    /**
+     * Return the image loader of the app.
+     */
+    public static synchronized ProductImageLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ProductImageLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ProductImageLoader(Context context) {
+        mContext = context;
+        mResolver = context.getContentResolver();
+        mDisplayMetrics = context.getResources().getDisplayMetrics();
+
+        // Use 1/8th of the available memory for the cache, measured in kilobytes.
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        mMemoryCache = new LruCache<String, Bitmap>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount() / 1024;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted && oldValue.isMutable()) {
+                    synchronized (mLock) {
+                        if (mReusableBitmaps.size() == MAX_REUSABLE_BITMAPS) {
+                            mReusableBitmaps.remove(0);
+                        }
+                        mReusableBitmaps.add(oldValue);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Load the image with the given URI into the view, downsampled to the size of the view.
+     */
+    public void load(Uri imageUri, ImageView imageView, Callback callback) {
+        int width = imageView.getWidth() > 0 ? imageView.getWidth() : mDisplayMetrics.widthPixels;
+        int height = imageView.getHeight() > 0 ? imageView.getHeight() : mDisplayMetrics.heightPixels;
+        load(imageUri, imageView, width, height, callback);
+    }
+
+    /**
+     * Load the image with the given URI into the view, downsampled to the given size.
+     * It must be called on the main thread.
+     */
+    public void load(final Uri imageUri, ImageView imageView, final int width, final int height,
+                     Callback callback) {
+        submit(imageUri + "@" + width + "x" + height, imageView, callback, new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() throws IOException {
+                return decode(imageUri, width, height, true);
+            }
+        });
+    }
+
+    /**
+     * Load the thumbnail of the given product into the view, creating it from the product image
+     * with the given URI if it isn't in the {@link ProductThumbnailStore} yet.
+     * It must be called on the main thread.
+     */
+    public void loadThumbnail(final long productId, final Uri imageUri, ImageView imageView, Callback callback) {
+        final int size = ProductThumbnailStore.THUMBNAIL_SIZE;
+        String key = THUMBNAIL_KEY_PREFIX + productId + "@" + size + "x" + size;
+        submit(key, imageView, callback, new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() throws IOException {
+                // The store is only used by the decoders, since it reads the files directory of the app.
+                ProductThumbnailStore thumbnailStore = ProductThumbnailStore.getInstance(mContext);
+                File thumbnailFile = thumbnailStore.getThumbnail(productId, imageUri);
+                return thumbnailFile != null ? decode(Uri.fromFile(thumbnailFile), size, size, true) : null;
+            }
+        });
+    }
+
+    /**
+     * Display the bitmap with the given key in the view, from the cache if it's there,
+     * or once decoded in the background by the given decoder.
+     */
+    private void submit(final String key, final ImageView imageView, final Callback callback,
+                        final Callable<Bitmap> decoder) {
+        imageView.setTag(R.id.image_loader_request, key);
+
+        // Display the image right away if it's in the cache. The bitmap is registered as displayed along
+        // with being read, so that it can't be evicted and reused by a decoder in between.
+        Bitmap cachedBitmap;
+        synchronized (mLock) {
+            cachedBitmap = mMemoryCache.get(key);
+            if (cachedBitmap != null) {
+                mDisplayedBitmaps.put(imageView, cachedBitmap);
+            }
+        }
+        if (cachedBitmap != null) {
+            display(imageView, cachedBitmap, callback);
+            return;
+        }
+
+        mDecoderExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = null;
+                try {
+                    bitmap = decoder.call();
+                } catch (Exception e) {
+                    Log.e(LOG_TAG, "Failed to decode " + key, e);
+                }
+                if (bitmap != null) {
+                    // Pin the bitmap until its view displays it, since later decodes may evict it first.
+                    synchronized (mLock) {
+                        mPendingBitmaps.add(bitmap);
+                    }
+                    mMemoryCache.put(key, bitmap);
+                }
+
+                final Bitmap decodedBitmap = bitmap;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Drop the image if the view has been given another one to display meanwhile.
+                        boolean requested = key.equals(imageView.getTag(R.id.image_loader_request));
+                        if (requested && decodedBitmap != null) {
+                            display(imageView, decodedBitmap, callback);
+                        } else if (requested && callback != null) {
+                            callback.onImageFailed();
+                        }
+                        // Once displayed, the bitmap is kept from reuse by its view instead.
+                        if (decodedBitmap != null) {
+                            synchronized (mLock) {
+                                mPendingBitmaps.remove(decodedBitmap);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Remove from the cache the bitmaps of the image with the given URI, whatever their size,
+     * so that the next loads decode it again.
+     */
+    public void evict(Uri imageUri) {
+        evictKeys(imageUri + "@");
+    }
+
+    /**
+     * Remove from the cache the thumbnail of the given product, so that the next loads read it again.
+     */
+    void evictThumbnail(long productId) {
+        evictKeys(THUMBNAIL_KEY_PREFIX + productId + "@");
+    }
+
+    /**
+     * Remove from the cache the thumbnails of all the products.
+     */
+    void evictThumbnails() {
+        evictKeys(THUMBNAIL_KEY_PREFIX);
+    }
+
+    private void evictKeys(String keyPrefix) {
+        for (String key : mMemoryCache.snapshot().keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                mMemoryCache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Forget any pending image for the view, so that it isn't displayed once decoded.
+     */
+    public void cancel(ImageView imageView) {
+        imageView.setTag(R.id.image_loader_request, null);
+        synchronized (mLock) {
+            mDisplayedBitmaps.remove(imageView);
+        }
+    }
+
+    private void display(ImageView imageView, Bitmap bitmap, Callback callback) {
+        synchronized (mLock) {
+            mDisplayedBitmaps.put(imageView, bitmap);
+        }
+        imageView.setImageBitmap(bitmap);
+        if (callback != null) {
+            callback.onImageLoaded(bitmap);
+        }
+    }
+
+    /**
+     * Decode the image with the given URI, downsampled to be at least as large as the given size.
+     * The decoded bitmap may reuse one evicted from the cache, unless it's decoded for something else
+     * than the cache, since it could then be reused while still in use. It must not be called on the main thread.
+     */
+    Bitmap decode(Uri imageUri, int width, int height, boolean reuseBitmaps) throws IOException {
+        // First decode the bounds of the image only, to compute the sample size.
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(imageUri, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        if (!reuseBitmaps) {
+            return decodeStream(imageUri, options);
+        }
+        options.inMutable = true;
+        options.inBitmap = takeReusableBitmap(options);
+        try {
+            return decodeStream(imageUri, options);
+        } catch (IllegalArgumentException e) {
+            // The reused bitmap doesn't fit after all, decode into a new one.
+            options.inBitmap = null;
+            return decodeStream(imageUri, options);
+        }
+    }
+
+    private Bitmap decodeStream(Uri imageUri, BitmapFactory.Options options) throws IOException {
+        InputStream imageStream = mResolver.openInputStream(imageUri);
+        if (imageStream == null) {
+            throw new IOException("Cannot open " + imageUri);
+        }
+        try {
+            return BitmapFactory.decodeStream(imageStream, null, options);
+        } finally {
+            imageStream.close();
+        }
+    }
+
+    /**
+     * Return the largest power of 2 sample size which keeps the image at least as large as the requested size.
+     */
+    static int calculateInSampleSize(int imageWidth, int imageHeight, int requestedWidth, int requestedHeight) {
+        int inSampleSize = 1;
+        while (imageWidth / (inSampleSize * 2) >= requestedWidth
+                && imageHeight / (inSampleSize * 2) >= requestedHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Take from the reusable bitmaps one that no view displays or is about to, and which is large enough
+     * to hold the image described by the given options, or return null if there is none.
+     */
+    private Bitmap takeReusableBitmap(BitmapFactory.Options options) {
+        int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        int byteCount = width * height * 4;
+        synchronized (mLock) {
+            Iterator<Bitmap> iterator = mReusableBitmaps.iterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next();
+                if (bitmap.isRecycled()) {
+                    iterator.remove();
+                } else if (bitmap.getAllocationByteCount() >= byteCount
+                        && !mDisplayedBitmaps.containsValue(bitmap) && !mPendingBitmaps.contains(bitmap)) {
+                    iterator.remove();
+                    return bitmap;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.android.inventorymanager.image;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent store of small pre-scaled thumbnails of the product images, keyed by product _ID,
+ * so that the catalog can display the products' images without decoding their full-size originals.
+ * The least recently used thumbnails are evicted when the store grows over its maximum size.
+ */
+public class ProductThumbnailStore {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ProductThumbnailStore.class.getSimpleName();
+
+    /** Maximum width and height of a thumbnail, in pixels */
+    public static final int THUMBNAIL_SIZE = 256;
+
+    /** Maximum size of the store on disk, in bytes */
+    private static final long MAX_STORE_SIZE = 16 * 1024 * 1024;
+
+    /** Compression quality of the thumbnails */
+    private static final int THUMBNAIL_QUALITY = 80;
+
+    private static final String DIRECTORY_NAME = "thumbnails";
+    private static final String FILE_EXTENSION = ".webp";
+
+    private static ProductThumbnailStore sInstance;
+
+    private final Context mContext;
+    private final ProductImageLoader mImageLoader;
+
+    /** Directory of the thumbnails, looked up on its first use, which is off the main thread */
+    private volatile File mDirectory;
+
+    /** Background thread writing and deleting the thumbnails */
+    private final ExecutorService mWriterExecutor = Executors.newSingleThreadExecutor();
+
+    /** _IDs of the products whose stored thumbnail is about to be replaced, guarded by this */
+    private final Set<Long> mPendingProductIds = new HashSet<>();
+
+    /**
+     * Return the thumbnail store of the app.
+     */
+    public static synchronized ProductThumbnailStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ProductThumbnailStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ProductThumbnailStore(Context context) {
+        mContext = context;
+        mImageLoader = ProductImageLoader.getInstance(context);
+    }
+
+    /**
+     * Return the directory of the thumbnails. It must not be called on the main thread,
+     * since looking up the files directory of the app may create it.
+     */
+    private File getDirectory() {
+        File directory = mDirectory;
+        if (directory == null) {
+            directory = new File(mContext.getFilesDir(), DIRECTORY_NAME);
+            mDirectory = directory;
+        }
+        return directory;
+    }
+
+    /**
+     * Return the file of the thumbnail of the given product, which may not exist.
+     * It must not be called on the main thread.
+     */
+    public File getThumbnailFile(long productId) {
+        return new File(getDirectory(), productId + FILE_EXTENSION);
+    }
+
+    /**
+     * Return the thumbnail of the given product, creating it from the product image with the given URI
+     * if it isn't stored yet or is about to be replaced, or return null if there is none.
+     * It must not be called on the main thread.
+     */
+    File getThumbnail(long productId, Uri imageUri) {
+        File file = getThumbnailFile(productId);
+        boolean pending;
+        synchronized (this) {
+            pending = mPendingProductIds.contains(productId);
+        }
+        if (!pending && file.isFile()) {
+            // Mark the thumbnail as used, so that it's evicted last.
+            file.setLastModified(System.currentTimeMillis());
+            return file;
+        }
+        if (imageUri == null) {
+            return null;
+        }
+        Bitmap bitmap = decodeImage(imageUri);
+        return bitmap != null && save(productId, bitmap) ? file : null;
+    }
+
+    /**
+     * Create in the background the thumbnail of the given product from its new image.
+     * Until it's written, the catalog creates the thumbnail from the new image itself rather than
+     * displaying the stored one.
+     */
+    public void saveAsync(final long productId, final Uri imageUri) {
+        synchronized (this) {
+            mPendingProductIds.add(productId);
+        }
+        mImageLoader.evictThumbnail(productId);
+        mWriterExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = decodeImage(imageUri);
+                if (bitmap != null) {
+                    save(productId, bitmap);
+                }
+                synchronized (ProductThumbnailStore.this) {
+                    mPendingProductIds.remove(productId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delete in the background the thumbnail of the given product.
+     */
+    public void deleteAsync(final long productId) {
+        mWriterExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                delete(productId);
+            }
+        });
+    }
+
+    /**
+     * Delete in the background the thumbnails of all the products.
+     */
+    public void clearAsync() {
+        mWriterExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ProductThumbnailStore.this) {
+                    File[] files = getDirectory().listFiles();
+                    if (files != null) {
+                        for (File file : files) {
+                            file.delete();
+                        }
+                    }
+                    mImageLoader.evictThumbnails();
+                }
+            }
+        });
+    }
+
+    /**
+     * Decode the product image with the given URI into a new bitmap, downsampled to about the size of
+     * a thumbnail, or return null if it can't be decoded. It must not be called on the main thread.
+     */
+    private Bitmap decodeImage(Uri imageUri) {
+        try {
+            // The bitmap is only compressed into the thumbnail, so it doesn't take one kept for the cache.
+            return mImageLoader.decode(imageUri, THUMBNAIL_SIZE, THUMBNAIL_SIZE, false);
+        } catch (IOException | SecurityException e) {
+            Log.e(LOG_TAG, "Failed to decode " + imageUri, e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the thumbnail of the given product, scaled down from the given bitmap, then evict the
+     * least recently used thumbnails if the store has grown too large. It must not be called on the main thread.
+     *
+     * @return Whether the thumbnail has been stored
+     */
+    synchronized boolean save(long productId, Bitmap bitmap) {
+        File directory = getDirectory();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Cannot create " + directory);
+            return false;
+        }
+
+        float scale = Math.min(1f, (float) THUMBNAIL_SIZE / Math.max(bitmap.getWidth(), bitmap.getHeight()));
+        Bitmap thumbnail = scale < 1f
+                ? Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                        Math.max(1, Math.round(bitmap.getHeight() * scale)), true)
+                : bitmap;
+
+        // Write into a temporary file first, so that a reader never sees a partial thumbnail.
+        File file = getThumbnailFile(productId);
+        File temporaryFile = new File(directory, productId + FILE_EXTENSION + ".tmp");
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(temporaryFile));
+            try {
+                thumbnail.compress(Bitmap.CompressFormat.WEBP, THUMBNAIL_QUALITY, out);
+            } finally {
+                out.close();
+            }
+            if (!temporaryFile.renameTo(file)) {
+                throw new IOException("Cannot rename " + temporaryFile);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to store the thumbnail of product " + productId, e);
+            temporaryFile.delete();
+            return false;
+        }
+        mImageLoader.evictThumbnail(productId);
+
+        evictLeastRecentlyUsed();
+        return true;
+    }
+
+    /**
+     * Delete the thumbnail of the given product. It must not be called on the main thread.
+     */
+    synchronized void delete(long productId) {
+        File file = getThumbnailFile(productId);
+        if (file.delete()) {
+            mImageLoader.evictThumbnail(productId);
+        }
+    }
+
+    /**
+     * Delete the least recently used thumbnails until the store fits in its maximum size.
+     * The bitmaps cached by the image loader are left in place, since they're still the thumbnails
+     * of their products, whose files are created again from the product images when next needed.
+     */
+    private void evictLeastRecentlyUsed() {
+        File[] files = getDirectory().listFiles();
+        if (files == null) {
+            return;
+        }
+        long storeSize = 0;
+        for (File file : files) {
+            storeSize += file.length();
+        }
+        if (storeSize <= MAX_STORE_SIZE) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (int i = 0; i < files.length && storeSize > MAX_STORE_SIZE; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                storeSize -= length;
+            }
+        }
+    }
+}
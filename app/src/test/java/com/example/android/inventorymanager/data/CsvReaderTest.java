@@ -0,0 +1,48 @@
+package com.example.android.inventorymanager.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the parsing of the CSV records read by {@link CsvReader}.
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void readRecord_handlesQuotesLineBreaksAndEmptyLines() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader(
+                "\uFEFFname,unit_price\r\n"
+                        + "Golf,100\r\n"
+                        + "\r\n"
+                        + "\"Polo, \"\"Beats\"\"\",50\n"
+                        + "\"Multi\nline\",\n"
+                        + "Passat,200"));
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("name", "unit_price"), fields);
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("Golf", "100"), fields);
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("Polo, \"Beats\"", "50"), fields);
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("Multi\nline", ""), fields);
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("Passat", "200"), fields);
+        assertFalse(reader.readRecord(fields));
+        assertEquals(5, reader.getRecordCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void readRecord_failsOnUnterminatedQuote() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader("\"Golf,100\n"));
+        reader.readRecord(new ArrayList<String>());
+    }
+}
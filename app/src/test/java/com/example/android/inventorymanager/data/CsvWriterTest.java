@@ -0,0 +1,42 @@
+package com.example.android.inventorymanager.data;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the records written by {@link CsvWriter} are read back unchanged by {@link CsvReader}.
+ */
+public class CsvWriterTest {
+
+    @Test
+    public void writtenRecords_areReadBackUnchanged() throws Exception {
+        List<String> first = Arrays.asList("Golf", "100", "");
+        List<String> second = Arrays.asList("Polo, \"Beats\"", "Multi\r\nline", "50");
+
+        StringWriter output = new StringWriter();
+        CsvWriter writer = new CsvWriter(output);
+        for (List<String> record : Arrays.asList(first, second)) {
+            for (String field : record) {
+                writer.writeField(field);
+            }
+            writer.endRecord();
+        }
+        writer.close();
+        assertTrue(output.toString().startsWith("Golf,100,\r\n"));
+
+        CsvReader reader = new CsvReader(new StringReader(output.toString()));
+        List<String> fields = new ArrayList<>();
+        assertTrue(reader.readRecord(fields));
+        assertEquals(first, fields);
+        assertTrue(reader.readRecord(fields));
+        assertEquals(second, fields);
+        assertFalse(reader.readRecord(fields));
+    }
+}
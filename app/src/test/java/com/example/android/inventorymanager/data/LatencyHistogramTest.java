@@ -0,0 +1,38 @@
+package com.example.android.inventorymanager.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that {@link LatencyHistogram} reports the percentiles of the recorded latencies within its precision.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryLatencyOnce() {
+        int previousBucket = -1;
+        for (long micros = 0; micros < 1L << 40; micros += 1 + micros / 64) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue("Bucket of " + micros, bucket == previousBucket || bucket == previousBucket + 1);
+            assertTrue("Highest latency of the bucket of " + micros, LatencyHistogram.highestMicrosOf(bucket) >= micros);
+            previousBucket = bucket;
+        }
+    }
+
+    @Test
+    public void percentiles_areWithinOneEighth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(99));
+        for (int micros = 1; micros <= 10000; micros++) {
+            histogram.record(micros);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMaxMicros());
+        assertEquals(5000, histogram.getMeanMicros());
+        assertEquals(5000, histogram.getPercentileMicros(50), 5000 / 8);
+        assertEquals(9900, histogram.getPercentileMicros(99), 9900 / 8);
+        assertEquals(10000, histogram.getPercentileMicros(100));
+    }
+}
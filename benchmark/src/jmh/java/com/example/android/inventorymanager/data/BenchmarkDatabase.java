@@ -0,0 +1,91 @@
+package com.example.android.inventorymanager.data;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+import com.example.android.inventorymanager.data.ProductContract.SupplierEntry;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+/**
+ * In-memory SQLite database of the benchmarks, reached through JDBC, with the product and supplier tables
+ * and the secondary indexes of {@link ProductDbHelper}. It has neither the full-text index nor the triggers
+ * maintaining the totals and the stock ledger, which are measured on a device by the instrumented benchmarks.
+ */
+final class BenchmarkDatabase {
+
+    /** SQL statement inserting a product with all its attributes, as {@link ProductStatements} does */
+    static final String SQL_INSERT_PRODUCT = "INSERT INTO " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_IMAGE_PATH + ", "
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ") VALUES (?, ?, ?, ?, ?)";
+
+    /** Number of suppliers, the products being spread over them */
+    static final int SUPPLIER_COUNT = 20;
+
+    /** Stock level of the inserted products, high enough for the sales never to run out of stock */
+    static final int INITIAL_QUANTITY = 1000000000;
+
+    private BenchmarkDatabase() {}
+
+    /**
+     * Open a new database with the schema of the product table, holding no product but all the suppliers,
+     * their _IDs going from 1 to {@link #SUPPLIER_COUNT}.
+     */
+    static Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(ProductDbHelper.SQL_CREATE_SUPPLIERS_TABLE);
+            statement.execute("CREATE TABLE " + ProductEntry.TABLE_NAME + ProductDbHelper.SQL_PRODUCTS_TABLE_COLUMNS);
+            statement.execute("CREATE INDEX " + ProductDbHelper.INDEX_PRODUCT_NAME + " ON " + ProductEntry.TABLE_NAME
+                    + " (" + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE);");
+            statement.execute("CREATE INDEX " + ProductDbHelper.INDEX_PRODUCT_SUPPLIER + " ON " + ProductEntry.TABLE_NAME
+                    + " (" + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ");");
+            for (int i = 0; i < SUPPLIER_COUNT; i++) {
+                statement.execute("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                        + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL
+                        + ") VALUES ('Supplier " + i + "', 'orders" + i + "@example.com');");
+            }
+            statement.execute("CREATE INDEX " + ProductDbHelper.INDEX_PRODUCT_QUANTITY + " ON " + ProductEntry.TABLE_NAME
+                    + " (" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ");");
+        } finally {
+            statement.close();
+        }
+        return connection;
+    }
+
+    /**
+     * Insert the given number of products in one transaction, their _IDs going from 1 to the count.
+     */
+    static void insertProducts(Connection connection, int count) throws SQLException {
+        connection.setAutoCommit(false);
+        PreparedStatement insert = connection.prepareStatement(SQL_INSERT_PRODUCT);
+        try {
+            for (int i = 0; i < count; i++) {
+                bindProduct(insert, i);
+                insert.executeUpdate();
+            }
+            connection.commit();
+        } finally {
+            insert.close();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Bind the attributes of the i-th product to the insert statement.
+     */
+    static void bindProduct(PreparedStatement insert, int i) throws SQLException {
+        insert.setString(1, "Product " + (i * 7919 % 100000));
+        insert.setInt(2, 100 + i % 1000);
+        insert.setInt(3, INITIAL_QUANTITY);
+        insert.setNull(4, Types.VARCHAR);
+        insert.setLong(5, 1 + i % SUPPLIER_COUNT);
+    }
+}
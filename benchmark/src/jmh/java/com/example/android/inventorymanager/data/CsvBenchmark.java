@@ -0,0 +1,91 @@
+package com.example.android.inventorymanager.data;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark of the parsing of a product catalog by {@link CsvReader}, as done by the import, and of its
+ * writing by {@link CsvWriter}, as done by the export. Each operation reads or writes the whole catalog.
+ */
+@State(Scope.Thread)
+public class CsvBenchmark {
+
+    @Param({"1000"})
+    public int mRecordCount;
+
+    /** Catalog in CSV, with a header and some fields needing quotes */
+    private String mCatalog;
+
+    /** Fields of the records written, one array per record */
+    private String[][] mRecords;
+
+    /** Output of the writes, reset before each one so that only the writer is measured */
+    private final CharArrayWriter mOutput = new CharArrayWriter(256 * 1024);
+
+    /** Record read, reused from one record to the next like the import does */
+    private final List<String> mFields = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        mRecords = new String[mRecordCount][];
+        for (int i = 0; i < mRecordCount; i++) {
+            mRecords[i] = new String[] {
+                    String.valueOf(i + 1),
+                    i % 10 == 0 ? "Product, \"special\" " + i : "Product " + i,
+                    String.valueOf(100 + i),
+                    String.valueOf(i % 50),
+                    null,
+                    "Supplier " + i % 20,
+                    "orders" + i % 20 + "@example.com"};
+        }
+        writeRecords();
+        mCatalog = mOutput.toString();
+    }
+
+    @Benchmark
+    public long readRecords() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(mCatalog));
+        try {
+            long fieldCount = 0;
+            while (reader.readRecord(mFields)) {
+                fieldCount += mFields.size();
+            }
+            return fieldCount;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public int writeRecords() throws IOException {
+        mOutput.reset();
+        CsvWriter writer = new CsvWriter(mOutput);
+        writer.writeField(ProductEntry._ID);
+        writer.writeField(ProductEntry.COLUMN_PRODUCT_NAME);
+        writer.writeField(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE);
+        writer.writeField(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        writer.writeField(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH);
+        writer.writeField(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
+        writer.writeField(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
+        writer.endRecord();
+        for (String[] record : mRecords) {
+            for (String field : record) {
+                writer.writeField(field);
+            }
+            writer.endRecord();
+        }
+        writer.flush();
+        return mOutput.size();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.android.inventorymanager.data;
+
+import com.example.android.inventorymanager.PriceFormatter;
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Benchmark of the catalog scrolled page by page: the keyset query of the next page of products sorted
+ * by name, as {@link ProductProvider} runs it, and the binding of each row to the list item, as
+ * {@link com.example.android.inventorymanager.ProductCursorAdapter} does.
+ */
+@State(Scope.Thread)
+public class ProductCatalogBenchmark {
+
+    /** Number of products in the catalog */
+    private static final int PRODUCT_COUNT = 10000;
+
+    /** Number of products of a page */
+    private static final int PAGE_SIZE = 50;
+
+    /** Columns of the products shown by the catalog */
+    private static final String PROJECTION = ProductEntry._ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_UNIT_PRICE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_IMAGE_PATH;
+
+    /** SQL query of the first page of products sorted by name */
+    private static final String SQL_FIRST_PAGE = "SELECT " + PROJECTION + " FROM " + ProductEntry.TABLE_NAME
+            + " ORDER BY " + ProductEntry.SORT_ORDER_NAME + " LIMIT " + PAGE_SIZE;
+
+    /** SQL query of the page of products following the given name and _ID, sorted by name */
+    private static final String SQL_NEXT_PAGE = "SELECT " + PROJECTION + " FROM " + ProductEntry.TABLE_NAME
+            + " WHERE " + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE >= ? AND ("
+            + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE > ? OR " + ProductEntry._ID + " > ?)"
+            + " ORDER BY " + ProductEntry.SORT_ORDER_NAME + " LIMIT " + PAGE_SIZE;
+
+    private Connection mConnection;
+    private PreparedStatement mFirstPage;
+    private PreparedStatement mNextPage;
+
+    /** Key of the last product of the previous page, or null to read the first page */
+    private String mLastName;
+    private long mLastId;
+
+    private final PriceFormatter mPriceFormatter = new PriceFormatter("$", ',');
+    private final PriceFormatter mQuantityFormatter = new PriceFormatter("", ',');
+    private final char[] mUnitPriceBuffer = mPriceFormatter.newBuffer();
+    private final char[] mQuantityBuffer = mQuantityFormatter.newBuffer();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        mConnection = BenchmarkDatabase.open();
+        BenchmarkDatabase.insertProducts(mConnection, PRODUCT_COUNT);
+        mFirstPage = mConnection.prepareStatement(SQL_FIRST_PAGE);
+        mNextPage = mConnection.prepareStatement(SQL_NEXT_PAGE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        mFirstPage.close();
+        mNextPage.close();
+        mConnection.close();
+    }
+
+    /**
+     * Read the next page and bind its rows like the adapter does: the columns are resolved once per page,
+     * and the price and the stock level are formatted into reused char buffers.
+     */
+    @Benchmark
+    public void readPageBindByIndex(Blackhole blackhole) throws SQLException {
+        ResultSet page = queryNextPage();
+        try {
+            int idColumnIndex = page.findColumn(ProductEntry._ID);
+            int nameColumnIndex = page.findColumn(ProductEntry.COLUMN_PRODUCT_NAME);
+            int unitPriceColumnIndex = page.findColumn(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE);
+            int quantityColumnIndex = page.findColumn(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            int imagePathColumnIndex = page.findColumn(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH);
+            int rowCount = 0;
+            while (page.next()) {
+                mLastId = page.getLong(idColumnIndex);
+                mLastName = page.getString(nameColumnIndex);
+                blackhole.consume(mPriceFormatter.format(page.getInt(unitPriceColumnIndex), true, mUnitPriceBuffer));
+                blackhole.consume(mQuantityFormatter.format(page.getInt(quantityColumnIndex), false, mQuantityBuffer));
+                blackhole.consume(page.getString(imagePathColumnIndex));
+                rowCount++;
+            }
+            endPage(rowCount);
+        } finally {
+            page.close();
+        }
+    }
+
+    /**
+     * Baseline of {@link #readPageBindByIndex}: the columns are looked up by name for every row, and the
+     * price and the stock level are formatted into new Strings.
+     */
+    @Benchmark
+    public void readPageBindByName(Blackhole blackhole) throws SQLException {
+        ResultSet page = queryNextPage();
+        try {
+            int rowCount = 0;
+            while (page.next()) {
+                mLastId = page.getLong(ProductEntry._ID);
+                mLastName = page.getString(ProductEntry.COLUMN_PRODUCT_NAME);
+                blackhole.consume(String.format("$%,d", page.getInt(ProductEntry.COLUMN_PRODUCT_UNIT_PRICE)));
+                blackhole.consume(String.valueOf(page.getInt(ProductEntry.COLUMN_PRODUCT_QUANTITY)));
+                blackhole.consume(page.getString(ProductEntry.COLUMN_PRODUCT_IMAGE_PATH));
+                rowCount++;
+            }
+            endPage(rowCount);
+        } finally {
+            page.close();
+        }
+    }
+
+    /**
+     * Query the page following the key of the previous one.
+     */
+    private ResultSet queryNextPage() throws SQLException {
+        if (mLastName == null) {
+            return mFirstPage.executeQuery();
+        }
+        mNextPage.setString(1, mLastName);
+        mNextPage.setString(2, mLastName);
+        mNextPage.setLong(3, mLastId);
+        return mNextPage.executeQuery();
+    }
+
+    /**
+     * Go back to the first page once the last one has been read.
+     */
+    private void endPage(int rowCount) {
+        if (rowCount < PAGE_SIZE) {
+            mLastName = null;
+        }
+    }
+}
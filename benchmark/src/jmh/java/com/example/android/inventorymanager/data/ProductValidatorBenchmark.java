@@ -0,0 +1,45 @@
+package com.example.android.inventorymanager.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark of the validation of the attributes of a product, as run by the editor and by every
+ * write of {@link ProductProvider}.
+ */
+@State(Scope.Thread)
+public class ProductValidatorBenchmark {
+
+    /** Email pattern as the editor used it, compiled again on each check by {@link String#matches} */
+    private static final String EMAIL_REGEX = "[a-zA-Z0-9._-]+@[a-z]+\\.+[a-z]+";
+
+    @Param({"orders@example.com", "not an email"})
+    public String mSupplierEmail;
+
+    private String mName = "Product";
+    private Integer mUnitPrice = 100;
+    private Integer mQuantity = 10;
+    private String mSupplierName = "Supplier";
+
+    @Benchmark
+    public void checkProduct() {
+        ProductValidator.checkName(mName);
+        ProductValidator.checkUnitPrice(mUnitPrice);
+        ProductValidator.checkQuantity(mQuantity);
+        ProductValidator.checkSupplierName(mSupplierName);
+        ProductValidator.checkSupplierEmail(mSupplierEmail);
+    }
+
+    @Benchmark
+    public boolean isValidEmail() {
+        return ProductValidator.isValidEmail(mSupplierEmail);
+    }
+
+    /** Baseline of {@link #isValidEmail()}: the check as the editor made it before the pattern was compiled once */
+    @Benchmark
+    public boolean stringMatchesEmail() {
+        return mSupplierEmail.matches(EMAIL_REGEX);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.android.inventorymanager.data;
+
+import com.example.android.inventorymanager.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Benchmark of the SQL of the write paths of {@link ProductProvider}: the insert of a product on its own
+ * and within a batch, the update of a product by _ID, and the sale of a unit only if it's in stock.
+ * The statements are prepared once, as {@link ProductStatements} does.
+ */
+@State(Scope.Thread)
+public class ProductWriteBenchmark {
+
+    /** Number of products in the table before each iteration */
+    private static final int PRODUCT_COUNT = 10000;
+
+    /** Number of products inserted by a batch, within one transaction */
+    private static final int BATCH_SIZE = 100;
+
+    /** SQL statement updating the stock level of a product by _ID */
+    private static final String SQL_UPDATE_QUANTITY = "UPDATE " + ProductEntry.TABLE_NAME
+            + " SET " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = ? WHERE " + ProductEntry._ID + " = ?";
+
+    /** SQL statement selling units of a product, only if enough of them are in stock, as ProductStatements does */
+    private static final String SQL_SELL_PRODUCT = "UPDATE " + ProductEntry.TABLE_NAME
+            + " SET " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " - ?"
+            + " WHERE " + ProductEntry._ID + " = ? AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " >= ?";
+
+    private Connection mConnection;
+    private PreparedStatement mInsert;
+    private PreparedStatement mUpdateQuantity;
+    private PreparedStatement mSell;
+
+    /** Counter of the operations, giving the product written by each one */
+    private int mOperation;
+
+    /**
+     * Start each iteration from the same table, so that the inserts of the previous ones don't slow it down.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws SQLException {
+        mConnection = BenchmarkDatabase.open();
+        BenchmarkDatabase.insertProducts(mConnection, PRODUCT_COUNT);
+        mInsert = mConnection.prepareStatement(BenchmarkDatabase.SQL_INSERT_PRODUCT);
+        mUpdateQuantity = mConnection.prepareStatement(SQL_UPDATE_QUANTITY);
+        mSell = mConnection.prepareStatement(SQL_SELL_PRODUCT);
+        mOperation = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws SQLException {
+        mInsert.close();
+        mUpdateQuantity.close();
+        mSell.close();
+        mConnection.close();
+    }
+
+    /** Insert of a single product, in its own transaction like an insert from the editor */
+    @Benchmark
+    public int insertProduct() throws SQLException {
+        BenchmarkDatabase.bindProduct(mInsert, mOperation++);
+        return mInsert.executeUpdate();
+    }
+
+    /** Inserts of products within one transaction like a bulk insert of the import, measured per product */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int insertProductBatch() throws SQLException {
+        int insertedCount = 0;
+        mConnection.setAutoCommit(false);
+        try {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                BenchmarkDatabase.bindProduct(mInsert, mOperation++);
+                insertedCount += mInsert.executeUpdate();
+            }
+            mConnection.commit();
+        } finally {
+            mConnection.setAutoCommit(true);
+        }
+        return insertedCount;
+    }
+
+    @Benchmark
+    public int updateQuantityById() throws SQLException {
+        int operation = mOperation++;
+        mUpdateQuantity.setInt(1, BenchmarkDatabase.INITIAL_QUANTITY - operation % 100);
+        mUpdateQuantity.setLong(2, 1 + operation % PRODUCT_COUNT);
+        return mUpdateQuantity.executeUpdate();
+    }
+
+    @Benchmark
+    public int sellProductUnit() throws SQLException {
+        mSell.setInt(1, 1);
+        mSell.setLong(2, 1 + mOperation++ % PRODUCT_COUNT);
+        mSell.setInt(3, 1);
+        return mSell.executeUpdate();
+    }
+}